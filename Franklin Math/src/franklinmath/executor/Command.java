@@ -20,6 +20,7 @@ along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
 package franklinmath.executor;
 
 import java.util.Vector;
+import java.math.BigInteger;
 
 import franklinmath.expression.*;
 
@@ -31,6 +32,7 @@ public abstract class Command {
 
     protected String name = "";
     protected boolean isMathFunction = false;
+    protected boolean isListable = false;
 
     public abstract FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException;
 
@@ -44,6 +46,11 @@ public abstract class Command {
         isMathFunction = isMathFunc;
     }
 
+    //Typically used only during initialization.  
+    public void SetIsListable(boolean isListableFunc) {
+        isListable = isListableFunc;
+    }
+
     public String GetName() {
         return name;
     }
@@ -52,6 +59,68 @@ public abstract class Command {
         return isMathFunction;
     }
 
+    /**
+     * Listable commands are automatically threaded over list arguments by the expression toolset.  
+     */
+    public boolean IsListable() {
+        return isListable;
+    }
+
+    /**
+     * Commands that hold their arguments are given them unevaluated, and flatten them with the expression toolset 
+     * themselves, for example to keep a variable from being replaced by its value.  
+     */
+    public boolean HoldsArguments() {
+        return false;
+    }
+
+    /**
+     * Check whether the command can be evaluated on machine reals with EvaluateReal.  Listable commands with a real kernel 
+     * are applied to packed arrays with simple loops instead of one full command call per element.  
+     */
+    public boolean HasRealKernel() {
+        return false;
+    }
+
+    /**
+     * Check whether the command maps machine integers to machine integers with EvaluateInteger.  
+     */
+    public boolean HasIntegerKernel() {
+        return false;
+    }
+
+    /**
+     * Evaluate a one argument command on a machine real.  
+     * @return  The result, or NaN if the result is not a machine real.  
+     */
+    public double EvaluateReal(double x) {
+        return Double.NaN;
+    }
+
+    /**
+     * Evaluate a two argument command on machine reals.  
+     * @return  The result, or NaN if the result is not a machine real.  
+     */
+    public double EvaluateReal(double x, double y) {
+        return Double.NaN;
+    }
+
+    /**
+     * Evaluate a one argument command on a machine integer.  
+     * @throws ArithmeticException  Thrown if the result is not a machine integer.  
+     */
+    public long EvaluateInteger(long x) {
+        throw new ArithmeticException("No integer kernel");
+    }
+
+    /**
+     * Evaluate a two argument command on machine integers.  
+     * @throws ArithmeticException  Thrown if the result is not a machine integer.  
+     */
+    public long EvaluateInteger(long x, long y) {
+        throw new ArithmeticException("No integer kernel");
+    }
+
     protected void CheckArgsLength(Vector<Equation> args, int expectedSize) throws CommandException {
         if (args.size() != expectedSize) {
             throw new CommandException("Invalid function parameter list length", GetName());
@@ -93,4 +162,241 @@ public abstract class Command {
             throw new CommandException(ex.getMessage(), GetName());
         }
     }
+
+    /**
+     * Get an argument that must be an exact integer.
+     * @param args      The function argument list.
+     * @param index     The index of the integer argument.
+     * @return          The argument value as a BigInteger.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected BigInteger GetIntegerArgument(Vector<Equation> args, int index) throws CommandException {
+        FMNumber number = GetNumberArgument(args, index);
+        //rounded machine numbers are not accepted, even when they are integral
+        if ((number == null) || !number.IsExactInteger()) {
+            throw new CommandException("Integer argument expected", GetName());
+        }
+        return number.RealValue().toBigIntegerExact();
+    }
+
+    /**
+     * Get an argument that must be a list, which may be a packed array.  
+     * @param args      The function argument list.
+     * @param index     The index of the list argument.
+     * @return          The list factor.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected Factor GetListArgument(Vector<Equation> args, int index) throws CommandException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        Equation argument = args.get(index);
+        if (!argument.IsExpression()) {
+            throw new CommandException("Equation invalid as argument", GetName());
+        }
+        SingleExpression single = argument.GetLHS().GetSingle();
+        if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsLazySequence()) {
+            return ForceSequence(single.SingleValue());
+        }
+        if ((single == null) || single.IsSingleNegative() || (!single.SingleValue().IsExprList())) {
+            throw new CommandException("List argument expected", GetName());
+        }
+        return single.SingleValue();
+    }
+
+    /**
+     * Turn a lazy sequence into a list (packed when possible), for commands that need every element.  
+     * @throws franklinmath.executor.CommandException   Thrown if the sequence is too long to list.  
+     */
+    protected Factor ForceSequence(Factor sequence) throws CommandException {
+        try {
+            return sequence.GetLazySequence().ToFactor();
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get an argument that must be a list of numbers.
+     * @param args      The function argument list.
+     * @param index     The index of the list argument.
+     * @return          The numbers contained in the list.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected Vector<FMNumber> GetNumberListArgument(Vector<Equation> args, int index) throws CommandException {
+        Factor list = GetListArgument(args, index);
+        try {
+            //packed arrays give their numbers directly
+            if (list.IsPackedArray()) {
+                PackedArray packed = list.GetPackedArray();
+                Vector<FMNumber> numberList = new Vector<FMNumber>(packed.Length());
+                for (int i = 0; i < packed.Length(); i++) {
+                    numberList.add(packed.GetNumber(i));
+                }
+                return numberList;
+            }
+            Vector<Expression> exprList = list.GetExprList();
+            Vector<FMNumber> numberList = new Vector<FMNumber>(exprList.size());
+            for (int i = 0; i < exprList.size(); i++) {
+                FMNumber number = exprList.get(i).GetSingleNumber();
+                if (number == null) {
+                    throw new CommandException("List of numbers expected", GetName());
+                }
+                numberList.add(number);
+            }
+            return numberList;
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get an argument that names a function, either a built in command or a user function.  
+     * @param args      The function argument list.
+     * @param index     The index of the function argument.
+     * @return          The function name.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected String GetFunctionArgument(Vector<Equation> args, int index) throws CommandException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        Equation argument = args.get(index);
+        SingleExpression single = argument.IsExpression() ? argument.GetLHS().GetSingle() : null;
+        if ((single == null) || single.IsSingleNegative() || (!single.SingleValue().IsSymbol())) {
+            throw new CommandException("Function name expected", GetName());
+        }
+        try {
+            return single.SingleValue().GetSymbol();
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Call a function on one argument and evaluate the result.  
+     * @param functionName          The name of a built in command or user function.
+     * @param argument              The argument.
+     * @param expressionToolset     The toolset used to evaluate the call.
+     * @return                      The flattened result.
+     */
+    protected Expression ApplyFunction(String functionName, Expression argument, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Vector<Expression> arguments = new Vector<Expression>(1);
+        arguments.add(argument);
+        return ApplyFunction(functionName, arguments, expressionToolset);
+    }
+
+    /**
+     * Call a function on a list of arguments and evaluate the result.  
+     * @param functionName          The name of a built in command or user function.
+     * @param arguments             The arguments, in order.
+     * @param expressionToolset     The toolset used to evaluate the call.
+     * @return                      The flattened result.
+     */
+    protected Expression ApplyFunction(String functionName, Vector<Expression> arguments, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Vector<Equation> argList = new Vector<Equation>(arguments.size());
+        for (int i = 0; i < arguments.size(); i++) {
+            argList.add(new Equation(arguments.get(i), null));
+        }
+        Factor call = new Factor(new SymbolicFunction(functionName, argList, false));
+        return expressionToolset.Flatten(new Expression(new Term(new Power(call)), TermOperator.NONE));
+    }
+
+    /**
+     * Receives the integers read by ReadIntegerArguments.  Machine integers are passed as longs, so that commands can work 
+     * on them without creating a BigInteger for each one.  
+     */
+    public static abstract class IntegerVisitor {
+
+        /**
+         * @return  True to keep reading, or false to stop.  
+         */
+        public abstract boolean Visit(long value);
+
+        /**
+         * @return  True to keep reading, or false to stop.  
+         */
+        public abstract boolean Visit(BigInteger value);
+    }
+
+    /**
+     * Read all of the integers in the argument list in order, where each argument is either an integer or a list of 
+     * integers.  Packed arrays are read straight from their long data.  Once the visitor stops reading, the remaining 
+     * arguments are still checked, so a non-integer argument is always an error.  
+     * @param args      The function argument list.
+     * @param visitor   Receives each integer.  
+     * @throws franklinmath.executor.CommandException
+     */
+    protected void ReadIntegerArguments(Vector<Equation> args, IntegerVisitor visitor) throws CommandException {
+        boolean isReading = true;
+        for (int i = 0; i < args.size(); i++) {
+            Equation argument = args.get(i);
+            if (!argument.IsExpression()) {
+                throw new CommandException("Equation invalid as argument", GetName());
+            }
+            SingleExpression single = argument.GetLHS().GetSingle();
+            if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsPackedArray()) {
+                try {
+                    PackedArray packed = single.SingleValue().GetPackedArray();
+                    if (isReading) {
+                        isReading = VisitPacked(packed, visitor);
+                    } else if (!packed.IsInteger()) {
+                        throw new CommandException("Integer argument expected", GetName());
+                    }
+                } catch (ExpressionException ex) {
+                    throw new CommandException(ex.getMessage(), GetName());
+                }
+            } else if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsExprList()) {
+                Vector<FMNumber> numberList = GetNumberListArgument(args, i);
+                for (int j = 0; j < numberList.size(); j++) {
+                    if (!numberList.get(j).IsExactInteger()) {
+                        throw new CommandException("Integer argument expected", GetName());
+                    }
+                    if (isReading) {
+                        isReading = VisitInteger(numberList.get(j).RealValue().toBigInteger(), visitor);
+                    }
+                }
+            } else {
+                BigInteger value = GetIntegerArgument(args, i);
+                if (isReading) {
+                    isReading = VisitInteger(value, visitor);
+                }
+            }
+        }
+    }
+
+    //pass an integer on as a long when it fits
+    protected static boolean VisitInteger(BigInteger value, IntegerVisitor visitor) {
+        return (value.bitLength() < 64) ? visitor.Visit(value.longValue()) : visitor.Visit(value);
+    }
+
+    //pass the elements of an integer array on as longs, in blocks for off heap arrays
+    protected boolean VisitPacked(PackedArray packed, IntegerVisitor visitor) throws CommandException, ExpressionException {
+        if (!packed.IsInteger()) {
+            throw new CommandException("Integer argument expected", GetName());
+        }
+        int length = packed.Length();
+        if (!packed.IsOffHeap()) {
+            long[] data = packed.GetLongData();
+            for (int i = 0; i < length; i++) {
+                if (!visitor.Visit(data[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        long[] block = new long[Math.min(length, OffHeapStorage.BLOCK_SIZE)];
+        for (int start = 0; start < length; start += block.length) {
+            int count = Math.min(block.length, length - start);
+            packed.GetLongs(start, block, count);
+            for (int i = 0; i < count; i++) {
+                if (!visitor.Visit(block[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 }
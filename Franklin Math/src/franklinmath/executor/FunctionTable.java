@@ -21,6 +21,8 @@ package franklinmath.executor;
 
 import java.util.*;
 
+import franklinmath.expression.ExpressionToolset;
+
 /**
  * This class represents a lookup table for functions.  
  * @author Allen Jordan
@@ -34,6 +36,7 @@ public class FunctionTable {
 
     public void Set(String name, Command value) {
         table.put(name, value);
+        ExpressionToolset.TablesChanged();
     }
 
     public Command Get(String name) throws Exception {
@@ -36,6 +36,7 @@ public class LookupTable {
 
     public void Set(String name, Expression value) {
         table.put(name, value);
+        ExpressionToolset.TablesChanged();
     }
 
     public Expression Get(String name) throws ExecutionException {
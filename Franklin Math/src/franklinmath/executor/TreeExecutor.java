@@ -55,6 +55,7 @@ public class TreeExecutor {
                 Command functionCommand = (Command) functionConstructor.newInstance();
                 functionCommand.SetName(info.name);
                 functionCommand.SetIsMathFunction(info.isMathFunction);
+                functionCommand.SetIsListable(info.isListable);
 
                 //add the command into the function table
                 functionTable.Set(info.name, functionCommand);
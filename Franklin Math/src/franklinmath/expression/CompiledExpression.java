@@ -0,0 +1,577 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.math.*;
+import java.util.*;
+
+/**
+ * An expression in a single variable compiled into a tree of machine arithmetic nodes.  This lets commands such as Sum 
+ * and Table evaluate an expression many times without building and flattening a new expression for every value.  
+ * Only numbers, the variable, arithmetic operators and a few elementary functions can be compiled.  Callers should 
+ * evaluate with the full expression toolset when compilation fails or when a compiled result is not finite.  
+ * @author Allen Jordan
+ */
+public final class CompiledExpression {
+
+    final private Node root;
+    final private String variable;
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private CompiledExpression(Node root, String variable) {
+        this.root = root;
+        this.variable = variable;
+    }
+
+    /**
+     * Compile an expression for repeated evaluation.  
+     * @param expr      The (flattened) expression to compile.
+     * @param variable  The name of the variable symbol.
+     * @return          The compiled expression, or null if the expression contains anything that cannot be compiled.
+     * @throws franklinmath.expression.ExpressionException
+     */
+    public static CompiledExpression Compile(Expression expr, String variable) throws ExpressionException {
+        assert (expr != null) && (variable != null);
+        Node root = CompileExpression(expr, variable);
+        if (root == null) {
+            return null;
+        }
+        return new CompiledExpression(root, variable);
+    }
+
+    public String GetVariable() {
+        return variable;
+    }
+
+    /**
+     * Check whether the expression always gives an integer when the variable is an integer.  
+     * If so, EvaluateLong may be used for exact evaluation.  
+     */
+    public boolean IsInteger() {
+        return root.isInteger;
+    }
+
+    /**
+     * Evaluate the expression with machine real numbers.  
+     * @param x     The variable value.
+     * @return      The result, which may be infinite or NaN if the expression is undefined at this value.  
+     */
+    public double Evaluate(double x) {
+        return root.Evaluate(x);
+    }
+
+    /**
+     * Evaluate an integer expression exactly.  Only valid when IsInteger returns true.  
+     * @param x     The variable value.
+     * @return      The exact result.
+     * @throws ArithmeticException  Thrown if the result (or an intermediate result) overflows a long or is not an integer.  
+     */
+    public long EvaluateLong(long x) {
+        assert root.isInteger;
+        return root.EvaluateLong(x);
+    }
+
+    /**
+     * Evaluate an integer expression exactly with big integers, for values where EvaluateLong overflows.  
+     * Only valid when IsInteger returns true.  
+     * @throws ArithmeticException  Thrown if the value is not an integer, such as for a negative exponent.  
+     */
+    public BigInteger EvaluateBigInteger(BigInteger x) {
+        assert root.isInteger;
+        return root.EvaluateBigInteger(x);
+    }
+
+    /**
+     * Add two longs, throwing an exception on overflow.  
+     */
+    public static long AddExact(long a, long b) {
+        long result = a + b;
+        if (((a ^ result) & (b ^ result)) < 0) {
+            throw new ArithmeticException("Integer overflow");
+        }
+        return result;
+    }
+
+    /**
+     * Multiply two longs, throwing an exception on overflow.  
+     */
+    public static long MultiplyExact(long a, long b) {
+        long result = a * b;
+        long absA = Math.abs(a), absB = Math.abs(b);
+        if (((absA | absB) >>> 31) != 0) {
+            //only check with division when either value is large
+            if (((b != 0) && (result / b != a)) || ((a == Long.MIN_VALUE) && (b == -1))) {
+                throw new ArithmeticException("Integer overflow");
+            }
+        }
+        return result;
+    }
+
+    protected static Node CompileExpression(Expression expr, String variable) throws ExpressionException {
+        int numTerms = expr.NumTerms();
+        if (numTerms == 0) {
+            return null;
+        }
+        Node[] nodes = new Node[numTerms];
+        boolean[] negate = new boolean[numTerms];
+        for (int i = 0; i < numTerms; i++) {
+            nodes[i] = CompileTerm(expr.GetTerm(i), variable);
+            if (nodes[i] == null) {
+                return null;
+            }
+            negate[i] = (expr.GetOperator(i) == TermOperator.SUBTRACT);
+        }
+        if ((numTerms == 1) && !negate[0]) {
+            return nodes[0];
+        }
+        return new SumNode(nodes, negate);
+    }
+
+    protected static Node CompileTerm(Term term, String variable) throws ExpressionException {
+        int numPowers = term.NumPowers();
+        if (numPowers == 0) {
+            return null;
+        }
+        Node[] nodes = new Node[numPowers];
+        boolean[] divide = new boolean[numPowers];
+        for (int i = 0; i < numPowers; i++) {
+            nodes[i] = CompilePower(term.GetPower(i), variable);
+            if (nodes[i] == null) {
+                return null;
+            }
+            divide[i] = (term.GetOperator(i) == PowerOperator.DIVIDE);
+        }
+        if ((numPowers == 1) && !divide[0]) {
+            return nodes[0];
+        }
+        return new ProductNode(nodes, divide);
+    }
+
+    protected static Node CompilePower(Power power, String variable) throws ExpressionException {
+        int numFactors = power.NumFactors();
+        if (numFactors == 0) {
+            return null;
+        }
+        //exponents are right associative, so build the chain from the end
+        Node exponent = CompileFactor(power.GetFactor(numFactors - 1), variable);
+        if (exponent == null) {
+            return null;
+        }
+        for (int i = numFactors - 2; i >= 0; i--) {
+            Node base = CompileFactor(power.GetFactor(i), variable);
+            if (base == null) {
+                return null;
+            }
+            if ((exponent instanceof ConstantNode) && ((ConstantNode) exponent).isInteger && (Math.abs(((ConstantNode) exponent).longValue) <= 1024)) {
+                exponent = new IntegerPowerNode(base, (int) ((ConstantNode) exponent).longValue);
+            } else {
+                exponent = new PowerNode(base, exponent);
+            }
+        }
+        return exponent;
+    }
+
+    protected static Node CompileFactor(Factor factor, String variable) throws ExpressionException {
+        if (factor.IsNumber()) {
+            FMNumber number = factor.GetNumber();
+            if (number.IsImaginary()) {
+                return null;
+            }
+            BigDecimal value = number.RealValue();
+            if (number.IsExactInteger() && (value.compareTo(LONG_MIN) >= 0) && (value.compareTo(LONG_MAX) <= 0)) {
+                return new ConstantNode(value.longValue());
+            }
+            double doubleValue = value.doubleValue();
+            if (Double.isInfinite(doubleValue)) {
+                return null;
+            }
+            return new ConstantNode(doubleValue);
+        } else if (factor.IsSymbol()) {
+            if (factor.GetSymbol().equals(variable)) {
+                return new VariableNode();
+            }
+            return null;
+        } else if (factor.IsNestedExpr()) {
+            return CompileExpression(factor.GetNestedExpr(), variable);
+        } else if (factor.IsSymbolicFunction()) {
+            SymbolicFunction function = factor.GetSymbolicFunction();
+            Vector<Equation> params = function.GetParamList();
+            Node[] args = new Node[params.size()];
+            for (int i = 0; i < args.length; i++) {
+                Equation equ = params.get(i);
+                if (!equ.IsExpression()) {
+                    return null;
+                }
+                args[i] = CompileExpression(equ.GetLHS(), variable);
+                if (args[i] == null) {
+                    return null;
+                }
+            }
+            return CompileFunction(function.GetName(), args);
+        }
+        return null;
+    }
+
+    protected static Node CompileFunction(String name, Node[] args) {
+        if (args.length == 1) {
+            if (name.equals("Sin")) {
+                return new FunctionNode(FunctionNode.SIN, args[0], null);
+            } else if (name.equals("Cos")) {
+                return new FunctionNode(FunctionNode.COS, args[0], null);
+            } else if (name.equals("Tan")) {
+                return new FunctionNode(FunctionNode.TAN, args[0], null);
+            } else if (name.equals("ArcSin")) {
+                return new FunctionNode(FunctionNode.ARCSIN, args[0], null);
+            } else if (name.equals("ArcCos")) {
+                return new FunctionNode(FunctionNode.ARCCOS, args[0], null);
+            } else if (name.equals("ArcTan")) {
+                return new FunctionNode(FunctionNode.ARCTAN, args[0], null);
+            } else if (name.equals("Sqrt")) {
+                return new FunctionNode(FunctionNode.SQRT, args[0], null);
+            } else if (name.equals("Abs")) {
+                return new FunctionNode(FunctionNode.ABS, args[0], null);
+            }
+        } else if (args.length == 2) {
+            if (name.equals("Log")) {
+                return new FunctionNode(FunctionNode.LOG, args[0], args[1]);
+            } else if (name.equals("ArcTan2")) {
+                return new FunctionNode(FunctionNode.ARCTAN2, args[0], args[1]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A node in the compiled expression tree.  
+     */
+    protected static abstract class Node {
+
+        //true when the node gives an integer for integer variable values
+        protected boolean isInteger = false;
+
+        public abstract double Evaluate(double x);
+
+        public long EvaluateLong(long x) {
+            throw new ArithmeticException("Node is not integer valued");
+        }
+
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            throw new ArithmeticException("Node is not integer valued");
+        }
+    }
+
+    protected static final class ConstantNode extends Node {
+
+        final protected double doubleValue;
+        final protected long longValue;
+
+        public ConstantNode(long value) {
+            longValue = value;
+            doubleValue = value;
+            isInteger = true;
+        }
+
+        public ConstantNode(double value) {
+            longValue = 0;
+            doubleValue = value;
+        }
+
+        public double Evaluate(double x) {
+            return doubleValue;
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            return longValue;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            return BigInteger.valueOf(longValue);
+        }
+    }
+
+    protected static final class VariableNode extends Node {
+
+        public VariableNode() {
+            isInteger = true;
+        }
+
+        public double Evaluate(double x) {
+            return x;
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            return x;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            return x;
+        }
+    }
+
+    protected static final class SumNode extends Node {
+
+        final protected Node[] nodes;
+        final protected boolean[] negate;
+
+        public SumNode(Node[] nodes, boolean[] negate) {
+            this.nodes = nodes;
+            this.negate = negate;
+            isInteger = true;
+            for (int i = 0; i < nodes.length; i++) {
+                isInteger &= nodes[i].isInteger;
+            }
+        }
+
+        public double Evaluate(double x) {
+            double result = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                double value = nodes[i].Evaluate(x);
+                result = negate[i] ? (result - value) : (result + value);
+            }
+            return result;
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            long result = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                long value = nodes[i].EvaluateLong(x);
+                if (negate[i]) {
+                    if (value == Long.MIN_VALUE) {
+                        throw new ArithmeticException("Integer overflow");
+                    }
+                    value = -value;
+                }
+                result = AddExact(result, value);
+            }
+            return result;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            BigInteger result = BigInteger.ZERO;
+            for (int i = 0; i < nodes.length; i++) {
+                BigInteger value = nodes[i].EvaluateBigInteger(x);
+                result = negate[i] ? result.subtract(value) : result.add(value);
+            }
+            return result;
+        }
+    }
+
+    protected static final class ProductNode extends Node {
+
+        final protected Node[] nodes;
+        final protected boolean[] divide;
+
+        public ProductNode(Node[] nodes, boolean[] divide) {
+            this.nodes = nodes;
+            this.divide = divide;
+            isInteger = true;
+            for (int i = 0; i < nodes.length; i++) {
+                isInteger &= nodes[i].isInteger && !divide[i];
+            }
+        }
+
+        public double Evaluate(double x) {
+            double result = 1;
+            for (int i = 0; i < nodes.length; i++) {
+                double value = nodes[i].Evaluate(x);
+                result = divide[i] ? (result / value) : (result * value);
+            }
+            return result;
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            long result = 1;
+            for (int i = 0; i < nodes.length; i++) {
+                result = MultiplyExact(result, nodes[i].EvaluateLong(x));
+            }
+            return result;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            BigInteger result = BigInteger.ONE;
+            for (int i = 0; i < nodes.length; i++) {
+                result = result.multiply(nodes[i].EvaluateBigInteger(x));
+            }
+            return result;
+        }
+    }
+
+    protected static final class IntegerPowerNode extends Node {
+
+        final protected Node base;
+        final protected int exponent;
+
+        public IntegerPowerNode(Node base, int exponent) {
+            this.base = base;
+            this.exponent = exponent;
+            isInteger = base.isInteger && (exponent >= 0);
+        }
+
+        public double Evaluate(double x) {
+            double value = base.Evaluate(x);
+            int n = Math.abs(exponent);
+            double result = 1;
+            //binary exponentiation
+            while (n != 0) {
+                if ((n & 1) != 0) {
+                    result *= value;
+                }
+                n >>>= 1;
+                if (n != 0) {
+                    value *= value;
+                }
+            }
+            return (exponent < 0) ? (1 / result) : result;
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            long value = base.EvaluateLong(x);
+            int n = exponent;
+            long result = 1;
+            while (n != 0) {
+                if ((n & 1) != 0) {
+                    result = MultiplyExact(result, value);
+                }
+                n >>>= 1;
+                if (n != 0) {
+                    value = MultiplyExact(value, value);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            return base.EvaluateBigInteger(x).pow(exponent);
+        }
+    }
+
+    protected static final class PowerNode extends Node {
+
+        final protected Node base, exponent;
+
+        public PowerNode(Node base, Node exponent) {
+            this.base = base;
+            this.exponent = exponent;
+            //negative exponents are rejected when evaluating with integers
+            isInteger = base.isInteger && exponent.isInteger;
+        }
+
+        public double Evaluate(double x) {
+            return StrictMath.pow(base.Evaluate(x), exponent.Evaluate(x));
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            long value = base.EvaluateLong(x);
+            long n = exponent.EvaluateLong(x);
+            if (n < 0) {
+                throw new ArithmeticException("Negative integer exponent");
+            }
+            long result = 1;
+            while (n != 0) {
+                if ((n & 1) != 0) {
+                    result = MultiplyExact(result, value);
+                }
+                n >>>= 1;
+                if (n != 0) {
+                    value = MultiplyExact(value, value);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            BigInteger n = exponent.EvaluateBigInteger(x);
+            if ((n.signum() < 0) || (n.bitLength() > 31)) {
+                throw new ArithmeticException("Integer exponent out of range");
+            }
+            return base.EvaluateBigInteger(x).pow(n.intValue());
+        }
+    }
+
+    protected static final class FunctionNode extends Node {
+
+        public static final int SIN = 0, COS = 1, TAN = 2, ARCSIN = 3, ARCCOS = 4, ARCTAN = 5, SQRT = 6, ABS = 7, LOG = 8, ARCTAN2 = 9;
+        final protected int function;
+        final protected Node first, second;
+
+        public FunctionNode(int function, Node first, Node second) {
+            this.function = function;
+            this.first = first;
+            this.second = second;
+            isInteger = (function == ABS) && first.isInteger;
+        }
+
+        public double Evaluate(double x) {
+            double value = first.Evaluate(x);
+            switch (function) {
+                case SIN:
+                    return StrictMath.sin(value);
+                case COS:
+                    return StrictMath.cos(value);
+                case TAN:
+                    return StrictMath.tan(value);
+                case ARCSIN:
+                    return StrictMath.asin(value);
+                case ARCCOS:
+                    return StrictMath.acos(value);
+                case ARCTAN:
+                    return StrictMath.atan(value);
+                case SQRT:
+                    return StrictMath.sqrt(value);
+                case ABS:
+                    return Math.abs(value);
+                case LOG:
+                    //the first argument is the base
+                    return StrictMath.log(second.Evaluate(x)) / StrictMath.log(value);
+                case ARCTAN2:
+                    return StrictMath.atan2(value, second.Evaluate(x));
+                default:
+                    return Double.NaN;
+            }
+        }
+
+        @Override
+        public long EvaluateLong(long x) {
+            long value = first.EvaluateLong(x);
+            if (value == Long.MIN_VALUE) {
+                throw new ArithmeticException("Integer overflow");
+            }
+            return Math.abs(value);
+        }
+
+        @Override
+        public BigInteger EvaluateBigInteger(BigInteger x) {
+            return first.EvaluateBigInteger(x).abs();
+        }
+    }
+}
@@ -345,6 +345,9 @@ public final class Expression implements LatexOutput {
                     } else if (factor.IsNestedExpr()) {
                         Expression nested = factor.GetNestedExpr();
                         factorIterator.set(new Factor(nested.Replace(symbol, expr)));
+                    } else if (factor.IsPackedArray()) {
+                        //packed arrays only hold numbers, so there is nothing to replace
+                        continue;
                     } else if (factor.IsExprList()) {
                         Vector<Expression> list = factor.GetExprList();
                         for (int l = 0; l < list.size(); l++) {
@@ -415,6 +418,8 @@ public final class Expression implements LatexOutput {
                                 }
                             }
                         }
+                    } else if (factor.IsPackedArray()) {
+                        continue;
                     } else if (factor.IsExprList()) {
                         ListIterator exprIterator = factor.GetExprList().listIterator();
                         while (exprIterator.hasNext()) {
@@ -19,8 +19,11 @@ along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
 
 package franklinmath.expression;
 
+import java.io.IOException;
 import java.math.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import franklinmath.executor.*;
 import franklinmath.util.*;
@@ -39,6 +42,14 @@ public class ExpressionToolset {
     protected LookupTable lookupTable;
     protected FunctionTable userFunctionTable,  systemFunctionTable;
     protected Vector<FMResult> resultList;
+    //smallest block of a packed array worth giving to a separate worker thread
+    protected static final int KERNEL_BLOCK_SIZE = 16384;
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+    //exact integer powers are only computed up to this many bits, and larger ones use machine reals
+    protected static final long MAX_EXACT_POWER_BITS = 1L << 26;
+    //the number of changes made to any variable or function table
+    protected static final AtomicLong tableGeneration = new AtomicLong();
 
     public ExpressionToolset() {
         context = new MathContext(FMProperties.GetPrecision(), FMProperties.GetRoundingMode());
@@ -60,6 +71,35 @@ public class ExpressionToolset {
         return context;
     }
 
+    /**
+     * Create a toolset that shares this toolset's context and lookup tables, for evaluating on a separate worker thread.  
+     * The tables are only read during evaluation, so several task toolsets can work at once.  
+     * @param taskResultList    The list that collects string and image results from the task, or null to drop them.  
+     */
+    public ExpressionToolset CreateTaskToolset(Vector<FMResult> taskResultList) {
+        return new ExpressionToolset(context, lookupTable, userFunctionTable, systemFunctionTable, taskResultList);
+    }
+
+    /**
+     * Add string and image results collected by a task toolset, keeping their order.  
+     */
+    public void AddResults(Vector<FMResult> taskResultList) {
+        if (resultList != null) {
+            resultList.addAll(taskResultList);
+        }
+    }
+
+    /**
+     * Check whether a name refers to a listable system command, which threads over list arguments by itself.  
+     */
+    public boolean IsListableFunction(String functionName) {
+        try {
+            return (systemFunctionTable != null) && systemFunctionTable.Exists(functionName) && systemFunctionTable.Get(functionName).IsListable();
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
     /**
      * Generate a random expression (possibly for use with fuzzing)
      * @return Return the resulting random expression
@@ -255,6 +295,12 @@ public class ExpressionToolset {
         }
         inExpr = new Expression(termListCopy, operatorListCopy);
 
+        //lists are added element-wise
+        Factor listSum = CombineListTerms(inExpr, depth);
+        if (listSum != null) {
+            return new Expression(new Term(new Power(listSum)), TermOperator.NONE);
+        }
+
         //combine equal terms using a hash table
         Hashtable<Term, FMNumber> termTable = new Hashtable<Term, FMNumber>();
         FMNumber numTotal = FMNumber.ZERO;
@@ -431,6 +477,12 @@ public class ExpressionToolset {
         }
         inTerm = new Term(powerListCopy, operatorListCopy);
 
+        //lists are multiplied element-wise
+        Factor listProduct = CombineListPowers(inTerm, depth);
+        if (listProduct != null) {
+            return new Term(new Power(listProduct));
+        }
+
         //break the term into organized tables
         Hashtable<Power, Integer> powerMultiplyTable = new Hashtable<Power, Integer>();
         Hashtable<Power, Integer> powerDivideTable = new Hashtable<Power, Integer>();
@@ -607,6 +659,18 @@ public class ExpressionToolset {
                 return inPower;
             }
 
+            //lists are exponentiated element-wise
+            if (previousFactor.IsExprList() || factor.IsExprList()) {
+                factor = CombineLists(factor, previousFactor, ListOperator.POWER, depth);
+
+                powerIterator.remove();
+                powerIterator.next();
+                powerIterator.set(factor);
+                powerIterator.previous();
+                previousFactor = factor;
+                continue;
+            }
+
             //check for zero powers
             if (previousFactor.IsNumber()) {
                 FMNumber num = previousFactor.GetNumber();
@@ -618,7 +682,10 @@ public class ExpressionToolset {
             if (previousFactor.IsNumber() && factor.IsNumber()) {
                 FMNumber base = factor.GetNumber();
                 FMNumber exp = previousFactor.GetNumber();
-                FMNumber result = new FMNumber(StrictMath.pow(base.doubleValue(), exp.doubleValue()));
+                FMNumber result = ExactPower(base, exp);
+                if (result == null) {
+                    result = new FMNumber(StrictMath.pow(base.doubleValue(), exp.doubleValue()));
+                }
                 factor = new Factor(result);
 
                 powerIterator.remove();
@@ -635,6 +702,22 @@ public class ExpressionToolset {
         return new Power(factorListCopy);
     }
 
+    /**
+     * Get the number of changes made to the variable and function tables.  Flattening a list gives a list whose elements 
+     * are flat as long as the tables do not change, so it is marked with the generation (see PersistentVector.MarkFlat) 
+     * and not flattened again until the next change.  
+     */
+    public static long GetTableGeneration() {
+        return tableGeneration.get();
+    }
+
+    /**
+     * Record a change to a variable or function table, which may change the value of any list.  
+     */
+    public static void TablesChanged() {
+        tableGeneration.incrementAndGet();
+    }
+
     protected Factor FlattenFactor(Factor inFactor, int depth) throws ExpressionException, ExecutionException {
         assert inFactor != null;
         depth++;
@@ -659,10 +742,12 @@ public class ExpressionToolset {
             SymbolicFunction sf = inFactor.GetSymbolicFunction();
             String sfName = sf.GetName();
             Vector<Equation> sfArgs = sf.GetParamList();
-            //flatten each function argument
-            for (int i = 0; i < sfArgs.size(); i++) {
-                Equation equFlat = FlattenEquation(sfArgs.get(i), depth);
-                sfArgs.set(i, equFlat);
+            //flatten each function argument, unless the command evaluates its own arguments
+            if (!HoldsArguments(sfName)) {
+                for (int i = 0; i < sfArgs.size(); i++) {
+                    Equation equFlat = FlattenEquation(sfArgs.get(i), depth);
+                    sfArgs.set(i, equFlat);
+                }
             }
             sf = new SymbolicFunction(sfName, sfArgs, sf.IsMathFunction());
 
@@ -676,6 +761,13 @@ public class ExpressionToolset {
                     //call the function
                     if (systemFunctionTable.Exists(functionName)) {
                         Command functionCommand = systemFunctionTable.Get(sfName);
+                        //listable commands are applied to each element of any list arguments
+                        if (functionCommand.IsListable()) {
+                            Factor threaded = ThreadListable(functionCommand, sfArgs, depth);
+                            if (threaded != null) {
+                                return threaded;
+                            }
+                        }
                         FMResult result = functionCommand.Execute(sfArgs, this);
                         if (result.IsExpression()) {
                             expr = result.GetExpression();
@@ -724,18 +816,575 @@ public class ExpressionToolset {
 
             return ExpressionToFactor(expr);
         }//end nested expression processing
+        else if (inFactor.IsPackedArray()) {
+            //packed arrays only hold numbers, so they are already flat
+            return inFactor;
+        }//end packed array processing
         else if (inFactor.IsExprList()) {
-            Vector<Expression> exprList = inFactor.GetExprList();
-            for (int i = 0; i < exprList.size(); i++) {
-                Expression exprFlat = FlattenExpression(exprList.get(i), depth);
-                exprList.set(i, exprFlat);
+            //a list flattened since the tables last changed is returned as it is, packed or not
+            PersistentVector persistentList = inFactor.GetPersistentList();
+            long generation = GetTableGeneration();
+            if (persistentList.GetFlatGeneration() == generation) {
+                return inFactor;
             }
-            return new Factor(exprList);
+            Vector<Expression> exprList = new Vector<Expression>(persistentList.Size());
+            for (Expression element : persistentList) {
+                exprList.add(FlattenExpression(element, depth));
+            }
+            //lists of machine numbers are stored packed
+            PackedArray packed = PackedArray.Pack(exprList);
+            if (packed != null) {
+                return new Factor(packed);
+            }
+            return new Factor(new PersistentVector(exprList).MarkFlat(generation));
         }//end expression list processing
 
         return inFactor;
     }
 
+    /**
+     * Add together the terms of an expression when any of them is a list.  Other terms are added to every list element.  
+     * @param inExpr    The expression, with each term already flattened.  
+     * @param depth     The current recursion depth.  
+     * @return          The list sum, or null if no term is a list.  
+     */
+    protected Factor CombineListTerms(Expression inExpr, int depth) throws ExpressionException, ExecutionException {
+        int numTerms = inExpr.NumTerms();
+        Vector<Integer> listIndices = new Vector<Integer>();
+        Expression otherTerms = new Expression();
+        for (int i = 0; i < numTerms; i++) {
+            Factor single = inExpr.GetTerm(i).GetSingleFactor();
+            if ((single != null) && single.IsExprList()) {
+                listIndices.add(i);
+            } else {
+                otherTerms = otherTerms.AppendTerm(inExpr.GetTerm(i), inExpr.GetOperator(i));
+            }
+        }
+        if (listIndices.isEmpty()) {
+            return null;
+        }
+
+        Factor result = null;
+        if (otherTerms.NumTerms() > 0) {
+            result = ExpressionToFactor(FlattenExpression(otherTerms, depth));
+        }
+        for (int i = 0; i < listIndices.size(); i++) {
+            int index = listIndices.get(i);
+            Factor list = inExpr.GetTerm(index).GetSingleFactor();
+            boolean isSubtract = (inExpr.GetOperator(index) == TermOperator.SUBTRACT);
+            if ((result == null) && !isSubtract) {
+                result = list;
+            } else {
+                result = CombineLists((result == null) ? new Factor(FMNumber.ZERO) : result, list, isSubtract ? ListOperator.SUBTRACT : ListOperator.ADD, depth);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiply together the powers of a term when any of them is a list.  Other powers multiply every list element.  
+     * @param inTerm    The term, with each power already flattened.  
+     * @param depth     The current recursion depth.  
+     * @return          The list product, or null if no power is a list.  
+     */
+    protected Factor CombineListPowers(Term inTerm, int depth) throws ExpressionException, ExecutionException {
+        int numPowers = inTerm.NumPowers();
+        Vector<Integer> listIndices = new Vector<Integer>();
+        Term otherPowers = new Term();
+        for (int i = 0; i < numPowers; i++) {
+            Factor single = inTerm.GetPower(i).GetSingleFactor();
+            if ((single != null) && single.IsExprList()) {
+                listIndices.add(i);
+            } else {
+                //a term can not start with a division
+                if ((otherPowers.NumPowers() == 0) && (inTerm.GetOperator(i) == PowerOperator.DIVIDE)) {
+                    otherPowers = otherPowers.AppendPower(new Power(new Factor(FMNumber.ONE)), PowerOperator.NONE);
+                }
+                otherPowers = otherPowers.AppendPower(inTerm.GetPower(i), inTerm.GetOperator(i));
+            }
+        }
+        if (listIndices.isEmpty()) {
+            return null;
+        }
+
+        Factor result = null;
+        if (otherPowers.NumPowers() > 0) {
+            result = ExpressionToFactor(new Expression(FlattenTerm(otherPowers, depth), TermOperator.NONE));
+        }
+        for (int i = 0; i < listIndices.size(); i++) {
+            int index = listIndices.get(i);
+            Factor list = inTerm.GetPower(index).GetSingleFactor();
+            boolean isDivide = (inTerm.GetOperator(index) == PowerOperator.DIVIDE);
+            if ((result == null) && !isDivide) {
+                result = list;
+            } else {
+                result = CombineLists((result == null) ? new Factor(FMNumber.ONE) : result, list, isDivide ? ListOperator.DIVIDE : ListOperator.MULTIPLY, depth);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Combine two values element-wise, where at least one of them is a list.  A value that is not a list is used with 
+     * every element of the other.  Packed arrays and numbers are combined with primitive loops when possible.  
+     * @param a         The left value.  
+     * @param b         The right value.  
+     * @param op        The operation.  
+     * @param depth     The current recursion depth.  
+     * @return          The list of results.  
+     */
+    protected Factor CombineLists(Factor a, Factor b, ListOperator op, int depth) throws ExpressionException, ExecutionException {
+        assert a.IsExprList() || b.IsExprList();
+        int length = a.IsExprList() ? a.ListLength() : b.ListLength();
+        if (a.IsExprList() && b.IsExprList() && (a.ListLength() != b.ListLength())) {
+            throw new ExpressionException("Lists of different lengths can not be combined");
+        }
+
+        KernelArgument kernelA = GetKernelArgument(a);
+        KernelArgument kernelB = GetKernelArgument(b);
+        if ((kernelA != null) && (kernelB != null)) {
+            PackedArray packed = ListArithmetic.Combine(kernelA, kernelB, length, op);
+            if (packed != null) {
+                return new Factor(packed);
+            }
+        }
+
+        Vector<Expression> listA = a.IsExprList() ? a.GetExprList() : null;
+        Vector<Expression> listB = b.IsExprList() ? b.GetExprList() : null;
+        Vector<Expression> resultList = new Vector<Expression>(length);
+        for (int i = 0; i < length; i++) {
+            Factor elementA = (listA != null) ? ExpressionToFactor(listA.get(i)) : a;
+            Factor elementB = (listB != null) ? ExpressionToFactor(listB.get(i)) : b;
+            resultList.add(CombineElements(elementA, elementB, op, depth));
+        }
+        PackedArray packed = PackedArray.Pack(resultList);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+        return new Factor(resultList);
+    }
+
+    /**
+     * Combine two values (which may themselves be lists) by building and flattening the operation.  
+     */
+    protected Expression CombineElements(Factor a, Factor b, ListOperator op, int depth) throws ExpressionException, ExecutionException {
+        switch (op) {
+            case ADD:
+            case SUBTRACT:
+                Expression sum = new Expression(new Term(new Power(a)), TermOperator.NONE);
+                sum = sum.AppendTerm(new Term(new Power(b)), (op == ListOperator.ADD) ? TermOperator.ADD : TermOperator.SUBTRACT);
+                return FlattenExpression(sum, depth);
+            case MULTIPLY:
+            case DIVIDE:
+                Term product = new Term(new Power(a));
+                product = product.AppendPower(new Power(b), (op == ListOperator.MULTIPLY) ? PowerOperator.MULTIPLY : PowerOperator.DIVIDE);
+                return new Expression(FlattenTerm(product, depth), TermOperator.NONE);
+            default:
+                Power power = new Power(a).AppendFactor(b);
+                return new Expression(new Term(FlattenPower(power, depth)), TermOperator.NONE);
+        }
+    }
+
+    /**
+     * Get a value as a machine number kernel argument.  
+     * @return  The argument, or null if the value is not a real number or a packed array of real numbers.  
+     */
+    protected KernelArgument GetKernelArgument(Factor value) throws ExpressionException {
+        if (value.IsPackedArray() && !value.GetPackedArray().IsComplex()) {
+            return new KernelArgument(value.GetPackedArray());
+        }
+        if (value.IsNumber() && !value.GetNumber().IsImaginary()) {
+            return new KernelArgument(value.GetNumber());
+        }
+        return null;
+    }
+
+    /**
+     * Thread a listable command over its list arguments, giving the list of results.  List arguments must all be the same 
+     * length, and other arguments are used for every element.  
+     * @param command   The listable command.  
+     * @param args      The (flattened) command arguments.  
+     * @param depth     The current recursion depth.  
+     * @return          The list of results, or null if there are no list arguments or their lengths differ.  
+     */
+    protected Factor ThreadListable(Command command, Vector<Equation> args, int depth) throws ExpressionException, ExecutionException {
+        int numArgs = args.size();
+        Factor[] lists = new Factor[numArgs];
+        int length = -1;
+        for (int i = 0; i < numArgs; i++) {
+            Equation equ = args.get(i);
+            if (!equ.IsExpression()) {
+                continue;
+            }
+            SingleExpression single = equ.GetLHS().GetSingle();
+            if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsExprList()) {
+                continue;
+            }
+            int listLength = single.SingleValue().ListLength();
+            if ((length >= 0) && (listLength != length)) {
+                return null;
+            }
+            length = listLength;
+            lists[i] = single.SingleValue();
+        }
+        if (length < 0) {
+            return null;
+        }
+
+        //packed arrays of machine numbers can be handled by the command kernels
+        PackedArray packed = ThreadPackedKernel(command, args, lists, length);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+
+        Vector<Vector<Expression>> elementLists = new Vector<Vector<Expression>>(numArgs);
+        for (int i = 0; i < numArgs; i++) {
+            elementLists.add((lists[i] != null) ? lists[i].GetExprList() : null);
+        }
+        Vector<Expression> resultList = new Vector<Expression>(length);
+        for (int k = 0; k < length; k++) {
+            Vector<Equation> elementArgs = new Vector<Equation>(numArgs);
+            for (int i = 0; i < numArgs; i++) {
+                if (lists[i] != null) {
+                    elementArgs.add(new Equation(elementLists.get(i).get(k), null));
+                } else {
+                    elementArgs.add(args.get(i));
+                }
+            }
+            //flattening the call threads again over any nested lists
+            Factor result = FlattenFactor(new Factor(new SymbolicFunction(command.GetName(), elementArgs, command.IsMathFunction())), depth);
+            resultList.add(new Expression(new Term(new Power(result)), TermOperator.NONE));
+        }
+        packed = PackedArray.Pack(resultList);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+        return new Factor(resultList);
+    }
+
+    /**
+     * Apply the machine number kernel of a listable command to packed array arguments.  Long lists are split across the 
+     * worker threads.  
+     * @return  The results, or null if the kernel can not be used for these arguments or gives a value it can not represent.  
+     */
+    protected PackedArray ThreadPackedKernel(final Command command, Vector<Equation> args, Factor[] lists, final int length) throws ExpressionException {
+        final int numArgs = args.size();
+        if ((numArgs < 1) || (numArgs > 2) || !command.HasRealKernel()) {
+            return null;
+        }
+        final KernelArgument[] kernelArgs = new KernelArgument[numArgs];
+        for (int i = 0; i < numArgs; i++) {
+            if (lists[i] != null) {
+                if (!lists[i].IsPackedArray() || lists[i].GetPackedArray().IsComplex()) {
+                    return null;
+                }
+                kernelArgs[i] = new KernelArgument(lists[i].GetPackedArray());
+            } else {
+                Equation equ = args.get(i);
+                FMNumber number = equ.IsExpression() ? equ.GetLHS().GetSingleNumber() : null;
+                if ((number == null) || number.IsImaginary()) {
+                    return null;
+                }
+                kernelArgs[i] = new KernelArgument(number);
+                //integers past the range of a long are left to the exact path rather than rounded for the real kernel
+                if (command.HasIntegerKernel() && number.IsExactInteger() && !kernelArgs[i].isInteger) {
+                    return null;
+                }
+            }
+        }
+
+        //off heap arrays are processed a block at a time, each block with the heap kernel
+        if (KernelArgument.AnyOffHeap(kernelArgs)) {
+            return KernelArgument.ApplyOffHeap(kernelArgs, length, new KernelArgument.BlockKernel() {
+
+                public PackedArray Run(KernelArgument[] blockArgs, int blockLength) {
+                    return ApplyKernel(command, blockArgs, blockLength);
+                }
+            });
+        }
+        return ApplyKernel(command, kernelArgs, length);
+    }
+
+    /**
+     * Apply the kernel of a command to arguments held on the heap.  
+     * @return  The results, or null if the kernel gives a value it can not represent.  
+     */
+    protected static PackedArray ApplyKernel(final Command command, final KernelArgument[] kernelArgs, final int length) {
+        final int numArgs = kernelArgs.length;
+        boolean isInteger = command.HasIntegerKernel();
+        for (int i = 0; i < numArgs; i++) {
+            isInteger &= kernelArgs[i].isInteger;
+        }
+
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        if (isInteger) {
+            final long[] result = new long[length];
+            WorkerPool.ParallelFor(0, length, KERNEL_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    try {
+                        for (int k = (int) blockStart; k < blockEnd; k++) {
+                            if (numArgs == 1) {
+                                result[k] = command.EvaluateInteger(kernelArgs[0].GetLong(k));
+                            } else {
+                                result[k] = command.EvaluateInteger(kernelArgs[0].GetLong(k), kernelArgs[1].GetLong(k));
+                            }
+                        }
+                    } catch (ArithmeticException ex) {
+                        failed.set(true);
+                    }
+                }
+            });
+            return failed.get() ? null : new PackedArray(result);
+        }
+
+        final double[] result = new double[length];
+        WorkerPool.ParallelFor(0, length, KERNEL_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int k = (int) blockStart; k < blockEnd; k++) {
+                    double value;
+                    if (numArgs == 1) {
+                        value = command.EvaluateReal(kernelArgs[0].GetDouble(k));
+                    } else {
+                        value = command.EvaluateReal(kernelArgs[0].GetDouble(k), kernelArgs[1].GetDouble(k));
+                    }
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        failed.set(true);
+                        return;
+                    }
+                    result[k] = value;
+                }
+            }
+        });
+        return failed.get() ? null : new PackedArray(result);
+    }
+
+    //check for a system command that is given its arguments unevaluated
+    protected boolean HoldsArguments(String functionName) throws ExpressionException {
+        if ((systemFunctionTable == null) || !systemFunctionTable.Exists(functionName)) {
+            return false;
+        }
+        try {
+            return systemFunctionTable.Get(functionName).HoldsArguments();
+        } catch (Exception ex) {
+            throw new ExpressionException(ex.toString());
+        }
+    }
+
+    /**
+     * Raise an exact integer to a non-negative exact integer power.  
+     * @return  The exact power, or null if either number is not suitable or the result would be too large.  
+     */
+    protected static FMNumber ExactPower(FMNumber base, FMNumber exp) throws ExpressionException {
+        if (!base.IsExactInteger() || !exp.IsExactInteger() || (exp.RealValue().signum() < 0)) {
+            return null;
+        }
+        BigInteger baseValue = base.toBigIntegerExact();
+        if (exp.RealValue().signum() == 0) {
+            return FMNumber.ONE;
+        }
+        if (baseValue.abs().compareTo(BigInteger.ONE) <= 0) {
+            //0, 1 and -1 stay small for any exponent
+            boolean isEven = !exp.toBigIntegerExact().testBit(0);
+            return new FMNumber(((baseValue.signum() < 0) && isEven) ? BigInteger.ONE : baseValue);
+        }
+        if (exp.RealValue().compareTo(BigDecimal.valueOf(MAX_EXACT_POWER_BITS)) > 0) {
+            return null;
+        }
+        int n = exp.intValue();
+        if ((long) n * baseValue.bitLength() > MAX_EXACT_POWER_BITS) {
+            return null;
+        }
+        return new FMNumber(baseValue.pow(n));
+    }
+
+    /**
+     * An argument to a command kernel, either a packed array of machine numbers or a single number used for every element.  
+     */
+    protected static final class KernelArgument {
+
+        final protected long[] longData;
+        final protected double[] doubleData;
+        final protected PackedArray offHeapArray;
+        final protected long longValue;
+        final protected double doubleValue;
+        final protected boolean isInteger;
+
+        public KernelArgument(PackedArray packed) throws ExpressionException {
+            isInteger = packed.IsInteger();
+            //off heap arrays are only read through heap copies of their blocks (see ApplyOffHeap)
+            offHeapArray = packed.IsOffHeap() ? packed : null;
+            longData = (isInteger && (offHeapArray == null)) ? packed.GetLongData() : null;
+            doubleData = (isInteger || (offHeapArray != null)) ? null : packed.GetDoubleData();
+            longValue = 0;
+            doubleValue = 0;
+        }
+
+        public KernelArgument(FMNumber number) {
+            BigDecimal value = number.RealValue();
+            isInteger = number.IsExactInteger() && (value.compareTo(LONG_MIN) >= 0) && (value.compareTo(LONG_MAX) <= 0);
+            longData = null;
+            doubleData = null;
+            offHeapArray = null;
+            longValue = isInteger ? value.longValue() : 0;
+            doubleValue = value.doubleValue();
+        }
+
+        protected KernelArgument(long[] data) {
+            isInteger = true;
+            longData = data;
+            doubleData = null;
+            offHeapArray = null;
+            longValue = 0;
+            doubleValue = 0;
+        }
+
+        protected KernelArgument(double[] data) {
+            isInteger = false;
+            longData = null;
+            doubleData = data;
+            offHeapArray = null;
+            longValue = 0;
+            doubleValue = 0;
+        }
+
+        public boolean IsOffHeap() {
+            return (offHeapArray != null);
+        }
+
+        /**
+         * Get the elements [start, start + count) as an argument on the heap.  Single numbers are returned unchanged.  
+         */
+        public KernelArgument GetBlock(int start, int count) {
+            if ((offHeapArray == null) && (longData == null) && (doubleData == null)) {
+                return this;
+            }
+            if (isInteger) {
+                long[] block = new long[count];
+                if (offHeapArray != null) {
+                    offHeapArray.GetLongs(start, block, count);
+                } else {
+                    System.arraycopy(longData, start, block, 0, count);
+                }
+                return new KernelArgument(block);
+            }
+            double[] block = new double[count];
+            if (offHeapArray != null) {
+                offHeapArray.GetDoubles(start, block, count);
+            } else {
+                System.arraycopy(doubleData, start, block, 0, count);
+            }
+            return new KernelArgument(block);
+        }
+
+        public static boolean AnyOffHeap(KernelArgument... args) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].IsOffHeap()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Work done on the heap for one block of an element-wise operation over off heap arrays.  
+         */
+        protected static abstract class BlockKernel {
+
+            /**
+             * @return  The results for the block, or null if they can not be stored in a packed array.  
+             */
+            public abstract PackedArray Run(KernelArgument[] blockArgs, int blockLength);
+        }
+
+        /**
+         * Run an element-wise operation over arguments that include off heap arrays.  Each block of the arguments is copied 
+         * to the heap, the kernel is applied to it, and the block results are written to off heap storage of the same kind 
+         * as the first off heap argument, so the heap only ever holds a few blocks.  
+         * @return  The off heap results, or null if any block fails or the storage can not be created.  
+         */
+        public static PackedArray ApplyOffHeap(final KernelArgument[] args, int length, final BlockKernel kernel) {
+            OffHeapStorage like = null;
+            for (int i = 0; (i < args.length) && (like == null); i++) {
+                like = args[i].IsOffHeap() ? args[i].offHeapArray.GetOffHeapStorage() : null;
+            }
+            final OffHeapStorage result;
+            try {
+                result = OffHeapStorage.CreateLike(like, length);
+            } catch (IOException ex) {
+                return null;
+            }
+            final int blockSize = OffHeapStorage.BLOCK_SIZE;
+            //blocks can give integer or real results (integer valued powers), so the type of each is recorded
+            final boolean[] isRealBlock = new boolean[(length + blockSize - 1) / blockSize];
+            final AtomicBoolean failed = new AtomicBoolean(false);
+            WorkerPool.ParallelForBlocks(0, length, blockSize, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    if (failed.get()) {
+                        return;
+                    }
+                    int start = (int) blockStart, count = (int) (blockEnd - blockStart);
+                    KernelArgument[] blockArgs = new KernelArgument[args.length];
+                    for (int i = 0; i < args.length; i++) {
+                        blockArgs[i] = args[i].GetBlock(start, count);
+                    }
+                    PackedArray blockResult = kernel.Run(blockArgs, count);
+                    if (blockResult == null) {
+                        failed.set(true);
+                        return;
+                    }
+                    try {
+                        if (blockResult.IsInteger()) {
+                            result.PutLongs(start, blockResult.GetLongData(), 0, count);
+                        } else {
+                            result.PutDoubles(start, blockResult.GetDoubleData(), 0, count);
+                            isRealBlock[start / blockSize] = true;
+                        }
+                    } catch (ExpressionException ex) {
+                        failed.set(true);
+                    }
+                }
+            });
+            if (failed.get()) {
+                return null;
+            }
+
+            boolean anyReal = false, allReal = true;
+            for (int i = 0; i < isRealBlock.length; i++) {
+                anyReal |= isRealBlock[i];
+                allReal &= isRealBlock[i];
+            }
+            if (anyReal && !allReal) {
+                long[] longBlock = new long[blockSize];
+                double[] doubleBlock = new double[blockSize];
+                for (int i = 0; i < isRealBlock.length; i++) {
+                    if (!isRealBlock[i]) {
+                        int start = i * blockSize, count = Math.min(blockSize, length - start);
+                        result.GetLongs(start, longBlock, 0, count);
+                        for (int j = 0; j < count; j++) {
+                            doubleBlock[j] = longBlock[j];
+                        }
+                        result.PutDoubles(start, doubleBlock, 0, count);
+                    }
+                }
+            }
+            return new PackedArray(result, !anyReal);
+        }
+
+        public long GetLong(int index) {
+            return (longData != null) ? longData[index] : longValue;
+        }
+
+        public double GetDouble(int index) {
+            if (longData != null) {
+                return longData[index];
+            }
+            return (doubleData != null) ? doubleData[index] : doubleValue;
+        }
+    }
+
     /**
      * Convert an expression into a factor (without flattening).  Single nesting is removed if possible, and negatives transfered to the actual numbers.  
      * @param expr  The expression (hopefully pre-flattened) needing to be converted into a factor.  
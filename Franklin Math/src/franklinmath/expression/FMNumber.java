@@ -65,8 +65,8 @@ public final class FMNumber implements Comparable, LatexOutput {
     }
 
     public FMNumber(double realValue, double imagValue) {
-        real = new BigDecimal(realValue);
-        imag = new BigDecimal(imagValue);
+        real = MachineValue(realValue);
+        imag = MachineValue(imagValue);
         defaultContext = MathContext.DECIMAL128;
     }
 
@@ -100,12 +100,19 @@ public final class FMNumber implements Comparable, LatexOutput {
         defaultContext = MathContext.DECIMAL128;
     }
 
-    public FMNumber(double value) {
+    public FMNumber(BigInteger value) {
+        assert value != null;
         real = new BigDecimal(value);
         imag = BigDecimal.ZERO;
         defaultContext = MathContext.DECIMAL128;
     }
 
+    public FMNumber(double value) {
+        real = MachineValue(value);
+        imag = BigDecimal.ZERO;
+        defaultContext = MathContext.DECIMAL128;
+    }
+
     public FMNumber(String value) {
         assert (value != null);
         real = new BigDecimal(value);
@@ -113,6 +120,13 @@ public final class FMNumber implements Comparable, LatexOutput {
         defaultContext = MathContext.DECIMAL128;
     }
 
+    //the shortest decimal that rounds to the double, kept with a fractional digit so that an integral double is not taken for an 
+    //exact integer
+    private static BigDecimal MachineValue(double value) {
+        BigDecimal result = BigDecimal.valueOf(value);
+        return (result.scale() <= 0) ? result.setScale(1) : result;
+    }
+
     public boolean IsImaginary() {
         return (imag.compareTo(BigDecimal.ZERO) != 0);
     }
@@ -129,19 +143,37 @@ public final class FMNumber implements Comparable, LatexOutput {
         return imag;
     }
 
+    /**
+     * Check whether this number is a real integer stored without a fractional part.  Arithmetic between such numbers is done exactly.  
+     * Numbers made from doubles always have a fractional part, so rounded results are never exact integers.  
+     * @return  Returns true for exact integers.  
+     */
+    public boolean IsExactInteger() {
+        return (real.scale() <= 0) && (imag.signum() == 0);
+    }
+
     public FMNumber Add(FMNumber addValue, MathContext context) {
+        if (IsExactInteger() && addValue.IsExactInteger()) {
+            return new FMNumber(real.add(addValue.RealValue()));
+        }
         BigDecimal realTotal = real.add(addValue.RealValue(), context);
         BigDecimal imagTotal = imag.add(addValue.ImaginaryValue(), context);
         return new FMNumber(realTotal, imagTotal);
     }
 
     public FMNumber Subtract(FMNumber subtractValue, MathContext context) {
+        if (IsExactInteger() && subtractValue.IsExactInteger()) {
+            return new FMNumber(real.subtract(subtractValue.RealValue()));
+        }
         BigDecimal realTotal = real.subtract(subtractValue.RealValue(), context);
         BigDecimal imagTotal = imag.subtract(subtractValue.ImaginaryValue(), context);
         return new FMNumber(realTotal, imagTotal);
     }
 
     public FMNumber Multiply(FMNumber multiplyValue, MathContext context) {
+        if (IsExactInteger() && multiplyValue.IsExactInteger()) {
+            return new FMNumber(real.multiply(multiplyValue.RealValue()));
+        }
         BigDecimal realTotal = real.multiply(multiplyValue.RealValue(), context).subtract(imag.multiply(multiplyValue.ImaginaryValue(), context), context);
         BigDecimal imagTotal = imag.multiply(multiplyValue.RealValue(), context).add(real.multiply(multiplyValue.ImaginaryValue(), context), context);
         return new FMNumber(realTotal, imagTotal);
@@ -155,9 +187,12 @@ public final class FMNumber implements Comparable, LatexOutput {
     }
 
     public FMNumber Abs(MathContext context) {
+        if (IsReal()) {
+            return new FMNumber(real.abs());
+        }
         BigDecimal realSquared = real.pow(2, context);
         BigDecimal imagSquared = imag.pow(2, context);
-        return new FMNumber(new BigDecimal(StrictMath.sqrt(realSquared.add(imagSquared, context).doubleValue())));
+        return new FMNumber(StrictMath.sqrt(realSquared.add(imagSquared, context).doubleValue()));
     }
 
     public FMNumber Modulus(MathContext context) {
@@ -169,6 +204,9 @@ public final class FMNumber implements Comparable, LatexOutput {
     }
 
     public FMNumber Negate(MathContext context) {
+        if (IsExactInteger()) {
+            return new FMNumber(real.negate());
+        }
         return new FMNumber(real.negate(context), imag.negate(context));
     }
 
@@ -177,6 +215,9 @@ public final class FMNumber implements Comparable, LatexOutput {
         if (IsImaginary()) {
             throw new ExpressionException("Invalid (imaginary) base");
         }
+        if (IsExactInteger() && (n >= 0)) {
+            return new FMNumber(real.pow(n));
+        }
         return new FMNumber(real.pow(n, context));
     }
 
@@ -248,6 +289,10 @@ public final class FMNumber implements Comparable, LatexOutput {
         StringBuilder imagStrBuilder = new StringBuilder();
 
         try {
+            //only exact integers are written without a decimal point, so that machine results do not look exact
+            if (real.scale() > 0) {
+                throw new ArithmeticException("Not an exact integer");
+            }
             BigInteger realInteger = real.toBigIntegerExact();
             realStrBuilder.append(realInteger.toString());
         } catch (ArithmeticException arithExc) {
@@ -274,6 +319,9 @@ public final class FMNumber implements Comparable, LatexOutput {
 
         if (IsImaginary()) {
             try {
+                if (imag.scale() > 0) {
+                    throw new ArithmeticException("Not an exact integer");
+                }
                 BigInteger imagInteger = imag.toBigIntegerExact();
                 imagStrBuilder.append(imagInteger.toString());
             } catch (ArithmeticException arithExc) {
@@ -283,16 +331,16 @@ public final class FMNumber implements Comparable, LatexOutput {
                     int displayPrecision = FMProperties.GetDisplayPrecision();
                     f.setMaximumFractionDigits(displayPrecision);
                     f.setMinimumFractionDigits(displayPrecision);
-                    String numberStr = f.format(real);
+                    String numberStr = f.format(imag);
 
                     String fractional = numberStr.substring(numberStr.length() - displayPrecision);
                     if (Double.parseDouble(fractional) == 0) {
-                        imagStrBuilder.append(real.toEngineeringString());
+                        imagStrBuilder.append(imag.toEngineeringString());
                     } else {
                         imagStrBuilder.append(numberStr);
                     }
                 } catch (Exception e) {
-                    imagStrBuilder.append(real.toPlainString());
+                    imagStrBuilder.append(imag.toPlainString());
                 }
             }
 
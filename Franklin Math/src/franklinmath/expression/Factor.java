@@ -35,8 +35,13 @@ public final class Factor implements LatexOutput {
     final private String symbolID;
     final private String stringValue;
     final private Expression nestedExpr;
-    final private Vector<Expression> exprList;
+    final private PersistentVector exprList;
     final private SymbolicFunction symbolicFunction;
+    final private PackedArray packedArray;
+    final private SparseMatrix sparseMatrix;
+    final private LazySequence lazySequence;
+    //number of list elements included in the hash code
+    private static final int LIST_HASH_ELEMENTS = 8;
 
     public Factor() {
         type = FactorType.EMPTY;
@@ -46,6 +51,9 @@ public final class Factor implements LatexOutput {
         nestedExpr = null;
         exprList = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(long number) {
@@ -56,6 +64,9 @@ public final class Factor implements LatexOutput {
         nestedExpr = null;
         exprList = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(double number) {
@@ -66,6 +77,9 @@ public final class Factor implements LatexOutput {
         nestedExpr = null;
         exprList = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(FMNumber number) {
@@ -76,6 +90,9 @@ public final class Factor implements LatexOutput {
         nestedExpr = null;
         exprList = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(String value, boolean isSymbol) {
@@ -87,6 +104,9 @@ public final class Factor implements LatexOutput {
             nestedExpr = null;
             exprList = null;
             symbolicFunction = null;
+            packedArray = null;
+            sparseMatrix = null;
+            lazySequence = null;
         } else {
             type = FactorType.STRING;
             stringValue = value;
@@ -95,6 +115,9 @@ public final class Factor implements LatexOutput {
             nestedExpr = null;
             exprList = null;
             symbolicFunction = null;
+            packedArray = null;
+            sparseMatrix = null;
+            lazySequence = null;
         }
     }
 
@@ -106,16 +129,39 @@ public final class Factor implements LatexOutput {
         stringValue = null;
         exprList = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(Vector<Expression> exList) {
         type = FactorType.EXPR_LIST;
-        exprList = (Vector<Expression>) exList.clone();
+        exprList = new PersistentVector(exList);
         numValue = null;
         symbolID = null;
         stringValue = null;
         nestedExpr = null;
         symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
+    }
+
+    /**
+     * Create a list from a persistent vector, which is shared rather than copied since it can not change.  
+     */
+    public Factor(PersistentVector exList) {
+        assert exList != null;
+        type = FactorType.EXPR_LIST;
+        exprList = exList;
+        numValue = null;
+        symbolID = null;
+        stringValue = null;
+        nestedExpr = null;
+        symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
     }
 
     public Factor(SymbolicFunction sf) {
@@ -126,6 +172,48 @@ public final class Factor implements LatexOutput {
         stringValue = null;
         nestedExpr = null;
         exprList = null;
+        packedArray = null;
+        sparseMatrix = null;
+        lazySequence = null;
+    }
+
+    public Factor(PackedArray packed) {
+        type = FactorType.PACKED_ARRAY;
+        packedArray = packed;
+        numValue = null;
+        symbolID = null;
+        stringValue = null;
+        nestedExpr = null;
+        exprList = null;
+        symbolicFunction = null;
+        sparseMatrix = null;
+        lazySequence = null;
+    }
+
+    public Factor(SparseMatrix sparse) {
+        type = FactorType.SPARSE_MATRIX;
+        sparseMatrix = sparse;
+        lazySequence = null;
+        numValue = null;
+        symbolID = null;
+        stringValue = null;
+        nestedExpr = null;
+        exprList = null;
+        symbolicFunction = null;
+        packedArray = null;
+    }
+
+    public Factor(LazySequence sequence) {
+        type = FactorType.LAZY_SEQUENCE;
+        lazySequence = sequence;
+        numValue = null;
+        symbolID = null;
+        stringValue = null;
+        nestedExpr = null;
+        exprList = null;
+        symbolicFunction = null;
+        packedArray = null;
+        sparseMatrix = null;
     }
 
     public FactorType GetType() {
@@ -148,14 +236,32 @@ public final class Factor implements LatexOutput {
         return (type == FactorType.NESTED_EXPR);
     }
 
+    /**
+     * Check for a list.  Packed arrays are lists too, and GetExprList will unpack them when needed.  
+     */
     public boolean IsExprList() {
-        return (type == FactorType.EXPR_LIST);
+        return (type == FactorType.EXPR_LIST) || (type == FactorType.PACKED_ARRAY);
+    }
+
+    public boolean IsPackedArray() {
+        return (type == FactorType.PACKED_ARRAY);
+    }
+
+    public boolean IsSparseMatrix() {
+        return (type == FactorType.SPARSE_MATRIX);
     }
 
     public boolean IsSymbolicFunction() {
         return (type == FactorType.SYMBOLIC_FUNCTION);
     }
 
+    /**
+     * Check for a lazy sequence.  These are not lists, since they may be infinite, but Command.GetListArgument forces them.  
+     */
+    public boolean IsLazySequence() {
+        return (type == FactorType.LAZY_SEQUENCE);
+    }
+
     public boolean IsEmpty() {
         return (type == FactorType.EMPTY);
     }
@@ -180,9 +286,53 @@ public final class Factor implements LatexOutput {
         return nestedExpr;
     }
 
+    /**
+     * Get a copy of the list elements, which the caller is free to change.  
+     */
     public Vector<Expression> GetExprList() throws ExpressionException {
+        if (type == FactorType.PACKED_ARRAY) {
+            return packedArray.ToExprList();
+        }
+        CheckType(FactorType.EXPR_LIST);
+        return exprList.ToVector();
+    }
+
+    /**
+     * Get the list elements as a persistent vector, without copying.  Packed arrays are unpacked, and since numbers need no 
+     * flattening the result is marked flat.  
+     */
+    public PersistentVector GetPersistentList() throws ExpressionException {
+        if (type == FactorType.PACKED_ARRAY) {
+            return new PersistentVector(packedArray.ToExprList()).MarkFlat(ExpressionToolset.GetTableGeneration());
+        }
+        CheckType(FactorType.EXPR_LIST);
+        return exprList;
+    }
+
+    /**
+     * Get the number of elements in a list without copying or unpacking it.  
+     */
+    public int ListLength() throws ExpressionException {
+        if (type == FactorType.PACKED_ARRAY) {
+            return packedArray.Length();
+        }
         CheckType(FactorType.EXPR_LIST);
-        return (Vector<Expression>) exprList.clone();
+        return exprList.Size();
+    }
+
+    public PackedArray GetPackedArray() throws ExpressionException {
+        CheckType(FactorType.PACKED_ARRAY);
+        return packedArray;
+    }
+
+    public SparseMatrix GetSparseMatrix() throws ExpressionException {
+        CheckType(FactorType.SPARSE_MATRIX);
+        return sparseMatrix;
+    }
+
+    public LazySequence GetLazySequence() throws ExpressionException {
+        CheckType(FactorType.LAZY_SEQUENCE);
+        return lazySequence;
     }
 
     public SymbolicFunction GetSymbolicFunction() throws ExpressionException {
@@ -218,14 +368,25 @@ public final class Factor implements LatexOutput {
         if (IsNestedExpr()) {
             return "(" + nestedExpr.toString() + ")";
         }
+        if (IsPackedArray()) {
+            return packedArray.toString();
+        }
+        if (IsSparseMatrix()) {
+            return sparseMatrix.toString();
+        }
+        if (IsLazySequence()) {
+            return lazySequence.toString();
+        }
         if (IsExprList()) {
             StringBuilder strBuilder = new StringBuilder();
             strBuilder.append("{");
-            for (int i = 0; i < exprList.size(); i++) {
-                if (i != 0) {
+            boolean isFirst = true;
+            for (Expression element : exprList) {
+                if (!isFirst) {
                     strBuilder.append(", ");
                 }
-                strBuilder.append(exprList.get(i).toString());
+                strBuilder.append(element.toString());
+                isFirst = false;
             }
             strBuilder.append("}");
             return strBuilder.toString();
@@ -245,6 +406,23 @@ public final class Factor implements LatexOutput {
 
         try {
             Factor compareFactor = (Factor) obj;
+            if (compareFactor.IsPackedArray() && IsPackedArray()) {
+                return compareFactor.GetPackedArray().equals(packedArray);
+            }
+            //a packed array equals the unpacked list with the same elements
+            if ((compareFactor.IsPackedArray() || IsPackedArray()) && compareFactor.IsExprList() && IsExprList()) {
+                if (compareFactor.ListLength() != ListLength()) {
+                    return false;
+                }
+                Vector<Expression> exprListCopy = GetExprList();
+                Vector<Expression> compareExprList = compareFactor.GetExprList();
+                for (int i = 0; i < exprListCopy.size(); i++) {
+                    if (!ListElementsEqual(exprListCopy.get(i), compareExprList.get(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
             if (compareFactor.type.compareTo(type) != 0) {
                 return false;
             }
@@ -258,15 +436,24 @@ public final class Factor implements LatexOutput {
             } else if (type.compareTo(FactorType.NESTED_EXPR) == 0) {
                 return compareFactor.GetNestedExpr().equals(nestedExpr);
             } else if (type.compareTo(FactorType.EXPR_LIST) == 0) {
-                Vector<Expression> compareExprList = compareFactor.GetExprList();
-                for (int i = 0; i < exprList.size(); i++) {
-                    if (!compareExprList.get(i).equals(exprList.get(i))) {
+                PersistentVector compareExprList = compareFactor.GetPersistentList();
+                if (compareExprList.Size() != exprList.Size()) {
+                    return false;
+                }
+                Iterator<Expression> compareIterator = compareExprList.iterator();
+                for (Expression element : exprList) {
+                    if (!compareIterator.next().equals(element)) {
                         return false;
                     }
                 }
                 return true;
             } else if (type.compareTo(FactorType.SYMBOLIC_FUNCTION) == 0) {
                 return (compareFactor.GetSymbolicFunction().equals(symbolicFunction));
+            } else if (type.compareTo(FactorType.SPARSE_MATRIX) == 0) {
+                return compareFactor.GetSparseMatrix().equals(sparseMatrix);
+            } else if (type.compareTo(FactorType.LAZY_SEQUENCE) == 0) {
+                //sequences are only compared by reference, since comparing elements may never finish
+                return (compareFactor.GetLazySequence() == lazySequence);
             }
         } catch (ExpressionException ex) {
             return false;
@@ -289,13 +476,49 @@ public final class Factor implements LatexOutput {
         } else if (type.compareTo(FactorType.NESTED_EXPR) == 0) {
             hash = hash * primeNumber + nestedExpr.hashCode();
         } else if (type.compareTo(FactorType.EXPR_LIST) == 0) {
-            for (int i = 0; i < exprList.size(); i++) {
-                hash = hash * primeNumber + exprList.get(i).hashCode();
+            //only the length and the first few elements are hashed, so that long lists hash quickly
+            int listLength = exprList.Size();
+            hash = hash * primeNumber + listLength;
+            for (int i = 0; i < Math.min(listLength, LIST_HASH_ELEMENTS); i++) {
+                hash = hash * primeNumber + ListElementHash(exprList.Get(i));
             }
         } else if (type.compareTo(FactorType.SYMBOLIC_FUNCTION) == 0) {
             hash = hash * primeNumber + symbolicFunction.hashCode();
+        } else if (type.compareTo(FactorType.PACKED_ARRAY) == 0) {
+            //hash numbers by value the same way as an unpacked list, so that equal packed and unpacked lists hash equally
+            int listLength = packedArray.Length();
+            hash = hash * primeNumber + listLength;
+            for (int i = 0; i < Math.min(listLength, LIST_HASH_ELEMENTS); i++) {
+                hash = hash * primeNumber + packedArray.GetNumber(i).hashCode();
+            }
+        } else if (type.compareTo(FactorType.SPARSE_MATRIX) == 0) {
+            hash = hash * primeNumber + sparseMatrix.hashCode();
+        } else if (type.compareTo(FactorType.LAZY_SEQUENCE) == 0) {
+            hash = hash * primeNumber + lazySequence.hashCode();
         }
 
         return hash;
     }
+
+    //hash a list element to match ListElementsEqual, using the number hash (which goes by value) for numbers
+    protected static int ListElementHash(Expression element) {
+        try {
+            FMNumber number = element.GetSingleNumber();
+            if (number != null) {
+                return number.hashCode();
+            }
+        } catch (ExpressionException ex) {
+        }
+        return element.hashCode();
+    }
+
+    //compare list elements, treating numbers by value so that negated and negative numbers match
+    protected static boolean ListElementsEqual(Expression expr1, Expression expr2) throws ExpressionException {
+        FMNumber number1 = expr1.GetSingleNumber();
+        FMNumber number2 = expr2.GetSingleNumber();
+        if ((number1 != null) && (number2 != null)) {
+            return number1.equals(number2);
+        }
+        return expr1.equals(expr2);
+    }
 }
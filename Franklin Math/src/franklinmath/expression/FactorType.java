@@ -31,5 +31,8 @@ public enum FactorType {
     NESTED_EXPR,
     EXPR_LIST,
     SYMBOLIC_FUNCTION,
+    PACKED_ARRAY,
+    SPARSE_MATRIX,
+    LAZY_SEQUENCE,
     EMPTY
 }
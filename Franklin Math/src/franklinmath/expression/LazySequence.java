@@ -0,0 +1,306 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.util.Vector;
+import java.util.Arrays;
+
+import franklinmath.executor.*;
+
+/**
+ * An immutable, possibly infinite sequence whose elements are only computed when they are needed.  A sequence is a recipe 
+ * for a generator, and every use of it starts a new generator, so the sequence holds no position and can be used any number 
+ * of times.  Stages such as Drop, Select and Map wrap the generator of the sequence before them, so a pipeline of stages 
+ * passes one element at a time from start to end with no intermediate lists, and only as many elements are computed as the 
+ * final consumer asks for.  A sequence is turned into a list when it is forced (see ToFactor), and displays the first 
+ * few elements.  Lists are collected with a ListBuilder, which keeps machine integers in a primitive array, and generators 
+ * of machine integers can hand them over a block at a time (see Generator.NextIntegers).  
+ * @author Allen Jordan
+ */
+public abstract class LazySequence {
+
+    //the longest list of machine integers that will be collected from a sequence
+    public static final int MAX_LIST_LENGTH = 1 << 22;
+    //the longest list of other elements, which each take a full expression
+    public static final int MAX_EXPRESSION_LENGTH = 1 << 18;
+    //the number of elements skipped at a time by a generator of machine integers
+    protected static final int SKIP_BLOCK_SIZE = 1 << 16;
+    //number of elements shown when a sequence is displayed
+    protected static final int DISPLAY_LENGTH = 10;
+
+    /**
+     * A cursor over the elements of a sequence.  
+     */
+    public static abstract class Generator {
+
+        /**
+         * Compute the next element.  
+         * @return  The next element, or null at the end of the sequence.  
+         */
+        public abstract Expression Next() throws ExpressionException, ExecutionException;
+
+        /**
+         * Compute a block of the next elements as machine integers, for generators that produce them in bulk.  The default 
+         * gives null, and a generator that gives null may still be used with Next.  
+         * @param max   The most elements to return, which is positive.  
+         * @return      Between one and max elements, an empty array at the end of the sequence, or null if the next elements 
+         *              can not be given this way.  
+         */
+        public long[] NextIntegers(int max) throws ExpressionException, ExecutionException {
+            return null;
+        }
+
+        /**
+         * Skip elements, a block at a time where the generator allows it.  
+         * @return  False if the sequence ended first.  
+         */
+        public boolean Skip(long n) throws ExpressionException, ExecutionException {
+            while (n > 0) {
+                long[] block = NextIntegers((int) Math.min(n, SKIP_BLOCK_SIZE));
+                if (block == null) {
+                    if (Next() == null) {
+                        return false;
+                    }
+                    n--;
+                } else if (block.length == 0) {
+                    return false;
+                } else {
+                    n -= block.length;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Collects the elements of a list.  Machine integers are kept in a primitive array until some other element is added, 
+     * and the list is bounded by MAX_LIST_LENGTH integers or MAX_EXPRESSION_LENGTH other elements, so that a long list fails 
+     * before it can fill the heap.  
+     */
+    public static class ListBuilder {
+
+        protected long[] integers = new long[DISPLAY_LENGTH];
+        protected int size = 0;
+        //the elements once they are not all machine integers
+        protected Vector<Expression> exprList = null;
+
+        public int Size() {
+            return size;
+        }
+
+        public void Add(Expression element) throws ExpressionException {
+            if (exprList == null) {
+                FMNumber number = element.GetSingleNumber();
+                if ((number != null) && number.IsExactInteger() && PackedArray.IsMachineInteger(number.RealValue())) {
+                    Reserve(1);
+                    integers[size++] = number.RealValue().longValue();
+                    return;
+                }
+                if (size >= MAX_EXPRESSION_LENGTH) {
+                    throw new ExpressionException("Sequence is too long to list");
+                }
+                exprList = new PackedArray(Arrays.copyOf(integers, size)).ToExprList();
+                integers = null;
+            }
+            if (size >= MAX_EXPRESSION_LENGTH) {
+                throw new ExpressionException("Sequence is too long to list");
+            }
+            exprList.add(element);
+            size++;
+        }
+
+        public void AddIntegers(long[] data) throws ExpressionException {
+            if (exprList != null) {
+                for (int i = 0; i < data.length; i++) {
+                    Add(new Expression(new Term(new Power(new Factor(new FMNumber(data[i])))), TermOperator.NONE));
+                }
+                return;
+            }
+            Reserve(data.length);
+            System.arraycopy(data, 0, integers, size, data.length);
+            size += data.length;
+        }
+
+        protected void Reserve(int count) throws ExpressionException {
+            if ((long) size + count > MAX_LIST_LENGTH) {
+                throw new ExpressionException("Sequence is too long to list");
+            }
+            if (size + count > integers.length) {
+                integers = Arrays.copyOf(integers, (int) Math.min(MAX_LIST_LENGTH, Math.max(2L * integers.length, size + count)));
+            }
+        }
+
+        /**
+         * Get the list, packed when possible.  
+         */
+        public Factor ToFactor() throws ExpressionException {
+            if (exprList == null) {
+                return new Factor(new PackedArray(Arrays.copyOf(integers, size)));
+            }
+            PackedArray packed = PackedArray.Pack(exprList);
+            if (packed != null) {
+                return new Factor(packed);
+            }
+            return new Factor(exprList);
+        }
+    }
+
+    /**
+     * Start a new generator at the first element.  
+     */
+    public abstract Generator CreateGenerator();
+
+    /**
+     * Check whether the sequence is known to never end, so that forcing it can fail without computing anything.  A stage 
+     * is infinite when its source is, even if (like a selection) it might stop producing elements.  
+     */
+    public abstract boolean IsInfinite();
+
+    /**
+     * Compute the first n elements, or every element if the sequence is shorter, as a list (packed when possible).  
+     * @throws ExpressionException  Thrown if the list would be too long (see ListBuilder).  
+     */
+    public Factor Take(long n) throws ExpressionException, ExecutionException {
+        if (n > MAX_LIST_LENGTH) {
+            throw new ExpressionException("Sequence is too long to list");
+        }
+        return Collect(n).ToFactor();
+    }
+
+    //compute up to n elements, taking blocks of integers where the generator gives them
+    protected ListBuilder Collect(long n) throws ExpressionException, ExecutionException {
+        ListBuilder builder = new ListBuilder();
+        Generator generator = CreateGenerator();
+        while (builder.Size() < n) {
+            long[] block = generator.NextIntegers((int) Math.min(n - builder.Size(), SKIP_BLOCK_SIZE));
+            if (block != null) {
+                if (block.length == 0) {
+                    break;
+                }
+                builder.AddIntegers(block);
+                continue;
+            }
+            Expression element = generator.Next();
+            if (element == null) {
+                break;
+            }
+            builder.Add(element);
+        }
+        return builder;
+    }
+
+    /**
+     * Force the whole sequence into a list (packed when possible).  
+     * @throws ExpressionException  Thrown if the sequence is infinite or too long to list (see ListBuilder).  
+     */
+    public Factor ToFactor() throws ExpressionException, ExecutionException {
+        if (IsInfinite()) {
+            throw new ExpressionException("Infinite sequence can not be listed");
+        }
+        return Collect(MAX_LIST_LENGTH + 1L).ToFactor();
+    }
+
+    /**
+     * Get the sequence without its first n elements.  Dropping from a dropped sequence skips both counts in one stage.  
+     */
+    public LazySequence Drop(long n) {
+        assert n >= 0;
+        return new DroppedSequence(this, n);
+    }
+
+    /**
+     * Display the first few elements, followed by "..." if there are more.  
+     */
+    @Override
+    public String toString() {
+        StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{");
+        try {
+            Generator generator = CreateGenerator();
+            for (int i = 0; i <= DISPLAY_LENGTH; i++) {
+                Expression element = generator.Next();
+                if (element == null) {
+                    break;
+                }
+                if (i != 0) {
+                    strBuilder.append(", ");
+                }
+                strBuilder.append((i < DISPLAY_LENGTH) ? element.toString() : "...");
+            }
+        } catch (Exception ex) {
+            strBuilder.append(", ...");
+        }
+        strBuilder.append("}");
+        return strBuilder.toString();
+    }
+
+    /**
+     * A sequence that skips the first elements of another.  
+     */
+    protected static class DroppedSequence extends LazySequence {
+
+        protected LazySequence source;
+        protected long count;
+
+        public DroppedSequence(LazySequence source, long count) {
+            this.source = source;
+            this.count = count;
+        }
+
+        @Override
+        public LazySequence Drop(long n) {
+            assert n >= 0;
+            return new DroppedSequence(source, count + n);
+        }
+
+        @Override
+        public boolean IsInfinite() {
+            return source.IsInfinite();
+        }
+
+        @Override
+        public Generator CreateGenerator() {
+            final Generator sourceGenerator = source.CreateGenerator();
+            return new Generator() {
+
+                protected boolean isStarted = false, isEnded = false;
+
+                @Override
+                public Expression Next() throws ExpressionException, ExecutionException {
+                    return Start() ? sourceGenerator.Next() : null;
+                }
+
+                @Override
+                public long[] NextIntegers(int max) throws ExpressionException, ExecutionException {
+                    return Start() ? sourceGenerator.NextIntegers(max) : new long[0];
+                }
+
+                //skip the dropped elements before the first one is taken
+                protected boolean Start() throws ExpressionException, ExecutionException {
+                    if (!isStarted) {
+                        isStarted = true;
+                        isEnded = !sourceGenerator.Skip(count);
+                    }
+                    return !isEnded;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import franklinmath.util.*;
+
+/**
+ * Element-wise arithmetic on packed arrays of machine numbers, where either operand may also be a single number that is 
+ * used with every element.  Integers stay exact, so integer results that overflow a long or are not integers are rejected; 
+ * the expression toolset then falls back to element by element flattening.  
+ * @author Allen Jordan
+ */
+public class ListArithmetic {
+
+    //Prevent instantiation
+    protected ListArithmetic() {
+    }
+
+    /**
+     * Combine two operands element-wise.  
+     * @param a         The left operand.  
+     * @param b         The right operand.  
+     * @param length    The number of elements.  
+     * @param op        The operation.  
+     * @return          The results, or null if any result can not be stored in a packed array.  
+     */
+    public static PackedArray Combine(final ExpressionToolset.KernelArgument a, final ExpressionToolset.KernelArgument b, int length, final ListOperator op) {
+        //off heap arrays are combined a block at a time on the heap
+        if (a.IsOffHeap() || b.IsOffHeap()) {
+            return ExpressionToolset.KernelArgument.ApplyOffHeap(new ExpressionToolset.KernelArgument[]{a, b}, length, new ExpressionToolset.KernelArgument.BlockKernel() {
+
+                public PackedArray Run(ExpressionToolset.KernelArgument[] blockArgs, int blockLength) {
+                    return Combine(blockArgs[0], blockArgs[1], blockLength, op);
+                }
+            });
+        }
+
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        //integers are combined exactly, including powers unless an exponent is negative (like FlattenPower)
+        if (a.isInteger && b.isInteger && ((op != ListOperator.POWER) || !HasNegative(b, length))) {
+            final long[] result = new long[length];
+            WorkerPool.ParallelFor(0, length, ExpressionToolset.KERNEL_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    if (!CombineIntegers(a, b, result, (int) blockStart, (int) blockEnd, op)) {
+                        failed.set(true);
+                    }
+                }
+            });
+            return failed.get() ? null : new PackedArray(result);
+        }
+
+        //integers are converted once, so the kernels only see arrays of machine reals
+        final double[] dataA = (a.longData != null) ? ArrayKernels.ToDoubleArray(a.longData) : a.doubleData;
+        final double[] dataB = (b.longData != null) ? ArrayKernels.ToDoubleArray(b.longData) : b.doubleData;
+        final double[] result = new double[length];
+        WorkerPool.ParallelFor(0, length, ExpressionToolset.KERNEL_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                if (!CombineReals(dataA, a.doubleValue, dataB, b.doubleValue, result, (int) blockStart, (int) blockEnd, op)) {
+                    failed.set(true);
+                }
+            }
+        });
+        if (failed.get()) {
+            return null;
+        }
+        return new PackedArray(result);
+    }
+
+    protected static boolean HasNegative(ExpressionToolset.KernelArgument a, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a.GetLong(i) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //the exact power, or an ArithmeticException if it does not fit in a long
+    protected static long PowerExact(long base, long exponent) {
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = CompiledExpression.MultiplyExact(result, base);
+            }
+            exponent >>= 1;
+            if (exponent > 0) {
+                base = CompiledExpression.MultiplyExact(base, base);
+            }
+        }
+        return result;
+    }
+
+    protected static boolean CombineIntegers(ExpressionToolset.KernelArgument a, ExpressionToolset.KernelArgument b, long[] result, int start, int end, ListOperator op) {
+        switch (op) {
+            case ADD:
+                for (int i = start; i < end; i++) {
+                    long x = a.GetLong(i), y = b.GetLong(i);
+                    long value = x + y;
+                    if (((x ^ value) & (y ^ value)) < 0) {
+                        return false;
+                    }
+                    result[i] = value;
+                }
+                return true;
+            case SUBTRACT:
+                for (int i = start; i < end; i++) {
+                    long x = a.GetLong(i), y = b.GetLong(i);
+                    long value = x - y;
+                    if (((x ^ y) & (x ^ value)) < 0) {
+                        return false;
+                    }
+                    result[i] = value;
+                }
+                return true;
+            case MULTIPLY:
+                try {
+                    for (int i = start; i < end; i++) {
+                        result[i] = CompiledExpression.MultiplyExact(a.GetLong(i), b.GetLong(i));
+                    }
+                } catch (ArithmeticException ex) {
+                    return false;
+                }
+                return true;
+            case POWER:
+                try {
+                    for (int i = start; i < end; i++) {
+                        result[i] = PowerExact(a.GetLong(i), b.GetLong(i));
+                    }
+                } catch (ArithmeticException ex) {
+                    return false;
+                }
+                return true;
+            case DIVIDE:
+                //only exact quotients stay integers
+                for (int i = start; i < end; i++) {
+                    long x = a.GetLong(i), y = b.GetLong(i);
+                    if ((y == 0) || ((x == Long.MIN_VALUE) && (y == -1)) || (x % y != 0)) {
+                        return false;
+                    }
+                    result[i] = x / y;
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Combine machine reals, where a null array means the matching single value is used for every element.  
+     */
+    protected static boolean CombineReals(double[] a, double valueA, double[] b, double valueB, double[] result, int start, int end, ListOperator op) {
+        switch (op) {
+            case ADD:
+                if ((a != null) && (b != null)) {
+                    ArrayKernels.AddArrays(a, b, result, start, end);
+                } else if (a != null) {
+                    ArrayKernels.AddScalar(a, valueB, result, start, end);
+                } else {
+                    ArrayKernels.AddScalar(b, valueA, result, start, end);
+                }
+                break;
+            case SUBTRACT:
+                if ((a != null) && (b != null)) {
+                    ArrayKernels.SubtractArrays(a, b, result, start, end);
+                } else if (a != null) {
+                    ArrayKernels.AddScalar(a, -valueB, result, start, end);
+                } else {
+                    ArrayKernels.SubtractFromScalar(valueA, b, result, start, end);
+                }
+                break;
+            case MULTIPLY:
+                if ((a != null) && (b != null)) {
+                    ArrayKernels.MultiplyArrays(a, b, result, start, end);
+                } else if (a != null) {
+                    ArrayKernels.MultiplyScalar(a, valueB, result, start, end);
+                } else {
+                    ArrayKernels.MultiplyScalar(b, valueA, result, start, end);
+                }
+                break;
+            case DIVIDE:
+                if ((a != null) && (b != null)) {
+                    ArrayKernels.DivideArrays(a, b, result, start, end);
+                } else if (a != null) {
+                    ArrayKernels.DivideByScalar(a, valueB, result, start, end);
+                } else {
+                    ArrayKernels.DivideScalarBy(valueA, b, result, start, end);
+                }
+                break;
+            default:
+                for (int i = start; i < end; i++) {
+                    result[i] = StrictMath.pow((a != null) ? a[i] : valueA, (b != null) ? b[i] : valueB);
+                }
+                break;
+        }
+        //infinite and undefined results are left to the general flattening code
+        return ArrayKernels.AllFinite(result, start, end);
+    }
+}
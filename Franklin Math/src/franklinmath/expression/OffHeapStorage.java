@@ -0,0 +1,189 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Storage for the elements of a large packed array outside of the Java heap, either in direct buffers or in a memory mapped 
+ * temporary file.  Mapped storage is paged by the operating system, so it can be larger than both the heap and physical 
+ * memory, and neither kind is scanned or copied by the garbage collector.  Buffers are limited to 2GB, so the elements are 
+ * split into segments of 2^27 eight byte values.  Elements are read and written one at a time, or copied to and from heap 
+ * arrays in blocks so that the usual array kernels can be applied a block at a time.  
+ * @author Allen Jordan
+ */
+public final class OffHeapStorage {
+
+    /**
+     * The number of elements commands copy to the heap at a time when streaming over off heap data.  
+     */
+    public static final int BLOCK_SIZE = 1 << 16;
+
+    protected static final int SEGMENT_SHIFT = 27;
+    protected static final int SEGMENT_LENGTH = 1 << SEGMENT_SHIFT;
+    protected static final int SEGMENT_MASK = SEGMENT_LENGTH - 1;
+    final private int length;
+    final private boolean isMapped;
+    final private DoubleBuffer[] doubleSegments;
+    final private LongBuffer[] longSegments;
+
+    protected OffHeapStorage(ByteBuffer[] segments, int length, boolean isMapped) {
+        this.length = length;
+        this.isMapped = isMapped;
+        doubleSegments = new DoubleBuffer[segments.length];
+        longSegments = new LongBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i].order(ByteOrder.nativeOrder());
+            doubleSegments[i] = segments[i].asDoubleBuffer();
+            longSegments[i] = segments[i].asLongBuffer();
+        }
+    }
+
+    /**
+     * Allocate storage in direct buffers.  The total is limited by the JVM's direct memory setting.  
+     */
+    public static OffHeapStorage Allocate(int length) {
+        ByteBuffer[] segments = new ByteBuffer[NumSegments(length)];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = ByteBuffer.allocateDirect(8 * SegmentLength(length, i));
+        }
+        return new OffHeapStorage(segments, length, false);
+    }
+
+    /**
+     * Allocate storage in a memory mapped temporary file.  The file is deleted right away where the system allows it (the 
+     * mapping keeps the space until it is released), and otherwise when the program exits.  
+     */
+    public static OffHeapStorage CreateMapped(int length) throws IOException {
+        File file = File.createTempFile("franklinmath", ".dat");
+        RandomAccessFile stream = new RandomAccessFile(file, "rw");
+        try {
+            stream.setLength(8L * length);
+            FileChannel channel = stream.getChannel();
+            ByteBuffer[] segments = new ByteBuffer[NumSegments(length)];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, 8L * SEGMENT_LENGTH * i, 8L * SegmentLength(length, i));
+            }
+            return new OffHeapStorage(segments, length, true);
+        } finally {
+            stream.close();
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Allocate storage of the same kind (direct or mapped) as another storage, for results computed from it.  
+     */
+    public static OffHeapStorage CreateLike(OffHeapStorage storage, int length) throws IOException {
+        return storage.isMapped ? CreateMapped(length) : Allocate(length);
+    }
+
+    protected static int NumSegments(int length) {
+        return (int) ((length + (long) SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    }
+
+    protected static int SegmentLength(int length, int segment) {
+        return (int) Math.min(SEGMENT_LENGTH, length - ((long) segment << SEGMENT_SHIFT));
+    }
+
+    public int Length() {
+        return length;
+    }
+
+    public boolean IsMapped() {
+        return isMapped;
+    }
+
+    public double GetDouble(int index) {
+        return doubleSegments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    public void PutDouble(int index, double value) {
+        doubleSegments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+    }
+
+    public long GetLong(int index) {
+        return longSegments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+    }
+
+    public void PutLong(int index, long value) {
+        longSegments[index >>> SEGMENT_SHIFT].put(index & SEGMENT_MASK, value);
+    }
+
+    /**
+     * Copy elements [start, start + count) into a heap array.  The buffers are duplicated for the copy, so several threads 
+     * can copy at once.  
+     */
+    public void GetDoubles(int start, double[] target, int offset, int count) {
+        while (count > 0) {
+            int segment = start >>> SEGMENT_SHIFT, position = start & SEGMENT_MASK;
+            int n = Math.min(count, SEGMENT_LENGTH - position);
+            DoubleBuffer buffer = doubleSegments[segment].duplicate();
+            buffer.position(position);
+            buffer.get(target, offset, n);
+            start += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    public void PutDoubles(int start, double[] source, int offset, int count) {
+        while (count > 0) {
+            int segment = start >>> SEGMENT_SHIFT, position = start & SEGMENT_MASK;
+            int n = Math.min(count, SEGMENT_LENGTH - position);
+            DoubleBuffer buffer = doubleSegments[segment].duplicate();
+            buffer.position(position);
+            buffer.put(source, offset, n);
+            start += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    public void GetLongs(int start, long[] target, int offset, int count) {
+        while (count > 0) {
+            int segment = start >>> SEGMENT_SHIFT, position = start & SEGMENT_MASK;
+            int n = Math.min(count, SEGMENT_LENGTH - position);
+            LongBuffer buffer = longSegments[segment].duplicate();
+            buffer.position(position);
+            buffer.get(target, offset, n);
+            start += n;
+            offset += n;
+            count -= n;
+        }
+    }
+
+    public void PutLongs(int start, long[] source, int offset, int count) {
+        while (count > 0) {
+            int segment = start >>> SEGMENT_SHIFT, position = start & SEGMENT_MASK;
+            int n = Math.min(count, SEGMENT_LENGTH - position);
+            LongBuffer buffer = longSegments[segment].duplicate();
+            buffer.position(position);
+            buffer.put(source, offset, n);
+            start += n;
+            offset += n;
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,531 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.math.*;
+
+/**
+ * An immutable list of machine numbers stored in a primitive array, used in place of an expression list of numbers.  
+ * Each element of an expression list is a full Expression, Term, Power, Factor and FMNumber chain, so a packed array needs 
+ * a small fraction of the memory and can be processed with simple loops.  Arrays are only packed when no precision is lost.  
+ * The data arrays are shared rather than copied, so they must not be modified after construction.  Very large integer and 
+ * real arrays can instead be held in OffHeapStorage, outside of the Java heap.  Commands that stream over the elements in 
+ * blocks (with GetDoubles and GetLongs) work on these directly, while GetLongData and GetDoubleData make a heap copy.  
+ * Appending to a heap integer or real array leaves room in the new data array, and the first append to each array after 
+ * that writes into the room in place, so building an array one element at a time takes amortized constant time.  
+ * @author Allen Jordan
+ */
+public final class PackedArray {
+
+    final private PackedArrayType type;
+    final private long[] longData;
+    final private double[] doubleData;
+    final private OffHeapStorage storage;
+    final private int length;
+    //the number of elements claimed in a data array made with room to append, shared by the arrays using it (or null)
+    final private AtomicInteger bufferEnd;
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+    /**
+     * The number of elements written by toString before the rest are summarized by their count.  
+     */
+    public static final int DISPLAY_LENGTH = 1000;
+
+    /**
+     * Create a packed array of integers.  The array is used directly, not copied.  
+     */
+    public PackedArray(long[] data) {
+        assert data != null;
+        type = PackedArrayType.INTEGER;
+        longData = data;
+        doubleData = null;
+        storage = null;
+        length = data.length;
+        bufferEnd = null;
+    }
+
+    /**
+     * Create a packed array of real numbers.  The array is used directly, not copied.  
+     */
+    public PackedArray(double[] data) {
+        assert data != null;
+        type = PackedArrayType.REAL;
+        longData = null;
+        doubleData = data;
+        storage = null;
+        length = data.length;
+        bufferEnd = null;
+    }
+
+    /**
+     * Create a packed array of real or complex numbers.  The array is used directly, not copied.  
+     * @param data          The element data, holding (real, imaginary) pairs for complex arrays.  
+     * @param isComplex     Whether the data holds complex pairs.  
+     */
+    public PackedArray(double[] data, boolean isComplex) {
+        assert (data != null) && ((!isComplex) || ((data.length & 1) == 0));
+        type = isComplex ? PackedArrayType.COMPLEX : PackedArrayType.REAL;
+        longData = null;
+        doubleData = data;
+        storage = null;
+        length = isComplex ? data.length / 2 : data.length;
+        bufferEnd = null;
+    }
+
+    /**
+     * Create a packed array of integers or real numbers held outside of the heap.  The storage is used directly, not 
+     * copied.  
+     */
+    public PackedArray(OffHeapStorage data, boolean isInteger) {
+        assert data != null;
+        type = isInteger ? PackedArrayType.INTEGER : PackedArrayType.REAL;
+        longData = null;
+        doubleData = null;
+        storage = data;
+        length = data.Length();
+        bufferEnd = null;
+    }
+
+    //an integer array using the first length elements of a data array with room to append
+    private PackedArray(long[] data, int length, AtomicInteger bufferEnd) {
+        type = PackedArrayType.INTEGER;
+        longData = data;
+        doubleData = null;
+        storage = null;
+        this.length = length;
+        this.bufferEnd = bufferEnd;
+    }
+
+    //a real array using the first length elements of a data array with room to append
+    private PackedArray(double[] data, int length, AtomicInteger bufferEnd) {
+        type = PackedArrayType.REAL;
+        longData = null;
+        doubleData = data;
+        storage = null;
+        this.length = length;
+        this.bufferEnd = bufferEnd;
+    }
+
+    public PackedArrayType GetType() {
+        return type;
+    }
+
+    public boolean IsInteger() {
+        return (type == PackedArrayType.INTEGER);
+    }
+
+    public boolean IsReal() {
+        return (type == PackedArrayType.REAL);
+    }
+
+    public boolean IsComplex() {
+        return (type == PackedArrayType.COMPLEX);
+    }
+
+    public int Length() {
+        return length;
+    }
+
+    public boolean IsOffHeap() {
+        return (storage != null);
+    }
+
+    /**
+     * Get the off heap storage, or null if the data is in a heap array.  
+     */
+    public OffHeapStorage GetOffHeapStorage() {
+        return storage;
+    }
+
+    /**
+     * Get the underlying integer data (not a copy, so it must not be modified).  Off heap arrays, and arrays built by 
+     * Append that have room left in their data, are copied.  
+     */
+    public long[] GetLongData() throws ExpressionException {
+        if (type != PackedArrayType.INTEGER) {
+            throw new ExpressionException("Packed array does not hold integers");
+        }
+        if (storage != null) {
+            long[] data = new long[length];
+            storage.GetLongs(0, data, 0, length);
+            return data;
+        }
+        return (longData.length == length) ? longData : Arrays.copyOf(longData, length);
+    }
+
+    /**
+     * Get the underlying real or complex data (not a copy, so it must not be modified).  Off heap arrays, and arrays built 
+     * by Append that have room left in their data, are copied.  
+     */
+    public double[] GetDoubleData() throws ExpressionException {
+        if (type == PackedArrayType.INTEGER) {
+            throw new ExpressionException("Packed array does not hold real numbers");
+        }
+        if (storage != null) {
+            double[] data = new double[length];
+            storage.GetDoubles(0, data, 0, length);
+            return data;
+        }
+        return ((bufferEnd == null) || (doubleData.length == length)) ? doubleData : Arrays.copyOf(doubleData, length);
+    }
+
+    /**
+     * Copy the elements [start, start + count) of an integer or real array into a block of doubles, converting integers.  
+     */
+    public void GetDoubles(int start, double[] target, int count) {
+        assert type != PackedArrayType.COMPLEX;
+        if (type == PackedArrayType.REAL) {
+            if (storage != null) {
+                storage.GetDoubles(start, target, 0, count);
+            } else {
+                System.arraycopy(doubleData, start, target, 0, count);
+            }
+        } else if (storage != null) {
+            for (int i = 0; i < count; i++) {
+                target[i] = storage.GetLong(start + i);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[i] = longData[start + i];
+            }
+        }
+    }
+
+    /**
+     * Copy the elements [start, start + count) of an integer array into a block of longs.  
+     */
+    public void GetLongs(int start, long[] target, int count) {
+        assert type == PackedArrayType.INTEGER;
+        if (storage != null) {
+            storage.GetLongs(start, target, 0, count);
+        } else {
+            System.arraycopy(longData, start, target, 0, count);
+        }
+    }
+
+    /**
+     * Get the elements as doubles.  Integer arrays are converted, real arrays are copied, and complex arrays are invalid.  
+     */
+    public double[] ToDoubleArray() throws ExpressionException {
+        if (type == PackedArrayType.COMPLEX) {
+            throw new ExpressionException("Complex packed array can not be converted to real numbers");
+        }
+        if ((type == PackedArrayType.REAL) && (storage == null)) {
+            return Arrays.copyOf(doubleData, length);
+        }
+        double[] result = new double[length];
+        GetDoubles(0, result, length);
+        return result;
+    }
+
+    /**
+     * Get the elements [start, end) as a new packed array on the heap.
+     */
+    public PackedArray Slice(int start, int end) {
+        assert (start >= 0) && (start <= end) && (end <= length);
+        int count = end - start;
+        if (type == PackedArrayType.INTEGER) {
+            long[] data = new long[count];
+            GetLongs(start, data, count);
+            return new PackedArray(data);
+        }
+        if (type == PackedArrayType.COMPLEX) {
+            return new PackedArray(Arrays.copyOfRange(doubleData, 2 * start, 2 * end), true);
+        }
+        double[] data = new double[count];
+        GetDoubles(start, data, count);
+        return new PackedArray(data);
+    }
+
+    public double GetDouble(int index) {
+        if (storage != null) {
+            return (type == PackedArrayType.INTEGER) ? storage.GetLong(index) : storage.GetDouble(index);
+        }
+        if (type == PackedArrayType.INTEGER) {
+            return longData[index];
+        }
+        if (type == PackedArrayType.COMPLEX) {
+            return doubleData[2 * index];
+        }
+        return doubleData[index];
+    }
+
+    public FMNumber GetNumber(int index) {
+        if (storage != null) {
+            return (type == PackedArrayType.INTEGER) ? new FMNumber(storage.GetLong(index)) : new FMNumber(storage.GetDouble(index));
+        }
+        if (type == PackedArrayType.INTEGER) {
+            return new FMNumber(longData[index]);
+        }
+        if (type == PackedArrayType.COMPLEX) {
+            return new FMNumber(doubleData[2 * index], doubleData[2 * index + 1]);
+        }
+        return new FMNumber(doubleData[index]);
+    }
+
+    /**
+     * Get the array with a number added to the end.  The data is copied into a new array with room to grow, unless this 
+     * array was made by Append and nothing has been appended to it yet, in which case the number is written into the room 
+     * left in the shared data.  Arrays sharing the data only read their own first elements, so none of them changes.  
+     * @return  The new array, or null if the number does not fit the type of the array or the array is off the heap.  
+     */
+    public PackedArray Append(FMNumber number) {
+        if ((storage != null) || (type == PackedArrayType.COMPLEX) || !Fits(number)) {
+            return null;
+        }
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, 2L * length));
+        if (length >= capacity) {
+            return null;
+        }
+        boolean isInPlace = (bufferEnd != null) && (length < ((type == PackedArrayType.INTEGER) ? longData.length : doubleData.length)) && bufferEnd.compareAndSet(length, length + 1);
+        if (type == PackedArrayType.INTEGER) {
+            long[] data = isInPlace ? longData : Arrays.copyOf(longData, capacity);
+            data[length] = number.RealValue().longValue();
+            return new PackedArray(data, length + 1, isInPlace ? bufferEnd : new AtomicInteger(length + 1));
+        }
+        double[] data = isInPlace ? doubleData : Arrays.copyOf(doubleData, capacity);
+        data[length] = number.RealValue().doubleValue();
+        return new PackedArray(data, length + 1, isInPlace ? bufferEnd : new AtomicInteger(length + 1));
+    }
+
+    /**
+     * Get a copy of the array with a number added to the start, or null if the number does not fit.  
+     */
+    public PackedArray Prepend(FMNumber number) {
+        if ((storage != null) || (type == PackedArrayType.COMPLEX) || !Fits(number)) {
+            return null;
+        }
+        if (type == PackedArrayType.INTEGER) {
+            long[] data = new long[length + 1];
+            data[0] = number.RealValue().longValue();
+            System.arraycopy(longData, 0, data, 1, length);
+            return new PackedArray(data);
+        }
+        double[] data = new double[length + 1];
+        data[0] = number.RealValue().doubleValue();
+        System.arraycopy(doubleData, 0, data, 1, length);
+        return new PackedArray(data);
+    }
+
+    /**
+     * Get a copy of the array with the element at an index replaced, or null if the number does not fit.  
+     */
+    public PackedArray Set(int index, FMNumber number) {
+        assert (index >= 0) && (index < length);
+        if ((storage != null) || (type == PackedArrayType.COMPLEX) || !Fits(number)) {
+            return null;
+        }
+        if (type == PackedArrayType.INTEGER) {
+            long[] data = Arrays.copyOf(longData, length);
+            data[index] = number.RealValue().longValue();
+            return new PackedArray(data);
+        }
+        double[] data = Arrays.copyOf(doubleData, length);
+        data[index] = number.RealValue().doubleValue();
+        return new PackedArray(data);
+    }
+
+    //the number can be stored in an integer or real array of this type without losing precision, as in Pack
+    protected boolean Fits(FMNumber number) {
+        if (number.IsImaginary()) {
+            return false;
+        }
+        BigDecimal real = number.RealValue();
+        if (type == PackedArrayType.INTEGER) {
+            return IsMachineInteger(real);
+        }
+        if (number.IsExactInteger() && !IsMachineInteger(real)) {
+            return false;
+        }
+        return IsExactDouble(real, real.doubleValue());
+    }
+
+    /**
+     * Unpack into a normal expression list.  
+     */
+    public Vector<Expression> ToExprList() {
+        Vector<Expression> exprList = new Vector<Expression>(length);
+        for (int i = 0; i < length; i++) {
+            exprList.add(new Expression(new Term(new Power(new Factor(GetNumber(i)))), TermOperator.NONE));
+        }
+        return exprList;
+    }
+
+    /**
+     * Try to pack an expression list.  This succeeds when every element is a number that fits exactly in a long (for integer 
+     * arrays) or in doubles (for real and complex arrays).  Exact integers too big for a long are never packed, even when a 
+     * double could hold them, so that they stay exact.  
+     * @param exprList      The expression list to pack.  
+     * @return              The packed array, or null if the list can not be packed without losing precision.  
+     */
+    public static PackedArray Pack(Vector<Expression> exprList) throws ExpressionException {
+        int size = exprList.size();
+        FMNumber[] numbers = new FMNumber[size];
+        boolean isInteger = true;
+        boolean isComplex = false;
+        for (int i = 0; i < size; i++) {
+            FMNumber number = exprList.get(i).GetSingleNumber();
+            if (number == null) {
+                return null;
+            }
+            numbers[i] = number;
+            //exact integers past a long would become inexact in a real array
+            if (number.IsExactInteger() && !IsMachineInteger(number.RealValue())) {
+                return null;
+            }
+            if (number.IsImaginary()) {
+                isComplex = true;
+                isInteger = false;
+            } else if (isInteger && !IsMachineInteger(number.RealValue())) {
+                isInteger = false;
+            }
+        }
+
+        if (isInteger) {
+            long[] data = new long[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = numbers[i].RealValue().longValue();
+            }
+            return new PackedArray(data);
+        }
+
+        int stride = isComplex ? 2 : 1;
+        double[] data = new double[size * stride];
+        for (int i = 0; i < size; i++) {
+            BigDecimal real = numbers[i].RealValue();
+            double realDouble = real.doubleValue();
+            if (!IsExactDouble(real, realDouble)) {
+                return null;
+            }
+            data[i * stride] = realDouble;
+            if (isComplex) {
+                BigDecimal imag = numbers[i].ImaginaryValue();
+                double imagDouble = imag.doubleValue();
+                if (!IsExactDouble(imag, imagDouble)) {
+                    return null;
+                }
+                data[i * stride + 1] = imagDouble;
+            }
+        }
+        return new PackedArray(data, isComplex);
+    }
+
+    //an exact integer (see FMNumber.IsExactInteger) within the range of a long
+    protected static boolean IsMachineInteger(BigDecimal value) {
+        if (value.scale() > 0) {
+            return false;
+        }
+        return (value.compareTo(LONG_MIN) >= 0) && (value.compareTo(LONG_MAX) <= 0);
+    }
+
+    //the double holds exactly the same value as the big decimal
+    protected static boolean IsExactDouble(BigDecimal value, double doubleValue) {
+        if (Double.isInfinite(doubleValue)) {
+            return false;
+        }
+        //zero and small integers are common, and are exact whenever they fit in 53 bits
+        if ((value.scale() <= 0) && (Math.abs(doubleValue) < 9007199254740992.0)) {
+            return true;
+        }
+        return (new BigDecimal(doubleValue).compareTo(value) == 0);
+    }
+
+    /**
+     * Two packed arrays are equal if they have the same type and elements.  
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PackedArray)) {
+            return false;
+        }
+        PackedArray compareArray = (PackedArray) obj;
+        if ((type != compareArray.type) || (length != compareArray.length)) {
+            return false;
+        }
+        if ((storage != null) || (compareArray.storage != null) || (bufferEnd != null) || (compareArray.bufferEnd != null)) {
+            for (int i = 0; i < length; i++) {
+                if (GetBits(i) != compareArray.GetBits(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (type == PackedArrayType.INTEGER) {
+            return Arrays.equals(longData, compareArray.longData);
+        }
+        return Arrays.equals(doubleData, compareArray.doubleData);
+    }
+
+    //the element as a long, or the bits of a real element, matching the comparison made by Arrays.equals
+    protected long GetBits(int index) {
+        if (type == PackedArrayType.INTEGER) {
+            return (storage != null) ? storage.GetLong(index) : longData[index];
+        }
+        return Double.doubleToLongBits(GetDouble(index));
+    }
+
+    @Override
+    public int hashCode() {
+        if ((storage != null) || (bufferEnd != null)) {
+            //the same value Arrays.hashCode gives for the heap data
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                long bits = GetBits(i);
+                hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+            }
+            return hash;
+        }
+        if (type == PackedArrayType.INTEGER) {
+            return Arrays.hashCode(longData);
+        }
+        return Arrays.hashCode(doubleData);
+    }
+
+    /**
+     * Write the elements in list form.  Only the first DISPLAY_LENGTH elements are written, followed by the number of 
+     * elements left out, so that displaying a large array does not turn every element into text.  
+     */
+    @Override
+    public String toString() {
+        StringBuilder strBuilder = new StringBuilder();
+        strBuilder.append("{");
+        int displayed = Math.min(length, DISPLAY_LENGTH);
+        for (int i = 0; i < displayed; i++) {
+            if (i != 0) {
+                strBuilder.append(", ");
+            }
+            if ((type == PackedArrayType.INTEGER) && (storage == null)) {
+                strBuilder.append(longData[i]);
+            } else {
+                strBuilder.append(GetNumber(i).toString());
+            }
+        }
+        if (displayed < length) {
+            strBuilder.append(", \u2026 <").append(length - displayed).append(">");
+        }
+        strBuilder.append("}");
+        return strBuilder.toString();
+    }
+}
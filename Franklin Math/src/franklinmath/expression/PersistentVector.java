@@ -0,0 +1,307 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.util.*;
+
+/**
+ * An immutable list of expressions stored as a balanced tree of small arrays, used to hold the elements of symbolic lists.  
+ * Reading, replacing, appending and prepending an element each take O(log n) time, and a changed list shares all of the 
+ * tree with the old one except for the path to the changed leaf, so lists can be passed around and changed one element at 
+ * a time without copying.  Appending fills the last leaf before starting a new one, so a list built by repeated appends 
+ * has full leaves.  The tree is kept balanced as an AVL tree on the leaf heights.  A list can be marked as flat at a table generation (see 
+ * ExpressionToolset.GetTableGeneration), so that flattening it again is skipped until a variable or function changes.  
+ * @author Allen Jordan
+ */
+public final class PersistentVector implements Iterable<Expression> {
+
+    //the most elements held in one leaf
+    protected static final int LEAF_SIZE = 32;
+    //the flat generation of a list that is not known to be flat
+    public static final long NOT_FLAT = -1;
+    private static final Leaf EMPTY_LEAF = new Leaf(new Expression[0]);
+    final private Node root;
+    final private long flatGeneration;
+
+    /**
+     * Create an empty list.  
+     */
+    public PersistentVector() {
+        root = EMPTY_LEAF;
+        flatGeneration = NOT_FLAT;
+    }
+
+    /**
+     * Create a list holding the given elements, which are copied into a balanced tree of full leaves.  
+     */
+    public PersistentVector(List<Expression> exprList) {
+        flatGeneration = NOT_FLAT;
+        int size = exprList.size();
+        if (size == 0) {
+            root = EMPTY_LEAF;
+            return;
+        }
+        Leaf[] leaves = new Leaf[(size + LEAF_SIZE - 1) / LEAF_SIZE];
+        for (int i = 0; i < leaves.length; i++) {
+            int start = i * LEAF_SIZE;
+            int end = Math.min(start + LEAF_SIZE, size);
+            Expression[] elements = new Expression[end - start];
+            for (int j = start; j < end; j++) {
+                assert exprList.get(j) != null;
+                elements[j - start] = exprList.get(j);
+            }
+            leaves[i] = new Leaf(elements);
+        }
+        root = Build(leaves, 0, leaves.length);
+    }
+
+    private PersistentVector(Node root, long flatGeneration) {
+        this.root = root;
+        this.flatGeneration = flatGeneration;
+    }
+
+    public int Size() {
+        return root.size;
+    }
+
+    /**
+     * Get the table generation at which every element was flat, or NOT_FLAT.  
+     */
+    public long GetFlatGeneration() {
+        return flatGeneration;
+    }
+
+    /**
+     * Get the same list marked as flat at a table generation.  The tree is shared.  
+     */
+    public PersistentVector MarkFlat(long generation) {
+        return new PersistentVector(root, generation);
+    }
+
+    public Expression Get(int index) {
+        CheckIndex(index);
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.size) {
+                node = branch.left;
+            } else {
+                index -= branch.left.size;
+                node = branch.right;
+            }
+        }
+        return ((Leaf) node).elements[index];
+    }
+
+    /**
+     * Get a list with the element at the index replaced.  
+     */
+    public PersistentVector Set(int index, Expression value) {
+        assert value != null;
+        CheckIndex(index);
+        return new PersistentVector(Set(root, index, value), NOT_FLAT);
+    }
+
+    /**
+     * Get a list with an element added to the end.  
+     */
+    public PersistentVector Append(Expression value) {
+        assert value != null;
+        return new PersistentVector(Append(root, value), NOT_FLAT);
+    }
+
+    /**
+     * Get a list with an element added to the start.  
+     */
+    public PersistentVector Prepend(Expression value) {
+        assert value != null;
+        return new PersistentVector(Prepend(root, value), NOT_FLAT);
+    }
+
+    /**
+     * Copy the elements into a new vector, which the caller is free to change.  
+     */
+    public Vector<Expression> ToVector() {
+        Vector<Expression> exprList = new Vector<Expression>(root.size);
+        for (Expression element : this) {
+            exprList.add(element);
+        }
+        return exprList;
+    }
+
+    /**
+     * Iterate over the elements in order, finding each leaf once.  
+     */
+    public Iterator<Expression> iterator() {
+        return new Iterator<Expression>() {
+
+            protected int index = 0;
+            protected Expression[] leafElements = null;
+            protected int leafIndex = 0;
+
+            public boolean hasNext() {
+                return (index < root.size);
+            }
+
+            public Expression next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if ((leafElements == null) || (leafIndex == leafElements.length)) {
+                    leafElements = LeafStartingAt(index);
+                    leafIndex = 0;
+                }
+                index++;
+                return leafElements[leafIndex++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    protected void CheckIndex(int index) {
+        if ((index < 0) || (index >= root.size)) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + root.size);
+        }
+    }
+
+    //the elements of the leaf whose first element is at the index
+    protected Expression[] LeafStartingAt(int index) {
+        Node node = root;
+        while (node instanceof Branch) {
+            Branch branch = (Branch) node;
+            if (index < branch.left.size) {
+                node = branch.left;
+            } else {
+                index -= branch.left.size;
+                node = branch.right;
+            }
+        }
+        assert index == 0;
+        return ((Leaf) node).elements;
+    }
+
+    //build a tree over the leaves [start, end), splitting evenly so that sibling heights differ by at most one
+    private static Node Build(Leaf[] leaves, int start, int end) {
+        if (end - start == 1) {
+            return leaves[start];
+        }
+        int middle = (start + end) >>> 1;
+        return new Branch(Build(leaves, start, middle), Build(leaves, middle, end));
+    }
+
+    private static Node Set(Node node, int index, Expression value) {
+        if (node instanceof Leaf) {
+            Expression[] elements = ((Leaf) node).elements.clone();
+            elements[index] = value;
+            return new Leaf(elements);
+        }
+        Branch branch = (Branch) node;
+        if (index < branch.left.size) {
+            return new Branch(Set(branch.left, index, value), branch.right);
+        }
+        return new Branch(branch.left, Set(branch.right, index - branch.left.size, value));
+    }
+
+    private static Node Append(Node node, Expression value) {
+        if (node instanceof Leaf) {
+            Expression[] elements = ((Leaf) node).elements;
+            if (elements.length < LEAF_SIZE) {
+                Expression[] newElements = Arrays.copyOf(elements, elements.length + 1);
+                newElements[elements.length] = value;
+                return new Leaf(newElements);
+            }
+            return new Branch(node, new Leaf(new Expression[]{value}));
+        }
+        Branch branch = (Branch) node;
+        return Balance(branch.left, Append(branch.right, value));
+    }
+
+    private static Node Prepend(Node node, Expression value) {
+        if (node instanceof Leaf) {
+            Expression[] elements = ((Leaf) node).elements;
+            if (elements.length < LEAF_SIZE) {
+                Expression[] newElements = new Expression[elements.length + 1];
+                newElements[0] = value;
+                System.arraycopy(elements, 0, newElements, 1, elements.length);
+                return new Leaf(newElements);
+            }
+            return new Branch(new Leaf(new Expression[]{value}), node);
+        }
+        Branch branch = (Branch) node;
+        return Balance(Prepend(branch.left, value), branch.right);
+    }
+
+    //join two balanced subtrees whose heights differ by at most two, rotating once if they differ by two
+    private static Node Balance(Node left, Node right) {
+        if (right.height > left.height + 1) {
+            Branch rightBranch = (Branch) right;
+            if (rightBranch.left.height > rightBranch.right.height) {
+                Branch middle = (Branch) rightBranch.left;
+                return new Branch(new Branch(left, middle.left), new Branch(middle.right, rightBranch.right));
+            }
+            return new Branch(new Branch(left, rightBranch.left), rightBranch.right);
+        }
+        if (left.height > right.height + 1) {
+            Branch leftBranch = (Branch) left;
+            if (leftBranch.right.height > leftBranch.left.height) {
+                Branch middle = (Branch) leftBranch.right;
+                return new Branch(new Branch(leftBranch.left, middle.left), new Branch(middle.right, right));
+            }
+            return new Branch(leftBranch.left, new Branch(leftBranch.right, right));
+        }
+        return new Branch(left, right);
+    }
+
+    private static abstract class Node {
+
+        final protected int size;
+        final protected int height;
+
+        protected Node(int size, int height) {
+            this.size = size;
+            this.height = height;
+        }
+    }
+
+    private static final class Leaf extends Node {
+
+        final protected Expression[] elements;
+
+        protected Leaf(Expression[] elements) {
+            super(elements.length, 0);
+            this.elements = elements;
+        }
+    }
+
+    private static final class Branch extends Node {
+
+        final protected Node left;
+        final protected Node right;
+
+        protected Branch(Node left, Node right) {
+            super(left.size + right.size, Math.max(left.height, right.height) + 1);
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.expression;
+
+import java.util.*;
+
+import franklinmath.util.*;
+
+/**
+ * An immutable sparse matrix of machine reals in compressed sparse row (CSR) form.  Only the non-zero entries are stored, 
+ * with the column indices of each row in increasing order, so memory and matrix-vector products scale with the number of 
+ * non-zeros.  The transpose of a CSR matrix is the compressed sparse column form of the original.  The arrays are shared 
+ * rather than copied, so they must not be modified after construction.  
+ * @author Allen Jordan
+ */
+public final class SparseMatrix {
+
+    final private int numRows, numColumns;
+    //entries of row i are at [rowStart[i], rowStart[i + 1])
+    final private int[] rowStart;
+    final private int[] columnIndex;
+    final private double[] values;
+    //rows per block when splitting work across the worker threads
+    private static final int ROW_BLOCK_SIZE = 4096;
+
+    /**
+     * Create a sparse matrix from CSR arrays, which are used directly and must hold exactly the non-zero entries.  
+     */
+    public SparseMatrix(int numRows, int numColumns, int[] rowStart, int[] columnIndex, double[] values) {
+        assert (rowStart.length == numRows + 1) && (columnIndex.length == rowStart[numRows]) && (values.length == rowStart[numRows]);
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.rowStart = rowStart;
+        this.columnIndex = columnIndex;
+        this.values = values;
+    }
+
+    /**
+     * Build a sparse matrix from (row, column, value) triples in any order.  Entries given more than once are added 
+     * together, and zeros are dropped.  
+     * @param numRows       The number of rows.  
+     * @param numColumns    The number of columns.  
+     * @param rows          The zero-based row of each entry.  
+     * @param columns       The zero-based column of each entry.  
+     * @param entryValues   The value of each entry.  
+     * @param numEntries    The number of entries to use from the arrays.  
+     */
+    public static SparseMatrix FromTriples(int numRows, int numColumns, int[] rows, int[] columns, double[] entryValues, int numEntries) {
+        //counting sort by row
+        int[] start = new int[numRows + 1];
+        for (int k = 0; k < numEntries; k++) {
+            start[rows[k] + 1]++;
+        }
+        for (int i = 0; i < numRows; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] next = start.clone();
+        int[] sortedColumns = new int[numEntries];
+        double[] sortedValues = new double[numEntries];
+        for (int k = 0; k < numEntries; k++) {
+            int position = next[rows[k]]++;
+            sortedColumns[position] = columns[k];
+            sortedValues[position] = entryValues[k];
+        }
+
+        //sort each row by column, then combine duplicates and drop zeros in place
+        int[] rowStart = new int[numRows + 1];
+        int count = 0;
+        for (int i = 0; i < numRows; i++) {
+            SortRow(sortedColumns, sortedValues, start[i], start[i + 1]);
+            rowStart[i] = count;
+            for (int p = start[i]; p < start[i + 1]; p++) {
+                if ((count > rowStart[i]) && (sortedColumns[count - 1] == sortedColumns[p])) {
+                    sortedValues[count - 1] += sortedValues[p];
+                } else {
+                    sortedColumns[count] = sortedColumns[p];
+                    sortedValues[count] = sortedValues[p];
+                    count++;
+                }
+            }
+            int kept = rowStart[i];
+            for (int p = rowStart[i]; p < count; p++) {
+                if (sortedValues[p] != 0) {
+                    sortedColumns[kept] = sortedColumns[p];
+                    sortedValues[kept] = sortedValues[p];
+                    kept++;
+                }
+            }
+            count = kept;
+        }
+        rowStart[numRows] = count;
+        return new SparseMatrix(numRows, numColumns, rowStart, Arrays.copyOf(sortedColumns, count), Arrays.copyOf(sortedValues, count));
+    }
+
+    //insertion sort for short rows, otherwise sort an index permutation
+    protected static void SortRow(int[] columns, double[] rowValues, int start, int end) {
+        if (end - start <= 32) {
+            for (int p = start + 1; p < end; p++) {
+                int column = columns[p];
+                double value = rowValues[p];
+                int q = p - 1;
+                while ((q >= start) && (columns[q] > column)) {
+                    columns[q + 1] = columns[q];
+                    rowValues[q + 1] = rowValues[q];
+                    q--;
+                }
+                columns[q + 1] = column;
+                rowValues[q + 1] = value;
+            }
+            return;
+        }
+        long[] keys = new long[end - start];
+        for (int p = start; p < end; p++) {
+            keys[p - start] = ((long) columns[p] << 32) | (p - start);
+        }
+        Arrays.sort(keys);
+        double[] valuesCopy = Arrays.copyOfRange(rowValues, start, end);
+        for (int p = start; p < end; p++) {
+            columns[p] = (int) (keys[p - start] >>> 32);
+            rowValues[p] = valuesCopy[(int) keys[p - start]];
+        }
+    }
+
+    public int NumRows() {
+        return numRows;
+    }
+
+    public int NumColumns() {
+        return numColumns;
+    }
+
+    public int NumNonZeros() {
+        return rowStart[numRows];
+    }
+
+    public int[] GetRowStart() {
+        return rowStart;
+    }
+
+    public int[] GetColumnIndex() {
+        return columnIndex;
+    }
+
+    public double[] GetValues() {
+        return values;
+    }
+
+    /**
+     * Get a single entry by binary search within its row.  
+     */
+    public double Get(int row, int column) {
+        int index = Arrays.binarySearch(columnIndex, rowStart[row], rowStart[row + 1], column);
+        return (index >= 0) ? values[index] : 0;
+    }
+
+    /**
+     * Get the diagonal entries.  
+     */
+    public double[] Diagonal() {
+        double[] diagonal = new double[Math.min(numRows, numColumns)];
+        for (int i = 0; i < diagonal.length; i++) {
+            diagonal[i] = Get(i, i);
+        }
+        return diagonal;
+    }
+
+    /**
+     * Multiply by a vector, with blocks of rows computed on the worker threads.  
+     * @param x         The vector, with one entry per column.  
+     * @param result    The product, with one entry per row.  
+     */
+    public void Multiply(final double[] x, final double[] result) {
+        assert (x.length == numColumns) && (result.length == numRows);
+        WorkerPool.ParallelFor(0, numRows, ROW_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int i = (int) blockStart; i < blockEnd; i++) {
+                    double sum = 0;
+                    for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                        sum += values[p] * x[columnIndex[p]];
+                    }
+                    result[i] = sum;
+                }
+            }
+        });
+    }
+
+    public double[] Multiply(double[] x) {
+        double[] result = new double[numRows];
+        Multiply(x, result);
+        return result;
+    }
+
+    /**
+     * Multiply by another sparse matrix using Gustavson's row by row algorithm, with a dense accumulator for each row.  
+     */
+    public SparseMatrix Multiply(SparseMatrix other) {
+        assert numColumns == other.numRows;
+        int p = other.numColumns;
+        int[] resultStart = new int[numRows + 1];
+        int capacity = Math.max(16, NumNonZeros() + other.NumNonZeros());
+        int[] resultColumns = new int[capacity];
+        double[] resultValues = new double[capacity];
+        double[] accumulator = new double[p];
+        int[] marker = new int[p];
+        Arrays.fill(marker, -1);
+        int[] rowColumns = new int[p];
+        int count = 0;
+        for (int i = 0; i < numRows; i++) {
+            resultStart[i] = count;
+            int rowCount = 0;
+            for (int a = rowStart[i]; a < rowStart[i + 1]; a++) {
+                int k = columnIndex[a];
+                double aik = values[a];
+                for (int b = other.rowStart[k]; b < other.rowStart[k + 1]; b++) {
+                    int j = other.columnIndex[b];
+                    if (marker[j] != i) {
+                        marker[j] = i;
+                        rowColumns[rowCount++] = j;
+                        accumulator[j] = 0;
+                    }
+                    accumulator[j] += aik * other.values[b];
+                }
+            }
+            Arrays.sort(rowColumns, 0, rowCount);
+            if (count + rowCount > capacity) {
+                capacity = Math.max(2 * capacity, count + rowCount);
+                resultColumns = Arrays.copyOf(resultColumns, capacity);
+                resultValues = Arrays.copyOf(resultValues, capacity);
+            }
+            for (int r = 0; r < rowCount; r++) {
+                int j = rowColumns[r];
+                if (accumulator[j] != 0) {
+                    resultColumns[count] = j;
+                    resultValues[count] = accumulator[j];
+                    count++;
+                }
+            }
+        }
+        resultStart[numRows] = count;
+        return new SparseMatrix(numRows, p, resultStart, Arrays.copyOf(resultColumns, count), Arrays.copyOf(resultValues, count));
+    }
+
+    /**
+     * Transpose the matrix, which also converts between row and column compressed forms.  
+     */
+    public SparseMatrix Transpose() {
+        int nonZeros = NumNonZeros();
+        int[] start = new int[numColumns + 1];
+        for (int p = 0; p < nonZeros; p++) {
+            start[columnIndex[p] + 1]++;
+        }
+        for (int j = 0; j < numColumns; j++) {
+            start[j + 1] += start[j];
+        }
+        int[] next = start.clone();
+        int[] rows = new int[nonZeros];
+        double[] transposedValues = new double[nonZeros];
+        //rows are visited in order, so each transposed row comes out sorted
+        for (int i = 0; i < numRows; i++) {
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int position = next[columnIndex[p]]++;
+                rows[position] = i;
+                transposedValues[position] = values[p];
+            }
+        }
+        return new SparseMatrix(numColumns, numRows, start, rows, transposedValues);
+    }
+
+    /**
+     * Check whether the matrix equals its transpose.  
+     */
+    public boolean IsSymmetric() {
+        if (numRows != numColumns) {
+            return false;
+        }
+        SparseMatrix transpose = Transpose();
+        return Arrays.equals(rowStart, transpose.rowStart) && Arrays.equals(columnIndex, transpose.columnIndex) && Arrays.equals(values, transpose.values);
+    }
+
+    /**
+     * Expand into a dense row-major array.  
+     */
+    public double[] ToDenseArray() {
+        double[] dense = new double[numRows * numColumns];
+        for (int i = 0; i < numRows; i++) {
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                dense[i * numColumns + columnIndex[p]] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SparseMatrix)) {
+            return false;
+        }
+        SparseMatrix compareMatrix = (SparseMatrix) obj;
+        if ((numRows != compareMatrix.numRows) || (numColumns != compareMatrix.numColumns)) {
+            return false;
+        }
+        return Arrays.equals(rowStart, compareMatrix.rowStart) && Arrays.equals(columnIndex, compareMatrix.columnIndex) && Arrays.equals(values, compareMatrix.values);
+    }
+
+    @Override
+    public int hashCode() {
+        //the shape and the first few entries are enough to spread large matrices
+        int hash = 31 * (31 * numRows + numColumns) + NumNonZeros();
+        for (int p = 0; p < Math.min(NumNonZeros(), 8); p++) {
+            hash = 31 * hash + columnIndex[p];
+            long bits = Double.doubleToLongBits(values[p]);
+            hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+
+    /**
+     * Sparse matrices are shown in summary form, giving the number of non-zeros and the dimensions.  
+     */
+    @Override
+    public String toString() {
+        return "SparseArray[<" + NumNonZeros() + ">, {" + numRows + ", " + numColumns + "}]";
+    }
+}
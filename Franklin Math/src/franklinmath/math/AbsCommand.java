@@ -44,4 +44,27 @@ public class AbsCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public boolean HasIntegerKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return Math.abs(x);
+    }
+
+    @Override
+    public long EvaluateInteger(long x) {
+        if (x == Long.MIN_VALUE) {
+            throw new ArithmeticException("Integer overflow");
+        }
+        return Math.abs(x);
+    }
 }
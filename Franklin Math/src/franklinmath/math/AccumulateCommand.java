@@ -0,0 +1,69 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Accumulate[list] gives the running totals {a, a + b, a + b + c, ...} of a list.  Packed arrays are scanned across the 
+ * worker threads (see PrefixScan), with integers added exactly and machine reals with compensated summation.  Integer totals 
+ * that overflow, and lists that are not packed, are added one element at a time.  
+ * @author Allen Jordan
+ */
+public class AccumulateCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        Factor list = GetListArgument(args, 0);
+
+        try {
+            if (list.IsPackedArray() && !list.GetPackedArray().IsComplex()) {
+                PackedArray totals = PrefixScan.Scan(list.GetPackedArray(), PrefixScan.ScanOperator.PLUS);
+                if (totals != null) {
+                    return new FMResult(new Factor(totals));
+                }
+            }
+
+            Vector<Expression> exprList = list.IsPackedArray() ? list.GetPackedArray().ToExprList() : list.GetExprList();
+            Vector<Expression> resultList = new Vector<Expression>(exprList.size());
+            Expression total = null;
+            for (int i = 0; i < exprList.size(); i++) {
+                total = (total == null) ? exprList.get(i) : expressionToolset.Flatten(total.Add(exprList.get(i)));
+                resultList.add(total);
+            }
+            PackedArray packed = PackedArray.Pack(resultList);
+            if (packed != null) {
+                return new FMResult(new Factor(packed));
+            }
+            return new FMResult(new Factor(resultList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (IOException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
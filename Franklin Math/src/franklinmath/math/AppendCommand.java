@@ -0,0 +1,64 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Append[list, x] gives a list with x added to the end.  The new list shares its tree with the old one, so building a 
+ * list one element at a time does not copy it.  Packed arrays stay packed when x fits them, and grow in place where 
+ * PackedArray.Append can.  The result is flat whenever the list and x are, so it is not flattened again.  
+ * @author Allen Jordan
+ */
+public class AppendCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        Factor list = GetListArgument(args, 0);
+        Expression element = GetElementArgument(args, 1);
+
+        try {
+            FMNumber number = element.GetSingleNumber();
+            if (list.IsPackedArray() && (number != null)) {
+                PackedArray packed = AddElement(list.GetPackedArray(), number);
+                if (packed != null) {
+                    return new FMResult(new Factor(packed));
+                }
+            }
+            PersistentVector exprList = list.GetPersistentList();
+            return new FMResult(new Factor(AddElement(exprList, element).MarkFlat(exprList.GetFlatGeneration())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected PersistentVector AddElement(PersistentVector exprList, Expression element) {
+        return exprList.Append(element);
+    }
+
+    //null when the number does not fit the packed array
+    protected PackedArray AddElement(PackedArray packed, FMNumber number) {
+        return packed.Append(number);
+    }
+}
@@ -46,4 +46,14 @@ public class ArcCosCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return StrictMath.acos(x);
+    }
 }
@@ -46,4 +46,14 @@ public class ArcSinCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return StrictMath.asin(x);
+    }
 }
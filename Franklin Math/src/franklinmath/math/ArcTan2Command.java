@@ -47,4 +47,14 @@ public class ArcTan2Command extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x, double y) {
+        return StrictMath.atan2(x, y);
+    }
 }
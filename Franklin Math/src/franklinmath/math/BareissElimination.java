@@ -0,0 +1,282 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.Arrays;
+import java.util.Vector;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Exact fraction-free Gaussian elimination (Bareiss' algorithm) on a square integer matrix, optionally augmented with extra 
+ * columns.  Every division in the elimination is exact, so all intermediate values stay integers no larger than minors of 
+ * the matrix, and the determinant is the last pivot.  
+ * @author Allen Jordan
+ */
+public final class BareissElimination {
+
+    protected final int size, numColumns;
+    protected final BigInteger[][] rows;
+    protected BigInteger determinant;
+
+    /**
+     * Eliminate a square matrix, augmented with the given right hand side columns.  
+     * @param matrix    The square matrix rows, which are not modified.  
+     * @param augment   The right hand side rows (with the same number of rows), or null.  
+     */
+    public BareissElimination(BigInteger[][] matrix, BigInteger[][] augment) {
+        size = matrix.length;
+        int numAugment = (augment == null) ? 0 : augment[0].length;
+        numColumns = size + numAugment;
+        rows = new BigInteger[size][];
+        for (int i = 0; i < size; i++) {
+            rows[i] = new BigInteger[numColumns];
+            System.arraycopy(matrix[i], 0, rows[i], 0, size);
+            if (augment != null) {
+                System.arraycopy(augment[i], 0, rows[i], size, numAugment);
+            }
+        }
+        Eliminate();
+    }
+
+    protected void Eliminate() {
+        boolean isNegative = false;
+        BigInteger previousPivot = BigInteger.ONE;
+        for (int k = 0; k < size; k++) {
+            //any nonzero pivot keeps the arithmetic exact, so take the first
+            int pivot = k;
+            while ((pivot < size) && (rows[pivot][k].signum() == 0)) {
+                pivot++;
+            }
+            if (pivot == size) {
+                determinant = BigInteger.ZERO;
+                return;
+            }
+            if (pivot != k) {
+                BigInteger[] temp = rows[k];
+                rows[k] = rows[pivot];
+                rows[pivot] = temp;
+                isNegative = !isNegative;
+            }
+
+            //each remaining row is independent, so the rows are updated on the worker threads
+            final int column = k;
+            final BigInteger[] pivotRow = rows[k];
+            final BigInteger divisor = previousPivot;
+            WorkerPool.ParallelFor(k + 1, size, 4, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    for (int i = (int) blockStart; i < blockEnd; i++) {
+                        BigInteger[] row = rows[i];
+                        BigInteger factor = row[column];
+                        for (int j = column + 1; j < numColumns; j++) {
+                            row[j] = row[j].multiply(pivotRow[column]).subtract(factor.multiply(pivotRow[j])).divide(divisor);
+                        }
+                        row[column] = BigInteger.ZERO;
+                    }
+                }
+            });
+            previousPivot = pivotRow[k];
+        }
+        determinant = isNegative ? previousPivot.negate() : previousPivot;
+    }
+
+    public BigInteger Determinant() {
+        return determinant;
+    }
+
+    /**
+     * Solve the system for the augmented columns by fraction-free back substitution.  Each solution times the determinant is 
+     * an integer (by Cramer's rule), so those integers are found first and divided by the determinant at the end.  
+     * @param context   The math context for the final divisions.  
+     * @return          The solution rows, one number per augmented column.  
+     */
+    public FMNumber[][] Solve(MathContext context) {
+        assert determinant.signum() != 0;
+        int numAugment = numColumns - size;
+        //the last pivot is the determinant up to the sign of the row swaps
+        BigInteger lastPivot = rows[size - 1][size - 1];
+        FMNumber[][] result = new FMNumber[size][numAugment];
+        for (int c = 0; c < numAugment; c++) {
+            BigInteger[] scaled = new BigInteger[size];
+            for (int i = size - 1; i >= 0; i--) {
+                BigInteger sum = rows[i][size + c].multiply(lastPivot);
+                for (int j = i + 1; j < size; j++) {
+                    sum = sum.subtract(rows[i][j].multiply(scaled[j]));
+                }
+                scaled[i] = sum.divide(rows[i][i]);
+            }
+            for (int i = 0; i < size; i++) {
+                result[i][c] = Divide(scaled[i], lastPivot, context);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the entries of a list of rows as exact fractions, each a {numerator, denominator} pair with a positive denominator.  
+     * Integers and decimals are read exactly, except that a decimal carrying the full working precision is taken to be a 
+     * rounded fraction (such as 1/3), and is replaced by the simplest fraction that rounds to it when that fraction has a 
+     * small denominator.  
+     * @return  The entries, or null if any row is a packed array of machine reals or any entry is not a real number.  
+     */
+    public static BigInteger[][][] GetFractionData(Vector<Factor> rowList, int numColumns, MathContext context) throws ExpressionException {
+        BigInteger[][][] result = new BigInteger[rowList.size()][numColumns][];
+        for (int i = 0; i < rowList.size(); i++) {
+            Factor row = rowList.get(i);
+            if (row.IsPackedArray()) {
+                PackedArray packed = row.GetPackedArray();
+                if (!packed.IsInteger()) {
+                    return null;
+                }
+                long[] data = packed.GetLongData();
+                for (int j = 0; j < numColumns; j++) {
+                    result[i][j] = new BigInteger[]{BigInteger.valueOf(data[j]), BigInteger.ONE};
+                }
+            } else {
+                Vector<Expression> exprList = row.GetExprList();
+                for (int j = 0; j < numColumns; j++) {
+                    FMNumber number = exprList.get(j).GetSingleNumber();
+                    if ((number == null) || number.IsImaginary()) {
+                        return null;
+                    }
+                    result[i][j] = ToFraction(number.RealValue(), context);
+                }
+            }
+        }
+        return result;
+    }
+
+    //the exact fraction for a decimal, or the simplest nearby fraction for a decimal rounded to the working precision
+    protected static BigInteger[] ToFraction(BigDecimal value, MathContext context) {
+        if (value.scale() <= 0) {
+            return new BigInteger[]{value.toBigIntegerExact(), BigInteger.ONE};
+        }
+        BigInteger numerator = value.unscaledValue();
+        BigInteger denominator = BigInteger.TEN.pow(value.scale());
+        if (value.precision() >= context.getPrecision()) {
+            //the simplest fraction within half a unit of the last digit, accepted when its denominator cubed is below 10^scale
+            BigInteger twice = numerator.abs().shiftLeft(1);
+            BigInteger[] simplest = SimplestFraction(twice.subtract(BigInteger.ONE), twice.add(BigInteger.ONE), denominator.shiftLeft(1));
+            if (simplest[1].pow(3).compareTo(denominator) < 0) {
+                return new BigInteger[]{(numerator.signum() < 0) ? simplest[0].negate() : simplest[0], simplest[1]};
+            }
+        }
+        BigInteger gcd = numerator.gcd(denominator);
+        return new BigInteger[]{numerator.divide(gcd), denominator.divide(gcd)};
+    }
+
+    /**
+     * Find the fraction with the smallest denominator in [low / denominator, high / denominator], for 0 &lt;= low &lt; high, 
+     * from the continued fraction terms the two ends share.  
+     */
+    protected static BigInteger[] SimplestFraction(BigInteger low, BigInteger high, BigInteger denominator) {
+        //the interval is [lowN / lowD, highN / highD], and after each shared term it becomes the reciprocal of the remainder
+        BigInteger lowN = low, lowD = denominator, highN = high, highD = denominator;
+        Vector<BigInteger> terms = new Vector<BigInteger>();
+        while (true) {
+            BigInteger[] lowTerm = lowN.divideAndRemainder(lowD);
+            if (lowTerm[1].signum() == 0) {
+                terms.add(lowTerm[0]);
+                break;
+            }
+            //an integer above the low end that is still within the interval
+            BigInteger next = lowTerm[0].add(BigInteger.ONE);
+            if (next.multiply(highD).compareTo(highN) <= 0) {
+                terms.add(next);
+                break;
+            }
+            terms.add(lowTerm[0]);
+            BigInteger newLowN = highD, newLowD = highN.subtract(lowTerm[0].multiply(highD));
+            highN = lowD;
+            highD = lowTerm[1];
+            lowN = newLowN;
+            lowD = newLowD;
+        }
+        BigInteger numerator = terms.get(terms.size() - 1), fractionDenominator = BigInteger.ONE;
+        for (int t = terms.size() - 2; t >= 0; t--) {
+            BigInteger temp = numerator;
+            numerator = terms.get(t).multiply(numerator).add(fractionDenominator);
+            fractionDenominator = temp;
+        }
+        return new BigInteger[]{numerator, fractionDenominator};
+    }
+
+    /**
+     * Find the scale of each row that clears its denominators: the least common multiple of the denominators of the row and 
+     * of the given scale.  
+     * @param fractions The rows of fractions.  
+     * @param scales    The scales to start from, which are updated, or null to start from one.  
+     * @return          The scales.  
+     */
+    public static BigInteger[] RowScales(BigInteger[][][] fractions, BigInteger[] scales) {
+        if (scales == null) {
+            scales = new BigInteger[fractions.length];
+            Arrays.fill(scales, BigInteger.ONE);
+        }
+        for (int i = 0; i < fractions.length; i++) {
+            for (int j = 0; j < fractions[i].length; j++) {
+                BigInteger denominator = fractions[i][j][1];
+                scales[i] = scales[i].divide(scales[i].gcd(denominator)).multiply(denominator);
+            }
+        }
+        return scales;
+    }
+
+    /**
+     * Multiply each row of fractions by its scale, which must clear its denominators, giving integer rows.  
+     */
+    public static BigInteger[][] ScaleRows(BigInteger[][][] fractions, BigInteger[] scales) {
+        BigInteger[][] result = new BigInteger[fractions.length][];
+        for (int i = 0; i < fractions.length; i++) {
+            result[i] = new BigInteger[fractions[i].length];
+            for (int j = 0; j < fractions[i].length; j++) {
+                result[i][j] = fractions[i][j][0].multiply(scales[i].divide(fractions[i][j][1]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Divide exactly when possible, and otherwise to the precision of the math context.  
+     */
+    public static FMNumber Divide(BigInteger numerator, BigInteger denominator, MathContext context) {
+        BigInteger[] quotient = numerator.divideAndRemainder(denominator);
+        if (quotient[1].signum() == 0) {
+            return new FMNumber(quotient[0]);
+        }
+        return new FMNumber(new BigDecimal(numerator).divide(new BigDecimal(denominator), context));
+    }
+
+    /**
+     * Build a matrix of unit columns.  
+     */
+    public static BigInteger[][] Identity(int size) {
+        BigInteger[][] identity = new BigInteger[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                identity[i][j] = (i == j) ? BigInteger.ONE : BigInteger.ZERO;
+            }
+        }
+        return identity;
+    }
+}
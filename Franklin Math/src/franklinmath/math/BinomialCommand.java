@@ -0,0 +1,60 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Calculate the exact binomial coefficient of two integers.  
+ * @author Allen Jordan
+ */
+public class BinomialCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        BigInteger n = null, k = null;
+        try {
+            n = GetIntegerArgument(args, 0);
+            k = GetIntegerArgument(args, 1);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        if ((n.bitLength() > 62) || (k.bitLength() > 62)) {
+            throw new CommandException("Argument is too large", GetName());
+        }
+        try {
+            return new FMResult(new Factor(new FMNumber(Combinatorics.Binomial(n.longValue(), k.longValue()))));
+        } catch (IllegalArgumentException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
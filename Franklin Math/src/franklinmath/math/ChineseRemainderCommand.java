@@ -0,0 +1,86 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Solve a set of simultaneous congruences x = r[i] mod m[i], giving the smallest non-negative solution.  The moduli do not need 
+ * to be coprime, as long as the congruences are consistent.  
+ * @author Allen Jordan
+ */
+public class ChineseRemainderCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        Vector<FMNumber> remainderList = null, modulusList = null;
+        try {
+            remainderList = GetNumberListArgument(args, 0);
+            modulusList = GetNumberListArgument(args, 1);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+        if (remainderList.size() != modulusList.size()) {
+            throw new CommandException("Remainder and modulus lists must have the same length", GetName());
+        }
+
+        //merge the congruences one at a time: x = r (mod m) and x = ri (mod mi)
+        BigInteger r = BigInteger.ZERO;
+        BigInteger m = BigInteger.ONE;
+        for (int i = 0; i < remainderList.size(); i++) {
+            FMNumber remainderNumber = remainderList.get(i);
+            FMNumber modulusNumber = modulusList.get(i);
+            if ((!remainderNumber.IsExactInteger()) || (!modulusNumber.IsExactInteger())) {
+                throw new CommandException("Integer lists expected", GetName());
+            }
+            BigInteger mi = modulusNumber.RealValue().toBigInteger();
+            if (mi.signum() <= 0) {
+                throw new CommandException("Moduli must be positive", GetName());
+            }
+            BigInteger ri = remainderNumber.RealValue().toBigInteger().mod(mi);
+
+            //x = r + m t, with m t = ri - r (mod mi), which is solvable when gcd(m, mi) divides ri - r
+            BigInteger g = m.gcd(mi);
+            BigInteger[] quotient = ri.subtract(r).divideAndRemainder(g);
+            if (quotient[1].signum() != 0) {
+                throw new CommandException("The congruences have no common solution", GetName());
+            }
+            BigInteger reducedModulus = mi.divide(g);
+            BigInteger t = quotient[0].multiply(m.divide(g).modInverse(reducedModulus)).mod(reducedModulus);
+            r = r.add(m.multiply(t));
+            m = m.multiply(reducedModulus);
+        }
+
+        try {
+            return new FMResult(new Factor(new FMNumber(r)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+
+/**
+ * Exact factorials and binomial coefficients.  Results are built from their prime factorizations, which come from the prime 
+ * sieve, and the prime powers are multiplied together with balanced product trees so that the big multiplications are done 
+ * on numbers of similar size.  
+ * @author Allen Jordan
+ */
+public class Combinatorics {
+
+    //largest argument accepted for the sieve based algorithms
+    public static final long MAX_ARGUMENT = 100000000L;
+    //products shorter than this are multiplied directly
+    protected static final int PRODUCT_LEAF_SIZE = 16;
+
+    //Prevent instantiation
+    protected Combinatorics() {
+    }
+
+    /**
+     * Multiply together values[start] through values[end - 1] (all positive) using a balanced product tree.  
+     */
+    public static BigInteger Product(long[] values, int start, int end) {
+        if (end - start <= PRODUCT_LEAF_SIZE) {
+            BigInteger result = BigInteger.ONE;
+            long partial = 1;
+            for (int i = start; i < end; i++) {
+                //collect values in a long until it would overflow
+                if (partial > Long.MAX_VALUE / values[i]) {
+                    result = result.multiply(BigInteger.valueOf(partial));
+                    partial = values[i];
+                } else {
+                    partial *= values[i];
+                }
+            }
+            return result.multiply(BigInteger.valueOf(partial));
+        }
+        int middle = (start + end) >>> 1;
+        return Product(values, start, middle).multiply(Product(values, middle, end));
+    }
+
+    /**
+     * Multiply together the integers low, low + 1, ..., high using a balanced product tree.  
+     */
+    public static BigInteger RangeProduct(long low, long high) {
+        if (low > high) {
+            return BigInteger.ONE;
+        }
+        if (high - low < PRODUCT_LEAF_SIZE) {
+            BigInteger result = BigInteger.ONE;
+            for (long i = low; i <= high; i++) {
+                result = result.multiply(BigInteger.valueOf(i));
+            }
+            return result;
+        }
+        long middle = low + (high - low) / 2;
+        return RangeProduct(low, middle).multiply(RangeProduct(middle + 1, high));
+    }
+
+    /**
+     * The exponent of a prime in n!, by Legendre's formula.  
+     */
+    public static long LegendreExponent(long n, long p) {
+        long exponent = 0;
+        while (n >= p) {
+            n /= p;
+            exponent += n;
+        }
+        return exponent;
+    }
+
+    /**
+     * Calculate n! using the prime swing algorithm.  The odd part of n! satisfies oddFactorial(n) = oddFactorial(n/2)^2 swing(n), 
+     * where the swing number n! / ((n/2)!)^2 has a prime factorization that is cheap to find, and the power of two is added back 
+     * with a shift at the end.  
+     * @param n     A non-negative integer, no larger than MAX_ARGUMENT.  
+     * @return      The factorial.  
+     */
+    public static BigInteger Factorial(long n) {
+        if ((n < 0) || (n > MAX_ARGUMENT)) {
+            throw new IllegalArgumentException("Factorial argument out of range");
+        }
+        if (n < 2) {
+            return BigInteger.ONE;
+        }
+        long[] primes = PrimeSieve.ListPrimes(3, n);
+        //n! has n - popcount(n) factors of two
+        return OddFactorial(n, primes).shiftLeft((int) (n - Long.bitCount(n)));
+    }
+
+    protected static BigInteger OddFactorial(long n, long[] primes) {
+        if (n < 3) {
+            return BigInteger.ONE;
+        }
+        BigInteger half = OddFactorial(n / 2, primes);
+        return half.multiply(half).multiply(OddSwing(n, primes));
+    }
+
+    //the odd part of the swing number n! / ((n/2)!)^2
+    protected static BigInteger OddSwing(long n, long[] primes) {
+        long[] factors = new long[primes.length];
+        int numFactors = 0;
+        for (int i = 0; (i < primes.length) && (primes[i] <= n); i++) {
+            long p = primes[i];
+            //the exponent of p is the number of odd quotients n / p^k
+            long primePower = 1;
+            for (long q = n / p; q > 0; q /= p) {
+                if ((q & 1) == 1) {
+                    primePower *= p;
+                }
+            }
+            if (primePower > 1) {
+                factors[numFactors++] = primePower;
+            }
+        }
+        return Product(factors, 0, numFactors);
+    }
+
+    /**
+     * Calculate the binomial coefficient n choose k for integer arguments.  Negative n uses the identity 
+     * Binomial(n, k) = (-1)^k Binomial(k - n - 1, k).  
+     */
+    public static BigInteger Binomial(long n, long k) {
+        if (n < 0) {
+            if (k < 0) {
+                //for k <= n < 0 the symmetry Binomial(n, k) = Binomial(n, n - k) still holds, otherwise the result is zero
+                if (k > n) {
+                    return BigInteger.ZERO;
+                }
+                return Binomial(n, n - k);
+            }
+            BigInteger result = Binomial(k - n - 1, k);
+            return ((k & 1) == 0) ? result : result.negate();
+        }
+        if ((k < 0) || (k > n)) {
+            return BigInteger.ZERO;
+        }
+        k = Math.min(k, n - k);
+        if (k == 0) {
+            return BigInteger.ONE;
+        }
+        //when k is small relative to n, or n is beyond the sieve, (n - k + 1)...n / k! is cheaper
+        if ((n > MAX_ARGUMENT) || (k < n / 64)) {
+            if (k > MAX_ARGUMENT) {
+                throw new IllegalArgumentException("Binomial argument out of range");
+            }
+            return RangeProduct(n - k + 1, n).divide(Factorial(k));
+        }
+
+        long[] primes = PrimeSieve.ListPrimes(2, n);
+        long[] factors = new long[primes.length];
+        int numFactors = 0;
+        for (int i = 0; i < primes.length; i++) {
+            long p = primes[i];
+            long exponent = LegendreExponent(n, p) - LegendreExponent(k, p) - LegendreExponent(n - k, p);
+            //p^exponent never exceeds n (Kummer's theorem)
+            long primePower = 1;
+            for (long e = 0; e < exponent; e++) {
+                primePower *= p;
+            }
+            if (primePower > 1) {
+                factors[numFactors++] = primePower;
+            }
+        }
+        return Product(factors, 0, numFactors);
+    }
+
+    /**
+     * Calculate the multinomial coefficient (k1 + k2 + ...)! / (k1! k2! ...) for non-negative integers.  
+     */
+    public static BigInteger Multinomial(long[] k) {
+        long total = 0;
+        for (int i = 0; i < k.length; i++) {
+            if (k[i] < 0) {
+                throw new IllegalArgumentException("Multinomial arguments must be non-negative");
+            }
+            total += k[i];
+            if (total > MAX_ARGUMENT) {
+                throw new IllegalArgumentException("Multinomial argument out of range");
+            }
+        }
+        if (total < 2) {
+            return BigInteger.ONE;
+        }
+
+        long[] primes = PrimeSieve.ListPrimes(3, total);
+        long twoExponent = LegendreExponent(total, 2);
+        for (int j = 0; j < k.length; j++) {
+            twoExponent -= LegendreExponent(k[j], 2);
+        }
+        //gather the odd prime powers for the product tree, splitting large powers into pieces that fit in a long
+        long[] factors = new long[primes.length + 64];
+        int numFactors = 0;
+        for (int i = 0; i < primes.length; i++) {
+            long p = primes[i];
+            long exponent = LegendreExponent(total, p);
+            for (int j = 0; j < k.length; j++) {
+                exponent -= LegendreExponent(k[j], p);
+            }
+            long primePower = 1;
+            for (long e = 0; e < exponent; e++) {
+                if (primePower > Long.MAX_VALUE / p) {
+                    factors = AppendFactor(factors, numFactors++, primePower);
+                    primePower = 1;
+                }
+                primePower *= p;
+            }
+            if (primePower > 1) {
+                factors = AppendFactor(factors, numFactors++, primePower);
+            }
+        }
+        return Product(factors, 0, numFactors).shiftLeft((int) twoExponent);
+    }
+
+    //store a value in the factor array, growing it if needed
+    protected static long[] AppendFactor(long[] factors, int index, long value) {
+        if (index == factors.length) {
+            long[] larger = new long[factors.length * 2];
+            System.arraycopy(factors, 0, larger, 0, index);
+            factors = larger;
+        }
+        factors[index] = value;
+        return factors;
+    }
+}
@@ -46,4 +46,14 @@ public class CosCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return StrictMath.cos(x);
+    }
 }
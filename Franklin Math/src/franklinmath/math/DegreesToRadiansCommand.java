@@ -51,4 +51,14 @@ public class DegreesToRadiansCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return x * StrictMath.PI / 180;
+    }
 }
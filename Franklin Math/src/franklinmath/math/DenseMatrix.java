@@ -0,0 +1,270 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * A matrix of machine reals stored in a single row-major array.  Matrices are passed around as lists of (usually packed) 
+ * rows; this class is the working form used by the linear algebra commands, with cache-blocked multi-threaded kernels.  
+ * @author Allen Jordan
+ */
+public final class DenseMatrix {
+
+    //the tile size used by the blocked kernels, chosen so a few tiles of doubles fit in the L2 cache
+    protected static final int BLOCK_SIZE = 64;
+    protected final int numRows, numColumns;
+    protected final double[] data;
+
+    public DenseMatrix(int numRows, int numColumns) {
+        this(numRows, numColumns, new double[numRows * numColumns]);
+    }
+
+    public DenseMatrix(int numRows, int numColumns, double[] data) {
+        assert data.length == numRows * numColumns;
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.data = data;
+    }
+
+    public int NumRows() {
+        return numRows;
+    }
+
+    public int NumColumns() {
+        return numColumns;
+    }
+
+    public double Get(int row, int column) {
+        return data[row * numColumns + column];
+    }
+
+    public void Set(int row, int column, double value) {
+        data[row * numColumns + column] = value;
+    }
+
+    /**
+     * Get the underlying row-major array (not a copy).  
+     */
+    public double[] GetData() {
+        return data;
+    }
+
+    public DenseMatrix Copy() {
+        return new DenseMatrix(numRows, numColumns, data.clone());
+    }
+
+    public static DenseMatrix Identity(int size) {
+        DenseMatrix identity = new DenseMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            identity.data[i * size + i] = 1;
+        }
+        return identity;
+    }
+
+    /**
+     * Get the rows of a matrix, which is a non-empty list of lists that all have the same length.  
+     * @param matrix    The matrix factor.  
+     * @return          The rows, or null if the factor is not a matrix.  
+     */
+    public static Vector<Factor> GetRows(Factor matrix) throws ExpressionException {
+        if (!matrix.IsExprList() || matrix.IsPackedArray() || (matrix.ListLength() == 0)) {
+            return null;
+        }
+        Vector<Expression> exprList = matrix.GetExprList();
+        Vector<Factor> rowList = new Vector<Factor>(exprList.size());
+        int numColumns = -1;
+        for (int i = 0; i < exprList.size(); i++) {
+            SingleExpression single = exprList.get(i).GetSingle();
+            if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsExprList()) {
+                return null;
+            }
+            Factor row = single.SingleValue();
+            if ((numColumns >= 0) && (row.ListLength() != numColumns)) {
+                return null;
+            }
+            numColumns = row.ListLength();
+            rowList.add(row);
+        }
+        return rowList;
+    }
+
+    /**
+     * Get the entries of a list of rows as machine reals.  
+     * @param rowList       The rows, each a list of the given length.  
+     * @param numColumns    The length of each row.  
+     * @return              The row-major entries, or null if any entry is not a real number.  
+     */
+    public static double[] GetRealData(Vector<Factor> rowList, int numColumns) throws ExpressionException {
+        double[] result = new double[rowList.size() * numColumns];
+        for (int i = 0; i < rowList.size(); i++) {
+            Factor row = rowList.get(i);
+            if (row.IsPackedArray()) {
+                PackedArray packed = row.GetPackedArray();
+                if (packed.IsComplex()) {
+                    return null;
+                }
+                System.arraycopy(packed.ToDoubleArray(), 0, result, i * numColumns, numColumns);
+            } else {
+                Vector<Expression> exprList = row.GetExprList();
+                for (int j = 0; j < numColumns; j++) {
+                    FMNumber number = exprList.get(j).GetSingleNumber();
+                    if ((number == null) || number.IsImaginary()) {
+                        return null;
+                    }
+                    result[i * numColumns + j] = number.doubleValue();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the entries of a list of rows as machine integers.  
+     * @return  The row-major entries, or null if any entry is not an exact integer that fits in a long.  
+     */
+    public static long[] GetIntegerData(Vector<Factor> rowList, int numColumns) throws ExpressionException {
+        long[] result = new long[rowList.size() * numColumns];
+        for (int i = 0; i < rowList.size(); i++) {
+            Factor row = rowList.get(i);
+            if (row.IsPackedArray()) {
+                PackedArray packed = row.GetPackedArray();
+                if (!packed.IsInteger()) {
+                    return null;
+                }
+                System.arraycopy(packed.GetLongData(), 0, result, i * numColumns, numColumns);
+            } else {
+                Vector<Expression> exprList = row.GetExprList();
+                for (int j = 0; j < numColumns; j++) {
+                    FMNumber number = exprList.get(j).GetSingleNumber();
+                    if ((number == null) || !number.IsExactInteger() || (number.RealValue().toBigInteger().bitLength() > 63)) {
+                        return null;
+                    }
+                    result[i * numColumns + j] = number.RealValue().longValue();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convert to a list of packed rows.  
+     */
+    public Factor ToFactor() {
+        Vector<Expression> rowList = new Vector<Expression>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            double[] row = new double[numColumns];
+            System.arraycopy(data, i * numColumns, row, 0, numColumns);
+            rowList.add(new Expression(new Term(new Power(new Factor(new PackedArray(row)))), TermOperator.NONE));
+        }
+        return new Factor(rowList);
+    }
+
+    /**
+     * Check that every entry is finite, so that the matrix can be converted back into numbers.  
+     */
+    public boolean IsFinite() {
+        return ArrayKernels.AllFinite(data, 0, data.length);
+    }
+
+    /**
+     * Transpose the matrix one tile at a time, so that both the reads and the writes stay within a few cache lines.  
+     */
+    public DenseMatrix Transpose() {
+        final DenseMatrix result = new DenseMatrix(numColumns, numRows);
+        WorkerPool.ParallelForBlocks(0, numRows, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int jj = 0; jj < numColumns; jj += BLOCK_SIZE) {
+                    int jEnd = Math.min(numColumns, jj + BLOCK_SIZE);
+                    for (int i = (int) blockStart; i < blockEnd; i++) {
+                        for (int j = jj; j < jEnd; j++) {
+                            result.data[j * numRows + i] = data[i * numColumns + j];
+                        }
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Multiply by another matrix.  Blocks of result rows are computed on separate threads, and within each block the inner 
+     * dimension and the columns are tiled so that the tile of the right matrix is reused from cache for every row.  
+     * @param other     The right matrix, with as many rows as this matrix has columns.  
+     * @return          The product.  
+     */
+    public DenseMatrix Multiply(DenseMatrix other) {
+        assert numColumns == other.numRows;
+        final DenseMatrix result = new DenseMatrix(numRows, other.numColumns);
+        final double[] a = data, b = other.data, c = result.data;
+        final int n = numColumns, p = other.numColumns;
+        WorkerPool.ParallelForBlocks(0, numRows, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int kk = 0; kk < n; kk += BLOCK_SIZE) {
+                    int kEnd = Math.min(n, kk + BLOCK_SIZE);
+                    for (int jj = 0; jj < p; jj += 4 * BLOCK_SIZE) {
+                        int jEnd = Math.min(p, jj + 4 * BLOCK_SIZE);
+                        for (int i = (int) blockStart; i < blockEnd; i++) {
+                            int rowA = i * n, rowC = i * p;
+                            for (int k = kk; k < kEnd; k++) {
+                                double aik = a[rowA + k];
+                                int rowB = k * p;
+                                for (int j = jj; j < jEnd; j++) {
+                                    c[rowC + j] += aik * b[rowB + j];
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Multiply row-major integer matrices exactly.  
+     * @throws ArithmeticException  Thrown if any product or sum overflows a long.  
+     */
+    public static long[] MultiplyIntegers(final long[] a, final long[] b, int numRows, final int n, final int p) {
+        final long[] c = new long[numRows * p];
+        WorkerPool.ParallelForBlocks(0, numRows, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int i = (int) blockStart; i < blockEnd; i++) {
+                    for (int k = 0; k < n; k++) {
+                        long aik = a[i * n + k];
+                        if (aik == 0) {
+                            continue;
+                        }
+                        for (int j = 0; j < p; j++) {
+                            c[i * p + j] = CompiledExpression.AddExact(c[i * p + j], CompiledExpression.MultiplyExact(aik, b[k * p + j]));
+                        }
+                    }
+                }
+            }
+        });
+        return c;
+    }
+}
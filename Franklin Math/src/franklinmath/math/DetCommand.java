@@ -0,0 +1,82 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Determinant of a square matrix.  Integer and decimal matrices are eliminated exactly (see 
+ * BareissElimination.GetFractionData), and machine real matrices by LU decomposition.  
+ * Sparse matrices are converted to dense form first.  
+ * @author Allen Jordan
+ */
+public class DetCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        SparseMatrix sparse = GetSparseArgument(args, 0);
+        if (sparse != null) {
+            if (sparse.NumRows() != sparse.NumColumns()) {
+                throw new CommandException("Square matrix expected", GetName());
+            }
+            return RealDeterminant(new DenseMatrix(sparse.NumRows(), sparse.NumColumns(), sparse.ToDenseArray()));
+        }
+        Vector<Factor> rowList = GetSquareMatrixArgument(args, 0);
+        int size = rowList.size();
+
+        try {
+            BigInteger[][][] fractions = BareissElimination.GetFractionData(rowList, size, expressionToolset.GetMathContext());
+            if (fractions != null) {
+                //scaling the rows to integers multiplies the determinant by the product of the scales
+                BigInteger[] scales = BareissElimination.RowScales(fractions, null);
+                BigInteger product = BigInteger.ONE;
+                for (int i = 0; i < size; i++) {
+                    product = product.multiply(scales[i]);
+                }
+                BigInteger determinant = new BareissElimination(BareissElimination.ScaleRows(fractions, scales), null).Determinant();
+                return new FMResult(new Factor(BareissElimination.Divide(determinant, product, expressionToolset.GetMathContext())));
+            }
+            double[] data = DenseMatrix.GetRealData(rowList, size);
+            if (data == null) {
+                return SymbolicResult(args);
+            }
+            return RealDeterminant(new DenseMatrix(size, size, data));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected FMResult RealDeterminant(DenseMatrix matrix) throws CommandException {
+        double determinant = new LUDecomposition(matrix).Determinant();
+        if (Double.isNaN(determinant) || Double.isInfinite(determinant)) {
+            throw new CommandException("Determinant is out of range", GetName());
+        }
+        try {
+            return new FMResult(new Factor(determinant));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Differences[list] gives the differences {b - a, c - b, ...} between successive elements of a list, and Differences[list, k] 
+ * the k-th differences.  Packed arrays are differenced across the worker threads (see PrefixScan), and integer differences 
+ * that overflow, along with lists that are not packed, are found one element at a time.  
+ * @author Allen Jordan
+ */
+public class DifferencesCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() != 1) && (args.size() != 2)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        Factor list = GetListArgument(args, 0);
+        int order = 1;
+        if (args.size() == 2) {
+            order = GetIntegerArgument(args, 1).intValue();
+            if (order < 0) {
+                throw new CommandException("Non-negative integer expected", GetName());
+            }
+        }
+
+        try {
+            for (int i = 0; i < order; i++) {
+                list = Adjacent(list, expressionToolset);
+            }
+            return new FMResult(list);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (IOException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Combine each pair of successive elements of a list.  
+     */
+    protected Factor Adjacent(Factor list, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException, IOException {
+        if (list.IsPackedArray() && !list.GetPackedArray().IsComplex()) {
+            PackedArray result = AdjacentPacked(list.GetPackedArray());
+            if (result != null) {
+                return new Factor(result);
+            }
+        }
+
+        Vector<Expression> exprList = list.IsPackedArray() ? list.GetPackedArray().ToExprList() : list.GetExprList();
+        Vector<Expression> resultList = new Vector<Expression>(Math.max(exprList.size() - 1, 0));
+        for (int i = 1; i < exprList.size(); i++) {
+            resultList.add(expressionToolset.Flatten(AdjacentExpression(exprList.get(i - 1), exprList.get(i))));
+        }
+        PackedArray packed = PackedArray.Pack(resultList);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+        return new Factor(resultList);
+    }
+
+    /**
+     * Combine the successive elements of a packed array, or give null to combine them one at a time instead.  
+     */
+    protected PackedArray AdjacentPacked(PackedArray packed) throws ExpressionException, IOException {
+        return PrefixScan.Differences(packed);
+    }
+
+    /**
+     * Build the (unflattened) combination of an element and the one after it.  
+     */
+    protected Expression AdjacentExpression(Expression previous, Expression next) throws ExpressionException {
+        return next.Subtract(previous);
+    }
+}
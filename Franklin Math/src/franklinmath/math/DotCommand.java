@@ -0,0 +1,265 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Dot product of vectors and matrices.  Vector-vector products use primitive loops for packed arrays.  Matrix products use 
+ * exact long arithmetic for integers and the blocked multi-threaded kernel for machine reals; anything else is multiplied 
+ * and summed symbolically.  Products with sparse matrices only visit the non-zero entries.  
+ * @author Allen Jordan
+ */
+public class DotCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        SparseMatrix sparseA = GetSparseArgument(args, 0);
+        SparseMatrix sparseB = GetSparseArgument(args, 1);
+        if ((sparseA != null) || (sparseB != null)) {
+            try {
+                return new FMResult(SparseDot(args, sparseA, sparseB));
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
+        }
+        Factor a = GetListArgument(args, 0);
+        Factor b = GetListArgument(args, 1);
+
+        try {
+            boolean isVectorA = IsVector(a), isVectorB = IsVector(b);
+            if (isVectorA && isVectorB) {
+                return new FMResult(VectorDot(a, b, expressionToolset));
+            }
+
+            //a vector on the left is a single row, and on the right a single column (which has the same row-major layout)
+            Vector<Factor> rowsA, rowsB;
+            int numRows, inner, numColumns;
+            if (isVectorA) {
+                rowsA = new Vector<Factor>();
+                rowsA.add(a);
+                numRows = 1;
+                inner = a.ListLength();
+            } else {
+                rowsA = GetMatrixArgument(args, 0);
+                numRows = rowsA.size();
+                inner = rowsA.get(0).ListLength();
+            }
+            if (isVectorB) {
+                rowsB = new Vector<Factor>();
+                rowsB.add(b);
+                if (b.ListLength() != inner) {
+                    throw new CommandException("Incompatible dimensions", GetName());
+                }
+                numColumns = 1;
+            } else {
+                rowsB = GetMatrixArgument(args, 1);
+                if (rowsB.size() != inner) {
+                    throw new CommandException("Incompatible dimensions", GetName());
+                }
+                numColumns = rowsB.get(0).ListLength();
+            }
+            boolean isVectorResult = isVectorA || isVectorB;
+
+            long[] integerA = DenseMatrix.GetIntegerData(rowsA, inner);
+            long[] integerB = (integerA == null) ? null : DenseMatrix.GetIntegerData(rowsB, isVectorB ? inner : numColumns);
+            if (integerB != null) {
+                try {
+                    long[] product = DenseMatrix.MultiplyIntegers(integerA, integerB, numRows, inner, numColumns);
+                    if (isVectorResult) {
+                        return new FMResult(new Factor(new PackedArray(product)));
+                    }
+                    return new FMResult(ToMatrixFactor(product, numRows, numColumns));
+                } catch (ArithmeticException ex) {
+                    //overflowing integer products are done exactly below
+                }
+            } else {
+                double[] realA = DenseMatrix.GetRealData(rowsA, inner);
+                double[] realB = (realA == null) ? null : DenseMatrix.GetRealData(rowsB, isVectorB ? inner : numColumns);
+                if (realB != null) {
+                    DenseMatrix product = new DenseMatrix(numRows, inner, realA).Multiply(new DenseMatrix(inner, numColumns, realB));
+                    if (product.IsFinite()) {
+                        if (isVectorResult) {
+                            return new FMResult(new Factor(new PackedArray(product.GetData())));
+                        }
+                        return new FMResult(product.ToFactor());
+                    }
+                }
+            }
+
+            return new FMResult(SymbolicProduct(rowsA, rowsB, numRows, inner, numColumns, isVectorB, isVectorResult, expressionToolset));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    //products where at least one side is sparse, which only need work for each non-zero
+    protected Factor SparseDot(Vector<Equation> args, SparseMatrix sparseA, SparseMatrix sparseB) throws CommandException, ExpressionException {
+        if ((sparseA != null) && (sparseB != null)) {
+            if (sparseA.NumColumns() != sparseB.NumRows()) {
+                throw new CommandException("Incompatible dimensions", GetName());
+            }
+            return new Factor(sparseA.Multiply(sparseB));
+        }
+
+        Factor other = GetListArgument(args, (sparseA != null) ? 1 : 0);
+        SparseMatrix sparse = (sparseA != null) ? sparseA : sparseB;
+        if (IsVector(other)) {
+            double[] vector = GetRealVector(other);
+            if (vector == null) {
+                throw new CommandException("Sparse products need real numbers", GetName());
+            }
+            //a vector on the left multiplies the transpose
+            if (sparseB != null) {
+                sparse = sparse.Transpose();
+            }
+            if (vector.length != sparse.NumColumns()) {
+                throw new CommandException("Incompatible dimensions", GetName());
+            }
+            return new Factor(new PackedArray(sparse.Multiply(vector)));
+        }
+
+        Vector<Factor> rowList = GetMatrixArgument(args, (sparseA != null) ? 1 : 0);
+        int numRows = rowList.size(), numColumns = rowList.get(0).ListLength();
+        double[] dense = DenseMatrix.GetRealData(rowList, numColumns);
+        if (dense == null) {
+            throw new CommandException("Sparse products need real numbers", GetName());
+        }
+        int[] rowStart = sparse.GetRowStart();
+        int[] columnIndex = sparse.GetColumnIndex();
+        double[] values = sparse.GetValues();
+        if (sparseA != null) {
+            //each non-zero (i, k) adds a multiple of row k of the dense matrix to row i of the result
+            if (sparse.NumColumns() != numRows) {
+                throw new CommandException("Incompatible dimensions", GetName());
+            }
+            DenseMatrix result = new DenseMatrix(sparse.NumRows(), numColumns);
+            double[] c = result.GetData();
+            for (int i = 0; i < sparse.NumRows(); i++) {
+                for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                    int k = columnIndex[p];
+                    double value = values[p];
+                    for (int j = 0; j < numColumns; j++) {
+                        c[i * numColumns + j] += value * dense[k * numColumns + j];
+                    }
+                }
+            }
+            return result.ToFactor();
+        }
+
+        //each dense entry a(i, k) adds a multiple of sparse row k to row i of the result
+        if (numColumns != sparse.NumRows()) {
+            throw new CommandException("Incompatible dimensions", GetName());
+        }
+        int resultColumns = sparse.NumColumns();
+        DenseMatrix result = new DenseMatrix(numRows, resultColumns);
+        double[] c = result.GetData();
+        for (int i = 0; i < numRows; i++) {
+            for (int k = 0; k < numColumns; k++) {
+                double aik = dense[i * numColumns + k];
+                if (aik == 0) {
+                    continue;
+                }
+                for (int p = rowStart[k]; p < rowStart[k + 1]; p++) {
+                    c[i * resultColumns + columnIndex[p]] += aik * values[p];
+                }
+            }
+        }
+        return result.ToFactor();
+    }
+
+    protected Expression VectorDot(Factor a, Factor b, ExpressionToolset expressionToolset) throws CommandException, ExpressionException, ExecutionException {
+        if (a.ListLength() != b.ListLength()) {
+            throw new CommandException("Vectors of different lengths", GetName());
+        }
+
+        if (a.IsPackedArray() && b.IsPackedArray() && !a.GetPackedArray().IsComplex() && !b.GetPackedArray().IsComplex()) {
+            PackedArray packedA = a.GetPackedArray();
+            PackedArray packedB = b.GetPackedArray();
+            int length = packedA.Length();
+            if (packedA.IsInteger() && packedB.IsInteger()) {
+                try {
+                    return ToExpression(new Factor(ArrayKernels.DotLong(packedA.GetLongData(), packedB.GetLongData(), 0, length)));
+                } catch (ArithmeticException ex) {
+                    //overflowing integer products are done exactly below
+                }
+            } else {
+                double result = ArrayKernels.DotDouble(packedA.ToDoubleArray(), packedB.ToDoubleArray(), 0, length);
+                if (!Double.isNaN(result) && !Double.isInfinite(result)) {
+                    return ToExpression(new Factor(result));
+                }
+            }
+        }
+
+        //multiply the lists element-wise and sum the products
+        Term product = new Term(new Power(a)).AppendPower(new Power(b), PowerOperator.MULTIPLY);
+        Expression productExpr = expressionToolset.Flatten(new Expression(product, TermOperator.NONE));
+        SingleExpression single = productExpr.GetSingle();
+        if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsExprList()) {
+            throw new CommandException("Unable to multiply vectors", GetName());
+        }
+        Factor productList = single.SingleValue();
+        SumAccumulator sum = new SumAccumulator(expressionToolset.GetMathContext());
+        if (productList.IsPackedArray()) {
+            PackedArray packed = productList.GetPackedArray();
+            for (int i = 0; i < packed.Length(); i++) {
+                sum.AddNumber(packed.GetNumber(i));
+            }
+        } else {
+            Vector<Expression> exprList = productList.GetExprList();
+            for (int i = 0; i < exprList.size(); i++) {
+                sum.AddExpression(exprList.get(i));
+            }
+        }
+        return sum.GetResult(expressionToolset);
+    }
+
+    //sum the products of each row and column as an expression
+    protected Factor SymbolicProduct(Vector<Factor> rowsA, Vector<Factor> rowsB, int numRows, int inner, int numColumns, boolean isVectorB, boolean isVectorResult, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Vector<Vector<Expression>> elementsA = GetRowElements(rowsA);
+        Vector<Vector<Expression>> elementsB = GetRowElements(rowsB);
+        Vector<Expression> resultList = new Vector<Expression>();
+        for (int i = 0; i < numRows; i++) {
+            Vector<Expression> resultRow = new Vector<Expression>(numColumns);
+            for (int j = 0; j < numColumns; j++) {
+                Expression sum = new Expression();
+                for (int k = 0; k < inner; k++) {
+                    Expression elementB = isVectorB ? elementsB.get(0).get(k) : elementsB.get(k).get(j);
+                    Term term = new Term(new Power(new Factor(elementsA.get(i).get(k)))).AppendPower(new Power(new Factor(elementB)), PowerOperator.MULTIPLY);
+                    sum = sum.AppendTerm(term, (k == 0) ? TermOperator.NONE : TermOperator.ADD);
+                }
+                resultRow.add(expressionToolset.Flatten(sum));
+            }
+            if (isVectorResult) {
+                resultList.addAll(resultRow);
+            } else {
+                resultList.add(ToExpression(ToListFactor(resultRow)));
+            }
+        }
+        return isVectorResult ? ToListFactor(resultList) : new Factor(resultList);
+    }
+}
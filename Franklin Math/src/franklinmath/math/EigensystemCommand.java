@@ -0,0 +1,49 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Eigenvalues and unit eigenvectors of a real symmetric matrix, as a list {values, vectors}, in order of decreasing 
+ * absolute value.  As with Eigenvalues, an optional count k or -k gives only the largest or smallest eigenpairs.  
+ * @author Allen Jordan
+ */
+public class EigensystemCommand extends EigenvaluesCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        SymmetricEigensystem eigensystem = Solve(args, true);
+        if (eigensystem == null) {
+            return SymbolicResult(args);
+        }
+        try {
+            Vector<Expression> resultList = new Vector<Expression>(2);
+            resultList.add(ToExpression(new Factor(new PackedArray(eigensystem.GetEigenvalues()))));
+            resultList.add(ToExpression(eigensystem.GetEigenvectors().ToFactor()));
+            return new FMResult(new Factor(resultList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Eigenvalues of a real symmetric matrix, in order of decreasing absolute value.  An optional second argument k gives only 
+ * the k largest, or with -k the k smallest.  
+ * @author Allen Jordan
+ */
+public class EigenvaluesCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        SymmetricEigensystem eigensystem = Solve(args, false);
+        if (eigensystem == null) {
+            return SymbolicResult(args);
+        }
+        try {
+            return new FMResult(new Factor(new PackedArray(eigensystem.GetEigenvalues())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Solve the eigenproblem given by the arguments, a matrix and an optional count.  
+     * @return  The solution, or null if the matrix is not numeric.  
+     */
+    protected SymmetricEigensystem Solve(Vector<Equation> args, boolean wantVectors) throws CommandException {
+        if ((args.size() < 1) || (args.size() > 2)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        DenseMatrix matrix = GetSymmetricArgument(args, 0);
+        int count = 0;
+        if (args.size() == 2) {
+            long value = GetIntegerArgument(args, 1).longValue();
+            if ((value == 0) || (Math.abs(value) > ((matrix != null) ? matrix.NumRows() : Integer.MAX_VALUE))) {
+                throw new CommandException("Eigenvalue count out of range", GetName());
+            }
+            count = (int) value;
+        }
+        if (matrix == null) {
+            return null;
+        }
+        try {
+            return new SymmetricEigensystem(matrix, count, wantVectors);
+        } catch (ArithmeticException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Factor an integer into primes, giving a list of {prime, exponent} pairs.  
+ * @author Allen Jordan
+ */
+public class FactorIntegerCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        BigInteger n = null;
+        try {
+            n = GetIntegerArgument(args, 0);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        try {
+            Vector<Expression> pairList = new Vector<Expression>();
+            //zero, one and the sign are given as factors of their own
+            if (n.signum() < 0) {
+                pairList.add(MakePair(BigInteger.ONE.negate(), 1));
+                n = n.negate();
+            }
+            if (n.compareTo(BigInteger.ONE) <= 0) {
+                if ((n.signum() == 0) || pairList.isEmpty()) {
+                    pairList.add(MakePair(n, 1));
+                }
+                return new FMResult(new Factor(pairList));
+            }
+
+            SortedMap<BigInteger, Integer> factors = IntegerFactorizer.Factor(n);
+            for (Map.Entry<BigInteger, Integer> entry : factors.entrySet()) {
+                pairList.add(MakePair(entry.getKey(), entry.getValue()));
+            }
+            return new FMResult(new Factor(pairList));
+        } catch (ArithmeticException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    //build the expression list {prime, exponent}
+    protected Expression MakePair(BigInteger prime, int exponent) throws ExpressionException {
+        Vector<Expression> pair = new Vector<Expression>(2);
+        pair.add(new Expression(new Term(new Power(new Factor(new FMNumber(prime)))), TermOperator.NONE));
+        pair.add(new Expression(new Term(new Power(new Factor(exponent))), TermOperator.NONE));
+        return new Expression(new Term(new Power(new Factor(pair))), TermOperator.NONE);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Calculate the exact factorial of a non-negative integer.  
+ * @author Allen Jordan
+ */
+public class FactorialCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        BigInteger n = null;
+        try {
+            n = GetIntegerArgument(args, 0);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        if (n.signum() < 0) {
+            throw new CommandException("Factorial is undefined for negative integers", GetName());
+        }
+        if (n.compareTo(BigInteger.valueOf(Combinatorics.MAX_ARGUMENT)) > 0) {
+            throw new CommandException("Argument is too large", GetName());
+        }
+        try {
+            return new FMResult(new Factor(new FMNumber(Combinatorics.Factorial(n.longValue()))));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Calculate a single fibonacci number using the fast doubling identities, which only need O(log n) big integer multiplications.  
+ * @author Allen Jordan
+ */
+public class FibonacciCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        BigInteger n = null;
+        try {
+            n = GetIntegerArgument(args, 0);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        if (n.bitLength() > 62) {
+            throw new CommandException("Index is too large", GetName());
+        }
+        try {
+            return new FMResult(new Factor(new FMNumber(Fibonacci(n.longValue()))));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Calculate the nth fibonacci number (negative indices follow F(-n) = (-1)^(n+1) F(n)).  
+     * @param n     The index of the fibonacci number.  
+     * @return      The fibonacci number.  
+     */
+    public static BigInteger Fibonacci(long n) {
+        boolean isNegative = (n < 0);
+        if (isNegative) {
+            n = -n;
+        }
+
+        //walk the bits of n from the most significant end, keeping a = F(k) and b = F(k+1)
+        BigInteger a = BigInteger.ZERO;
+        BigInteger b = BigInteger.ONE;
+        for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            //F(2k) = F(k) * (2F(k+1) - F(k)), F(2k+1) = F(k)^2 + F(k+1)^2
+            BigInteger doubleK = a.multiply(b.shiftLeft(1).subtract(a));
+            BigInteger doubleKPlusOne = a.multiply(a).add(b.multiply(b));
+            if (((n >>> bit) & 1) == 0) {
+                a = doubleK;
+                b = doubleKPlusOne;
+            } else {
+                a = doubleKPlusOne;
+                b = doubleK.add(doubleKPlusOne);
+            }
+        }
+
+        if (isNegative && ((n & 1) == 0)) {
+            a = a.negate();
+        }
+        return a;
+    }
+}
@@ -24,44 +24,91 @@ import java.util.Vector;
 import java.math.*;
 
 /**
- *
+ * FibonacciNumbers[n] lists the first n Fibonacci numbers, and FibonacciNumbers[] gives the infinite lazy sequence of them.  
  * @author Allen Jordan
  */
 public class FibonacciNumbersCommand extends Command {
 
+    //the longest series whose values all fit in a long (F(0) through F(92))
+    protected static final int LONG_SERIES_LENGTH = 93;
+
     @Override
     public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if (args.size() == 0) {
+            try {
+                return new FMResult(new Factor(new FibonacciSequence()));
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
+        }
         CheckArgsLength(args, 1);
+        BigInteger seriesLength = GetIntegerArgument(args, 0);
+        if ((seriesLength.signum() < 0) || (seriesLength.bitLength() > 31)) {
+            throw new CommandException("Invalid series length", GetName());
+        }
+
         try {
-            FMNumber seriesLength = GetSingleArgument(args).SingleValue().GetNumber();
-            if (seriesLength.doubleValue() == 0) {
+            if (seriesLength.signum() == 0) {
                 return new FMResult(new Factor(0));
             }
 
-            FMNumber prev1 = FMNumber.ZERO;
-            FMNumber prev2 = FMNumber.ZERO;
-            FMNumber value = FMNumber.ZERO;
-            Vector<Expression> fibExprList = new Vector<Expression>();
-
-            MathContext context = expressionToolset.GetMathContext();
-            for (FMNumber i = FMNumber.ZERO; i.compareTo(seriesLength) < 0; i = i.Add(FMNumber.ONE, context)) {
-                prev2 = new FMNumber(prev1);
-                prev1 = new FMNumber(value);
-                if (i.compareTo(FMNumber.ZERO) == 0) {
-                    value = FMNumber.ZERO;
-                } else if (i.compareTo(FMNumber.ONE) == 0) {
-                    value = FMNumber.ONE;
-                } else {
-                    value = prev1.Add(prev2, context);
+            //machine integers are stepped straight into a packed array, which holds the whole list up to F(92)
+            int length = seriesLength.intValue();
+            if (length <= LONG_SERIES_LENGTH) {
+                long[] data = new long[length];
+                long current = 0;
+                long next = 1;
+                for (int i = 0; i < length; i++) {
+                    data[i] = current;
+                    long sum = current + next;
+                    current = next;
+                    next = sum;
                 }
-
-                fibExprList.add(new Expression(new Term(new Power(new Factor(value))), TermOperator.NONE));
-
+                return new FMResult(new Factor(new PackedArray(data)));
             }
 
+            //longer lists can not be packed, so step a BigInteger pair forward, handing each value straight to the output list
+            Vector<Expression> fibExprList = new Vector<Expression>(length);
+            BigInteger current = BigInteger.ZERO;
+            BigInteger next = BigInteger.ONE;
+            for (int i = 0; i < length; i++) {
+                fibExprList.add(new Expression(new Term(new Power(new Factor(new FMNumber(current)))), TermOperator.NONE));
+                BigInteger sum = current.add(next);
+                current = next;
+                next = sum;
+            }
             return new FMResult(new Factor(fibExprList));
         } catch (ExpressionException ex) {
             throw new CommandException(ex.toString(), GetName());
         }
     }
+
+    /**
+     * The infinite sequence of Fibonacci numbers, stepping a BigInteger pair forward in each generator.  
+     */
+    protected static class FibonacciSequence extends LazySequence {
+
+        @Override
+        public boolean IsInfinite() {
+            return true;
+        }
+
+        @Override
+        public Generator CreateGenerator() {
+            return new Generator() {
+
+                protected BigInteger current = BigInteger.ZERO;
+                protected BigInteger next = BigInteger.ONE;
+
+                @Override
+                public Expression Next() {
+                    Expression element = new Expression(new Term(new Power(new Factor(new FMNumber(current)))), TermOperator.NONE);
+                    BigInteger sum = current.add(next);
+                    current = next;
+                    next = sum;
+                    return element;
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Fold[f, x, list] gives f[...f[f[x, a], b]..., z] for the elements a through z of a list.  Fold[f, list] starts with the 
+ * first element of the list instead.  
+ * @author Allen Jordan
+ */
+public class FoldCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() != 2) && (args.size() != 3)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        String functionName = GetFunctionArgument(args, 0);
+        Factor list = GetListArgument(args, args.size() - 1);
+
+        try {
+            Vector<Expression> exprList = GetElements(list);
+            int first = 0;
+            Expression value;
+            if (args.size() == 3) {
+                if (!args.get(1).IsExpression()) {
+                    throw new CommandException("Equation invalid as argument", GetName());
+                }
+                value = args.get(1).GetLHS();
+            } else {
+                if (exprList.isEmpty()) {
+                    throw new CommandException("Input expression list is empty", GetName());
+                }
+                value = exprList.get(0);
+                first = 1;
+            }
+
+            Vector<Expression> resultList = new Vector<Expression>();
+            resultList.add(value);
+            Vector<Expression> arguments = new Vector<Expression>(2);
+            for (int i = first; i < exprList.size(); i++) {
+                arguments.clear();
+                arguments.add(value);
+                arguments.add(exprList.get(i));
+                value = ApplyFunction(functionName, arguments, expressionToolset);
+                if (IsListResult()) {
+                    resultList.add(value);
+                }
+            }
+            if (IsListResult()) {
+                return ListResult(resultList);
+            }
+            return new FMResult(value);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Check whether every intermediate value is returned, rather than only the final one.  
+     */
+    protected boolean IsListResult() {
+        return false;
+    }
+}
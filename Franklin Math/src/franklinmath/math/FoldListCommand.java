@@ -0,0 +1,81 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.IOException;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * FoldList[f, x, list] gives the list {x, f[x, a], f[f[x, a], b], ...} of every intermediate value of Fold[f, x, list].  
+ * Folding Max or Min over a packed array gives its running maxima or minima, which are scanned across the worker threads 
+ * (see PrefixScan) instead of calling the function for each element.  
+ * @author Allen Jordan
+ */
+public class FoldListCommand extends FoldCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() == 2) || (args.size() == 3)) {
+            PrefixScan.ScanOperator operator = GetScanOperator(GetFunctionArgument(args, 0));
+            Factor list = GetListArgument(args, args.size() - 1);
+            try {
+                if ((operator != null) && list.IsPackedArray() && !list.GetPackedArray().IsComplex()) {
+                    PackedArray packed = list.GetPackedArray();
+                    PackedArray initial = null;
+                    if ((args.size() == 3) && args.get(1).IsExpression()) {
+                        Vector<Expression> initialList = new Vector<Expression>(1);
+                        initialList.add(args.get(1).GetLHS());
+                        initial = PackedArray.Pack(initialList);
+                    }
+                    //symbolic starting values and empty lists are left to the general fold
+                    boolean isScannable = (args.size() == 3) ? ((initial != null) && !initial.IsComplex()) : (packed.Length() > 0);
+                    if (isScannable) {
+                        return new FMResult(new Factor(PrefixScan.Scan(packed, operator, initial)));
+                    }
+                }
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            } catch (IOException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
+        }
+        return super.Execute(args, expressionToolset);
+    }
+
+    @Override
+    protected boolean IsListResult() {
+        return true;
+    }
+
+    /**
+     * Get the scan for a built in function that can be folded over a packed array directly, or null if there is none.  
+     */
+    protected PrefixScan.ScanOperator GetScanOperator(String functionName) {
+        if (functionName.equals("Max")) {
+            return PrefixScan.ScanOperator.MAX;
+        } else if (functionName.equals("Min")) {
+            return PrefixScan.ScanOperator.MIN;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * The discrete Fourier transform of a list, (1/sqrt(n)) sum of u_r exp(2 pi i (r-1)(s-1)/n), computed by a fast Fourier 
+ * transform for any length.  
+ * @author Allen Jordan
+ */
+public class FourierCommand extends SignalCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        PackedArray list = GetSignalArgument(args, 0);
+        if (list == null) {
+            return SymbolicResult(args);
+        }
+        int n = list.Length();
+        if (n == 0) {
+            throw new CommandException("Input expression list is empty", GetName());
+        }
+
+        try {
+            double[] data = ToComplexData(list);
+            FourierTransform.ForSize(n).Transform(data, GetSign());
+            double scale = 1 / Math.sqrt(n);
+            for (int i = 0; i < data.length; i++) {
+                data[i] *= scale;
+            }
+            return new FMResult(new Factor(new PackedArray(data, true)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    //the sign of the exponent
+    protected int GetSign() {
+        return 1;
+    }
+}
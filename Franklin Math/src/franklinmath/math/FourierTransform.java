@@ -0,0 +1,413 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+import franklinmath.util.*;
+
+/**
+ * Fast Fourier transforms of complex data stored as (real, imaginary) pairs.  Lengths made of the factors 2, 3, 5 and 7 
+ * use an iterative self-sorting (Stockham) mixed-radix algorithm, and any other length is reduced to a power of two 
+ * length convolution (Bluestein's algorithm).  The twiddle factors for each length are computed once and cached.  
+ * @author Allen Jordan
+ */
+public final class FourierTransform {
+
+    protected static final int CACHE_SIZE = 16;
+    //the fewest butterflies worth handing to a separate thread
+    protected static final int MIN_PARALLEL_BUTTERFLIES = 4096;
+    //recently used transforms, kept in least recently used order
+    protected static final Map<Integer, FourierTransform> cache =
+            new LinkedHashMap<Integer, FourierTransform>(CACHE_SIZE, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, FourierTransform> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    protected final int size;
+    //the radix of each pass, or null for Bluestein's algorithm
+    protected final int[] radices;
+    //exp(-2 pi i k / n) for k < n
+    protected final double[] twiddles;
+    //Bluestein's algorithm: the chirp exp(-pi i k^2 / n), and the transformed conjugate chirp filter of the inner length
+    protected final double[] chirp, filter;
+    protected final FourierTransform inner;
+
+    protected FourierTransform(int size) {
+        this.size = size;
+        int[] factors = Factor(size);
+        if (factors != null) {
+            radices = factors;
+            twiddles = new double[2 * size];
+            for (int k = 0; k < size; k++) {
+                double angle = -2 * Math.PI * k / size;
+                twiddles[2 * k] = Math.cos(angle);
+                twiddles[2 * k + 1] = Math.sin(angle);
+            }
+            chirp = null;
+            filter = null;
+            inner = null;
+            return;
+        }
+
+        radices = null;
+        twiddles = null;
+        int innerSize = Integer.highestOneBit(2 * size - 1) << 1;
+        inner = ForSize(innerSize);
+        chirp = new double[2 * size];
+        filter = new double[2 * innerSize];
+        for (int k = 0; k < size; k++) {
+            //k^2 mod 2n keeps the angle small enough to be accurate
+            double angle = -Math.PI * ((long) k * k % (2L * size)) / size;
+            chirp[2 * k] = Math.cos(angle);
+            chirp[2 * k + 1] = Math.sin(angle);
+            filter[2 * k] = chirp[2 * k];
+            filter[2 * k + 1] = -chirp[2 * k + 1];
+            if (k > 0) {
+                filter[2 * (innerSize - k)] = chirp[2 * k];
+                filter[2 * (innerSize - k) + 1] = -chirp[2 * k + 1];
+            }
+        }
+        inner.Transform(filter, -1);
+    }
+
+    /**
+     * Get the (cached) transform for a length.  
+     */
+    public static FourierTransform ForSize(int size) {
+        assert size > 0;
+        synchronized (cache) {
+            FourierTransform transform = cache.get(size);
+            if (transform != null) {
+                return transform;
+            }
+        }
+        FourierTransform transform = new FourierTransform(size);
+        synchronized (cache) {
+            cache.put(size, transform);
+        }
+        return transform;
+    }
+
+    //split a length into radices 4, 2, 3, 5 and 7, or return null if it has any other prime factor
+    protected static int[] Factor(int n) {
+        Vector<Integer> factorList = new Vector<Integer>();
+        while (n % 4 == 0) {
+            factorList.add(4);
+            n /= 4;
+        }
+        int[] primes = {2, 3, 5, 7};
+        for (int i = 0; i < primes.length; i++) {
+            while (n % primes[i] == 0) {
+                factorList.add(primes[i]);
+                n /= primes[i];
+            }
+        }
+        if (n != 1) {
+            return null;
+        }
+        int[] factors = new int[factorList.size()];
+        for (int i = 0; i < factors.length; i++) {
+            factors[i] = factorList.get(i);
+        }
+        return factors;
+    }
+
+    /**
+     * Find the smallest length of at least the given size of the form 2^a 3^b, which have the fastest transforms.  
+     */
+    public static int GoodSize(int minimum) {
+        if (minimum <= 1) {
+            return 1;
+        }
+        int best = Integer.highestOneBit(minimum - 1) << 1;
+        for (long power3 = 3; power3 < best; power3 *= 3) {
+            long value = power3;
+            while (value < minimum) {
+                value *= 2;
+            }
+            best = (int) Math.min(best, value);
+        }
+        return best;
+    }
+
+    public int Size() {
+        return size;
+    }
+
+    /**
+     * Transform in place, without normalization: data_j becomes the sum over k of data_k exp(sign 2 pi i j k / n).  
+     * @param data  The complex data, as 2n interleaved (real, imaginary) values.  
+     * @param sign  -1 for the forward transform, or 1 for the inverse.  
+     */
+    public void Transform(double[] data, int sign) {
+        assert data.length == 2 * size;
+        //the inverse transform is the conjugate of the forward transform of the conjugate
+        if (sign > 0) {
+            Conjugate(data);
+        }
+        if (radices != null) {
+            Forward(data);
+        } else {
+            Bluestein(data);
+        }
+        if (sign > 0) {
+            Conjugate(data);
+        }
+    }
+
+    protected static void Conjugate(double[] data) {
+        for (int i = 1; i < data.length; i += 2) {
+            data[i] = -data[i];
+        }
+    }
+
+    protected void Forward(double[] data) {
+        double[] x = data;
+        double[] y = new double[2 * size];
+        int stageLength = size;
+        int stride = 1;
+        for (int i = 0; i < radices.length; i++) {
+            int radix = radices[i];
+            int m = stageLength / radix;
+            Pass(x, y, radix, m, stride, size / stageLength);
+            double[] temp = x;
+            x = y;
+            y = temp;
+            stageLength = m;
+            stride *= radix;
+        }
+        if (x != data) {
+            System.arraycopy(x, 0, data, 0, data.length);
+        }
+    }
+
+    /**
+     * One decimation in frequency pass.  For each of the m groups and each of the stride interleaved sequences, radix inputs 
+     * spaced m * stride apart are combined by a small DFT, multiplied by twiddle factors, and written next to each other, 
+     * so that no bit reversal is needed at the end.  
+     */
+    protected void Pass(final double[] x, final double[] y, final int radix, final int m, final int stride, final int step) {
+        long butterflies = (long) m * stride;
+        WorkerPool.ParallelFor(0, butterflies, MIN_PARALLEL_BUTTERFLIES, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                double[] w = new double[2 * radix];
+                double[] a = new double[2 * radix];
+                int group = (int) (blockStart / stride);
+                int q = (int) (blockStart % stride);
+                int span = m * stride;
+                for (long f = blockStart; f < blockEnd; group++, q = 0) {
+                    //twiddle factors exp(-2 pi i group t / stageLength) for this group
+                    for (int t = 0; t < radix; t++) {
+                        int index = 2 * group * t * step;
+                        w[2 * t] = twiddles[index];
+                        w[2 * t + 1] = twiddles[index + 1];
+                    }
+                    int qEnd = (int) Math.min(stride, q + (blockEnd - f));
+                    for (; q < qEnd; q++, f++) {
+                        int input = 2 * (q + stride * group);
+                        int output = 2 * (q + stride * radix * group);
+                        if (radix == 4) {
+                            Butterfly4(x, input, 2 * span, y, output, 2 * stride, w);
+                        } else if (radix == 2) {
+                            Butterfly2(x, input, 2 * span, y, output, 2 * stride, w);
+                        } else if (radix == 3) {
+                            Butterfly3(x, input, 2 * span, y, output, 2 * stride, w);
+                        } else {
+                            ButterflyGeneric(x, input, 2 * span, y, output, 2 * stride, w, radix, a);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    protected static void Butterfly2(double[] x, int in, int inStep, double[] y, int out, int outStep, double[] w) {
+        double ar = x[in], ai = x[in + 1];
+        double br = x[in + inStep], bi = x[in + inStep + 1];
+        y[out] = ar + br;
+        y[out + 1] = ai + bi;
+        double dr = ar - br, di = ai - bi;
+        y[out + outStep] = dr * w[2] - di * w[3];
+        y[out + outStep + 1] = dr * w[3] + di * w[2];
+    }
+
+    protected static void Butterfly3(double[] x, int in, int inStep, double[] y, int out, int outStep, double[] w) {
+        final double sin60 = 0.86602540378443864676;
+        double ar = x[in], ai = x[in + 1];
+        double br = x[in + inStep], bi = x[in + inStep + 1];
+        double cr = x[in + 2 * inStep], ci = x[in + 2 * inStep + 1];
+        double sr = br + cr, si = bi + ci;
+        double tr = ar - 0.5 * sr, ti = ai - 0.5 * si;
+        //-i sin60 (b - c)
+        double ur = sin60 * (bi - ci), ui = -sin60 * (br - cr);
+        y[out] = ar + sr;
+        y[out + 1] = ai + si;
+        double r1 = tr + ur, i1 = ti + ui;
+        double r2 = tr - ur, i2 = ti - ui;
+        y[out + outStep] = r1 * w[2] - i1 * w[3];
+        y[out + outStep + 1] = r1 * w[3] + i1 * w[2];
+        y[out + 2 * outStep] = r2 * w[4] - i2 * w[5];
+        y[out + 2 * outStep + 1] = r2 * w[5] + i2 * w[4];
+    }
+
+    protected static void Butterfly4(double[] x, int in, int inStep, double[] y, int out, int outStep, double[] w) {
+        double ar = x[in], ai = x[in + 1];
+        double br = x[in + inStep], bi = x[in + inStep + 1];
+        double cr = x[in + 2 * inStep], ci = x[in + 2 * inStep + 1];
+        double dr = x[in + 3 * inStep], di = x[in + 3 * inStep + 1];
+        double t0r = ar + cr, t0i = ai + ci;
+        double t1r = ar - cr, t1i = ai - ci;
+        double t2r = br + dr, t2i = bi + di;
+        //-i (b - d)
+        double t3r = bi - di, t3i = dr - br;
+        y[out] = t0r + t2r;
+        y[out + 1] = t0i + t2i;
+        double r1 = t1r + t3r, i1 = t1i + t3i;
+        double r2 = t0r - t2r, i2 = t0i - t2i;
+        double r3 = t1r - t3r, i3 = t1i - t3i;
+        y[out + outStep] = r1 * w[2] - i1 * w[3];
+        y[out + outStep + 1] = r1 * w[3] + i1 * w[2];
+        y[out + 2 * outStep] = r2 * w[4] - i2 * w[5];
+        y[out + 2 * outStep + 1] = r2 * w[5] + i2 * w[4];
+        y[out + 3 * outStep] = r3 * w[6] - i3 * w[7];
+        y[out + 3 * outStep + 1] = r3 * w[7] + i3 * w[6];
+    }
+
+    //a direct DFT of the radix inputs, for the radices 5 and 7
+    protected void ButterflyGeneric(double[] x, int in, int inStep, double[] y, int out, int outStep, double[] w, int radix, double[] a) {
+        int rootStep = size / radix;
+        for (int t = 0; t < radix; t++) {
+            double sumR = 0, sumI = 0;
+            for (int r = 0; r < radix; r++) {
+                int root = 2 * ((r * t) % radix) * rootStep;
+                double xr = x[in + r * inStep], xi = x[in + r * inStep + 1];
+                sumR += xr * twiddles[root] - xi * twiddles[root + 1];
+                sumI += xr * twiddles[root + 1] + xi * twiddles[root];
+            }
+            a[2 * t] = sumR;
+            a[2 * t + 1] = sumI;
+        }
+        for (int t = 0; t < radix; t++) {
+            y[out + t * outStep] = a[2 * t] * w[2 * t] - a[2 * t + 1] * w[2 * t + 1];
+            y[out + t * outStep + 1] = a[2 * t] * w[2 * t + 1] + a[2 * t + 1] * w[2 * t];
+        }
+    }
+
+    //X_j = c_j sum_k (x_k c_k) conj(c_(j-k)), a convolution done with the inner power of two transform
+    protected void Bluestein(double[] data) {
+        int innerSize = inner.Size();
+        double[] work = new double[2 * innerSize];
+        for (int k = 0; k < size; k++) {
+            double xr = data[2 * k], xi = data[2 * k + 1];
+            work[2 * k] = xr * chirp[2 * k] - xi * chirp[2 * k + 1];
+            work[2 * k + 1] = xr * chirp[2 * k + 1] + xi * chirp[2 * k];
+        }
+        inner.Transform(work, -1);
+        MultiplyPointwise(work, filter);
+        inner.Transform(work, 1);
+        double scale = 1.0 / innerSize;
+        for (int j = 0; j < size; j++) {
+            double xr = work[2 * j] * scale, xi = work[2 * j + 1] * scale;
+            data[2 * j] = xr * chirp[2 * j] - xi * chirp[2 * j + 1];
+            data[2 * j + 1] = xr * chirp[2 * j + 1] + xi * chirp[2 * j];
+        }
+    }
+
+    //a = a * b element by element
+    protected static void MultiplyPointwise(double[] a, double[] b) {
+        for (int i = 0; i < a.length; i += 2) {
+            double ar = a[i], ai = a[i + 1];
+            a[i] = ar * b[i] - ai * b[i + 1];
+            a[i + 1] = ar * b[i + 1] + ai * b[i];
+        }
+    }
+
+    protected static double MaxAbs(double[] data) {
+        double largest = 0;
+        for (int i = 0; i < data.length; i++) {
+            largest = Math.max(largest, Math.abs(data[i]));
+        }
+        return largest;
+    }
+
+    /**
+     * The full linear convolution of two complex sequences, c_j = sum of a_k b_(j-k), of length la + lb - 1.  
+     */
+    public static double[] ConvolveComplex(double[] a, double[] b) {
+        int la = a.length / 2, lb = b.length / 2;
+        int length = la + lb - 1;
+        FourierTransform transform = ForSize(GoodSize(length));
+        int n = transform.Size();
+        double[] fa = Arrays.copyOf(a, 2 * n);
+        double[] fb = Arrays.copyOf(b, 2 * n);
+        transform.Transform(fa, -1);
+        transform.Transform(fb, -1);
+        MultiplyPointwise(fa, fb);
+        transform.Transform(fa, 1);
+        double[] result = new double[2 * length];
+        for (int i = 0; i < 2 * length; i++) {
+            result[i] = fa[i] / n;
+        }
+        return result;
+    }
+
+    /**
+     * The full linear convolution of two real sequences.  Both are transformed at once, as the real and imaginary parts of 
+     * a single complex sequence, and separated using the conjugate symmetry of real transforms.  The second sequence is 
+     * scaled by a power of two to the size of the first, since rounding errors in the combined transform are relative to 
+     * the larger of the two.  
+     */
+    public static double[] ConvolveReal(double[] a, double[] b) {
+        int length = a.length + b.length - 1;
+        FourierTransform transform = ForSize(GoodSize(length));
+        int n = transform.Size();
+        int scale = Math.getExponent(MaxAbs(a)) - Math.getExponent(MaxAbs(b));
+        double[] z = new double[2 * n];
+        for (int i = 0; i < a.length; i++) {
+            z[2 * i] = a[i];
+        }
+        for (int i = 0; i < b.length; i++) {
+            z[2 * i + 1] = Math.scalb(b[i], scale);
+        }
+        transform.Transform(z, -1);
+        //A_k = (Z_k + conj(Z_-k)) / 2 and B_k = (Z_k - conj(Z_-k)) / 2i, so A_k B_k = (Z_k^2 - conj(Z_-k)^2) / 4i
+        double[] product = new double[2 * n];
+        for (int k = 0; k < n; k++) {
+            int minus = (n - k) % n;
+            double zr = z[2 * k], zi = z[2 * k + 1];
+            double cr = z[2 * minus], ci = -z[2 * minus + 1];
+            double dr = zr * zr - zi * zi - (cr * cr - ci * ci);
+            double di = 2 * zr * zi - 2 * cr * ci;
+            //divide by 4i
+            product[2 * k] = di / 4;
+            product[2 * k + 1] = -dr / 4;
+        }
+        transform.Transform(product, 1);
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = Math.scalb(product[2 * i] / n, -scale);
+        }
+        return result;
+    }
+}
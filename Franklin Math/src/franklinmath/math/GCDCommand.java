@@ -0,0 +1,101 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Find the greatest common divisor of any number of integers, given directly or in lists.  
+ * @author Allen Jordan
+ */
+public class GCDCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        GCDVisitor gcd = new GCDVisitor();
+        try {
+            ReadIntegerArguments(args, gcd);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        try {
+            return new FMResult(new Factor(new FMNumber(gcd.Result())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Reduce integers to their greatest common divisor in one pass.  The running value stays in a long until a big value is 
+     * met, and reading stops early once the divisor reaches one.  
+     */
+    public static class GCDVisitor extends IntegerVisitor {
+
+        protected long smallResult = 0;
+        protected BigInteger bigResult = null;
+
+        @Override
+        public boolean Visit(long value) {
+            if (bigResult == null) {
+                smallResult = NumberTheory.GCD(smallResult, value);
+                //the gcd of Long.MIN_VALUE alone does not fit in a long
+                if (smallResult < 0) {
+                    bigResult = BigInteger.valueOf(smallResult).negate();
+                }
+            } else {
+                bigResult = bigResult.gcd(BigInteger.valueOf(value));
+                Shrink();
+            }
+            return !((bigResult == null) && (smallResult == 1));
+        }
+
+        @Override
+        public boolean Visit(BigInteger value) {
+            if (bigResult == null) {
+                bigResult = value.abs().gcd(BigInteger.valueOf(smallResult));
+            } else {
+                bigResult = bigResult.gcd(value);
+            }
+            Shrink();
+            return !((bigResult == null) && (smallResult == 1));
+        }
+
+        public BigInteger Result() {
+            return (bigResult != null) ? bigResult : BigInteger.valueOf(smallResult);
+        }
+
+        //return to long arithmetic once the divisor fits
+        protected void Shrink() {
+            if (bigResult.bitLength() < 63) {
+                smallResult = bigResult.longValue();
+                bigResult = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Count a list of numbers in equal width bins, returning {bin edges, counts}.  The optional second argument gives the number 
+ * of bins, and otherwise the width is chosen by the Freedman-Diaconis rule.  
+ * @author Allen Jordan
+ */
+public class HistogramCommand extends StatisticsCommand {
+
+    //automatic bin counts are limited, since a few distant outliers can call for a huge number of narrow bins
+    protected static final int MAX_AUTOMATIC_BINS = 100000;
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 1) || (args.size() > 2)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        PackedArray packed = GetDataArgument(args, 0);
+        int numBins = 0;
+        if (args.size() == 2) {
+            long value = GetIntegerArgument(args, 1).longValue();
+            if ((value <= 0) || (value > Integer.MAX_VALUE)) {
+                throw new CommandException("Bin count must be positive", GetName());
+            }
+            numBins = (int) value;
+        }
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+
+        try {
+            double[] edges = GetBinEdges(packed, numBins);
+            long[] counts = Statistics.BinCounts(packed, edges[0], edges[1] - edges[0], edges.length - 1);
+            return GetResult(edges, counts);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Choose equal width bins covering the data.  
+     * @param packed    A non-empty real packed array.  
+     * @param numBins   The number of bins, or zero to choose the width automatically.  
+     * @return          The bin edges.  
+     */
+    protected double[] GetBinEdges(PackedArray packed, int numBins) throws ExpressionException {
+        double[] range = Statistics.MinMax(packed);
+        double min = range[0], max = range[1];
+        double width;
+        if (max <= min) {
+            //every value is the same, so they go in a single unit bin
+            numBins = Math.max(numBins, 1);
+            width = 1.0 / numBins;
+        } else if (numBins > 0) {
+            width = (max - min) / numBins;
+        } else {
+            width = Statistics.FreedmanDiaconisWidth(packed, min, max);
+            numBins = (int) Math.min(MAX_AUTOMATIC_BINS, Math.max(1, Math.ceil((max - min) / width)));
+            width = Math.max(width, (max - min) / numBins);
+        }
+
+        double[] edges = new double[numBins + 1];
+        for (int i = 0; i <= numBins; i++) {
+            edges[i] = min + i * width;
+        }
+        return edges;
+    }
+
+    /**
+     * Give the bins as the result of the command.  
+     */
+    protected FMResult GetResult(double[] edges, long[] counts) throws ExpressionException {
+        Vector<Expression> resultList = new Vector<Expression>(2);
+        resultList.add(ToExpression(new Factor(new PackedArray(edges))));
+        resultList.add(ToExpression(new Factor(new PackedArray(counts))));
+        return new FMResult(new Factor(resultList));
+    }
+}
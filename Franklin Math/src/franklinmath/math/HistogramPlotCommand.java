@@ -0,0 +1,54 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.plot.*;
+import franklinmath.util.*;
+
+/**
+ * Plot a histogram of a list of numbers.  The bins are chosen and counted as for Histogram, and drawn as bars.  
+ * @author Allen Jordan
+ */
+public class HistogramPlotCommand extends HistogramCommand {
+
+    @Override
+    protected FMResult GetResult(double[] edges, long[] counts) throws ExpressionException {
+        int numBins = counts.length;
+        Vector<Point> pointData = new Vector<Point>(numBins + 1);
+        long maxCount = 0;
+        for (int i = 0; i < numBins; i++) {
+            pointData.add(new Point(edges[i], counts[i]));
+            maxCount = Math.max(maxCount, counts[i]);
+        }
+        pointData.add(new Point(edges[numBins], 0));
+
+        SeriesInfo info = new SeriesInfo();
+        info.SetXRange(new Range(edges[0], edges[numBins]));
+        info.SetYRange(new Range(0, maxCount));
+        info.SetYLabel("count");
+        info.SetSeriesStyle(SeriesStyle.BARS);
+        Plot plot = new Plot(new SeriesData(info, pointData));
+        return new FMResult(plot.GetPlotImage());
+    }
+}
@@ -0,0 +1,338 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Arrays;
+
+import franklinmath.util.*;
+
+/**
+ * Reduction of a symmetric matrix of machine reals to tridiagonal form T = Q^T A Q by Householder reflections.  Only the 
+ * upper triangle is used.  The reflections are generated a panel of columns at a time; within a panel only the current 
+ * row is brought up to date, and the rest of the matrix is updated once per panel with a rank 2k update split across the 
+ * worker threads.  
+ * @author Allen Jordan
+ */
+public final class HouseholderTridiagonalization {
+
+    protected static final int PANEL_SIZE = 32;
+    //the number of vectors transformed together, so that each reflector is read from memory once per group
+    protected static final int VECTOR_GROUP_SIZE = 32;
+    protected final int size;
+    //the working matrix; row i holds reflector i (with its implicit leading 1) once column i has been reduced
+    protected final double[] a;
+    protected final double[] diagonal, offDiagonal, tau;
+
+    /**
+     * Reduce a matrix.  
+     * @param matrix    The symmetric matrix, which is not modified.  
+     */
+    public HouseholderTridiagonalization(DenseMatrix matrix) {
+        assert matrix.NumRows() == matrix.NumColumns();
+        size = matrix.NumRows();
+        a = matrix.GetData().clone();
+        diagonal = new double[size];
+        offDiagonal = new double[Math.max(0, size - 1)];
+        tau = new double[Math.max(0, size - 1)];
+        Reduce();
+    }
+
+    public int Size() {
+        return size;
+    }
+
+    public double[] GetDiagonal() {
+        return diagonal;
+    }
+
+    /**
+     * Get the sub-diagonal (equal to the super-diagonal) of T.  
+     */
+    public double[] GetOffDiagonal() {
+        return offDiagonal;
+    }
+
+    protected void Reduce() {
+        final int n = size;
+        //the panel reflectors v and the matching vectors w, one row per column of the panel
+        final double[] v = new double[PANEL_SIZE * n];
+        final double[] w = new double[PANEL_SIZE * n];
+        final double[] row = new double[n];
+        final double[] product = new double[n];
+
+        for (int panelStart = 0; panelStart < n; panelStart += PANEL_SIZE) {
+            final int panelEnd = Math.min(n, panelStart + PANEL_SIZE);
+            final int panelWidth = panelEnd - panelStart;
+            Arrays.fill(v, 0);
+            Arrays.fill(w, 0);
+
+            for (int i = panelStart; i < panelEnd; i++) {
+                final int j = i - panelStart;
+                //row i of the matrix (equal to column i) with the earlier reflectors of this panel applied
+                for (int c = i; c < n; c++) {
+                    row[c] = a[i * n + c];
+                }
+                for (int p = 0; p < j; p++) {
+                    double vi = v[p * n + i], wi = w[p * n + i];
+                    for (int c = i; c < n; c++) {
+                        row[c] -= vi * w[p * n + c] + wi * v[p * n + c];
+                    }
+                }
+                diagonal[i] = row[i];
+                if (i == n - 1) {
+                    break;
+                }
+
+                //reflector that zeroes row[i+2..n-1]
+                double alpha = row[i + 1];
+                double scale = 0;
+                for (int c = i + 2; c < n; c++) {
+                    scale = Math.max(scale, Math.abs(row[c]));
+                }
+                final int vRow = j * n;
+                if (scale == 0) {
+                    tau[i] = 0;
+                    offDiagonal[i] = alpha;
+                    a[i * n + i + 1] = 1;
+                    for (int c = i + 2; c < n; c++) {
+                        a[i * n + c] = 0;
+                    }
+                    continue;
+                }
+                double sumSquares = 0;
+                for (int c = i + 2; c < n; c++) {
+                    double scaled = row[c] / scale;
+                    sumSquares += scaled * scaled;
+                }
+                double norm = scale * Math.sqrt(sumSquares);
+                double beta = -Math.copySign(Math.hypot(alpha, norm), alpha);
+                final double t = (beta - alpha) / beta;
+                double factor = 1 / (alpha - beta);
+                tau[i] = t;
+                offDiagonal[i] = beta;
+                a[i * n + i + 1] = 1;
+                v[vRow + i + 1] = 1;
+                for (int c = i + 2; c < n; c++) {
+                    double value = row[c] * factor;
+                    a[i * n + c] = value;
+                    v[vRow + c] = value;
+                }
+
+                //product = A v over the trailing rows, which is where almost all of the reduction time goes
+                SymmetricProduct(i + 1, v, vRow, product);
+                //correct for the updates of this panel that have not been applied to the matrix yet
+                final int first = i + 1;
+                for (int p = 0; p < j; p++) {
+                    double wv = 0, vv = 0;
+                    for (int c = first; c < n; c++) {
+                        wv += w[p * n + c] * v[vRow + c];
+                        vv += v[p * n + c] * v[vRow + c];
+                    }
+                    for (int r = first; r < n; r++) {
+                        product[r] -= v[p * n + r] * wv + w[p * n + r] * vv;
+                    }
+                }
+                double dot = 0;
+                for (int r = first; r < n; r++) {
+                    product[r] *= t;
+                    dot += product[r] * v[vRow + r];
+                }
+                double shift = -0.5 * t * dot;
+                for (int r = first; r < n; r++) {
+                    w[vRow + r] = product[r] + shift * v[vRow + r];
+                }
+            }
+
+            //A -= V W^T + W V^T on the upper triangle of the rows and columns after the panel
+            if (panelEnd < n) {
+                WorkerPool.ParallelForBlocks(panelEnd, n, 16, new WorkerPool.RangeTask() {
+
+                    public void Run(long blockStart, long blockEnd) {
+                        for (int cc = (int) blockStart; cc < n; cc += 4 * DenseMatrix.BLOCK_SIZE) {
+                            int cEnd = Math.min(n, cc + 4 * DenseMatrix.BLOCK_SIZE);
+                            for (int r = (int) blockStart; r < blockEnd; r++) {
+                                int rowStart = r * n;
+                                int cStart = Math.max(cc, r);
+                                for (int p = 0; p < panelWidth; p++) {
+                                    double vr = v[p * n + r], wr = w[p * n + r];
+                                    int panelRow = p * n;
+                                    for (int c = cStart; c < cEnd; c++) {
+                                        a[rowStart + c] -= vr * w[panelRow + c] + wr * v[panelRow + c];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Multiply the trailing block A[first.., first..] by a vector, reading only its upper triangle.  Each stored entry is 
+     * used for both of its symmetric positions, so the matrix is read once.  Threads accumulate into separate partial 
+     * results, in bands of rows chosen to hold equal parts of the triangle.  
+     */
+    protected void SymmetricProduct(final int first, final double[] x, final int xStart, final double[] product) {
+        final int n = size;
+        final int length = n - first;
+        final int numBands = (length < 4 * PANEL_SIZE) ? 1 : Math.min(4 * WorkerPool.GetNumThreads(), length / PANEL_SIZE);
+        final double[] partial = new double[numBands * length];
+        WorkerPool.ParallelForBlocks(0, numBands, 1, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int band = (int) blockStart; band < blockEnd; band++) {
+                    int rowStart = first + (int) (length * (1 - Math.sqrt(1 - (double) band / numBands)));
+                    int rowEnd = (band == numBands - 1) ? n : first + (int) (length * (1 - Math.sqrt(1 - (double) (band + 1) / numBands)));
+                    int offset = band * length - first;
+                    for (int r = rowStart; r < rowEnd; r++) {
+                        int row = r * n;
+                        double xr = x[xStart + r];
+                        double sum = a[row + r] * xr;
+                        for (int c = r + 1; c < n; c++) {
+                            double value = a[row + c];
+                            sum += value * x[xStart + c];
+                            partial[offset + c] += value * xr;
+                        }
+                        partial[offset + r] += sum;
+                    }
+                }
+            }
+        });
+        for (int r = first; r < n; r++) {
+            double sum = 0;
+            for (int band = 0; band < numBands; band++) {
+                sum += partial[band * length + r - first];
+            }
+            product[r] = sum;
+        }
+    }
+
+    /**
+     * Transform vectors from the tridiagonal basis back to the original one, multiplying each by Q.  The reflectors are 
+     * applied a panel at a time in the compact form I - V T V^T, so each vector is read once per panel rather than once 
+     * per reflector.  
+     * @param vectors   The vectors, one per row of a row-major array, which are transformed in place.  
+     * @param count     The number of vectors.  
+     */
+    public void BackTransform(final double[] vectors, int count) {
+        assert vectors.length == count * size;
+        final int n = size;
+        final int numPanels = (n - 1 + PANEL_SIZE - 1) / PANEL_SIZE;
+        final double[] triangles = new double[numPanels * PANEL_SIZE * PANEL_SIZE];
+        for (int panel = 0; panel < numPanels; panel++) {
+            FormTriangle(panel * PANEL_SIZE, Math.min(n - 1, (panel + 1) * PANEL_SIZE), triangles, panel * PANEL_SIZE * PANEL_SIZE);
+        }
+
+        WorkerPool.ParallelForBlocks(0, count, VECTOR_GROUP_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                double[] y = new double[PANEL_SIZE];
+                //Q = H(0) H(1) ... H(n-2), so the last panel is applied first
+                for (int panel = numPanels - 1; panel >= 0; panel--) {
+                    int panelStart = panel * PANEL_SIZE;
+                    int width = Math.min(n - 1, panelStart + PANEL_SIZE) - panelStart;
+                    int triangle = panel * PANEL_SIZE * PANEL_SIZE;
+                    for (int k = (int) blockStart; k < blockEnd; k++) {
+                        int vector = k * n;
+                        //y = V^T x, then y = T y, then x -= V y
+                        int p = 0;
+                        //four reflectors at a time share each load of the vector
+                        for (; p + 4 <= width; p += 4) {
+                            int r0 = (panelStart + p) * n, r1 = r0 + n, r2 = r1 + n, r3 = r2 + n;
+                            int common = panelStart + p + 4;
+                            double dot0 = 0, dot1 = 0, dot2 = 0, dot3 = 0;
+                            for (int c = panelStart + p + 1; c < common; c++) {
+                                double x = vectors[vector + c];
+                                dot0 += a[r0 + c] * x;
+                                dot1 += (c > panelStart + p + 1) ? a[r1 + c] * x : 0;
+                                dot2 += (c > panelStart + p + 2) ? a[r2 + c] * x : 0;
+                            }
+                            for (int c = common; c < n; c++) {
+                                double x = vectors[vector + c];
+                                dot0 += a[r0 + c] * x;
+                                dot1 += a[r1 + c] * x;
+                                dot2 += a[r2 + c] * x;
+                                dot3 += a[r3 + c] * x;
+                            }
+                            y[p] = dot0;
+                            y[p + 1] = dot1;
+                            y[p + 2] = dot2;
+                            y[p + 3] = dot3;
+                        }
+                        for (; p < width; p++) {
+                            int reflector = (panelStart + p) * n;
+                            double dot = 0;
+                            for (int c = panelStart + p + 1; c < n; c++) {
+                                dot += a[reflector + c] * vectors[vector + c];
+                            }
+                            y[p] = dot;
+                        }
+                        for (int q = 0; q < width; q++) {
+                            double sum = 0;
+                            for (int t = q; t < width; t++) {
+                                sum += triangles[triangle + q * PANEL_SIZE + t] * y[t];
+                            }
+                            y[q] = sum;
+                        }
+                        for (p = 0; p < width; p++) {
+                            int reflector = (panelStart + p) * n;
+                            double yp = y[p];
+                            if (yp == 0) {
+                                continue;
+                            }
+                            for (int c = panelStart + p + 1; c < n; c++) {
+                                vectors[vector + c] -= yp * a[reflector + c];
+                            }
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    //the upper triangular T with H(start) ... H(end-1) = I - V T V^T, stored row-major with rows of length PANEL_SIZE
+    protected void FormTriangle(int start, int end, double[] triangles, int offset) {
+        int n = size;
+        for (int j = 0; j < end - start; j++) {
+            int i = start + j;
+            triangles[offset + j * PANEL_SIZE + j] = tau[i];
+            if (tau[i] == 0) {
+                continue;
+            }
+            //T[0..j-1, j] = -tau T[0..j-1, 0..j-1] V[:, 0..j-1]^T v
+            double[] dots = new double[j];
+            for (int p = 0; p < j; p++) {
+                double dot = 0;
+                for (int c = i + 1; c < n; c++) {
+                    dot += a[(start + p) * n + c] * a[i * n + c];
+                }
+                dots[p] = dot;
+            }
+            for (int q = 0; q < j; q++) {
+                double sum = 0;
+                for (int p = q; p < j; p++) {
+                    sum += triangles[offset + q * PANEL_SIZE + p] * dots[p];
+                }
+                triangles[offset + q * PANEL_SIZE + j] = -tau[i] * sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.*;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Import a delimited text file of numbers (CSV, TSV or whitespace separated).  The result is always the list of columns, each a 
+ * packed array, so a file with one column gives a list holding one column.  Columns of integers give integer arrays.  Files whose columns 
+ * would take more than a quarter of the maximum heap size are read into memory mapped storage outside of the heap.  
+ * @author Allen Jordan
+ */
+public class ImportCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        String fileName;
+        try {
+            fileName = GetSingleArgument(args).SingleValue().GetString();
+        } catch (ExpressionException ex) {
+            throw new CommandException("File name expected", GetName());
+        }
+
+        NumericTableReader reader = new NumericTableReader(new File(fileName));
+        reader.SetOffHeapThreshold(Runtime.getRuntime().maxMemory() / 4);
+        try {
+            reader.Read();
+        } catch (IOException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+
+        try {
+            Vector<Expression> columnList = new Vector<Expression>(reader.GetNumColumns());
+            for (int column = 0; column < reader.GetNumColumns(); column++) {
+                PackedArray packed = reader.GetPackedColumn(column);
+                columnList.add(new Expression(new Term(new Power(new Factor(packed))), TermOperator.NONE));
+            }
+            return new FMResult(new Factor(columnList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.math.*;
+
+import franklinmath.util.WorkerPool;
+
+/**
+ * Factors integers into primes.  Small factors are removed by trial division, factors of numbers that fit in a long are found 
+ * with Pollard-Brent rho, and larger numbers go through a short rho run followed by elliptic curve factorization (ECM) with 
+ * independent curves run on the worker threads.  
+ * @author Allen Jordan
+ */
+public class IntegerFactorizer {
+
+    //trial division bound
+    protected static final int TRIAL_LIMIT = 65536;
+    //rho iterations tried on big numbers before switching to ECM
+    protected static final int BIG_RHO_ITERATIONS = 40000;
+    //ECM stage 1 bounds and curve counts, tuned for factors of roughly 15, 20, 25, 30 and 35 digits
+    protected static final int[] ECM_BOUNDS = {2000, 11000, 50000, 250000, 1000000};
+    protected static final int[] ECM_CURVES = {25, 90, 300, 700, 1800};
+    //stage 2 runs up to this multiple of the stage 1 bound
+    protected static final int ECM_STAGE_TWO_RATIO = 50;
+    protected static final int CACHE_SIZE = 256;
+    //recently factored numbers, kept in least recently used order
+    protected static final Map<BigInteger, SortedMap<BigInteger, Integer>> cache =
+            new LinkedHashMap<BigInteger, SortedMap<BigInteger, Integer>>(CACHE_SIZE, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<BigInteger, SortedMap<BigInteger, Integer>> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    //Prevent instantiation
+    protected IntegerFactorizer() {
+    }
+
+    /**
+     * Factor an integer greater than one.  
+     * @param n     The number to factor.  
+     * @return      A map from each prime factor to its exponent, in increasing order of the primes.  
+     */
+    public static SortedMap<BigInteger, Integer> Factor(BigInteger n) {
+        if (n.compareTo(BigInteger.ONE) <= 0) {
+            throw new ArithmeticException("Number to factor must be greater than one");
+        }
+        synchronized (cache) {
+            SortedMap<BigInteger, Integer> cached = cache.get(n);
+            if (cached != null) {
+                return new TreeMap<BigInteger, Integer>(cached);
+            }
+        }
+
+        TreeMap<BigInteger, Integer> factors = new TreeMap<BigInteger, Integer>();
+        BigInteger cofactor = TrialDivide(n, factors);
+        if (!cofactor.equals(BigInteger.ONE)) {
+            FactorCofactor(cofactor, 1, factors);
+        }
+
+        synchronized (cache) {
+            cache.put(n, Collections.unmodifiableSortedMap(new TreeMap<BigInteger, Integer>(factors)));
+        }
+        return factors;
+    }
+
+    //add a prime factor to the result map
+    protected static void AddFactor(TreeMap<BigInteger, Integer> factors, BigInteger prime, int multiplicity) {
+        Integer exponent = factors.get(prime);
+        factors.put(prime, (exponent == null) ? multiplicity : exponent + multiplicity);
+    }
+
+    /**
+     * Remove the prime factors below the trial division bound.  The number is reduced modulo products of several primes at a 
+     * time so that big numbers only need one big division per group of primes.  
+     * @return      The remaining cofactor, which has no factors below the trial bound.  
+     */
+    protected static BigInteger TrialDivide(BigInteger n, TreeMap<BigInteger, Integer> factors) {
+        int[] primes = PrimeSieve.GetSmallPrimes(TRIAL_LIMIT);
+        int index = 0;
+        while ((index < primes.length) && (primes[index] <= TRIAL_LIMIT)) {
+            //once p^2 exceeds the cofactor, the cofactor is one or a prime
+            long p = primes[index];
+            if (n.bitLength() < 62 && p * p > n.longValue()) {
+                if (!n.equals(BigInteger.ONE)) {
+                    AddFactor(factors, n, 1);
+                }
+                return BigInteger.ONE;
+            }
+
+            long product = 1;
+            int groupEnd = index;
+            while ((groupEnd < primes.length) && (primes[groupEnd] <= TRIAL_LIMIT) && (product <= Long.MAX_VALUE / primes[groupEnd])) {
+                product *= primes[groupEnd];
+                groupEnd++;
+            }
+            long residue = n.mod(BigInteger.valueOf(product)).longValue();
+            for (int i = index; i < groupEnd; i++) {
+                if ((residue % primes[i]) == 0) {
+                    BigInteger prime = BigInteger.valueOf(primes[i]);
+                    int exponent = 0;
+                    BigInteger[] quotient = n.divideAndRemainder(prime);
+                    while (quotient[1].signum() == 0) {
+                        n = quotient[0];
+                        exponent++;
+                        quotient = n.divideAndRemainder(prime);
+                    }
+                    AddFactor(factors, prime, exponent);
+                }
+            }
+            index = groupEnd;
+        }
+        return n;
+    }
+
+    /**
+     * Completely factor a number with no small factors, recording each prime with the given multiplicity.  
+     */
+    protected static void FactorCofactor(BigInteger n, int multiplicity, TreeMap<BigInteger, Integer> factors) {
+        if (n.equals(BigInteger.ONE)) {
+            return;
+        }
+        if (NumberTheory.IsPrime(n)) {
+            AddFactor(factors, n, multiplicity);
+            return;
+        }
+
+        //rho and ECM work poorly on perfect powers, so take roots first (every prime factor is above the trial bound)
+        int maxPower = n.bitLength() / 16;
+        for (int k = 2; k <= maxPower; k++) {
+            if (!NumberTheory.IsPrime(k)) {
+                continue;
+            }
+            BigInteger root = NumberTheory.IntegerRoot(n, k);
+            if (root.pow(k).equals(n)) {
+                FactorCofactor(root, multiplicity * k, factors);
+                return;
+            }
+        }
+
+        BigInteger divisor = FindFactor(n);
+        FactorCofactor(divisor, multiplicity, factors);
+        FactorCofactor(n.divide(divisor), multiplicity, factors);
+    }
+
+    /**
+     * Find a non-trivial factor of an odd composite number that is not a perfect power.  
+     */
+    protected static BigInteger FindFactor(BigInteger n) {
+        if (n.bitLength() < 63) {
+            return BigInteger.valueOf(RhoFactor(n.longValue()));
+        }
+        BigInteger divisor = RhoFactor(n, BIG_RHO_ITERATIONS);
+        if (divisor != null) {
+            return divisor;
+        }
+        return EllipticCurveFactor(n);
+    }
+
+    /**
+     * Pollard-Brent rho for a composite that fits in a long, using Montgomery arithmetic.  Differences are multiplied together 
+     * so that a gcd is only needed once per batch.  
+     */
+    protected static long RhoFactor(long n) {
+        if ((n & 1) == 0) {
+            return 2;
+        }
+        final int batchSize = 128;
+        NumberTheory.Montgomery montgomery = new NumberTheory.Montgomery(n);
+        for (long c = 1;; c++) {
+            long cValue = montgomery.ToMontgomery(c);
+            long y = montgomery.ToMontgomery(2);
+            long x = y;
+            long ySaved = y;
+            long product = montgomery.One();
+            long g = 1;
+            for (long r = 1; g == 1; r *= 2) {
+                x = y;
+                for (long i = 0; i < r; i++) {
+                    y = NumberTheory.AddMod(montgomery.Multiply(y, y), cValue, n);
+                }
+                for (long k = 0; (k < r) && (g == 1); k += batchSize) {
+                    ySaved = y;
+                    long steps = Math.min(batchSize, r - k);
+                    for (long i = 0; i < steps; i++) {
+                        y = NumberTheory.AddMod(montgomery.Multiply(y, y), cValue, n);
+                        product = montgomery.Multiply(product, (x > y) ? x - y : y - x);
+                    }
+                    g = NumberTheory.GCD(product, n);
+                }
+            }
+            if (g == n) {
+                //the batch overshot, so step through it one value at a time
+                do {
+                    ySaved = NumberTheory.AddMod(montgomery.Multiply(ySaved, ySaved), cValue, n);
+                    g = NumberTheory.GCD((x > ySaved) ? x - ySaved : ySaved - x, n);
+                } while (g == 1);
+            }
+            if (g != n) {
+                return g;
+            }
+        }
+    }
+
+    /**
+     * Pollard-Brent rho for big numbers, giving up after a fixed number of iterations.  
+     * @return      A non-trivial factor, or null if none was found.  
+     */
+    protected static BigInteger RhoFactor(BigInteger n, int maxIterations) {
+        final int batchSize = 128;
+        BigInteger c = BigInteger.ONE;
+        BigInteger y = BigInteger.valueOf(2);
+        BigInteger x = y;
+        BigInteger ySaved = y;
+        BigInteger product = BigInteger.ONE;
+        BigInteger g = BigInteger.ONE;
+        int iterations = 0;
+        for (long r = 1; g.equals(BigInteger.ONE); r *= 2) {
+            x = y;
+            for (long i = 0; i < r; i++) {
+                y = y.multiply(y).add(c).mod(n);
+            }
+            for (long k = 0; (k < r) && g.equals(BigInteger.ONE); k += batchSize) {
+                ySaved = y;
+                long steps = Math.min(batchSize, r - k);
+                for (long i = 0; i < steps; i++) {
+                    y = y.multiply(y).add(c).mod(n);
+                    product = product.multiply(x.subtract(y)).mod(n);
+                }
+                g = product.gcd(n);
+                iterations += steps;
+            }
+            if (iterations > maxIterations) {
+                break;
+            }
+        }
+        if (g.equals(n)) {
+            do {
+                ySaved = ySaved.multiply(ySaved).add(c).mod(n);
+                g = x.subtract(ySaved).gcd(n);
+            } while (g.equals(BigInteger.ONE));
+        }
+        if (g.equals(BigInteger.ONE) || g.equals(n)) {
+            return null;
+        }
+        return g;
+    }
+
+    /**
+     * Lenstra's elliptic curve method.  Curves are run in batches on the worker threads, and the remaining curves in a batch are 
+     * cancelled once one of them finds a factor.  
+     */
+    protected static BigInteger EllipticCurveFactor(BigInteger n) {
+        Random random = new Random(n.hashCode());
+        int batchSize = 2 * WorkerPool.GetNumThreads();
+        for (int level = 0; level < ECM_BOUNDS.length; level++) {
+            int stageOneBound = ECM_BOUNDS[level];
+            long stageTwoBound = (long) stageOneBound * ECM_STAGE_TWO_RATIO;
+            long[] stageTwoPrimes = PrimeSieve.ListPrimes(stageOneBound + 1, stageTwoBound);
+            int[] stageOnePrimes = PrimeSieve.GetSmallPrimes(stageOneBound);
+
+            for (int curve = 0; curve < ECM_CURVES[level]; curve += batchSize) {
+                AtomicBoolean isFound = new AtomicBoolean(false);
+                Vector<Callable<BigInteger>> jobList = new Vector<Callable<BigInteger>>();
+                for (int i = 0; i < batchSize; i++) {
+                    long sigma = 6 + random.nextInt(Integer.MAX_VALUE - 6);
+                    jobList.add(new EllipticCurve(n, sigma, stageOneBound, stageOnePrimes, stageTwoPrimes, isFound));
+                }
+                Vector<BigInteger> resultList = WorkerPool.InvokeAll(jobList);
+                for (int i = 0; i < resultList.size(); i++) {
+                    BigInteger divisor = resultList.get(i);
+                    if (divisor != null) {
+                        return divisor;
+                    }
+                }
+            }
+        }
+        throw new ArithmeticException("Unable to find a factor of " + n);
+    }
+
+    /**
+     * One ECM curve in Montgomery form By^2 = x^3 + Ax^2 + x, chosen with Suyama's parametrization so that the group order is 
+     * divisible by 12.  Points are kept as projective (X : Z) pairs, which is all the Montgomery ladder needs.  
+     */
+    protected static class EllipticCurve implements Callable<BigInteger> {
+
+        //giant step spacings for stage 2
+        protected static final int SMALL_STEP = 210;
+        protected static final int LARGE_STEP = 2310;
+        protected BigInteger n;
+        protected long sigma;
+        protected int stageOneBound;
+        protected int[] stageOnePrimes;
+        protected long[] stageTwoPrimes;
+        protected AtomicBoolean isFound;
+        //(A + 2) / 4
+        protected BigInteger a24;
+
+        public EllipticCurve(BigInteger n, long sigma, int stageOneBound, int[] stageOnePrimes, long[] stageTwoPrimes, AtomicBoolean isFound) {
+            this.n = n;
+            this.sigma = sigma;
+            this.stageOneBound = stageOneBound;
+            this.stageOnePrimes = stageOnePrimes;
+            this.stageTwoPrimes = stageTwoPrimes;
+            this.isFound = isFound;
+        }
+
+        public BigInteger call() {
+            if (isFound.get()) {
+                return null;
+            }
+            BigInteger result = Run();
+            if (result != null) {
+                isFound.set(true);
+            }
+            return result;
+        }
+
+        /**
+         * Run both stages of the curve.  
+         * @return      A non-trivial factor, or null if this curve did not find one.  
+         */
+        protected BigInteger Run() {
+            //Suyama: u = sigma^2 - 5, v = 4 sigma, P = (u^3 : v^3), (A + 2) / 4 = (v - u)^3 (3u + v) / (16 u^3 v)
+            BigInteger bigSigma = BigInteger.valueOf(sigma);
+            BigInteger u = bigSigma.multiply(bigSigma).subtract(BigInteger.valueOf(5)).mod(n);
+            BigInteger v = bigSigma.shiftLeft(2).mod(n);
+            BigInteger uCubed = u.pow(3).mod(n);
+            BigInteger numerator = v.subtract(u).pow(3).multiply(u.multiply(BigInteger.valueOf(3)).add(v)).mod(n);
+            BigInteger denominator = uCubed.multiply(v).shiftLeft(4).mod(n);
+            BigInteger g = denominator.gcd(n);
+            if (!g.equals(BigInteger.ONE)) {
+                return g.equals(n) ? null : g;
+            }
+            a24 = numerator.multiply(denominator.modInverse(n)).mod(n);
+            BigInteger[] point = {uCubed, v.pow(3).mod(n)};
+
+            //stage 1: multiply by every prime power up to the bound
+            for (int i = 0; (i < stageOnePrimes.length) && (stageOnePrimes[i] <= stageOneBound); i++) {
+                if (((i & 255) == 0) && isFound.get()) {
+                    return null;
+                }
+                long p = stageOnePrimes[i];
+                long primePower = p;
+                while (primePower <= stageOneBound / p) {
+                    primePower *= p;
+                }
+                point = Multiply(point, primePower);
+            }
+            g = point[1].gcd(n);
+            if (!g.equals(BigInteger.ONE)) {
+                return g.equals(n) ? null : g;
+            }
+
+            g = StageTwo(point);
+            if (g.equals(BigInteger.ONE) || g.equals(n)) {
+                return null;
+            }
+            return g;
+        }
+
+        /**
+         * Standard continuation.  Each prime q in the stage 2 range is written as q = mD + j with |j| < D/2, and since 
+         * x(mD Q) = x(j Q) exactly when (mD - j) Q or (mD + j) Q is the identity modulo a factor, the cross products 
+         * X(mD Q) Z(j Q) - X(j Q) Z(mD Q) are accumulated and tested with a single gcd.  
+         */
+        protected BigInteger StageTwo(BigInteger[] point) {
+            if (stageTwoPrimes.length == 0) {
+                return BigInteger.ONE;
+            }
+            int step = (stageOneBound < 20 * LARGE_STEP) ? SMALL_STEP : LARGE_STEP;
+            int halfStep = step / 2;
+
+            //baby steps: j Q for odd j up to D/2
+            BigInteger[][] baby = new BigInteger[halfStep + 1][];
+            BigInteger[] doubled = Double(point);
+            baby[1] = point;
+            baby[3] = Add(doubled, point, point);
+            for (int j = 5; j <= halfStep; j += 2) {
+                baby[j] = Add(baby[j - 2], doubled, baby[j - 4]);
+            }
+
+            //giant steps: mD Q
+            long m = (stageTwoPrimes[0] + halfStep) / step;
+            BigInteger[] stepPoint = Multiply(point, step);
+            BigInteger[] giant = Multiply(point, m * step);
+            BigInteger[] giantPrevious = Multiply(point, (m - 1) * step);
+
+            BigInteger product = BigInteger.ONE;
+            for (int i = 0; i < stageTwoPrimes.length; i++) {
+                long q = stageTwoPrimes[i];
+                while (q > m * step + halfStep) {
+                    BigInteger[] next = Add(giant, stepPoint, giantPrevious);
+                    giantPrevious = giant;
+                    giant = next;
+                    m++;
+                    if (((m & 63) == 0) && isFound.get()) {
+                        return BigInteger.ONE;
+                    }
+                }
+                int j = (int) Math.abs(q - m * step);
+                BigInteger[] babyPoint = baby[j];
+                product = product.multiply(giant[0].multiply(babyPoint[1]).subtract(babyPoint[0].multiply(giant[1]))).mod(n);
+            }
+            return product.gcd(n);
+        }
+
+        //x-only doubling: X' = (X+Z)^2 (X-Z)^2, Z' = 4XZ ((X-Z)^2 + a24 4XZ)
+        protected BigInteger[] Double(BigInteger[] p) {
+            BigInteger sum = p[0].add(p[1]);
+            BigInteger difference = p[0].subtract(p[1]);
+            BigInteger sumSquared = sum.multiply(sum).mod(n);
+            BigInteger differenceSquared = difference.multiply(difference).mod(n);
+            BigInteger fourXZ = sumSquared.subtract(differenceSquared);
+            BigInteger x = sumSquared.multiply(differenceSquared).mod(n);
+            BigInteger z = fourXZ.multiply(differenceSquared.add(a24.multiply(fourXZ))).mod(n);
+            return new BigInteger[]{x, z};
+        }
+
+        //x-only differential addition of p and q, given their difference
+        protected BigInteger[] Add(BigInteger[] p, BigInteger[] q, BigInteger[] difference) {
+            BigInteger u = p[0].subtract(p[1]).multiply(q[0].add(q[1]));
+            BigInteger v = p[0].add(p[1]).multiply(q[0].subtract(q[1]));
+            BigInteger sum = u.add(v).mod(n);
+            BigInteger diff = u.subtract(v).mod(n);
+            BigInteger x = difference[1].multiply(sum).multiply(sum).mod(n);
+            BigInteger z = difference[0].multiply(diff).multiply(diff).mod(n);
+            return new BigInteger[]{x, z};
+        }
+
+        //Montgomery ladder
+        protected BigInteger[] Multiply(BigInteger[] p, long k) {
+            if (k == 1) {
+                return p;
+            }
+            BigInteger[] low = p;
+            BigInteger[] high = Double(p);
+            for (int bit = 62 - Long.numberOfLeadingZeros(k); bit >= 0; bit--) {
+                if (((k >>> bit) & 1) == 1) {
+                    low = Add(high, low, p);
+                    high = Double(high);
+                } else {
+                    high = Add(high, low, p);
+                    low = Double(low);
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Inverse of a square matrix.  Integer and decimal matrices are inverted exactly by fraction-free elimination (see 
+ * BareissElimination.GetFractionData), and machine real matrices by LU decomposition.  
+ * @author Allen Jordan
+ */
+public class InverseCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        Vector<Factor> rowList = GetSquareMatrixArgument(args, 0);
+        int size = rowList.size();
+
+        try {
+            BigInteger[][][] fractions = BareissElimination.GetFractionData(rowList, size, expressionToolset.GetMathContext());
+            if (fractions != null) {
+                //with the rows scaled to integers by D, solving (D m).x == D gives the inverse of m
+                BigInteger[] scales = BareissElimination.RowScales(fractions, null);
+                BigInteger[][] diagonal = BareissElimination.Identity(size);
+                for (int i = 0; i < size; i++) {
+                    diagonal[i][i] = scales[i];
+                }
+                BareissElimination elimination = new BareissElimination(BareissElimination.ScaleRows(fractions, scales), diagonal);
+                if (elimination.Determinant().signum() == 0) {
+                    throw new CommandException("Matrix is singular", GetName());
+                }
+                return new FMResult(ToMatrixFactor(elimination.Solve(expressionToolset.GetMathContext())));
+            }
+            double[] data = DenseMatrix.GetRealData(rowList, size);
+            if (data == null) {
+                return SymbolicResult(args);
+            }
+            LUDecomposition lu = new LUDecomposition(new DenseMatrix(size, size, data));
+            if (lu.IsSingular()) {
+                throw new CommandException("Matrix is singular", GetName());
+            }
+            DenseMatrix inverse = lu.Inverse();
+            if (!inverse.IsFinite()) {
+                throw new CommandException("Matrix is singular", GetName());
+            }
+            return new FMResult(inverse.ToFactor());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+
+import franklinmath.expression.*;
+
+/**
+ * An arithmetic sequence of values start, start + step, ... up to and including end, as used by Range, Table, Sum and Product.  
+ * Values are computed from their index rather than by repeated addition, so no list is stored and no rounding error accumulates.  
+ * @author Allen Jordan
+ */
+public final class IterationRange {
+
+    final private String variable;
+    final private FMNumber start, step;
+    final private long count;
+    final private boolean isInteger, isExact, isMachineReal;
+    final private long longStart, longStep;
+    final private double doubleStart, doubleStep;
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+    private static final BigDecimal DOUBLE_INTEGER_MAX = BigDecimal.valueOf(1L << 53);
+
+    /**
+     * Create a range of values.  
+     * @param variable  The iteration variable name, or null if there is none.
+     * @param start     The first value.
+     * @param end       The inclusive limit.
+     * @param step      The (non-zero) difference between consecutive values.
+     * @throws IllegalArgumentException     Thrown if the values are not real, or the step is zero.  
+     */
+    public IterationRange(String variable, FMNumber start, FMNumber end, FMNumber step) {
+        if (start.IsImaginary() || end.IsImaginary() || step.IsImaginary()) {
+            throw new IllegalArgumentException("Real range limits expected");
+        }
+        if (step.RealValue().signum() == 0) {
+            throw new IllegalArgumentException("Range step must be non-zero");
+        }
+        this.variable = variable;
+        this.start = start;
+        this.step = step;
+
+        BigDecimal span = end.RealValue().subtract(start.RealValue());
+        BigInteger steps = span.divide(step.RealValue(), 0, RoundingMode.FLOOR).toBigInteger();
+        if (steps.signum() < 0) {
+            count = 0;
+        } else if (steps.bitLength() < 63) {
+            count = steps.longValue() + 1;
+        } else {
+            throw new IllegalArgumentException("Range is too long");
+        }
+
+        BigDecimal last = start.RealValue().add(step.RealValue().multiply(new BigDecimal(Math.max(count - 1, 0))));
+        isExact = start.IsExactInteger() && step.IsExactInteger();
+        isMachineReal = !isExact || ((start.RealValue().abs().compareTo(DOUBLE_INTEGER_MAX) <= 0) && (last.abs().compareTo(DOUBLE_INTEGER_MAX) <= 0));
+        isInteger = start.IsExactInteger() && step.IsExactInteger() && IsMachineInteger(start.RealValue()) && IsMachineInteger(step.RealValue()) && IsMachineInteger(last);
+        longStart = isInteger ? start.RealValue().longValue() : 0;
+        longStep = isInteger ? step.RealValue().longValue() : 0;
+        doubleStart = start.RealValue().doubleValue();
+        doubleStep = step.RealValue().doubleValue();
+    }
+
+    public String GetVariable() {
+        return variable;
+    }
+
+    public long Count() {
+        return count;
+    }
+
+    /**
+     * Check whether every value in the range is an integer that fits in a long.  
+     */
+    public boolean IsInteger() {
+        return isInteger;
+    }
+
+    /**
+     * Check whether every value in the range is an exact integer, whether or not it fits in a long.  
+     */
+    public boolean IsExact() {
+        return isExact;
+    }
+
+    /**
+     * Check whether the values can be evaluated as machine reals.  
+     * This is true for inexact ranges, and for exact ranges whose values all convert to a double without rounding.  
+     */
+    public boolean IsMachineReal() {
+        return isMachineReal;
+    }
+
+    public long GetLong(long index) {
+        assert isInteger && (index >= 0) && (index < count);
+        return longStart + index * longStep;
+    }
+
+    public double GetDouble(long index) {
+        assert isMachineReal && (index >= 0) && (index < count);
+        if (isInteger) {
+            return longStart + index * longStep;
+        }
+        return doubleStart + index * doubleStep;
+    }
+
+    /**
+     * Get a value at full precision.  
+     */
+    public FMNumber GetNumber(long index) {
+        assert (index >= 0) && (index < count);
+        if (isInteger) {
+            return new FMNumber(longStart + index * longStep);
+        }
+        return new FMNumber(start.RealValue().add(step.RealValue().multiply(new BigDecimal(index))));
+    }
+
+    protected static boolean IsMachineInteger(BigDecimal value) {
+        return (value.compareTo(LONG_MIN) >= 0) && (value.compareTo(LONG_MAX) <= 0);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import franklinmath.expression.*;
+
+/**
+ * Krylov subspace solvers for sparse linear systems, each preconditioned by the inverse of the diagonal (Jacobi).  Only 
+ * matrix-vector products and a few vectors are needed, so memory scales with the number of non-zeros.  
+ * @author Allen Jordan
+ */
+public class IterativeSolver {
+
+    //relative residual at which the iteration stops
+    public static final double TOLERANCE = 1e-10;
+
+    //Prevent instantiation
+    protected IterativeSolver() {
+    }
+
+    protected static int MaxIterations(int size) {
+        return Math.max(1000, Math.min(10 * size, 100000));
+    }
+
+    //the inverse diagonal, with zero diagonal entries left unscaled
+    protected static double[] InverseDiagonal(SparseMatrix matrix) {
+        double[] diagonal = matrix.Diagonal();
+        for (int i = 0; i < diagonal.length; i++) {
+            diagonal[i] = (diagonal[i] != 0) ? 1 / diagonal[i] : 1;
+        }
+        return diagonal;
+    }
+
+    protected static double Dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Solve A x = b by the conjugate gradient method, for symmetric positive definite A.  
+     * @return  The solution, or null if the iteration did not converge.  
+     */
+    public static double[] ConjugateGradient(SparseMatrix matrix, double[] b) {
+        int n = b.length;
+        double[] inverseDiagonal = InverseDiagonal(matrix);
+        double[] x = new double[n];
+        double[] r = b.clone();
+        double[] z = new double[n];
+        double[] p = new double[n];
+        double[] q = new double[n];
+        double bNorm = Math.sqrt(Dot(b, b));
+        if (bNorm == 0) {
+            return x;
+        }
+
+        for (int i = 0; i < n; i++) {
+            z[i] = inverseDiagonal[i] * r[i];
+            p[i] = z[i];
+        }
+        double rz = Dot(r, z);
+        int maxIterations = MaxIterations(n);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            matrix.Multiply(p, q);
+            double pq = Dot(p, q);
+            if (pq <= 0) {
+                //the matrix is not positive definite
+                return null;
+            }
+            double alpha = rz / pq;
+            for (int i = 0; i < n; i++) {
+                x[i] += alpha * p[i];
+                r[i] -= alpha * q[i];
+            }
+            if (Math.sqrt(Dot(r, r)) <= TOLERANCE * bNorm) {
+                return x;
+            }
+            for (int i = 0; i < n; i++) {
+                z[i] = inverseDiagonal[i] * r[i];
+            }
+            double rzNew = Dot(r, z);
+            double beta = rzNew / rz;
+            rz = rzNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Solve A x = b by the stabilized biconjugate gradient method (BiCGSTAB), for general non-singular A.  
+     * @return  The solution, or null if the iteration broke down or did not converge.  
+     */
+    public static double[] BiConjugateGradientStabilized(SparseMatrix matrix, double[] b) {
+        int n = b.length;
+        double[] inverseDiagonal = InverseDiagonal(matrix);
+        double[] x = new double[n];
+        double[] r = b.clone();
+        double[] rHat = b.clone();
+        double[] p = new double[n];
+        double[] v = new double[n];
+        double[] s = new double[n];
+        double[] t = new double[n];
+        double[] y = new double[n];
+        double[] z = new double[n];
+        double bNorm = Math.sqrt(Dot(b, b));
+        if (bNorm == 0) {
+            return x;
+        }
+
+        double rho = 1, alpha = 1, omega = 1;
+        int maxIterations = MaxIterations(n);
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            double rhoNew = Dot(rHat, r);
+            if (rhoNew == 0) {
+                return null;
+            }
+            double beta = (rhoNew / rho) * (alpha / omega);
+            rho = rhoNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = r[i] + beta * (p[i] - omega * v[i]);
+                y[i] = inverseDiagonal[i] * p[i];
+            }
+            matrix.Multiply(y, v);
+            alpha = rho / Dot(rHat, v);
+            for (int i = 0; i < n; i++) {
+                s[i] = r[i] - alpha * v[i];
+            }
+            if (Math.sqrt(Dot(s, s)) <= TOLERANCE * bNorm) {
+                for (int i = 0; i < n; i++) {
+                    x[i] += alpha * y[i];
+                }
+                return x;
+            }
+            for (int i = 0; i < n; i++) {
+                z[i] = inverseDiagonal[i] * s[i];
+            }
+            matrix.Multiply(z, t);
+            double tt = Dot(t, t);
+            if (tt == 0) {
+                return null;
+            }
+            omega = Dot(t, s) / tt;
+            for (int i = 0; i < n; i++) {
+                x[i] += alpha * y[i] + omega * z[i];
+                r[i] = s[i] - omega * t[i];
+            }
+            if (Math.sqrt(Dot(r, r)) <= TOLERANCE * bNorm) {
+                return x;
+            }
+            if (omega == 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Base class for commands that evaluate an expression over an iterator list such as {i, a, b} or {i, a, b, step}.  The 
+ * arguments are held, so the iterator variable is local to the command.  
+ * The expression is compiled when possible, so most values are computed without building a new expression for each one.  
+ * @author Allen Jordan
+ */
+public abstract class IteratorCommand extends Command {
+
+    //largest list that will be generated
+    public static final long MAX_LIST_LENGTH = 1L << 25;
+
+    /**
+     * Iterator commands hold their arguments, so that the iterator variable is not replaced by any value it has outside of 
+     * the command.  
+     */
+    @Override
+    public boolean HoldsArguments() {
+        return true;
+    }
+
+    /**
+     * Get an iterator argument of the form {n}, {i, n}, {i, a, n} or {i, a, n, step}.  The limits are evaluated, and the 
+     * variable of the range is a local symbol (see LocalVariable) that stands for i in the body.  
+     * @param args      The function argument list, which is held.
+     * @param index     The index of the iterator argument.
+     * @return          The range, or null if the limits are not numbers.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected IterationRange GetIterationRange(Vector<Equation> args, int index, ExpressionToolset expressionToolset) throws CommandException {
+        try {
+            Vector<Expression> iterator = GetIterator(args, index, expressionToolset);
+            int size = iterator.size();
+            if ((size < 1) || (size > 4)) {
+                throw new CommandException("Invalid iterator (1 to 4 element list needed)", GetName());
+            }
+            String variable = null;
+            if (size > 1) {
+                SingleExpression variableSingle = iterator.get(0).GetSingle();
+                if ((variableSingle == null) || variableSingle.IsSingleNegative() || !variableSingle.SingleValue().IsSymbol()) {
+                    throw new CommandException("Invalid iterator (variable name needed)", GetName());
+                }
+                variable = LocalVariable(variableSingle.SingleValue().GetSymbol());
+            }
+
+            FMNumber start = FMNumber.ONE, step = FMNumber.ONE, end;
+            if (size <= 2) {
+                end = expressionToolset.Flatten(iterator.get(size - 1)).GetSingleNumber();
+            } else {
+                start = expressionToolset.Flatten(iterator.get(1)).GetSingleNumber();
+                end = expressionToolset.Flatten(iterator.get(2)).GetSingleNumber();
+                if (size == 4) {
+                    step = expressionToolset.Flatten(iterator.get(3)).GetSingleNumber();
+                }
+            }
+            if ((start == null) || (end == null) || (step == null)) {
+                return null;
+            }
+            return new IterationRange(variable, start, end, step);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (IllegalArgumentException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    //the held iterator list, evaluated first if it is not written out as a list (such as a variable holding one)
+    protected Vector<Expression> GetIterator(Vector<Equation> args, int index, ExpressionToolset expressionToolset) throws CommandException, ExpressionException, ExecutionException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        Equation argument = args.get(index);
+        if (!argument.IsExpression()) {
+            throw new CommandException("Equation invalid as argument", GetName());
+        }
+        SingleExpression single = argument.GetLHS().GetSingle();
+        if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsExprList()) {
+            single = expressionToolset.Flatten(argument.GetLHS()).GetSingle();
+        }
+        if ((single == null) || single.IsSingleNegative() || !(single.SingleValue().IsExprList() || single.SingleValue().IsPackedArray())) {
+            throw new CommandException("List argument expected", GetName());
+        }
+        return single.SingleValue().GetExprList();
+    }
+
+    /**
+     * The local symbol that stands for an iterator variable.  It can not be typed, so it never has a value.  
+     */
+    protected static String LocalVariable(String variable) {
+        return "$" + variable;
+    }
+
+    /**
+     * Get the expression to iterate over from the held first argument, evaluated with the iterator variable replaced by the 
+     * local symbol of the range.  
+     */
+    protected Expression GetBodyArgument(Vector<Equation> args, IterationRange range, ExpressionToolset expressionToolset) throws CommandException {
+        Equation body = args.get(0);
+        if (!body.IsExpression()) {
+            throw new CommandException("Equation invalid as argument", GetName());
+        }
+        try {
+            Expression expr = body.GetLHS();
+            if (range.GetVariable() != null) {
+                String variable = range.GetVariable().substring(1);
+                expr = expr.Replace(variable, new Expression(new Term(new Power(new Factor(range.GetVariable(), true))), TermOperator.NONE));
+            }
+            return expressionToolset.Flatten(expr);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Leave the command unevaluated when its limits are not numbers, keeping the held body and evaluating the limits.  
+     */
+    protected FMResult SymbolicResult(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        try {
+            Vector<Expression> iterator = GetIterator(args, 1, expressionToolset);
+            Vector<Expression> heldIterator = new Vector<Expression>(iterator.size());
+            for (int i = 0; i < iterator.size(); i++) {
+                if ((i == 0) && (iterator.size() > 1)) {
+                    heldIterator.add(iterator.get(0));
+                } else {
+                    heldIterator.add(expressionToolset.Flatten(iterator.get(i)));
+                }
+            }
+            Vector<Equation> resultArgs = new Vector<Equation>(2);
+            resultArgs.add(new Equation(args.get(0).GetLHS(), null));
+            resultArgs.add(new Equation(new Expression(new Term(new Power(new Factor(heldIterator))), TermOperator.NONE), null));
+            return new FMResult(new Factor(new SymbolicFunction(GetName(), resultArgs, isMathFunction)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Compile the iterated expression, returning null if it cannot be compiled.  
+     */
+    protected CompiledExpression CompileBody(Expression body, IterationRange range) throws ExpressionException {
+        if (range.GetVariable() == null) {
+            return null;
+        }
+        return CompiledExpression.Compile(body, range.GetVariable());
+    }
+
+    /**
+     * Evaluate a compiled integer expression exactly at one value where machine integers could not be used.  
+     */
+    protected Expression EvaluateExactAt(CompiledExpression compiled, Expression body, IterationRange range, long index, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        try {
+            FMNumber value = new FMNumber(compiled.EvaluateBigInteger(BigInteger.valueOf(range.GetLong(index))));
+            return new Expression(new Term(new Power(new Factor(value))), TermOperator.NONE);
+        } catch (ArithmeticException ex) {
+            return EvaluateAt(body, range, index, expressionToolset);
+        }
+    }
+
+    /**
+     * Evaluate the iterated expression at one value without compilation.  
+     */
+    protected Expression EvaluateAt(Expression body, IterationRange range, long index, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        if (range.GetVariable() == null) {
+            return expressionToolset.Flatten(body);
+        }
+        Expression value = new Expression(new Term(new Power(new Factor(range.GetNumber(index)))), TermOperator.NONE);
+        return expressionToolset.Flatten(body.Replace(range.GetVariable(), value));
+    }
+}
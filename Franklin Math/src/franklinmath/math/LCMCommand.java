@@ -0,0 +1,102 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Find the least common multiple of any number of integers, given directly or in lists.  
+ * @author Allen Jordan
+ */
+public class LCMCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        LCMVisitor lcm = new LCMVisitor();
+        try {
+            ReadIntegerArguments(args, lcm);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        try {
+            return new FMResult(new Factor(new FMNumber(lcm.Result())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Reduce integers to their least common multiple in one pass, using long arithmetic until the value overflows.  Reading 
+     * stops at a zero, since the multiple is then zero.  
+     */
+    public static class LCMVisitor extends IntegerVisitor {
+
+        protected long smallResult = 1;
+        protected BigInteger bigResult = null;
+        protected boolean isZero = false;
+
+        @Override
+        public boolean Visit(long value) {
+            if (value == 0) {
+                isZero = true;
+                return false;
+            }
+            if ((bigResult == null) && (value != Long.MIN_VALUE)) {
+                long smallValue = Math.abs(value);
+                long factor = smallValue / NumberTheory.GCD(smallResult, smallValue);
+                if (smallResult <= Long.MAX_VALUE / factor) {
+                    smallResult *= factor;
+                    return true;
+                }
+            }
+            return Visit(BigInteger.valueOf(value));
+        }
+
+        @Override
+        public boolean Visit(BigInteger value) {
+            value = value.abs();
+            if (value.signum() == 0) {
+                isZero = true;
+                return false;
+            }
+            if (bigResult == null) {
+                bigResult = BigInteger.valueOf(smallResult);
+            }
+            bigResult = bigResult.divide(bigResult.gcd(value)).multiply(value);
+            return true;
+        }
+
+        public BigInteger Result() {
+            if (isZero) {
+                return BigInteger.ZERO;
+            }
+            return (bigResult != null) ? bigResult : BigInteger.valueOf(smallResult);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import franklinmath.util.*;
+
+/**
+ * LU decomposition with partial pivoting of a square matrix of machine reals, computed in place with a blocked right-looking 
+ * algorithm.  Each panel of columns is factored directly, and the trailing submatrix (where almost all of the work is) is 
+ * then updated tile by tile on the worker threads.  
+ * @author Allen Jordan
+ */
+public final class LUDecomposition {
+
+    protected final int size;
+    //unit lower triangle (below the diagonal) and upper triangle, row-major
+    protected final double[] lu;
+    protected final int[] pivots;
+    protected boolean isSingular = false;
+    protected boolean isOddPermutation = false;
+
+    /**
+     * Factor a matrix.  
+     * @param matrix    The square matrix, which is not modified.  
+     */
+    public LUDecomposition(DenseMatrix matrix) {
+        assert matrix.NumRows() == matrix.NumColumns();
+        size = matrix.NumRows();
+        lu = matrix.GetData().clone();
+        pivots = new int[size];
+        Factor();
+    }
+
+    public boolean IsSingular() {
+        return isSingular;
+    }
+
+    protected void Factor() {
+        final int n = size;
+        final int blockSize = DenseMatrix.BLOCK_SIZE;
+        for (int k0 = 0; k0 < n; k0 += blockSize) {
+            final int kEnd = Math.min(n, k0 + blockSize);
+            FactorPanel(k0, kEnd);
+            if (kEnd >= n) {
+                break;
+            }
+
+            //solve for the block row of U to the right of the panel, using the unit lower triangle of the panel
+            for (int k = k0; k < kEnd; k++) {
+                for (int i = k + 1; i < kEnd; i++) {
+                    double lik = lu[i * n + k];
+                    if (lik != 0) {
+                        for (int j = kEnd; j < n; j++) {
+                            lu[i * n + j] -= lik * lu[k * n + j];
+                        }
+                    }
+                }
+            }
+
+            //update the trailing submatrix, A22 -= L21 * U12
+            final int panelStart = k0;
+            WorkerPool.ParallelForBlocks(kEnd, n, blockSize, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    for (int jj = kEnd; jj < n; jj += 4 * blockSize) {
+                        int jEnd = Math.min(n, jj + 4 * blockSize);
+                        for (int i = (int) blockStart; i < blockEnd; i++) {
+                            int row = i * n;
+                            for (int k = panelStart; k < kEnd; k++) {
+                                double lik = lu[row + k];
+                                if (lik == 0) {
+                                    continue;
+                                }
+                                int pivotRow = k * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    lu[row + j] -= lik * lu[pivotRow + j];
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    //unblocked elimination of columns [k0, kEnd), with row swaps applied to whole rows
+    protected void FactorPanel(int k0, int kEnd) {
+        int n = size;
+        for (int k = k0; k < kEnd; k++) {
+            int pivot = k;
+            double biggest = Math.abs(lu[k * n + k]);
+            for (int i = k + 1; i < n; i++) {
+                double value = Math.abs(lu[i * n + k]);
+                if (value > biggest) {
+                    biggest = value;
+                    pivot = i;
+                }
+            }
+            pivots[k] = pivot;
+            if (pivot != k) {
+                for (int j = 0; j < n; j++) {
+                    double temp = lu[k * n + j];
+                    lu[k * n + j] = lu[pivot * n + j];
+                    lu[pivot * n + j] = temp;
+                }
+                isOddPermutation = !isOddPermutation;
+            }
+            if (biggest == 0) {
+                //the rest of the column is already zero
+                isSingular = true;
+                continue;
+            }
+
+            double diagonal = lu[k * n + k];
+            for (int i = k + 1; i < n; i++) {
+                double lik = lu[i * n + k] / diagonal;
+                lu[i * n + k] = lik;
+                if (lik != 0) {
+                    for (int j = k + 1; j < kEnd; j++) {
+                        lu[i * n + j] -= lik * lu[k * n + j];
+                    }
+                }
+            }
+        }
+    }
+
+    public double Determinant() {
+        double result = isOddPermutation ? -1 : 1;
+        for (int i = 0; i < size; i++) {
+            result *= lu[i * size + i];
+        }
+        return result;
+    }
+
+    /**
+     * Solve A x = b for a single right hand side.  
+     * @param b     The right hand side, which is overwritten with the solution.  
+     */
+    public void Solve(double[] b) {
+        assert !isSingular;
+        int n = size;
+        for (int k = 0; k < n; k++) {
+            if (pivots[k] != k) {
+                double temp = b[k];
+                b[k] = b[pivots[k]];
+                b[pivots[k]] = temp;
+            }
+        }
+        for (int i = 1; i < n; i++) {
+            double sum = b[i];
+            for (int j = 0; j < i; j++) {
+                sum -= lu[i * n + j] * b[j];
+            }
+            b[i] = sum;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int j = i + 1; j < n; j++) {
+                sum -= lu[i * n + j] * b[j];
+            }
+            b[i] = sum / lu[i * n + i];
+        }
+    }
+
+    /**
+     * Solve A X = B for a matrix of right hand sides, with the columns solved on separate threads.  
+     * @param b     The right hand sides, with as many rows as A.  
+     * @return      The solutions.  
+     */
+    public DenseMatrix Solve(DenseMatrix b) {
+        assert b.NumRows() == size;
+        final DenseMatrix columns = b.Transpose();
+        WorkerPool.ParallelFor(0, columns.NumRows(), 1, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                double[] column = new double[size];
+                for (int j = (int) blockStart; j < blockEnd; j++) {
+                    System.arraycopy(columns.data, j * size, column, 0, size);
+                    Solve(column);
+                    System.arraycopy(column, 0, columns.data, j * size, size);
+                }
+            }
+        });
+        return columns.Transpose();
+    }
+
+    public DenseMatrix Inverse() {
+        return Solve(DenseMatrix.Identity(size));
+    }
+}
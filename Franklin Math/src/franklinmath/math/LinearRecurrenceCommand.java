@@ -0,0 +1,221 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Generate terms of a linear recurrence a[k] = c1*a[k-1] + ... + cd*a[k-d].  Requesting a single term ({n}) uses polynomial 
+ * exponentiation of x^(n-1) modulo the characteristic polynomial, which needs O(d^2 log n) exact operations.  
+ * @author Allen Jordan
+ */
+public class LinearRecurrenceCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 3);
+
+        BigDecimal[] kernel = ToExactArray(GetNumberListArgument(args, 0));
+        BigDecimal[] init = ToExactArray(GetNumberListArgument(args, 1));
+        if (kernel.length == 0) {
+            throw new CommandException("The kernel list is empty", GetName());
+        }
+        if (init.length != kernel.length) {
+            throw new CommandException("The initial value list must be the same length as the kernel", GetName());
+        }
+
+        try {
+            SingleExpression single = args.get(2).GetLHS().GetSingle();
+            if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsExprList()) {
+                //{n} gives only the nth term, {nmin, nmax} gives the terms in between
+                Vector<FMNumber> spec = GetNumberListArgument(args, 2);
+                if ((spec.size() != 1) && (spec.size() != 2)) {
+                    throw new CommandException("Invalid term specification", GetName());
+                }
+                long first = ToIndex(spec.get(0));
+                long last = ToIndex(spec.get(spec.size() - 1));
+                if ((first < 1) || (last < first)) {
+                    throw new CommandException("Invalid term specification", GetName());
+                }
+                if (spec.size() == 1) {
+                    return new FMResult(new Factor(new FMNumber(Term(kernel, init, first))));
+                }
+                //start the window at the first requested term, then step forward normally
+                int d = kernel.length;
+                BigDecimal[] window = new BigDecimal[d];
+                for (int i = 0; i < d; i++) {
+                    window[i] = Term(kernel, init, first + i);
+                }
+                return new FMResult(Generate(kernel, window, last - first + 1));
+            }
+
+            long count = ToIndex(GetNumberArgument(args, 2));
+            return new FMResult(Generate(kernel, init, count));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Step the recurrence forward, producing each term as it is computed.  
+     * @param kernel    The recurrence coefficients.  
+     * @param start     The first d terms of the sequence.  
+     * @param count     The number of terms to produce.  
+     * @return          The list of terms, packed when the terms are machine numbers.  
+     */
+    protected Factor Generate(BigDecimal[] kernel, BigDecimal[] start, long count) throws CommandException, ExpressionException {
+        if (count > Integer.MAX_VALUE) {
+            throw new CommandException("Too many terms requested", GetName());
+        }
+        int d = kernel.length;
+        Vector<Expression> termList = new Vector<Expression>((int) count);
+
+        //circular window of the last d terms, with windowStart holding the oldest
+        BigDecimal[] window = start.clone();
+        int windowStart = 0;
+        for (long k = 0; k < count; k++) {
+            BigDecimal value;
+            if (k < d) {
+                value = start[(int) k];
+            } else {
+                value = BigDecimal.ZERO;
+                for (int j = 0; j < d; j++) {
+                    //kernel[j] multiplies the term j+1 steps back
+                    value = value.add(kernel[j].multiply(window[(windowStart + d - 1 - j) % d]));
+                }
+                window[windowStart] = value;
+                windowStart = (windowStart + 1) % d;
+            }
+            termList.add(new Expression(new Term(new Power(new Factor(new FMNumber(value)))), TermOperator.NONE));
+        }
+        PackedArray packed = PackedArray.Pack(termList);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+        return new Factor(termList);
+    }
+
+    /**
+     * Calculate the nth term (1-based) of a linear recurrence exactly.  
+     * @param kernel    The recurrence coefficients.  
+     * @param init      The first d terms of the sequence.  
+     * @param n         The index of the term to calculate.  
+     * @return          The nth term.  
+     */
+    public static BigDecimal Term(BigDecimal[] kernel, BigDecimal[] init, long n) {
+        int d = kernel.length;
+        if (n <= d) {
+            return init[(int) n - 1];
+        }
+
+        //x^(n-1) reduced modulo x^d - c1*x^(d-1) - ... - cd gives the weights for the initial terms
+        BigDecimal[] base = new BigDecimal[d];
+        BigDecimal[] result = new BigDecimal[d];
+        for (int i = 0; i < d; i++) {
+            base[i] = BigDecimal.ZERO;
+            result[i] = BigDecimal.ZERO;
+        }
+        result[0] = BigDecimal.ONE;
+        if (d == 1) {
+            base[0] = kernel[0];
+        } else {
+            base[1] = BigDecimal.ONE;
+        }
+
+        long exponent = n - 1;
+        while (exponent > 0) {
+            if ((exponent & 1) == 1) {
+                result = MultiplyMod(result, base, kernel);
+            }
+            exponent >>>= 1;
+            if (exponent > 0) {
+                base = MultiplyMod(base, base, kernel);
+            }
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < d; i++) {
+            total = total.add(result[i].multiply(init[i]));
+        }
+        return total;
+    }
+
+    //multiply two polynomials of degree < d and reduce using x^d = c1*x^(d-1) + ... + cd
+    protected static BigDecimal[] MultiplyMod(BigDecimal[] p, BigDecimal[] q, BigDecimal[] kernel) {
+        int d = kernel.length;
+        BigDecimal[] product = new BigDecimal[2 * d - 1];
+        for (int i = 0; i < product.length; i++) {
+            product[i] = BigDecimal.ZERO;
+        }
+        for (int i = 0; i < d; i++) {
+            if (p[i].signum() == 0) {
+                continue;
+            }
+            for (int j = 0; j < d; j++) {
+                product[i + j] = product[i + j].add(p[i].multiply(q[j]));
+            }
+        }
+        for (int k = 2 * d - 2; k >= d; k--) {
+            BigDecimal coefficient = product[k];
+            if (coefficient.signum() == 0) {
+                continue;
+            }
+            for (int j = 1; j <= d; j++) {
+                product[k - j] = product[k - j].add(coefficient.multiply(kernel[j - 1]));
+            }
+        }
+        BigDecimal[] reduced = new BigDecimal[d];
+        System.arraycopy(product, 0, reduced, 0, d);
+        return reduced;
+    }
+
+    protected BigDecimal[] ToExactArray(Vector<FMNumber> numberList) throws CommandException {
+        BigDecimal[] values = new BigDecimal[numberList.size()];
+        for (int i = 0; i < values.length; i++) {
+            FMNumber number = numberList.get(i);
+            if (number.IsImaginary()) {
+                throw new CommandException("Real numbers expected", GetName());
+            }
+            values[i] = number.RealValue();
+        }
+        return values;
+    }
+
+    protected long ToIndex(FMNumber number) throws CommandException {
+        try {
+            if (number == null) {
+                throw new CommandException("Integer argument expected", GetName());
+            }
+            BigInteger value = number.toBigIntegerExact();
+            if ((value.signum() < 0) || (value.bitLength() > 62)) {
+                throw new CommandException("Index out of range", GetName());
+            }
+            return value.longValue();
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ArithmeticException ex) {
+            throw new CommandException("Integer argument expected", GetName());
+        }
+    }
+}
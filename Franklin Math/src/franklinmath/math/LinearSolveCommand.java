@@ -0,0 +1,198 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Solve the linear system m.x == b, where b is a vector or a matrix of right hand side columns.  Integer and decimal systems 
+ * are solved exactly by fraction-free elimination, and machine real systems by blocked LU decomposition.  Sparse systems are solved by 
+ * sparse LU decomposition or by an iterative method.  
+ * @author Allen Jordan
+ */
+public class LinearSolveCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        SparseMatrix sparse = GetSparseArgument(args, 0);
+        if (sparse != null) {
+            return SolveSparse(args, sparse);
+        }
+        CheckArgsLength(args, 2);
+        Vector<Factor> rowList = GetSquareMatrixArgument(args, 0);
+        int size = rowList.size();
+        Factor b = GetListArgument(args, 1);
+
+        try {
+            //a vector right hand side is read as a single row, which has the same layout as a single column
+            boolean isVector = IsVector(b);
+            Vector<Factor> rhsRows;
+            int numRhs;
+            if (isVector) {
+                if (b.ListLength() != size) {
+                    throw new CommandException("Incompatible dimensions", GetName());
+                }
+                rhsRows = new Vector<Factor>();
+                rhsRows.add(b);
+                numRhs = 1;
+            } else {
+                rhsRows = GetMatrixArgument(args, 1);
+                if (rhsRows.size() != size) {
+                    throw new CommandException("Incompatible dimensions", GetName());
+                }
+                numRhs = rhsRows.get(0).ListLength();
+            }
+
+            MathContext context = expressionToolset.GetMathContext();
+            BigInteger[][][] fractions = BareissElimination.GetFractionData(rowList, size, context);
+            BigInteger[][][] fractionRhs = (fractions == null) ? null : BareissElimination.GetFractionData(rhsRows, isVector ? size : numRhs, context);
+            if (fractionRhs != null) {
+                if (isVector) {
+                    BigInteger[][][] column = new BigInteger[size][1][];
+                    for (int i = 0; i < size; i++) {
+                        column[i][0] = fractionRhs[0][i];
+                    }
+                    fractionRhs = column;
+                }
+                //both sides are scaled by the same row scales, which clear the denominators of each equation
+                BigInteger[] scales = BareissElimination.RowScales(fractionRhs, BareissElimination.RowScales(fractions, null));
+                BareissElimination elimination = new BareissElimination(BareissElimination.ScaleRows(fractions, scales), BareissElimination.ScaleRows(fractionRhs, scales));
+                if (elimination.Determinant().signum() == 0) {
+                    throw new CommandException("Matrix is singular", GetName());
+                }
+                FMNumber[][] solution = elimination.Solve(expressionToolset.GetMathContext());
+                if (isVector) {
+                    Vector<Expression> exprList = new Vector<Expression>(size);
+                    for (int i = 0; i < size; i++) {
+                        exprList.add(ToExpression(new Factor(solution[i][0])));
+                    }
+                    return new FMResult(ToListFactor(exprList));
+                }
+                return new FMResult(ToMatrixFactor(solution));
+            }
+
+            double[] data = DenseMatrix.GetRealData(rowList, size);
+            double[] rhs = (data == null) ? null : DenseMatrix.GetRealData(rhsRows, isVector ? size : numRhs);
+            if (rhs == null) {
+                return SymbolicResult(args);
+            }
+            LUDecomposition lu = new LUDecomposition(new DenseMatrix(size, size, data));
+            if (lu.IsSingular()) {
+                throw new CommandException("Matrix is singular", GetName());
+            }
+            DenseMatrix solution;
+            if (isVector) {
+                lu.Solve(rhs);
+                solution = new DenseMatrix(size, 1, rhs);
+            } else {
+                solution = lu.Solve(new DenseMatrix(size, numRhs, rhs));
+            }
+            if (!solution.IsFinite()) {
+                throw new CommandException("Matrix is singular", GetName());
+            }
+            return new FMResult(isVector ? new Factor(new PackedArray(solution.GetData())) : solution.ToFactor());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Solve a sparse system for a vector right hand side.  The method may be given as a third argument: "Direct" for sparse 
+     * LU decomposition, "CG" for conjugate gradients (symmetric positive definite matrices) or "BiCGSTAB".  By default 
+     * symmetric matrices with a positive diagonal try conjugate gradients first, and everything else is factored.  
+     */
+    protected FMResult SolveSparse(Vector<Equation> args, SparseMatrix sparse) throws CommandException {
+        if ((args.size() < 2) || (args.size() > 3)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        String method = "Automatic";
+        if (args.size() == 3) {
+            try {
+                method = args.get(2).GetLHS().GetSingleString();
+            } catch (ExpressionException ex) {
+                method = null;
+            }
+            if (method == null) {
+                throw new CommandException("Method name expected", GetName());
+            }
+        }
+        if (sparse.NumRows() != sparse.NumColumns()) {
+            throw new CommandException("Square matrix expected", GetName());
+        }
+
+        try {
+            Factor b = GetListArgument(args, 1);
+            double[] rhs = IsVector(b) ? GetRealVector(b) : null;
+            if (rhs == null) {
+                throw new CommandException("Vector of real numbers expected", GetName());
+            }
+            if (rhs.length != sparse.NumRows()) {
+                throw new CommandException("Incompatible dimensions", GetName());
+            }
+
+            double[] solution = null;
+            if (method.equals("Automatic")) {
+                if (sparse.IsSymmetric() && HasPositiveDiagonal(sparse)) {
+                    solution = IterativeSolver.ConjugateGradient(sparse, rhs);
+                }
+                if (solution == null) {
+                    solution = SolveDirect(sparse, rhs);
+                }
+            } else if (method.equals("Direct")) {
+                solution = SolveDirect(sparse, rhs);
+            } else if (method.equals("CG")) {
+                solution = IterativeSolver.ConjugateGradient(sparse, rhs);
+            } else if (method.equals("BiCGSTAB")) {
+                solution = IterativeSolver.BiConjugateGradientStabilized(sparse, rhs);
+            } else {
+                throw new CommandException("Unknown method " + method, GetName());
+            }
+            if ((solution == null) || !ArrayKernels.AllFinite(solution, 0, solution.length)) {
+                throw new CommandException("The iteration did not converge", GetName());
+            }
+            return new FMResult(new Factor(new PackedArray(solution)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected double[] SolveDirect(SparseMatrix sparse, double[] rhs) throws CommandException {
+        SparseLU lu = new SparseLU(sparse);
+        if (lu.IsSingular()) {
+            throw new CommandException("Matrix is singular", GetName());
+        }
+        return lu.Solve(rhs);
+    }
+
+    protected static boolean HasPositiveDiagonal(SparseMatrix sparse) {
+        double[] diagonal = sparse.Diagonal();
+        for (int i = 0; i < diagonal.length; i++) {
+            if (diagonal[i] <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
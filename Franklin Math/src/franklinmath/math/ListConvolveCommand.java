@@ -0,0 +1,413 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Arrays;
+import java.util.Vector;
+import java.math.BigInteger;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Convolve a kernel with a list.  ListConvolve[ker, list] gives the sums of ker_r list_(s-r) where the kernel lies entirely 
+ * within the list, and ListConvolve[ker, list, k] gives the cyclic convolution with element k of the kernel aligned with 
+ * each element of the list.  Small problems are summed directly, and large ones are done with fast Fourier transforms.  
+ * Integer results are always exact.  Integers too large to round back from a single transform are split into signed digits 
+ * of a few bits, whose convolutions are small enough to round back exactly, and the digit convolutions are recombined 
+ * with big integers.  
+ * @author Allen Jordan
+ */
+public class ListConvolveCommand extends SignalCommand {
+
+    //direct summation is used when it needs at most this many times the operations of the transforms
+    protected static final double DIRECT_COST_RATIO = 4;
+    //integer results of a transform are rounded back to integers when they are below this bound, far inside double precision
+    protected static final int EXACT_ROUNDING_BITS = 40;
+    protected static final double EXACT_ROUNDING_BOUND = 1L << EXACT_ROUNDING_BITS;
+    //the most doubles the transformed digits may take, past which large integers are summed directly
+    protected static final long MAX_DIGIT_DOUBLES = 1L << 23;
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 2) || (args.size() > 3)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        PackedArray kernel = GetSignalArgument(args, 0);
+        PackedArray list = GetSignalArgument(args, 1);
+        if ((kernel == null) || (list == null)) {
+            return SymbolicResult(args);
+        }
+        int k = kernel.Length(), n = list.Length();
+        if ((k == 0) || (n == 0)) {
+            throw new CommandException("Input expression list is empty", GetName());
+        }
+        boolean isCyclic = (args.size() == 3);
+        int alignment = k;
+        if (isCyclic) {
+            long value = GetIntegerArgument(args, 2).longValue();
+            if ((value < 1) || (value > k)) {
+                throw new CommandException("Kernel alignment out of range", GetName());
+            }
+            alignment = (int) value;
+        } else if (k > n) {
+            throw new CommandException("Kernel is longer than the list", GetName());
+        }
+        //a correlation is a convolution with the kernel reversed
+        boolean isReversed = IsCorrelation();
+        if (isReversed && isCyclic) {
+            alignment = k - alignment + 1;
+        }
+        //result s is the sum of ker_r list_(s + offset - r), with the list index taken cyclically
+        int offset = alignment - 1;
+        int numOutputs = isCyclic ? n : n - k + 1;
+
+        try {
+            int fourierSize = FourierTransform.GoodSize(k + n - 1);
+            double fourierCost = 3.0 * fourierSize * (Math.log(fourierSize) / Math.log(2) + 1);
+            boolean isDirect = ((double) numOutputs * k) <= DIRECT_COST_RATIO * fourierCost;
+
+            if (kernel.IsInteger() && list.IsInteger()) {
+                long[] ker = kernel.GetLongData(), data = list.GetLongData();
+                if (isReversed) {
+                    ker = Reverse(ker);
+                }
+                if (isDirect) {
+                    try {
+                        return new FMResult(new Factor(new PackedArray(DirectInteger(ker, data, offset, numOutputs))));
+                    } catch (ArithmeticException ex) {
+                        //overflow, so sum exactly below
+                    }
+                } else {
+                    double bound = 0, largest = 0;
+                    for (int i = 0; i < k; i++) {
+                        bound += Math.abs((double) ker[i]);
+                    }
+                    for (int i = 0; i < n; i++) {
+                        largest = Math.max(largest, Math.abs((double) data[i]));
+                    }
+                    if (bound * largest < EXACT_ROUNDING_BOUND) {
+                        double[] result = Gather(FourierTransform.ConvolveReal(ArrayKernels.ToDoubleArray(ker), ArrayKernels.ToDoubleArray(data)), n, k, isCyclic, offset, numOutputs);
+                        long[] rounded = new long[numOutputs];
+                        for (int i = 0; i < numOutputs; i++) {
+                            rounded[i] = Math.round(result[i]);
+                        }
+                        return new FMResult(new Factor(new PackedArray(rounded)));
+                    }
+                }
+            }
+
+            //integers that overflow, or that are too large to pack, are convolved exactly
+            BigInteger[] exactKer = GetExactIntegerArgument(args, 0);
+            BigInteger[] exactData = (exactKer == null) ? null : GetExactIntegerArgument(args, 1);
+            if (exactData != null) {
+                if (isReversed) {
+                    exactKer = Reverse(exactKer);
+                }
+                BigInteger[] result = isDirect ? null : DigitConvolve(exactKer, exactData, isCyclic, offset, numOutputs);
+                if (result == null) {
+                    result = DirectExact(exactKer, exactData, offset, numOutputs);
+                }
+                return new FMResult(ExactResult(result));
+            }
+
+            if (kernel.IsComplex() || list.IsComplex()) {
+                double[] ker = ToComplexData(kernel), data = ToComplexData(list);
+                if (isReversed) {
+                    ker = ReverseComplex(ker);
+                }
+                double[] result;
+                if (isDirect) {
+                    result = DirectComplex(ker, data, offset, numOutputs);
+                } else {
+                    double[] full = FourierTransform.ConvolveComplex(ker, data);
+                    double[] real = new double[full.length / 2], imag = new double[full.length / 2];
+                    for (int i = 0; i < real.length; i++) {
+                        real[i] = full[2 * i];
+                        imag[i] = full[2 * i + 1];
+                    }
+                    real = Gather(real, n, k, isCyclic, offset, numOutputs);
+                    imag = Gather(imag, n, k, isCyclic, offset, numOutputs);
+                    result = new double[2 * numOutputs];
+                    for (int i = 0; i < numOutputs; i++) {
+                        result[2 * i] = real[i];
+                        result[2 * i + 1] = imag[i];
+                    }
+                }
+                return new FMResult(new Factor(new PackedArray(result, true)));
+            }
+
+            double[] ker = kernel.ToDoubleArray(), data = list.ToDoubleArray();
+            if (isReversed) {
+                ker = Reverse(ker);
+            }
+            double[] result;
+            if (isDirect) {
+                result = DirectReal(ker, data, offset, numOutputs);
+            } else {
+                result = Gather(FourierTransform.ConvolveReal(ker, data), n, k, isCyclic, offset, numOutputs);
+            }
+            return new FMResult(new Factor(new PackedArray(result)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected boolean IsCorrelation() {
+        return false;
+    }
+
+    //pick the wanted outputs from the full linear convolution, wrapping it around the list length for cyclic results
+    protected static double[] Gather(double[] full, int n, int k, boolean isCyclic, int offset, int numOutputs) {
+        double[] result = new double[numOutputs];
+        if (!isCyclic) {
+            System.arraycopy(full, k - 1, result, 0, numOutputs);
+            return result;
+        }
+        double[] cyclic = new double[n];
+        for (int i = 0; i < full.length; i++) {
+            cyclic[i % n] += full[i];
+        }
+        for (int s = 0; s < n; s++) {
+            result[s] = cyclic[(s + offset) % n];
+        }
+        return result;
+    }
+
+    protected static long[] DirectInteger(long[] ker, long[] data, int offset, int numOutputs) {
+        int n = data.length;
+        long[] result = new long[numOutputs];
+        for (int s = 0; s < numOutputs; s++) {
+            int index = (s + offset) % n;
+            long sum = 0;
+            for (int r = 0; r < ker.length; r++) {
+                sum = CompiledExpression.AddExact(sum, CompiledExpression.MultiplyExact(ker[r], data[index]));
+                index = (index == 0) ? n - 1 : index - 1;
+            }
+            result[s] = sum;
+        }
+        return result;
+    }
+
+    protected static BigInteger[] DirectExact(BigInteger[] ker, BigInteger[] data, int offset, int numOutputs) {
+        int n = data.length;
+        BigInteger[] result = new BigInteger[numOutputs];
+        for (int s = 0; s < numOutputs; s++) {
+            int index = (s + offset) % n;
+            BigInteger sum = BigInteger.ZERO;
+            for (int r = 0; r < ker.length; r++) {
+                sum = sum.add(ker[r].multiply(data[index]));
+                index = (index == 0) ? n - 1 : index - 1;
+            }
+            result[s] = sum;
+        }
+        return result;
+    }
+
+    /**
+     * Convolve exact integers with transforms.  Each integer is split into signed digits of b bits, in [-2^(b-1), 2^(b-1)), 
+     * with b small enough that every sum of digit products stays below the exact rounding bound.  The digits of each 
+     * position are transformed once, products of digit transforms with the same total position are added before one 
+     * inverse transform, and the rounded digit convolutions are recombined with big integers.  
+     * @return  The wanted outputs, or null if the transformed digits would take too much memory.  
+     */
+    protected static BigInteger[] DigitConvolve(BigInteger[] ker, BigInteger[] data, boolean isCyclic, int offset, int numOutputs) {
+        int k = ker.length, n = data.length;
+        int kerBits = MaxBitLength(ker), dataBits = MaxBitLength(data);
+        int termBits = 32 - Integer.numberOfLeadingZeros(Math.min(k, n));
+        int digitBits = 0, kerDigits = 0, dataDigits = 0;
+        for (int bits = 24; (bits >= 2) && (digitBits == 0); bits--) {
+            //a b bit value has at most ceil((b + 1) / bits) signed digits
+            kerDigits = kerBits / bits + 1;
+            dataDigits = dataBits / bits + 1;
+            int pairBits = 32 - Integer.numberOfLeadingZeros(Math.min(kerDigits, dataDigits));
+            if (2 * (bits - 1) + termBits + pairBits <= EXACT_ROUNDING_BITS) {
+                digitBits = bits;
+            }
+        }
+        int length = k + n - 1;
+        FourierTransform transform = FourierTransform.ForSize(FourierTransform.GoodSize(length));
+        int size = transform.Size();
+        if ((digitBits == 0) || ((long) (kerDigits + dataDigits + 1) * 2 * size > MAX_DIGIT_DOUBLES)) {
+            return null;
+        }
+        double[][] kerTransforms = TransformDigits(ker, kerDigits, digitBits, transform);
+        double[][] dataTransforms = TransformDigits(data, dataDigits, digitBits, transform);
+
+        //recombine from the highest digit position down
+        BigInteger[] full = new BigInteger[length];
+        Arrays.fill(full, BigInteger.ZERO);
+        double[] product = new double[2 * size];
+        for (int t = kerDigits + dataDigits - 2; t >= 0; t--) {
+            Arrays.fill(product, 0);
+            for (int i = Math.max(0, t - dataDigits + 1); i <= Math.min(t, kerDigits - 1); i++) {
+                double[] a = kerTransforms[i], b = dataTransforms[t - i];
+                for (int p = 0; p < 2 * size; p += 2) {
+                    product[p] += a[p] * b[p] - a[p + 1] * b[p + 1];
+                    product[p + 1] += a[p] * b[p + 1] + a[p + 1] * b[p];
+                }
+            }
+            transform.Transform(product, 1);
+            for (int s = 0; s < length; s++) {
+                full[s] = full[s].shiftLeft(digitBits).add(BigInteger.valueOf(Math.round(product[2 * s] / size)));
+            }
+        }
+
+        BigInteger[] result = new BigInteger[numOutputs];
+        if (!isCyclic) {
+            System.arraycopy(full, k - 1, result, 0, numOutputs);
+            return result;
+        }
+        BigInteger[] cyclic = new BigInteger[n];
+        Arrays.fill(cyclic, BigInteger.ZERO);
+        for (int i = 0; i < length; i++) {
+            cyclic[i % n] = cyclic[i % n].add(full[i]);
+        }
+        for (int s = 0; s < n; s++) {
+            result[s] = cyclic[(s + offset) % n];
+        }
+        return result;
+    }
+
+    //the transforms of each signed digit position of the values
+    protected static double[][] TransformDigits(BigInteger[] values, int numDigits, int bits, FourierTransform transform) {
+        double[][] digits = new double[numDigits][2 * transform.Size()];
+        long mask = (1L << bits) - 1, half = 1L << (bits - 1);
+        BigInteger bigMask = BigInteger.valueOf(mask);
+        for (int i = 0; i < values.length; i++) {
+            BigInteger bigValue = values[i];
+            long value = bigValue.longValue();
+            boolean isLong = (bigValue.bitLength() < 63);
+            for (int j = 0; j < numDigits; j++) {
+                long digit = (isLong ? value : bigValue.and(bigMask).longValue()) & mask;
+                if (digit >= half) {
+                    digit -= (1L << bits);
+                }
+                digits[j][2 * i] = digit;
+                if (isLong) {
+                    value = (value - digit) >> bits;
+                } else {
+                    bigValue = bigValue.subtract(BigInteger.valueOf(digit)).shiftRight(bits);
+                    if (bigValue.bitLength() < 63) {
+                        isLong = true;
+                        value = bigValue.longValue();
+                    }
+                }
+            }
+        }
+        for (int j = 0; j < numDigits; j++) {
+            transform.Transform(digits[j], -1);
+        }
+        return digits;
+    }
+
+    protected static int MaxBitLength(BigInteger[] values) {
+        int bits = 0;
+        for (int i = 0; i < values.length; i++) {
+            bits = Math.max(bits, values[i].bitLength());
+        }
+        return bits;
+    }
+
+    //exact integer results, packed when they all fit in a long
+    protected static Factor ExactResult(BigInteger[] values) {
+        long[] packed = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].bitLength() > 63) {
+                Vector<Expression> exprList = new Vector<Expression>(values.length);
+                for (int j = 0; j < values.length; j++) {
+                    exprList.add(new Expression(new Term(new Power(new Factor(new FMNumber(values[j])))), TermOperator.NONE));
+                }
+                return new Factor(exprList);
+            }
+            packed[i] = values[i].longValue();
+        }
+        return new Factor(new PackedArray(packed));
+    }
+
+    protected static double[] DirectReal(double[] ker, double[] data, int offset, int numOutputs) {
+        int n = data.length;
+        double[] result = new double[numOutputs];
+        for (int s = 0; s < numOutputs; s++) {
+            int index = (s + offset) % n;
+            double sum = 0;
+            for (int r = 0; r < ker.length; r++) {
+                sum += ker[r] * data[index];
+                index = (index == 0) ? n - 1 : index - 1;
+            }
+            result[s] = sum;
+        }
+        return result;
+    }
+
+    protected static double[] DirectComplex(double[] ker, double[] data, int offset, int numOutputs) {
+        int n = data.length / 2;
+        double[] result = new double[2 * numOutputs];
+        for (int s = 0; s < numOutputs; s++) {
+            int index = (s + offset) % n;
+            double sumR = 0, sumI = 0;
+            for (int r = 0; r < ker.length / 2; r++) {
+                double kr = ker[2 * r], ki = ker[2 * r + 1];
+                double dr = data[2 * index], di = data[2 * index + 1];
+                sumR += kr * dr - ki * di;
+                sumI += kr * di + ki * dr;
+                index = (index == 0) ? n - 1 : index - 1;
+            }
+            result[2 * s] = sumR;
+            result[2 * s + 1] = sumI;
+        }
+        return result;
+    }
+
+    protected static long[] Reverse(long[] data) {
+        long[] result = new long[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[data.length - 1 - i];
+        }
+        return result;
+    }
+
+    protected static BigInteger[] Reverse(BigInteger[] data) {
+        BigInteger[] result = new BigInteger[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[data.length - 1 - i];
+        }
+        return result;
+    }
+
+    protected static double[] Reverse(double[] data) {
+        double[] result = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[data.length - 1 - i];
+        }
+        return result;
+    }
+
+    protected static double[] ReverseComplex(double[] data) {
+        int length = data.length / 2;
+        double[] result = new double[data.length];
+        for (int i = 0; i < length; i++) {
+            result[2 * i] = data[2 * (length - 1 - i)];
+            result[2 * i + 1] = data[2 * (length - 1 - i) + 1];
+        }
+        return result;
+    }
+}
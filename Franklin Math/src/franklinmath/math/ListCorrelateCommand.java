@@ -0,0 +1,34 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+/**
+ * Correlate a kernel with a list.  ListCorrelate[ker, list] gives the sums of ker_r list_(s+r) where the kernel lies entirely 
+ * within the list, and ListCorrelate[ker, list, k] gives the cyclic correlation with element k of the kernel aligned with 
+ * each element of the list.  
+ * @author Allen Jordan
+ */
+public class ListCorrelateCommand extends ListConvolveCommand {
+
+    @Override
+    protected boolean IsCorrelation() {
+        return true;
+    }
+}
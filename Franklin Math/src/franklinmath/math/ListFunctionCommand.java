@@ -0,0 +1,128 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.BigInteger;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Base class for the higher order list commands (Map, Select, Apply, Fold and their relatives), which call a named function 
+ * on the elements of a list, and for the commands that take parts of lists.  The function can be a built in command or a 
+ * user function.  Several of these commands also work on lazy sequences, adding a stage to the sequence rather than forcing it.  
+ * @author Allen Jordan
+ */
+public abstract class ListFunctionCommand extends Command {
+
+    //the range that count arguments are clamped to
+    protected static final BigInteger MAX_COUNT = BigInteger.ONE.shiftLeft(62);
+    protected static final BigInteger MIN_COUNT = MAX_COUNT.negate();
+
+    /**
+     * Get an argument that is a lazy sequence.  
+     * @return  The sequence, or null if the argument is something else (which GetListArgument would force).  
+     */
+    protected LazySequence GetSequenceArgument(Vector<Equation> args, int index) throws CommandException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        Equation argument = args.get(index);
+        SingleExpression single = argument.IsExpression() ? argument.GetLHS().GetSingle() : null;
+        if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsLazySequence()) {
+            return null;
+        }
+        try {
+            return single.SingleValue().GetLazySequence();
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get the elements of a list, unpacking packed arrays.  
+     */
+    protected Vector<Expression> GetElements(Factor list) throws ExpressionException {
+        return list.IsPackedArray() ? list.GetPackedArray().ToExprList() : list.GetExprList();
+    }
+
+    /**
+     * Get an integer count argument, clamped to a range where adding a list length can not overflow.  
+     */
+    protected long GetCountArgument(Vector<Equation> args, int index) throws CommandException {
+        BigInteger count = GetIntegerArgument(args, index);
+        return count.max(MIN_COUNT).min(MAX_COUNT).longValue();
+    }
+
+    /**
+     * Get a list position argument, counting from 1 at the start or from -1 at the end.  
+     * @return  The zero based index.  
+     */
+    protected int GetPartArgument(Vector<Equation> args, int index, int length) throws CommandException {
+        long position = GetCountArgument(args, index);
+        if ((position == 0) || (Math.abs(position) > length)) {
+            throw new CommandException("Part index out of range", GetName());
+        }
+        return (int) ((position > 0) ? position - 1 : length + position);
+    }
+
+    /**
+     * Get an argument that is used as a list element.  
+     */
+    protected Expression GetElementArgument(Vector<Equation> args, int index) throws CommandException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        if (!args.get(index).IsExpression()) {
+            throw new CommandException("Equation invalid as argument", GetName());
+        }
+        return args.get(index).GetLHS();
+    }
+
+    /**
+     * Get the elements [start, end) of a list, keeping packed arrays packed.  
+     */
+    protected Factor ListPart(Factor list, int start, int end) throws ExpressionException {
+        if (list.IsPackedArray()) {
+            return new Factor(list.GetPackedArray().Slice(start, end));
+        }
+        return new Factor(new Vector<Expression>(list.GetExprList().subList(start, end)));
+    }
+
+    /**
+     * Build the result list, packed when every element is a machine number.  
+     */
+    protected FMResult ListResult(Vector<Expression> resultList) throws ExpressionException {
+        PackedArray packed = PackedArray.Pack(resultList);
+        if (packed != null) {
+            return new FMResult(new Factor(packed));
+        }
+        return new FMResult(new Factor(resultList));
+    }
+
+    /**
+     * Check whether an evaluated expression is the symbol True.  
+     */
+    protected static boolean IsTrue(Expression expr) throws ExpressionException {
+        SingleExpression single = expr.GetSingle();
+        return (single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsSymbol() && single.SingleValue().GetSymbol().equals("True");
+    }
+}
@@ -0,0 +1,34 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import franklinmath.plot.*;
+
+/**
+ * Plot a list of numbers against their positions, or a list of {x, y} pairs, as a line through the points in order.  
+ * @author Allen Jordan
+ */
+public class ListLinePlotCommand extends ListPlotCommand {
+
+    @Override
+    protected SeriesStyle GetSeriesStyle() {
+        return SeriesStyle.SOLID_LINE;
+    }
+}
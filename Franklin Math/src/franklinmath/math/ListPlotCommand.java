@@ -0,0 +1,114 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.plot.*;
+
+/**
+ * Plot a list of numbers against their positions, or a list of {x, y} pairs, as points.  The data is reduced to the 
+ * resolution of the plot before drawing (see PointDecimator), so very long packed arrays plot quickly.  
+ * @author Allen Jordan
+ */
+public class ListPlotCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        Factor list = GetListArgument(args, 0);
+
+        try {
+            if (list.ListLength() == 0) {
+                throw new CommandException("Input expression list is empty", GetName());
+            }
+            PackedArray xData = null, yData = null;
+            if (list.IsPackedArray()) {
+                yData = list.GetPackedArray();
+                if (yData.IsComplex()) {
+                    throw new CommandException("Real numbers expected", GetName());
+                }
+            } else {
+                PackedArray[] listData = GetListData(list.GetExprList());
+                xData = listData[0];
+                yData = listData[1];
+            }
+
+            Plot plot = new Plot();
+            PointDecimator decimator = new PointDecimator(xData, yData);
+            SeriesInfo info = new SeriesInfo();
+            info.SetXRange(decimator.GetXRange());
+            info.SetYRange(decimator.GetYRange());
+            info.SetSeriesStyle(GetSeriesStyle());
+            Vector<franklinmath.util.Point> points;
+            if (GetSeriesStyle() == SeriesStyle.POINTS) {
+                points = decimator.DecimatePoints(plot.GetInternalPlotWidth(), plot.GetInternalPlotHeight());
+            } else {
+                points = decimator.DecimateLine(plot.GetInternalPlotWidth());
+            }
+            plot.AddSeries(new SeriesData(info, points));
+            return new FMResult(plot.GetPlotImage());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * The style used to draw the series.  
+     */
+    protected SeriesStyle GetSeriesStyle() {
+        return SeriesStyle.POINTS;
+    }
+
+    /**
+     * Get the coordinates from a list of numbers or a list of {x, y} pairs.  
+     * @return  The x coordinates (null for a list of numbers) and the y coordinates.  
+     */
+    protected PackedArray[] GetListData(Vector<Expression> exprList) throws CommandException, ExpressionException {
+        int length = exprList.size();
+        boolean isPairList = (exprList.get(0).GetSingleNumber() == null);
+        double[] x = isPairList ? new double[length] : null, y = new double[length];
+        for (int i = 0; i < length; i++) {
+            if (isPairList) {
+                SingleExpression single = exprList.get(i).GetSingle();
+                Factor pair = ((single != null) && !single.IsSingleNegative()) ? single.SingleValue() : null;
+                if ((pair == null) || !pair.IsExprList() || (pair.ListLength() != 2)) {
+                    throw new CommandException("List of real numbers or {x, y} pairs expected", GetName());
+                }
+                Vector<Expression> pairList = pair.GetExprList();
+                x[i] = GetRealValue(pairList.get(0));
+                y[i] = GetRealValue(pairList.get(1));
+            } else {
+                y[i] = GetRealValue(exprList.get(i));
+            }
+        }
+        return new PackedArray[]{isPairList ? new PackedArray(x) : null, new PackedArray(y)};
+    }
+
+    protected double GetRealValue(Expression expr) throws CommandException, ExpressionException {
+        FMNumber number = expr.GetSingleNumber();
+        if ((number == null) || number.IsImaginary()) {
+            throw new CommandException("List of real numbers or {x, y} pairs expected", GetName());
+        }
+        return number.RealValue().doubleValue();
+    }
+}
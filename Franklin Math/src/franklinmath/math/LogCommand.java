@@ -47,4 +47,14 @@ public class LogCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double base, double x) {
+        return StrictMath.log(x) / StrictMath.log(base);
+    }
 }
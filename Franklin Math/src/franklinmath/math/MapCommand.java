@@ -0,0 +1,103 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Map[f, list] gives the list of f[element] for each element of a list.  A listable command already threads over a 
+ * packed array (with its machine kernel when it has one), so it is called once on the whole array instead.  
+ * @author Allen Jordan
+ */
+public class MapCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        String functionName = GetFunctionArgument(args, 0);
+        LazySequence sequence = GetSequenceArgument(args, 1);
+
+        try {
+            if (sequence != null) {
+                return new FMResult(new Factor(MapSequence(functionName, sequence, expressionToolset)));
+            }
+            Factor list = GetListArgument(args, 1);
+            if (list.IsPackedArray() && expressionToolset.IsListableFunction(functionName)) {
+                return new FMResult(ApplyFunction(functionName, args.get(1).GetLHS(), expressionToolset));
+            }
+            Vector<Expression> exprList = GetElements(list);
+            Expression[] elements = exprList.toArray(new Expression[exprList.size()]);
+            return ListResult(MapElements(functionName, elements, expressionToolset));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Add a mapping stage to a lazy sequence.  The function is only called as elements are pulled through, and any string 
+     * results it gives when the sequence is displayed later are dropped.  
+     */
+    protected LazySequence MapSequence(final String functionName, final LazySequence source, ExpressionToolset expressionToolset) {
+        final ExpressionToolset stageToolset = expressionToolset.CreateTaskToolset(null);
+        return new LazySequence() {
+
+            @Override
+            public boolean IsInfinite() {
+                return source.IsInfinite();
+            }
+
+            @Override
+            public Generator CreateGenerator() {
+                final Generator sourceGenerator = source.CreateGenerator();
+                return new Generator() {
+
+                    @Override
+                    public Expression Next() throws ExpressionException, ExecutionException {
+                        Expression element = sourceGenerator.Next();
+                        return (element != null) ? ApplyFunction(functionName, element, stageToolset) : null;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Call the function on every element, in order.  
+     */
+    protected Vector<Expression> MapElements(String functionName, Expression[] elements, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        return MapRange(functionName, elements, 0, elements.length, expressionToolset);
+    }
+
+    /**
+     * Call the function on the elements [start, end).  
+     */
+    protected Vector<Expression> MapRange(String functionName, Expression[] elements, int start, int end, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Vector<Expression> resultList = new Vector<Expression>(end - start);
+        for (int i = start; i < end; i++) {
+            resultList.add(ApplyFunction(functionName, elements[i], expressionToolset));
+        }
+        return resultList;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Base class for the linear algebra commands.  A matrix is a list of rows that all have the same length, and a vector is a 
+ * list whose elements are not lists.  
+ * @author Allen Jordan
+ */
+public abstract class MatrixCommand extends Command {
+
+    /**
+     * Get an argument that must be a matrix.  
+     * @param args      The function argument list.
+     * @param index     The index of the matrix argument.
+     * @return          The matrix rows.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected Vector<Factor> GetMatrixArgument(Vector<Equation> args, int index) throws CommandException {
+        Factor list = GetListArgument(args, index);
+        try {
+            Vector<Factor> rowList = DenseMatrix.GetRows(list);
+            if (rowList == null) {
+                throw new CommandException("Matrix argument expected", GetName());
+            }
+            return rowList;
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get an argument that must be a square matrix.  
+     */
+    protected Vector<Factor> GetSquareMatrixArgument(Vector<Equation> args, int index) throws CommandException {
+        Vector<Factor> rowList = GetMatrixArgument(args, index);
+        try {
+            if (rowList.get(0).ListLength() != rowList.size()) {
+                throw new CommandException("Square matrix expected", GetName());
+            }
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+        return rowList;
+    }
+
+    /**
+     * Get an argument if it is a sparse matrix.  
+     * @param args      The function argument list.
+     * @param index     The index of the argument.
+     * @return          The sparse matrix, or null if the argument is something else.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected SparseMatrix GetSparseArgument(Vector<Equation> args, int index) throws CommandException {
+        if (args.size() <= index) {
+            throw new CommandException("Too few arguments", GetName());
+        }
+        Equation argument = args.get(index);
+        if (!argument.IsExpression()) {
+            return null;
+        }
+        SingleExpression single = argument.GetLHS().GetSingle();
+        if ((single == null) || single.IsSingleNegative() || !single.SingleValue().IsSparseMatrix()) {
+            return null;
+        }
+        try {
+            return single.SingleValue().GetSparseMatrix();
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get an argument that must be a real symmetric matrix, which may be sparse.  
+     * @param args      The function argument list.
+     * @param index     The index of the matrix argument.
+     * @return          The matrix, or null if its entries are not all real numbers.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected DenseMatrix GetSymmetricArgument(Vector<Equation> args, int index) throws CommandException {
+        DenseMatrix matrix;
+        SparseMatrix sparse = GetSparseArgument(args, index);
+        if (sparse != null) {
+            if (sparse.NumRows() != sparse.NumColumns()) {
+                throw new CommandException("Square matrix expected", GetName());
+            }
+            matrix = new DenseMatrix(sparse.NumRows(), sparse.NumColumns(), sparse.ToDenseArray());
+        } else {
+            Vector<Factor> rowList = GetSquareMatrixArgument(args, index);
+            try {
+                double[] data = DenseMatrix.GetRealData(rowList, rowList.size());
+                if (data == null) {
+                    return null;
+                }
+                matrix = new DenseMatrix(rowList.size(), rowList.size(), data);
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.getMessage(), GetName());
+            }
+        }
+        if (!matrix.IsFinite() || !SymmetricEigensystem.Symmetrize(matrix)) {
+            throw new CommandException("Real symmetric matrix expected", GetName());
+        }
+        return matrix;
+    }
+
+    /**
+     * Get the elements of a vector as machine reals.  
+     * @return  The elements, or null if any element is not a real number.  
+     */
+    protected static double[] GetRealVector(Factor vector) throws ExpressionException {
+        Vector<Factor> rowList = new Vector<Factor>();
+        rowList.add(vector);
+        return DenseMatrix.GetRealData(rowList, vector.ListLength());
+    }
+
+    /**
+     * Check whether a list is a vector, meaning none of its elements are lists.  
+     */
+    protected static boolean IsVector(Factor list) throws ExpressionException {
+        if (list.IsPackedArray()) {
+            return true;
+        }
+        Vector<Expression> exprList = list.GetExprList();
+        for (int i = 0; i < exprList.size(); i++) {
+            SingleExpression single = exprList.get(i).GetSingle();
+            if ((single != null) && single.SingleValue().IsExprList()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the elements of each row as expressions.  
+     */
+    protected static Vector<Vector<Expression>> GetRowElements(Vector<Factor> rowList) throws ExpressionException {
+        Vector<Vector<Expression>> result = new Vector<Vector<Expression>>(rowList.size());
+        for (int i = 0; i < rowList.size(); i++) {
+            result.add(rowList.get(i).GetExprList());
+        }
+        return result;
+    }
+
+    /**
+     * Build a list factor, packed when possible.  
+     */
+    protected static Factor ToListFactor(Vector<Expression> exprList) throws ExpressionException {
+        PackedArray packed = PackedArray.Pack(exprList);
+        if (packed != null) {
+            return new Factor(packed);
+        }
+        return new Factor(exprList);
+    }
+
+    protected static Expression ToExpression(Factor factor) {
+        return new Expression(new Term(new Power(factor)), TermOperator.NONE);
+    }
+
+    /**
+     * Build a matrix factor from rows of numbers.  
+     */
+    protected static Factor ToMatrixFactor(FMNumber[][] numbers) throws ExpressionException {
+        Vector<Expression> rowList = new Vector<Expression>(numbers.length);
+        for (int i = 0; i < numbers.length; i++) {
+            Vector<Expression> row = new Vector<Expression>(numbers[i].length);
+            for (int j = 0; j < numbers[i].length; j++) {
+                row.add(ToExpression(new Factor(numbers[i][j])));
+            }
+            rowList.add(ToExpression(ToListFactor(row)));
+        }
+        return new Factor(rowList);
+    }
+
+    /**
+     * Build a matrix factor from row-major integers.  
+     */
+    protected static Factor ToMatrixFactor(long[] data, int numRows, int numColumns) {
+        Vector<Expression> rowList = new Vector<Expression>(numRows);
+        for (int i = 0; i < numRows; i++) {
+            long[] row = new long[numColumns];
+            System.arraycopy(data, i * numColumns, row, 0, numColumns);
+            rowList.add(ToExpression(new Factor(new PackedArray(row))));
+        }
+        return new Factor(rowList);
+    }
+
+    /**
+     * Leave the command unevaluated, for matrices that are not numeric.  
+     */
+    protected FMResult SymbolicResult(Vector<Equation> args) throws CommandException {
+        try {
+            return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -22,9 +22,10 @@ import java.util.Vector;
 
 import franklinmath.executor.*;
 import franklinmath.expression.*;
+import franklinmath.util.*;
 
 /**
- * Find the maximum number in a list.  
+ * Find the maximum number in a list, or of several numbers.  
  * @author Allen Jordan
  */
 public class MaxCommand extends Command {
@@ -32,16 +33,41 @@ public class MaxCommand extends Command {
     @Override
     public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
 
-        SingleExpression single = GetSingleArgument(args);
-        if (single.IsSingleNegative()) {
-            throw new CommandException("Invalid negative single expression", GetName());
-        }
-        Factor factor = single.SingleValue();
-        if (!factor.IsExprList()) {
-            throw new CommandException("Argument must be an expression list", GetName());
+        //several numbers are compared directly, so that Max[a, b] can be folded over a list
+        if (args.size() > 1) {
+            FMNumber biggest = null;
+            for (int i = 0; i < args.size(); i++) {
+                FMNumber value = GetNumberArgument(args, i);
+                if ((value == null) || value.IsImaginary()) {
+                    throw new CommandException("Real numbers expected", GetName());
+                }
+                if ((biggest == null) || (value.compareTo(biggest) > 0)) {
+                    biggest = value;
+                }
+            }
+            try {
+                return new FMResult(new Factor(biggest));
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
         }
+        CheckArgsLength(args, 1);
+        Factor factor = GetListArgument(args, 0);
 
         try {
+            //packed arrays are scanned directly
+            if (factor.IsPackedArray() && !factor.GetPackedArray().IsComplex()) {
+                PackedArray packed = factor.GetPackedArray();
+                if (packed.Length() <= 0) throw new CommandException("Input expression list is empty", GetName());
+                if (packed.IsOffHeap()) {
+                    return new FMResult(new Factor(ScanMaxOffHeap(packed)));
+                }
+                if (packed.IsInteger()) {
+                    return new FMResult(new Factor(ArrayKernels.MaxLong(packed.GetLongData(), 0, packed.Length())));
+                }
+                return new FMResult(new Factor(ArrayKernels.MaxDouble(packed.GetDoubleData(), 0, packed.Length())));
+            }
+
             Vector<Expression> exprList = factor.GetExprList();
             if (exprList.size() <= 0) throw new CommandException("Input expression list is empty", GetName());
             FMNumber biggest = exprList.get(0).GetSingleNumber();
@@ -55,4 +81,29 @@ public class MaxCommand extends Command {
             throw new CommandException(ex.toString(), GetName());
         }
     }
+
+    //off heap arrays are copied to the heap and scanned a block at a time
+    protected FMNumber ScanMaxOffHeap(PackedArray packed) {
+        int length = packed.Length();
+        int blockSize = Math.min(length, OffHeapStorage.BLOCK_SIZE);
+        if (packed.IsInteger()) {
+            long[] block = new long[blockSize];
+            long result = packed.GetOffHeapStorage().GetLong(0);
+            for (int start = 0; start < length; start += blockSize) {
+                int count = Math.min(blockSize, length - start);
+                packed.GetLongs(start, block, count);
+                result = Math.max(result, ArrayKernels.MaxLong(block, 0, count));
+            }
+            return new FMNumber(result);
+        }
+        double[] block = new double[blockSize];
+        double result = packed.GetDouble(0);
+        for (int start = 0; start < length; start += blockSize) {
+            int count = Math.min(blockSize, length - start);
+            packed.GetDoubles(start, block, count);
+            double blockResult = ArrayKernels.MaxDouble(block, 0, count);
+            result = (blockResult > result) ? blockResult : result;
+        }
+        return new FMNumber(result);
+    }
 }
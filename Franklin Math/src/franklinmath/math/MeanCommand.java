@@ -0,0 +1,51 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * The mean of a list of numbers.  The mean of integers is found from their exact sum.  
+ * @author Allen Jordan
+ */
+public class MeanCommand extends StatisticsCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        PackedArray packed = GetDataArgument(args, 0);
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+        try {
+            if (packed.IsInteger()) {
+                FMNumber sum = new FMNumber(ArrayKernels.SumLong(packed.GetLongData(), 0, packed.Length()));
+                return new FMResult(new Factor(sum.Divide(new FMNumber(packed.Length()), expressionToolset.GetMathContext())));
+            }
+            return new FMResult(new Factor(MomentAccumulator.Accumulate(packed).GetMean()));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.BigDecimal;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * The median of a list of numbers, or the mean of the two middle numbers for lists of even length.  The middle is found 
+ * by selection rather than by sorting.  
+ * @author Allen Jordan
+ */
+public class MedianCommand extends StatisticsCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        PackedArray packed = GetDataArgument(args, 0);
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+        try {
+            int n = packed.Length();
+            if ((n & 1) == 1) {
+                return new FMResult(new Factor(Statistics.OrderStatistics(packed, new int[]{n / 2}).GetNumber(0)));
+            }
+            PackedArray middle = Statistics.OrderStatistics(packed, new int[]{n / 2 - 1, n / 2});
+            if (middle.IsInteger()) {
+                //half of an integer is always exact
+                long[] data = middle.GetLongData();
+                BigDecimal sum = BigDecimal.valueOf(data[0]).add(BigDecimal.valueOf(data[1]));
+                return new FMResult(new Factor(new FMNumber(sum.divide(BigDecimal.valueOf(2)))));
+            }
+            return new FMResult(new Factor(0.5 * middle.GetDouble(0) + 0.5 * middle.GetDouble(1)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
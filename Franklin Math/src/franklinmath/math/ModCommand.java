@@ -19,12 +19,14 @@ along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
 package franklinmath.math;
 
 import java.util.Vector;
+import java.math.*;
 
 import franklinmath.executor.*;
 import franklinmath.expression.*;
 
 /**
- *
+ * Take the remainder of dividing the first argument by the second.  Integers are handled exactly, and the remainder has the 
+ * sign of the first argument.  
  * @author Allen Jordan
  */
 public class ModCommand extends Command {
@@ -42,7 +44,10 @@ public class ModCommand extends Command {
             FMNumber firstNumber = arg0.GetLHS().GetSingleNumber();
             FMNumber secondNumber = arg1.GetLHS().GetSingleNumber();
 
-            return new FMResult(new Factor(new FMNumber(firstNumber.doubleValue() % secondNumber.doubleValue())));
+            if (firstNumber.IsImaginary() || secondNumber.IsImaginary()) {
+                throw new Exception("Imaginary arguments invalid for this function");
+            }
+            return new FMResult(new Factor(Remainder(firstNumber, secondNumber)));
         } catch (Exception ex) {
             try {
                 return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
@@ -51,4 +56,40 @@ public class ModCommand extends Command {
             }
         }
     }
+
+    /**
+     * The remainder of a / b for real numbers, with the sign of a (like the % operator).  
+     */
+    public static FMNumber Remainder(FMNumber a, FMNumber b) {
+        if (a.IsExactInteger() && b.IsExactInteger()) {
+            BigInteger bigA = a.RealValue().toBigInteger();
+            BigInteger bigB = b.RealValue().toBigInteger();
+            if ((bigA.bitLength() < 64) && (bigB.bitLength() < 64)) {
+                return new FMNumber(bigA.longValue() % bigB.longValue());
+            }
+            return new FMNumber(bigA.remainder(bigB));
+        }
+        return new FMNumber(a.RealValue().remainder(b.RealValue()));
+    }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public boolean HasIntegerKernel() {
+        return true;
+    }
+
+    //the % operator keeps the sign of the dividend, like Remainder
+    @Override
+    public double EvaluateReal(double x, double y) {
+        return x % y;
+    }
+
+    @Override
+    public long EvaluateInteger(long x, long y) {
+        return x % y;
+    }
 }
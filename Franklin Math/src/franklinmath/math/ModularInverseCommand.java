@@ -0,0 +1,74 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Find the inverse of an integer modulo another integer.  
+ * @author Allen Jordan
+ */
+public class ModularInverseCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        BigInteger a = null, modulus = null;
+        try {
+            a = GetIntegerArgument(args, 0);
+            modulus = GetIntegerArgument(args, 1);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        if (modulus.signum() == 0) {
+            throw new CommandException("Modulus must be non-zero", GetName());
+        }
+        try {
+            BigInteger result = null;
+            BigInteger absModulus = modulus.abs();
+            if ((a.bitLength() < 64) && (absModulus.bitLength() < 64)) {
+                long inverse = NumberTheory.ModularInverse(a.longValue(), absModulus.longValue());
+                if (inverse < 0) {
+                    throw new CommandException("Argument is not invertible for this modulus", GetName());
+                }
+                result = BigInteger.valueOf(inverse);
+            } else {
+                result = a.modInverse(absModulus);
+            }
+            if ((modulus.signum() < 0) && (result.signum() != 0)) {
+                result = result.add(modulus);
+            }
+            return new FMResult(new Factor(new FMNumber(result)));
+        } catch (ArithmeticException ex) {
+            throw new CommandException("Argument is not invertible for this modulus", GetName());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Accumulates the count, mean and second and third central moments of a stream of machine reals in one pass.  Values are added 
+ * with Welford's update, whole blocks can be added at once, and accumulators for separate parts of a list can be combined 
+ * (Chan and Pebay's formulas), so long lists are split across the worker threads.  
+ * @author Allen Jordan
+ */
+public final class MomentAccumulator {
+
+    //blocks handed to each worker, and the chunks within them that stay in the cache between the two passes of AddBlock
+    protected static final int PARALLEL_BLOCK_SIZE = 1 << 16;
+    protected static final int CHUNK_SIZE = 2048;
+    protected long count = 0;
+    protected double mean = 0, m2 = 0, m3 = 0;
+
+    public void Add(double value) {
+        long previousCount = count;
+        count++;
+        double delta = value - mean;
+        double deltaN = delta / count;
+        double term = delta * deltaN * previousCount;
+        mean += deltaN;
+        m3 += term * deltaN * (count - 2) - 3 * deltaN * m2;
+        m2 += term;
+    }
+
+    /**
+     * Add a range of values.  The range is processed in chunks: the mean of each chunk is found first, then its centered 
+     * moments are summed while the chunk is still in the cache, and the chunk is combined with the running moments.  
+     */
+    public void AddBlock(double[] data, int start, int end) {
+        for (int chunkStart = start; chunkStart < end; chunkStart += CHUNK_SIZE) {
+            int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+            int length = chunkEnd - chunkStart;
+            double sum = 0;
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                sum += data[i];
+            }
+            double chunkMean = sum / length;
+            double s1 = 0, s2 = 0, s3 = 0;
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                double d = data[i] - chunkMean;
+                double d2 = d * d;
+                s1 += d;
+                s2 += d2;
+                s3 += d2 * d;
+            }
+            CombineChunk(length, chunkMean, s1, s2, s3);
+        }
+    }
+
+    /**
+     * Add a range of integers, as machine reals.  
+     */
+    public void AddBlock(long[] data, int start, int end) {
+        for (int chunkStart = start; chunkStart < end; chunkStart += CHUNK_SIZE) {
+            int chunkEnd = Math.min(end, chunkStart + CHUNK_SIZE);
+            int length = chunkEnd - chunkStart;
+            double sum = 0;
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                sum += (double) data[i];
+            }
+            double chunkMean = sum / length;
+            double s1 = 0, s2 = 0, s3 = 0;
+            for (int i = chunkStart; i < chunkEnd; i++) {
+                double d = (double) data[i] - chunkMean;
+                double d2 = d * d;
+                s1 += d;
+                s2 += d2;
+                s3 += d2 * d;
+            }
+            CombineChunk(length, chunkMean, s1, s2, s3);
+        }
+    }
+
+    //combine a chunk given its rounded mean and the sums of the first three powers of the deviations from it
+    protected void CombineChunk(int length, double chunkMean, double s1, double s2, double s3) {
+        //s1 is the rounding error of the chunk mean, which corrects the mean and the centered moments
+        double shift = s1 / length;
+        double chunkM2 = s2 - s1 * shift;
+        double chunkM3 = s3 - 3 * shift * s2 + 2 * s1 * shift * shift;
+        Combine(length, chunkMean + shift, chunkM2, chunkM3);
+    }
+
+    /**
+     * Combine the moments of another part of the list into this one.  
+     */
+    public void Combine(MomentAccumulator other) {
+        Combine(other.count, other.mean, other.m2, other.m3);
+    }
+
+    protected void Combine(long otherCount, double otherMean, double otherM2, double otherM3) {
+        if (otherCount == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = otherCount;
+            mean = otherMean;
+            m2 = otherM2;
+            m3 = otherM3;
+            return;
+        }
+        double n1 = count, n2 = otherCount, n = n1 + n2;
+        double delta = otherMean - mean;
+        double deltaN = delta / n;
+        m3 += otherM3 + delta * deltaN * deltaN * n1 * n2 * (n1 - n2) + 3 * deltaN * (n1 * otherM2 - n2 * m2);
+        m2 += otherM2 + delta * deltaN * n1 * n2;
+        mean += deltaN * n2;
+        count += otherCount;
+    }
+
+    public long GetCount() {
+        return count;
+    }
+
+    public double GetMean() {
+        return mean;
+    }
+
+    /**
+     * The unbiased sample variance, sum((x - mean)^2) / (n - 1).  
+     */
+    public double GetVariance() {
+        return (count > 1) ? m2 / (count - 1) : Double.NaN;
+    }
+
+    /**
+     * The skewness m3 / m2^(3/2), using the population central moments m2 and m3.  
+     */
+    public double GetSkewness() {
+        return Math.sqrt((double) count) * m3 / Math.pow(m2, 1.5);
+    }
+
+    /**
+     * Find the moments of a real (integer or machine real) packed array, splitting long arrays across the worker threads.  The 
+     * blocks are fixed in size and combined in order, so the result does not depend on the number of threads.  
+     */
+    public static MomentAccumulator Accumulate(final PackedArray packed) throws ExpressionException {
+        assert !packed.IsComplex();
+        //off heap arrays are copied a block at a time rather than all at once
+        final boolean isOffHeap = packed.IsOffHeap();
+        final long[] longData = (packed.IsInteger() && !isOffHeap) ? packed.GetLongData() : null;
+        final double[] doubleData = (packed.IsInteger() || isOffHeap) ? null : packed.GetDoubleData();
+        int length = packed.Length();
+        final MomentAccumulator[] blockMoments = new MomentAccumulator[(length + PARALLEL_BLOCK_SIZE - 1) / PARALLEL_BLOCK_SIZE];
+        WorkerPool.ParallelForBlocks(0, length, PARALLEL_BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                MomentAccumulator moments = new MomentAccumulator();
+                int blockLength = (int) (blockEnd - blockStart);
+                if (isOffHeap && packed.IsInteger()) {
+                    long[] block = new long[blockLength];
+                    packed.GetLongs((int) blockStart, block, blockLength);
+                    moments.AddBlock(block, 0, blockLength);
+                } else if (isOffHeap) {
+                    double[] block = new double[blockLength];
+                    packed.GetDoubles((int) blockStart, block, blockLength);
+                    moments.AddBlock(block, 0, blockLength);
+                } else if (longData != null) {
+                    moments.AddBlock(longData, (int) blockStart, (int) blockEnd);
+                } else {
+                    moments.AddBlock(doubleData, (int) blockStart, (int) blockEnd);
+                }
+                blockMoments[(int) (blockStart / PARALLEL_BLOCK_SIZE)] = moments;
+            }
+        });
+        MomentAccumulator result = new MomentAccumulator();
+        for (int i = 0; i < blockMoments.length; i++) {
+            result.Combine(blockMoments[i]);
+        }
+        return result;
+    }
+}
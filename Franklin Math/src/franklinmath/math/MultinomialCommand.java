@@ -0,0 +1,64 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Calculate the exact multinomial coefficient (n1 + n2 + ...)! / (n1! n2! ...) of any number of non-negative integers.  
+ * @author Allen Jordan
+ */
+public class MultinomialCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        BigInteger[] values = new BigInteger[args.size()];
+        try {
+            for (int i = 0; i < args.size(); i++) {
+                values[i] = GetIntegerArgument(args, i);
+            }
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        long[] longValues = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].bitLength() > 62) {
+                throw new CommandException("Argument is too large", GetName());
+            }
+            longValues[i] = values[i].longValue();
+        }
+        try {
+            return new FMResult(new Factor(new FMNumber(Combinatorics.Multinomial(longValues))));
+        } catch (IllegalArgumentException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
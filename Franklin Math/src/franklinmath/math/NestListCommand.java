@@ -0,0 +1,95 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * NestList[f, x, n] gives the list {x, f[x], f[f[x]], ...} of n + 1 elements.  NestList[f, x] gives the infinite lazy 
+ * sequence of the same values, each computed from the one before only when it is needed.  
+ * @author Allen Jordan
+ */
+public class NestListCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 2) || (args.size() > 3)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        String functionName = GetFunctionArgument(args, 0);
+        if (!args.get(1).IsExpression()) {
+            throw new CommandException("Equation invalid as argument", GetName());
+        }
+        Expression start = args.get(1).GetLHS();
+
+        try {
+            if (args.size() == 2) {
+                return new FMResult(new Factor(NestSequence(functionName, start, expressionToolset)));
+            }
+            long count = GetCountArgument(args, 2);
+            if ((count < 0) || (count >= LazySequence.MAX_LIST_LENGTH)) {
+                throw new CommandException("Invalid series length", GetName());
+            }
+            Vector<Expression> resultList = new Vector<Expression>((int) count + 1);
+            Expression current = start;
+            resultList.add(current);
+            for (long i = 0; i < count; i++) {
+                current = ApplyFunction(functionName, current, expressionToolset);
+                resultList.add(current);
+            }
+            return ListResult(resultList);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Create the lazy sequence of repeated calls, starting from the given value.  
+     */
+    protected LazySequence NestSequence(final String functionName, final Expression start, ExpressionToolset expressionToolset) {
+        final ExpressionToolset stageToolset = expressionToolset.CreateTaskToolset(null);
+        return new LazySequence() {
+
+            @Override
+            public boolean IsInfinite() {
+                return true;
+            }
+
+            @Override
+            public Generator CreateGenerator() {
+                return new Generator() {
+
+                    protected Expression current = null;
+
+                    @Override
+                    public Expression Next() throws ExpressionException, ExecutionException {
+                        current = (current == null) ? start : ApplyFunction(functionName, current, stageToolset);
+                        return current;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Convert a sparse matrix to an ordinary (dense) matrix.  Anything else is returned unchanged.  
+ * @author Allen Jordan
+ */
+public class NormalCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        SparseMatrix sparse = GetSparseArgument(args, 0);
+        if (sparse == null) {
+            Equation argument = args.get(0);
+            return argument.IsExpression() ? new FMResult(argument.GetLHS()) : new FMResult(argument);
+        }
+        try {
+            return new FMResult(new DenseMatrix(sparse.NumRows(), sparse.NumColumns(), sparse.ToDenseArray()).ToFactor());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+
+/**
+ * Integer arithmetic helpers shared by the number theory commands.  Numbers that fit in a long are handled without BigInteger, 
+ * using Montgomery multiplication when the products would overflow 64 bits.  
+ * @author Allen Jordan
+ */
+public class NumberTheory {
+
+    //products of two values below this limit fit in a signed long
+    public static final long SMALL_MODULUS_LIMIT = 3037000499L;
+    //the Miller-Rabin bases {2, 325, 9375, 28178, 450775, 9780504, 1795265022} are deterministic for every 64 bit number
+    protected static final long[] LARGE_WITNESSES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+    //the bases {2, 7, 61} are deterministic below 4759123141
+    protected static final long[] SMALL_WITNESSES = {2, 7, 61};
+    protected static final int[] TRIAL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47};
+    //certainty used for primality tests on numbers too big for a long
+    public static final int BIG_CERTAINTY = 50;
+
+    //Prevent instantiation
+    protected NumberTheory() {
+    }
+
+    /**
+     * Montgomery arithmetic for a fixed odd modulus below 2^63.  Values passed to Multiply and Power must already be in Montgomery form.  
+     */
+    public static final class Montgomery {
+
+        final private long modulus;
+        //-modulus^-1 mod 2^64
+        final private long negativeInverse;
+        //2^64 mod modulus and 2^128 mod modulus
+        final private long rModulus,  rSquaredModulus;
+
+        public Montgomery(long modulus) {
+            assert ((modulus & 1) == 1) && (modulus > 1);
+            this.modulus = modulus;
+
+            //Newton iteration doubles the number of correct low bits each step (an odd number is its own inverse mod 8)
+            long inverse = modulus;
+            for (int i = 0; i < 5; i++) {
+                inverse *= 2 - modulus * inverse;
+            }
+            negativeInverse = -inverse;
+
+            long r = ((Long.MAX_VALUE % modulus) + 1) % modulus;
+            r = AddMod(r, r, modulus);
+            rModulus = r;
+            //double 2^64 another 64 times to reach 2^128
+            for (int i = 0; i < 64; i++) {
+                r = AddMod(r, r, modulus);
+            }
+            rSquaredModulus = r;
+        }
+
+        public long GetModulus() {
+            return modulus;
+        }
+
+        public long One() {
+            return rModulus;
+        }
+
+        public long ToMontgomery(long value) {
+            return Multiply(value % modulus, rSquaredModulus);
+        }
+
+        public long FromMontgomery(long value) {
+            return Reduce(0, value);
+        }
+
+        public long Multiply(long a, long b) {
+            return Reduce(MultiplyHighUnsigned(a, b), a * b);
+        }
+
+        public long Power(long base, long exponent) {
+            long result = rModulus;
+            while (exponent > 0) {
+                if ((exponent & 1) == 1) {
+                    result = Multiply(result, base);
+                }
+                exponent >>>= 1;
+                base = Multiply(base, base);
+            }
+            return result;
+        }
+
+        //REDC: divide the 128 bit value (high, low) by 2^64 modulo the modulus
+        protected long Reduce(long high, long low) {
+            long u = low * negativeInverse;
+            long result = high + MultiplyHighUnsigned(u, modulus) + ((low != 0) ? 1 : 0);
+            if ((result < 0) || (result >= modulus)) {
+                result -= modulus;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The upper 64 bits of the unsigned 128 bit product of two longs.  
+     */
+    public static long MultiplyHighUnsigned(long a, long b) {
+        long aLow = a & 0xFFFFFFFFL;
+        long aHigh = a >>> 32;
+        long bLow = b & 0xFFFFFFFFL;
+        long bHigh = b >>> 32;
+        long lowLow = aLow * bLow;
+        long highLow = aHigh * bLow;
+        long lowHigh = aLow * bHigh;
+        //this sum can not overflow 64 unsigned bits
+        long cross = (lowLow >>> 32) + (highLow & 0xFFFFFFFFL) + lowHigh;
+        return aHigh * bHigh + (highLow >>> 32) + (cross >>> 32);
+    }
+
+    /**
+     * Add two values already reduced modulo a positive modulus, without overflow.  
+     */
+    public static long AddMod(long a, long b, long modulus) {
+        long result = a - (modulus - b);
+        if (result < 0) {
+            result += modulus;
+        }
+        return result;
+    }
+
+    /**
+     * Multiply two values modulo a positive modulus.  
+     */
+    public static long MultiplyMod(long a, long b, long modulus) {
+        a %= modulus;
+        b %= modulus;
+        if (a < 0) {
+            a += modulus;
+        }
+        if (b < 0) {
+            b += modulus;
+        }
+        if (modulus <= SMALL_MODULUS_LIMIT) {
+            return (a * b) % modulus;
+        }
+        if ((modulus & 1) == 1) {
+            Montgomery montgomery = new Montgomery(modulus);
+            //one operand in Montgomery form and one in normal form gives a normal form product
+            return montgomery.Multiply(montgomery.ToMontgomery(a), b);
+        }
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).mod(BigInteger.valueOf(modulus)).longValue();
+    }
+
+    /**
+     * Raise a value to a non-negative power modulo a positive modulus.  
+     */
+    public static long PowerMod(long base, long exponent, long modulus) {
+        assert (exponent >= 0) && (modulus > 0);
+        if (modulus == 1) {
+            return 0;
+        }
+        base %= modulus;
+        if (base < 0) {
+            base += modulus;
+        }
+        if (modulus <= SMALL_MODULUS_LIMIT) {
+            long result = 1;
+            while (exponent > 0) {
+                if ((exponent & 1) == 1) {
+                    result = (result * base) % modulus;
+                }
+                exponent >>>= 1;
+                base = (base * base) % modulus;
+            }
+            return result;
+        }
+        if ((modulus & 1) == 1) {
+            Montgomery montgomery = new Montgomery(modulus);
+            return montgomery.FromMontgomery(montgomery.Power(montgomery.ToMontgomery(base), exponent));
+        }
+        return BigInteger.valueOf(base).modPow(BigInteger.valueOf(exponent), BigInteger.valueOf(modulus)).longValue();
+    }
+
+    /**
+     * Greatest common divisor of two longs, using the binary algorithm.  The result is non-negative.  
+     */
+    public static long GCD(long a, long b) {
+        if (a == 0) {
+            return Math.abs(b);
+        }
+        if (b == 0) {
+            return Math.abs(a);
+        }
+        //the magnitude of Long.MIN_VALUE does not fit, so work with unsigned shifts
+        a = Math.abs(a);
+        b = Math.abs(b);
+        int shift = Long.numberOfTrailingZeros(a | b);
+        a >>>= Long.numberOfTrailingZeros(a);
+        while (b != 0) {
+            b >>>= Long.numberOfTrailingZeros(b);
+            if (a > b) {
+                long temp = a;
+                a = b;
+                b = temp;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    /**
+     * The inverse of a modulo a positive modulus, by the extended Euclidean algorithm.  
+     * @return      The inverse in the range [0, modulus), or -1 if a and the modulus are not coprime.  
+     */
+    public static long ModularInverse(long a, long modulus) {
+        assert modulus > 0;
+        a %= modulus;
+        if (a < 0) {
+            a += modulus;
+        }
+        //invariant: oldS * a = oldR and s * a = r (mod modulus)
+        long oldR = a, r = modulus;
+        long oldS = 1, s = 0;
+        while (r != 0) {
+            long quotient = oldR / r;
+            long temp = oldR - quotient * r;
+            oldR = r;
+            r = temp;
+            temp = oldS - quotient * s;
+            oldS = s;
+            s = temp;
+        }
+        if (oldR != 1) {
+            return -1;
+        }
+        return (oldS < 0) ? oldS + modulus : oldS;
+    }
+
+    /**
+     * The integer part of the kth root of a non-negative big integer, found by Newton iteration.  
+     */
+    public static BigInteger IntegerRoot(BigInteger n, int k) {
+        assert (n.signum() >= 0) && (k >= 1);
+        if ((k == 1) || (n.signum() == 0)) {
+            return n;
+        }
+        BigInteger bigK = BigInteger.valueOf(k);
+        BigInteger kMinusOne = BigInteger.valueOf(k - 1);
+        //start above the root so that the iteration decreases monotonically
+        BigInteger x = BigInteger.ONE.shiftLeft(n.bitLength() / k + 1);
+        while (true) {
+            BigInteger next = kMinusOne.multiply(x).add(n.divide(x.pow(k - 1))).divide(bigK);
+            if (next.compareTo(x) >= 0) {
+                return x;
+            }
+            x = next;
+        }
+    }
+
+    /**
+     * Deterministic primality test for any long, using trial division followed by Miller-Rabin with a fixed set of witnesses.  
+     * @param n     The number to test (negative numbers are tested by magnitude).  
+     * @return      Returns true if the number is prime.  
+     */
+    public static boolean IsPrime(long n) {
+        if (n < 0) {
+            if (n == Long.MIN_VALUE) {
+                return false;
+            }
+            n = -n;
+        }
+        if (n < 2) {
+            return false;
+        }
+        for (int i = 0; i < TRIAL_PRIMES.length; i++) {
+            int p = TRIAL_PRIMES[i];
+            if (n == p) {
+                return true;
+            }
+            if ((n % p) == 0) {
+                return false;
+            }
+        }
+        if (n < 53 * 53) {
+            return true;
+        }
+
+        //write n - 1 = d * 2^s with d odd
+        long d = n - 1;
+        int s = Long.numberOfTrailingZeros(d);
+        d >>>= s;
+
+        if (n <= SMALL_MODULUS_LIMIT) {
+            for (int i = 0; i < SMALL_WITNESSES.length; i++) {
+                long x = PowerMod(SMALL_WITNESSES[i], d, n);
+                if ((x == 1) || (x == n - 1)) {
+                    continue;
+                }
+                boolean isWitness = true;
+                for (int r = 1; (r < s) && isWitness; r++) {
+                    x = (x * x) % n;
+                    if (x == n - 1) {
+                        isWitness = false;
+                    }
+                }
+                if (isWitness) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        Montgomery montgomery = new Montgomery(n);
+        long one = montgomery.One();
+        long minusOne = n - one;
+        for (int i = 0; i < LARGE_WITNESSES.length; i++) {
+            long a = LARGE_WITNESSES[i] % n;
+            if (a == 0) {
+                continue;
+            }
+            long x = montgomery.Power(montgomery.ToMontgomery(a), d);
+            if ((x == one) || (x == minusOne)) {
+                continue;
+            }
+            boolean isWitness = true;
+            for (int r = 1; (r < s) && isWitness; r++) {
+                x = montgomery.Multiply(x, x);
+                if (x == minusOne) {
+                    isWitness = false;
+                }
+            }
+            if (isWitness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Primality test for big integers.  Values that fit in a long get the deterministic test, larger values a probabilistic one.  
+     * @param n     The number to test (negative numbers are tested by magnitude).  
+     * @return      Returns true if the number is (almost certainly) prime.  
+     */
+    public static boolean IsPrime(BigInteger n) {
+        n = n.abs();
+        if (n.bitLength() < 63) {
+            return IsPrime(n.longValue());
+        }
+        if (!n.testBit(0)) {
+            return false;
+        }
+        return n.isProbablePrime(BIG_CERTAINTY);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Ordering[list] gives the positions of the elements of a list in sorted order, so that the first position is that of the 
+ * smallest element.  Equal elements keep their original order.  Ordering[list, k] gives the first k positions, or with -k 
+ * the last k.  
+ * @author Allen Jordan
+ */
+public class OrderingCommand extends StatisticsCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 1) || (args.size() > 2)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        PackedArray packed = GetDataArgument(args, 0);
+        long count = (packed != null) ? packed.Length() : 0;
+        if (args.size() == 2) {
+            count = GetIntegerArgument(args, 1).longValue();
+        }
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+        int n = packed.Length();
+        if (Math.abs(count) > n) {
+            throw new CommandException("Cannot take " + Math.abs(count) + " elements from a list of length " + n, GetName());
+        }
+
+        try {
+            int[] ordering = packed.IsInteger() ? ParallelSort.Ordering(packed.GetLongData()) : ParallelSort.Ordering(packed.GetDoubleData());
+            int start = (count >= 0) ? 0 : n + (int) count;
+            long[] result = new long[(int) Math.abs(count)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ordering[start + i] + 1;
+            }
+            return new FMResult(new Factor(new PackedArray(result)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
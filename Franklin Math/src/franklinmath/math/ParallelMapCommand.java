@@ -0,0 +1,85 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * ParallelMap[f, list] gives the same result as Map[f, list], with the calls split across the worker threads.  The list 
+ * is cut into a few contiguous slices per thread, and each slice is evaluated with its own expression toolset so that no 
+ * evaluation state is shared between threads.  The slices are joined back in order, along with any string or image results 
+ * they produced.  
+ * @author Allen Jordan
+ */
+public class ParallelMapCommand extends MapCommand {
+
+    //slices per worker thread, to balance functions whose cost depends on the element
+    protected static final int SLICES_PER_THREAD = 4;
+
+    @Override
+    protected Vector<Expression> MapElements(final String functionName, final Expression[] elements, ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        int n = elements.length;
+        int numSlices = (int) Math.min(n, (long) SLICES_PER_THREAD * WorkerPool.GetNumThreads());
+        if ((numSlices <= 1) || (WorkerPool.GetNumThreads() == 1)) {
+            return super.MapElements(functionName, elements, expressionToolset);
+        }
+
+        Vector<Callable<Vector<Expression>>> jobList = new Vector<Callable<Vector<Expression>>>(numSlices);
+        Vector<Vector<FMResult>> sliceResultLists = new Vector<Vector<FMResult>>(numSlices);
+        for (int slice = 0; slice < numSlices; slice++) {
+            final int start = (int) ((long) n * slice / numSlices);
+            final int end = (int) ((long) n * (slice + 1) / numSlices);
+            Vector<FMResult> sliceResults = new Vector<FMResult>();
+            sliceResultLists.add(sliceResults);
+            final ExpressionToolset sliceToolset = expressionToolset.CreateTaskToolset(sliceResults);
+            jobList.add(new Callable<Vector<Expression>>() {
+
+                public Vector<Expression> call() throws Exception {
+                    return MapRange(functionName, elements, start, end, sliceToolset);
+                }
+            });
+        }
+
+        Vector<Vector<Expression>> sliceList;
+        try {
+            sliceList = WorkerPool.InvokeAll(jobList);
+        } catch (RuntimeException ex) {
+            //the worker pool wraps checked exceptions thrown by a slice
+            if (ex.getCause() instanceof ExpressionException) {
+                throw (ExpressionException) ex.getCause();
+            } else if (ex.getCause() instanceof ExecutionException) {
+                throw (ExecutionException) ex.getCause();
+            }
+            throw ex;
+        }
+
+        Vector<Expression> resultList = new Vector<Expression>(n);
+        for (int slice = 0; slice < numSlices; slice++) {
+            resultList.addAll(sliceList.get(slice));
+            expressionToolset.AddResults(sliceResultLists.get(slice));
+        }
+        return resultList;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Raise an integer to an integer power modulo a third integer.  Negative powers use the modular inverse.  
+ * @author Allen Jordan
+ */
+public class PowerModCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 3);
+        BigInteger base = null, exponent = null, modulus = null;
+        try {
+            base = GetIntegerArgument(args, 0);
+            exponent = GetIntegerArgument(args, 1);
+            modulus = GetIntegerArgument(args, 2);
+        } catch (CommandException ex) {
+            try {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            } catch (ExpressionException ex2) {
+                throw new CommandException(ex2.toString(), GetName());
+            }
+        }
+
+        if (modulus.signum() == 0) {
+            throw new CommandException("Modulus must be non-zero", GetName());
+        }
+        try {
+            BigInteger result = null;
+            BigInteger absModulus = modulus.abs();
+            //single words go through the long routines, which avoid BigInteger allocation entirely
+            if ((exponent.signum() >= 0) && (base.bitLength() < 64) && (exponent.bitLength() < 64) && (absModulus.bitLength() < 64)) {
+                result = BigInteger.valueOf(NumberTheory.PowerMod(base.longValue(), exponent.longValue(), absModulus.longValue()));
+            } else {
+                result = base.modPow(exponent, absModulus);
+            }
+            //the result takes the sign of the modulus
+            if ((modulus.signum() < 0) && (result.signum() != 0)) {
+                result = result.add(modulus);
+            }
+            return new FMResult(new Factor(new FMNumber(result)));
+        } catch (ArithmeticException ex) {
+            throw new CommandException("Base is not invertible for this modulus", GetName());
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.IOException;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Running totals and other prefix scans of packed arrays, along with their inverses Differences and Ratios, split across the 
+ * worker threads.  A scan is cut into fixed blocks and done in two passes: the first finds the total of each block, a short 
+ * sequential pass turns those totals into the starting value of every block, and the second scans each block from its starting 
+ * value.  This reads each element twice and writes it once, so the work is close to a sequential scan and the scan keeps up 
+ * with memory bandwidth on any number of cores.  Real running sums use Neumaier's compensated summation, with the compensation 
+ * carried from block to block, so each total is good to about one rounding whatever the length of the series.  Off heap arrays 
+ * are processed a block at a time into new off heap storage.  
+ * @author Allen Jordan
+ */
+public class PrefixScan {
+
+    /**
+     * The associative operations that can be scanned.  
+     */
+    public enum ScanOperator {
+
+        PLUS, MAX, MIN
+    }
+
+    //Prevent instantiation
+    protected PrefixScan() {
+    }
+
+    /**
+     * Scan a packed array, giving {a, a op b, (a op b) op c, ...}.  
+     * @param packed        An integer or real packed array.  
+     * @param operator      The operation to scan with.  
+     * @return              The scanned array, or null if an integer sum overflows.  
+     */
+    public static PackedArray Scan(PackedArray packed, ScanOperator operator) throws ExpressionException, IOException {
+        return Scan(packed, operator, null);
+    }
+
+    /**
+     * Scan a packed array from a starting value x, giving {x, x op a, (x op a) op b, ...}.  The result holds integers if both 
+     * the array and the starting value do, and reals otherwise.  
+     * @param packed        An integer or real packed array.  
+     * @param operator      The operation to scan with.  
+     * @param initial       A one element integer or real packed array holding the starting value, or null to start with the 
+     *                      first element.  
+     * @return              The scanned array, or null if an integer sum overflows.  
+     */
+    public static PackedArray Scan(PackedArray packed, ScanOperator operator, PackedArray initial) throws ExpressionException, IOException {
+        assert !packed.IsComplex() && ((initial == null) || ((initial.Length() == 1) && !initial.IsComplex()));
+        if (packed.IsInteger() && ((initial == null) || initial.IsInteger())) {
+            long start = (initial != null) ? initial.GetLongData()[0] : LongIdentity(operator);
+            return ScanLongs(packed, operator, initial != null, start);
+        }
+        double start = (initial != null) ? initial.GetDouble(0) : DoubleIdentity(operator);
+        return ScanDoubles(packed, operator, initial != null, start);
+    }
+
+    /**
+     * Find the differences between successive elements, {b - a, c - b, ...}.  
+     * @param packed    An integer or real packed array.  
+     * @return          The differences, or null if an integer difference overflows.  
+     */
+    public static PackedArray Differences(PackedArray packed) throws ExpressionException, IOException {
+        return Adjacent(packed, false);
+    }
+
+    /**
+     * Find the ratios of successive elements, {b / a, c / b, ...}.  Integer arrays only give integer ratios.  
+     * @param packed    An integer or real packed array.  
+     * @return          The ratios, or null if an integer ratio is not an integer or a real ratio is not finite.  
+     */
+    public static PackedArray Ratios(PackedArray packed) throws ExpressionException, IOException {
+        return Adjacent(packed, true);
+    }
+
+    protected static long LongIdentity(ScanOperator operator) {
+        if (operator == ScanOperator.MAX) {
+            return Long.MIN_VALUE;
+        } else if (operator == ScanOperator.MIN) {
+            return Long.MAX_VALUE;
+        }
+        return 0;
+    }
+
+    protected static double DoubleIdentity(ScanOperator operator) {
+        if (operator == ScanOperator.MAX) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (operator == ScanOperator.MIN) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return 0;
+    }
+
+    //split the work in two passes only when there are several blocks and threads to run them on
+    protected static boolean IsTwoPass(int numBlocks) {
+        return (numBlocks > 1) && (WorkerPool.GetNumThreads() > 1) && (!WorkerPool.IsWorkerThread());
+    }
+
+    protected static PackedArray ScanLongs(final PackedArray packed, final ScanOperator operator, boolean hasInitial, long start) throws ExpressionException, IOException {
+        final int n = packed.Length();
+        final int shift = hasInitial ? 1 : 0;
+        final long[] data = packed.IsOffHeap() ? null : packed.GetLongData();
+        final long[] result = packed.IsOffHeap() ? null : new long[n + shift];
+        final OffHeapStorage storage = packed.IsOffHeap() ? OffHeapStorage.CreateLike(packed.GetOffHeapStorage(), n + shift) : null;
+        if (hasInitial) {
+            if (storage != null) {
+                storage.PutLong(0, start);
+            } else {
+                result[0] = start;
+            }
+        }
+
+        final int blockSize = OffHeapStorage.BLOCK_SIZE;
+        int numBlocks = (n + blockSize - 1) / blockSize;
+        //overflow is reported with an ArithmeticException from the block that overflows
+        try {
+            if (IsTwoPass(numBlocks)) {
+                final long[] blockTotals = new long[numBlocks];
+                WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                    public void Run(long blockStart, long blockEnd) {
+                        int count = (int) (blockEnd - blockStart);
+                        long[] source = data;
+                        int offset = (int) blockStart;
+                        if (source == null) {
+                            source = new long[count];
+                            packed.GetLongs(offset, source, count);
+                            offset = 0;
+                        }
+                        blockTotals[(int) (blockStart / blockSize)] = ReduceLongs(operator, source, offset, count, LongIdentity(operator));
+                    }
+                });
+
+                //sums wrap around here, since an overflow in any total is found again by the second pass
+                final long[] blockStarts = new long[numBlocks];
+                blockStarts[0] = start;
+                for (int i = 1; i < numBlocks; i++) {
+                    blockStarts[i] = Combine(operator, blockStarts[i - 1], blockTotals[i - 1]);
+                }
+                WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                    public void Run(long blockStart, long blockEnd) {
+                        ScanLongBlock(packed, operator, data, result, storage, shift, (int) blockStart, (int) (blockEnd - blockStart), blockStarts[(int) (blockStart / blockSize)]);
+                    }
+                });
+            } else {
+                long value = start;
+                for (int blockStart = 0; blockStart < n; blockStart += blockSize) {
+                    value = ScanLongBlock(packed, operator, data, result, storage, shift, blockStart, Math.min(blockSize, n - blockStart), value);
+                }
+            }
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+        return (storage != null) ? new PackedArray(storage, true) : new PackedArray(result);
+    }
+
+    //scan one block from its starting value, returning the last value
+    protected static long ScanLongBlock(PackedArray packed, ScanOperator operator, long[] data, long[] result, OffHeapStorage storage, int shift, int blockStart, int count, long value) {
+        if (storage == null) {
+            return ScanLongs(operator, data, blockStart, result, blockStart + shift, count, value);
+        }
+        long[] block = new long[count];
+        packed.GetLongs(blockStart, block, count);
+        value = ScanLongs(operator, block, 0, block, 0, count, value);
+        storage.PutLongs(blockStart + shift, block, 0, count);
+        return value;
+    }
+
+    protected static long Combine(ScanOperator operator, long a, long b) {
+        if (operator == ScanOperator.MAX) {
+            return Math.max(a, b);
+        } else if (operator == ScanOperator.MIN) {
+            return Math.min(a, b);
+        }
+        return a + b;
+    }
+
+    //combine count values with a starting value, letting sums wrap around
+    protected static long ReduceLongs(ScanOperator operator, long[] source, int offset, int count, long value) {
+        int end = offset + count;
+        if (operator == ScanOperator.MAX) {
+            for (int i = offset; i < end; i++) {
+                value = Math.max(value, source[i]);
+            }
+        } else if (operator == ScanOperator.MIN) {
+            for (int i = offset; i < end; i++) {
+                value = Math.min(value, source[i]);
+            }
+        } else {
+            for (int i = offset; i < end; i++) {
+                value += source[i];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Scan count values from a starting value into a target, which may be the same as the source.  
+     * @return  The last value.  
+     * @throws ArithmeticException  Thrown if a sum overflows.  
+     */
+    protected static long ScanLongs(ScanOperator operator, long[] source, int sourceOffset, long[] target, int targetOffset, int count, long value) {
+        if (operator == ScanOperator.MAX) {
+            for (int i = 0; i < count; i++) {
+                value = Math.max(value, source[sourceOffset + i]);
+                target[targetOffset + i] = value;
+            }
+        } else if (operator == ScanOperator.MIN) {
+            for (int i = 0; i < count; i++) {
+                value = Math.min(value, source[sourceOffset + i]);
+                target[targetOffset + i] = value;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                long x = source[sourceOffset + i];
+                long sum = value + x;
+                //the sum overflowed if it has a different sign from both of the values added
+                if (((value ^ sum) & (x ^ sum)) < 0) {
+                    throw new ArithmeticException("Integer overflow");
+                }
+                value = sum;
+                target[targetOffset + i] = value;
+            }
+        }
+        return value;
+    }
+
+    protected static PackedArray ScanDoubles(final PackedArray packed, final ScanOperator operator, boolean hasInitial, double start) throws ExpressionException, IOException {
+        final int n = packed.Length();
+        final int shift = hasInitial ? 1 : 0;
+        //integer arrays scanned as reals are converted a block at a time
+        final double[] data = (packed.IsOffHeap() || packed.IsInteger()) ? null : packed.GetDoubleData();
+        final double[] result = packed.IsOffHeap() ? null : new double[n + shift];
+        final OffHeapStorage storage = packed.IsOffHeap() ? OffHeapStorage.CreateLike(packed.GetOffHeapStorage(), n + shift) : null;
+        if (hasInitial) {
+            if (storage != null) {
+                storage.PutDouble(0, start);
+            } else {
+                result[0] = start;
+            }
+        }
+
+        final int blockSize = OffHeapStorage.BLOCK_SIZE;
+        int numBlocks = (n + blockSize - 1) / blockSize;
+        if (IsTwoPass(numBlocks)) {
+            //each block total is kept as a sum and its compensation
+            final double[][] blockTotals = new double[numBlocks][];
+            WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    int count = (int) (blockEnd - blockStart);
+                    double[] source = data;
+                    int offset = (int) blockStart;
+                    if (source == null) {
+                        source = new double[count];
+                        packed.GetDoubles(offset, source, count);
+                        offset = 0;
+                    }
+                    double[] total = {DoubleIdentity(operator), 0};
+                    ReduceDoubles(operator, source, offset, count, total);
+                    blockTotals[(int) (blockStart / blockSize)] = total;
+                }
+            });
+
+            final double[][] blockStarts = new double[numBlocks][];
+            double[] value = {start, 0};
+            for (int i = 0; i < numBlocks; i++) {
+                blockStarts[i] = value.clone();
+                ReduceDoubles(operator, blockTotals[i], 0, (operator == ScanOperator.PLUS) ? 2 : 1, value);
+            }
+            WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    ScanDoubleBlock(packed, operator, data, result, storage, shift, (int) blockStart, (int) (blockEnd - blockStart), blockStarts[(int) (blockStart / blockSize)]);
+                }
+            });
+        } else {
+            double[] value = {start, 0};
+            for (int blockStart = 0; blockStart < n; blockStart += blockSize) {
+                ScanDoubleBlock(packed, operator, data, result, storage, shift, blockStart, Math.min(blockSize, n - blockStart), value);
+            }
+        }
+        return (storage != null) ? new PackedArray(storage, false) : new PackedArray(result);
+    }
+
+    //scan one block from the starting (sum, compensation) value, which is updated to the last value
+    protected static void ScanDoubleBlock(PackedArray packed, ScanOperator operator, double[] data, double[] result, OffHeapStorage storage, int shift, int blockStart, int count, double[] value) {
+        if (data != null) {
+            ScanDoubles(operator, data, blockStart, result, blockStart + shift, count, value);
+            return;
+        }
+        double[] block = new double[count];
+        packed.GetDoubles(blockStart, block, count);
+        if (storage == null) {
+            ScanDoubles(operator, block, 0, result, blockStart + shift, count, value);
+        } else {
+            ScanDoubles(operator, block, 0, block, 0, count, value);
+            storage.PutDoubles(blockStart + shift, block, 0, count);
+        }
+    }
+
+    //combine count values into a (value, compensation) pair, with compensated sums
+    protected static void ReduceDoubles(ScanOperator operator, double[] source, int offset, int count, double[] value) {
+        int end = offset + count;
+        double result = value[0];
+        if (operator == ScanOperator.MAX) {
+            for (int i = offset; i < end; i++) {
+                result = (source[i] > result) ? source[i] : result;
+            }
+        } else if (operator == ScanOperator.MIN) {
+            for (int i = offset; i < end; i++) {
+                result = (source[i] < result) ? source[i] : result;
+            }
+        } else {
+            double compensation = value[1];
+            for (int i = offset; i < end; i++) {
+                double x = source[i];
+                double t = result + x;
+                compensation += (Math.abs(result) >= Math.abs(x)) ? ((result - t) + x) : ((x - t) + result);
+                result = t;
+            }
+            value[1] = compensation;
+        }
+        value[0] = result;
+    }
+
+    /**
+     * Scan count values from a starting (value, compensation) pair into a target, which may be the same as the source.  The 
+     * pair is updated to the last value.  
+     */
+    protected static void ScanDoubles(ScanOperator operator, double[] source, int sourceOffset, double[] target, int targetOffset, int count, double[] value) {
+        double result = value[0];
+        if (operator == ScanOperator.MAX) {
+            for (int i = 0; i < count; i++) {
+                double x = source[sourceOffset + i];
+                result = (x > result) ? x : result;
+                target[targetOffset + i] = result;
+            }
+        } else if (operator == ScanOperator.MIN) {
+            for (int i = 0; i < count; i++) {
+                double x = source[sourceOffset + i];
+                result = (x < result) ? x : result;
+                target[targetOffset + i] = result;
+            }
+        } else {
+            double compensation = value[1];
+            for (int i = 0; i < count; i++) {
+                double x = source[sourceOffset + i];
+                double t = result + x;
+                compensation += (Math.abs(result) >= Math.abs(x)) ? ((result - t) + x) : ((x - t) + result);
+                result = t;
+                target[targetOffset + i] = result + compensation;
+            }
+            value[1] = compensation;
+        }
+        value[0] = result;
+    }
+
+    //differences or ratios of successive elements, a block of results at a time
+    protected static PackedArray Adjacent(final PackedArray packed, final boolean isRatio) throws ExpressionException, IOException {
+        assert !packed.IsComplex();
+        final int n = Math.max(packed.Length() - 1, 0);
+        final boolean isInteger = packed.IsInteger();
+        //heap arrays are read in place, and off heap arrays are copied a block at a time and combined in the copy
+        final long[] longData = (isInteger && !packed.IsOffHeap()) ? packed.GetLongData() : null;
+        final double[] doubleData = (!isInteger && !packed.IsOffHeap()) ? packed.GetDoubleData() : null;
+        final long[] longResult = (longData != null) ? new long[n] : null;
+        final double[] doubleResult = (doubleData != null) ? new double[n] : null;
+        final OffHeapStorage storage = packed.IsOffHeap() ? OffHeapStorage.CreateLike(packed.GetOffHeapStorage(), n) : null;
+
+        try {
+            WorkerPool.ParallelForBlocks(0, n, OffHeapStorage.BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    int start = (int) blockStart;
+                    int count = (int) (blockEnd - blockStart);
+                    if (isInteger) {
+                        if (storage == null) {
+                            AdjacentLongs(isRatio, longData, start, longResult, start, count);
+                        } else {
+                            //each block of results needs one more element than it has results
+                            long[] block = new long[count + 1];
+                            packed.GetLongs(start, block, count + 1);
+                            AdjacentLongs(isRatio, block, 0, block, 0, count);
+                            storage.PutLongs(start, block, 0, count);
+                        }
+                    } else {
+                        if (storage == null) {
+                            AdjacentDoubles(isRatio, doubleData, start, doubleResult, start, count);
+                        } else {
+                            double[] block = new double[count + 1];
+                            packed.GetDoubles(start, block, count + 1);
+                            AdjacentDoubles(isRatio, block, 0, block, 0, count);
+                            storage.PutDoubles(start, block, 0, count);
+                        }
+                    }
+                }
+            });
+        } catch (ArithmeticException ex) {
+            return null;
+        }
+        if (storage != null) {
+            return new PackedArray(storage, isInteger);
+        }
+        return isInteger ? new PackedArray(longResult) : new PackedArray(doubleResult);
+    }
+
+    /**
+     * Combine count pairs of successive integers into a target, which may be the same as the source.  
+     * @throws ArithmeticException  Thrown if a difference overflows or a ratio is not an integer.  
+     */
+    protected static void AdjacentLongs(boolean isRatio, long[] source, int sourceOffset, long[] target, int targetOffset, int count) {
+        if (isRatio) {
+            for (int i = 0; i < count; i++) {
+                long a = source[sourceOffset + i + 1], b = source[sourceOffset + i];
+                if ((b == 0) || ((a % b) != 0) || ((a == Long.MIN_VALUE) && (b == -1))) {
+                    throw new ArithmeticException("Ratio is not an integer");
+                }
+                target[targetOffset + i] = a / b;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                long a = source[sourceOffset + i + 1], b = source[sourceOffset + i];
+                long difference = a - b;
+                //the difference overflowed if the values have different signs and the difference has the sign of b
+                if (((a ^ b) & (a ^ difference)) < 0) {
+                    throw new ArithmeticException("Integer overflow");
+                }
+                target[targetOffset + i] = difference;
+            }
+        }
+    }
+
+    /**
+     * Combine count pairs of successive reals into a target, which may be the same as the source.  
+     * @throws ArithmeticException  Thrown if a result is not finite.  
+     */
+    protected static void AdjacentDoubles(boolean isRatio, double[] source, int sourceOffset, double[] target, int targetOffset, int count) {
+        if (isRatio) {
+            for (int i = 0; i < count; i++) {
+                target[targetOffset + i] = source[sourceOffset + i + 1] / source[sourceOffset + i];
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                target[targetOffset + i] = source[sourceOffset + i + 1] - source[sourceOffset + i];
+            }
+        }
+        //infinite and undefined results are left to the general code
+        if (!ArrayKernels.AllFinite(target, targetOffset, targetOffset + count)) {
+            throw new ArithmeticException("Result is not finite");
+        }
+    }
+}
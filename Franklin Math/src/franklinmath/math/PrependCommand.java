@@ -0,0 +1,39 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import franklinmath.expression.*;
+
+/**
+ * Prepend[list, x] gives a list with x added to the start.  
+ * @author Allen Jordan
+ */
+public class PrependCommand extends AppendCommand {
+
+    @Override
+    protected PersistentVector AddElement(PersistentVector exprList, Expression element) {
+        return exprList.Prepend(element);
+    }
+
+    @Override
+    protected PackedArray AddElement(PackedArray packed, FMNumber number) {
+        return packed.Prepend(number);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Count the primes less than or equal to a number using the segmented prime sieve.  
+ * @author Allen Jordan
+ */
+public class PrimePiCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        FMNumber number = GetNumberArgument(args, 0);
+        try {
+            if ((number == null) || number.IsImaginary()) {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            }
+
+            BigInteger x = number.RealValue().setScale(0, RoundingMode.FLOOR).toBigInteger();
+            if (x.compareTo(BigInteger.valueOf(PrimeSieve.MAX_LIMIT)) > 0) {
+                throw new CommandException("Argument is too large", GetName());
+            }
+            if (x.signum() <= 0) {
+                return new FMResult(new Factor(0));
+            }
+            return new FMResult(new Factor(PrimeSieve.CountPrimes(2, x.longValue())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
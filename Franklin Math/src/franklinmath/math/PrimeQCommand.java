@@ -0,0 +1,51 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Test whether a number is prime, giving True or False.  The test is deterministic for numbers that fit in 64 bits.  
+ * @author Allen Jordan
+ */
+public class PrimeQCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        FMNumber number = GetNumberArgument(args, 0);
+        try {
+            if (number == null) {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            }
+            boolean isPrime = false;
+            if (number.IsExactInteger()) {
+                isPrime = NumberTheory.IsPrime(number.RealValue().toBigIntegerExact());
+            }
+            return new FMResult(new Factor(isPrime ? "True" : "False", true));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Arrays;
+
+import franklinmath.util.WorkerPool;
+
+/**
+ * A segmented sieve of Eratosthenes.  Only odd numbers are stored, one bit each, and the range is processed in segments small 
+ * enough to stay in the processor cache.  Separate blocks of segments are sieved on the worker threads.  
+ * @author Allen Jordan
+ */
+public class PrimeSieve {
+
+    //the largest number the sieve will handle
+    public static final long MAX_LIMIT = 1000000000000000L;
+    //64 bit words per segment (32KB), and the odd numbers covered by one segment
+    protected static final int SEGMENT_WORDS = 4096;
+    protected static final int SEGMENT_BITS = SEGMENT_WORDS * 64;
+    //a cached table of small primes used for crossing off composites
+    protected static int[] smallPrimes = new int[0];
+    protected static int smallPrimeLimit = 0;
+
+    /**
+     * Receives the sieved segments of a block, in increasing order.  Bit i of a segment is set if segmentLow + 2i is prime.  
+     */
+    protected static abstract class SegmentVisitor {
+
+        public abstract void Visit(long segmentLow, long[] bits, int numBits);
+    }
+
+    /**
+     * Creates the visitor for one block.  Each block gets its own visitor so that blocks can run concurrently.  
+     */
+    protected static abstract class BlockVisitorFactory {
+
+        public abstract SegmentVisitor Create(int blockIndex);
+    }
+
+    //Prevent instantiation
+    protected PrimeSieve() {
+    }
+
+    /**
+     * Get a table of primes that includes every prime up to the given limit.  The table may extend past the limit.  
+     */
+    public static synchronized int[] GetSmallPrimes(int limit) {
+        if (limit <= smallPrimeLimit) {
+            return smallPrimes;
+        }
+        //grow the table geometrically so that repeated requests do not keep rebuilding it
+        int newLimit = (int) Math.min(Integer.MAX_VALUE - 1L, Math.max(limit, 2L * smallPrimeLimit));
+        newLimit = Math.max(newLimit, 1024);
+
+        //plain odd-only sieve: bit i stands for 2i + 1
+        int numBits = newLimit / 2 + 1;
+        long[] composite = new long[(numBits >>> 6) + 1];
+        for (long p = 3; p * p <= newLimit; p += 2) {
+            if ((composite[(int) (p >>> 7)] & (1L << (p >>> 1))) == 0) {
+                for (long i = (p * p) >>> 1; i < numBits; i += p) {
+                    composite[(int) (i >>> 6)] |= (1L << i);
+                }
+            }
+        }
+        int count = 1;
+        for (int i = 1; i < numBits; i++) {
+            if (((composite[i >>> 6] & (1L << i)) == 0) && (2L * i + 1 <= newLimit)) {
+                count++;
+            }
+        }
+        int[] primes = new int[count];
+        primes[0] = 2;
+        int index = 1;
+        for (int i = 1; i < numBits; i++) {
+            if (((composite[i >>> 6] & (1L << i)) == 0) && (2L * i + 1 <= newLimit)) {
+                primes[index++] = 2 * i + 1;
+            }
+        }
+
+        smallPrimes = primes;
+        smallPrimeLimit = newLimit;
+        return smallPrimes;
+    }
+
+    /**
+     * Count the primes in the range [low, high].  
+     */
+    public static long CountPrimes(long low, long high) {
+        CheckLimit(high);
+        long count = ((low <= 2) && (high >= 2)) ? 1 : 0;
+        long oddLow = OddLow(low);
+        long oddHigh = OddHigh(high);
+        if (oddLow > oddHigh) {
+            return count;
+        }
+
+        long numOdd = (oddHigh - oddLow) / 2 + 1;
+        long blockSize = GetBlockSize(numOdd);
+        final long[] blockCounts = new long[(int) ((numOdd + blockSize - 1) / blockSize)];
+        SieveBlocks(oddLow, numOdd, blockSize, new BlockVisitorFactory() {
+
+            public SegmentVisitor Create(final int blockIndex) {
+                return new SegmentVisitor() {
+
+                    public void Visit(long segmentLow, long[] bits, int numBits) {
+                        long blockCount = 0;
+                        int numWords = (numBits + 63) >>> 6;
+                        for (int i = 0; i < numWords; i++) {
+                            blockCount += Long.bitCount(bits[i]);
+                        }
+                        blockCounts[blockIndex] += blockCount;
+                    }
+                };
+            }
+        });
+        for (int i = 0; i < blockCounts.length; i++) {
+            count += blockCounts[i];
+        }
+        return count;
+    }
+
+    /**
+     * List the primes in the range [low, high] in increasing order.  
+     */
+    public static long[] ListPrimes(long low, long high) {
+        CheckLimit(high);
+        boolean hasTwo = (low <= 2) && (high >= 2);
+        long oddLow = OddLow(low);
+        long oddHigh = OddHigh(high);
+        if (oddLow > oddHigh) {
+            return hasTwo ? new long[]{2} : new long[0];
+        }
+
+        long numOdd = (oddHigh - oddLow) / 2 + 1;
+        long blockSize = GetBlockSize(numOdd);
+        final long[][] blockPrimes = new long[(int) ((numOdd + blockSize - 1) / blockSize)][];
+        final int[] blockLengths = new int[blockPrimes.length];
+        SieveBlocks(oddLow, numOdd, blockSize, new BlockVisitorFactory() {
+
+            public SegmentVisitor Create(final int blockIndex) {
+                blockPrimes[blockIndex] = new long[64];
+                return new SegmentVisitor() {
+
+                    public void Visit(long segmentLow, long[] bits, int numBits) {
+                        long[] primes = blockPrimes[blockIndex];
+                        int length = blockLengths[blockIndex];
+                        int numWords = (numBits + 63) >>> 6;
+                        for (int i = 0; i < numWords; i++) {
+                            long word = bits[i];
+                            while (word != 0) {
+                                if (length == primes.length) {
+                                    long[] larger = new long[primes.length * 2];
+                                    System.arraycopy(primes, 0, larger, 0, length);
+                                    primes = larger;
+                                }
+                                int bit = Long.numberOfTrailingZeros(word);
+                                primes[length++] = segmentLow + 2L * ((i << 6) + bit);
+                                word &= word - 1;
+                            }
+                        }
+                        blockPrimes[blockIndex] = primes;
+                        blockLengths[blockIndex] = length;
+                    }
+                };
+            }
+        });
+
+        long total = hasTwo ? 1 : 0;
+        for (int i = 0; i < blockLengths.length; i++) {
+            total += blockLengths[i];
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many primes to list");
+        }
+        long[] result = new long[(int) total];
+        int index = 0;
+        if (hasTwo) {
+            result[index++] = 2;
+        }
+        for (int i = 0; i < blockPrimes.length; i++) {
+            System.arraycopy(blockPrimes[i], 0, result, index, blockLengths[i]);
+            index += blockLengths[i];
+        }
+        return result;
+    }
+
+    /**
+     * Find the nth prime, counting 2 as the first.  
+     */
+    public static long NthPrime(long n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Prime index must be positive");
+        }
+        if (n < 6) {
+            return new long[]{2, 3, 5, 7, 11}[(int) n - 1];
+        }
+        //p(n) > n (ln n + ln ln n - 1) for n >= 2, so count up to that bound and then walk forward
+        double logN = Math.log(n);
+        long low = Math.max(2, (long) (n * (logN + Math.log(logN) - 1)));
+        CheckLimit(low);
+        long count = CountPrimes(2, low - 1);
+        long window = Math.max(SEGMENT_BITS * 2L, (long) (n * 0.05));
+        while (true) {
+            long high = Math.min(MAX_LIMIT, low + window - 1);
+            long windowCount = CountPrimes(low, high);
+            if (count + windowCount >= n) {
+                long[] primes = ListPrimes(low, high);
+                return primes[(int) (n - count - 1)];
+            }
+            if (high == MAX_LIMIT) {
+                throw new IllegalArgumentException("Prime index is too large");
+            }
+            count += windowCount;
+            low = high + 1;
+        }
+    }
+
+    protected static void CheckLimit(long high) {
+        if (high > MAX_LIMIT) {
+            throw new IllegalArgumentException("Sieve limit is too large");
+        }
+    }
+
+    //the smallest odd number >= 3 in the range
+    protected static long OddLow(long low) {
+        long oddLow = Math.max(low, 3);
+        return ((oddLow & 1) == 0) ? oddLow + 1 : oddLow;
+    }
+
+    //the largest odd number in the range
+    protected static long OddHigh(long high) {
+        return ((high & 1) == 0) ? high - 1 : high;
+    }
+
+    //blocks are whole segments, with a few blocks per thread
+    protected static long GetBlockSize(long numOdd) {
+        long numSegments = (numOdd + SEGMENT_BITS - 1) / SEGMENT_BITS;
+        long segmentsPerBlock = Math.max(1, numSegments / (4L * WorkerPool.GetNumThreads()));
+        return segmentsPerBlock * SEGMENT_BITS;
+    }
+
+    /**
+     * Sieve the odd numbers oddLow, oddLow + 2, ... (numOdd of them) in blocks, passing each segment to the block's visitor.  
+     */
+    protected static void SieveBlocks(final long oddLow, long numOdd, final long blockSize, final BlockVisitorFactory factory) {
+        long oddHigh = oddLow + 2 * (numOdd - 1);
+        final int[] primes = GetSmallPrimes((int) Math.sqrt((double) oddHigh) + 1);
+        WorkerPool.ParallelForBlocks(0, numOdd, blockSize, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                SieveBlock(oddLow + 2 * blockStart, blockEnd - blockStart, primes,
+                        factory.Create((int) (blockStart / blockSize)));
+            }
+        });
+    }
+
+    /**
+     * Sieve one block segment by segment.  The next multiple of each prime is carried from one segment to the next so that it 
+     * only needs to be computed once per block.  
+     */
+    protected static void SieveBlock(long blockLow, long numOdd, int[] primes, SegmentVisitor visitor) {
+        long blockHigh = blockLow + 2 * (numOdd - 1);
+
+        //the odd primes needed for this block, and the bit index of each prime's next odd multiple
+        int numPrimes = 1;
+        while ((numPrimes < primes.length) && ((long) primes[numPrimes] * primes[numPrimes] <= blockHigh)) {
+            numPrimes++;
+        }
+        long[] nextIndex = new long[numPrimes];
+        for (int j = 1; j < numPrimes; j++) {
+            long p = primes[j];
+            long multiple = Math.max(p * p, ((blockLow + p - 1) / p) * p);
+            if ((multiple & 1) == 0) {
+                multiple += p;
+            }
+            nextIndex[j] = (multiple - blockLow) >>> 1;
+        }
+
+        long[] bits = new long[SEGMENT_WORDS];
+        for (long segmentStart = 0; segmentStart < numOdd; segmentStart += SEGMENT_BITS) {
+            int numBits = (int) Math.min(SEGMENT_BITS, numOdd - segmentStart);
+            int numWords = (numBits + 63) >>> 6;
+            Arrays.fill(bits, 0, numWords, -1L);
+            if ((numBits & 63) != 0) {
+                bits[numWords - 1] = (1L << (numBits & 63)) - 1;
+            }
+
+            for (int j = 1; j < numPrimes; j++) {
+                int p = primes[j];
+                long index = nextIndex[j] - segmentStart;
+                if (index >= numBits) {
+                    continue;
+                }
+                int i = (int) index;
+                for (; i < numBits; i += p) {
+                    bits[i >>> 6] &= ~(1L << i);
+                }
+                nextIndex[j] = segmentStart + i;
+            }
+
+            visitor.Visit(blockLow + 2 * segmentStart, bits, numBits);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.util.Arrays;
+import java.math.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * List the primes up to a number, or between two numbers, using the segmented prime sieve.  With no arguments, give the 
+ * infinite lazy sequence of primes.  
+ * @author Allen Jordan
+ */
+public class PrimesCommand extends Command {
+
+    //the widest range that will be listed, which keeps the expression list to a manageable size
+    public static final long MAX_RANGE = 1000000000L;
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if (args.size() > 2) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        if (args.size() == 0) {
+            try {
+                return new FMResult(new Factor(new PrimeSequence()));
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
+        }
+        BigInteger low = BigInteger.ONE;
+        BigInteger high = GetIntegerArgument(args, 0);
+        if (args.size() == 2) {
+            low = high;
+            high = GetIntegerArgument(args, 1);
+        }
+        if (high.compareTo(BigInteger.valueOf(PrimeSieve.MAX_LIMIT)) > 0) {
+            throw new CommandException("Upper bound is too large", GetName());
+        }
+        low = low.max(BigInteger.ONE);
+
+        try {
+            long[] primes = new long[0];
+            if (low.compareTo(high) <= 0) {
+                long lowValue = low.longValue();
+                long highValue = high.longValue();
+                if (highValue - lowValue > MAX_RANGE) {
+                    throw new CommandException("Range is too large to list", GetName());
+                }
+                primes = PrimeSieve.ListPrimes(lowValue, highValue);
+            }
+            return new FMResult(new Factor(new PackedArray(primes)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * The infinite sequence of primes.  Each generator sieves one segment at a time, doubling the segment size as it goes 
+     * further so that short uses stay cheap and long ones make few sieve calls.  Blocks of primes are handed straight from 
+     * the sieved segments (see NextIntegers), so Take and Drop never make an expression for each prime.  
+     */
+    protected static class PrimeSequence extends LazySequence {
+
+        //the size of the first segment, and the largest segment size
+        protected static final long FIRST_SEGMENT = 1L << 10;
+        protected static final long MAX_SEGMENT = 1L << 22;
+
+        @Override
+        public boolean IsInfinite() {
+            return true;
+        }
+
+        @Override
+        public Generator CreateGenerator() {
+            return new Generator() {
+
+                protected long[] segment = new long[0];
+                protected int index = 0;
+                protected long low = 1;
+                protected long segmentSize = FIRST_SEGMENT;
+
+                @Override
+                public Expression Next() throws ExpressionException {
+                    Fill();
+                    return new Expression(new Term(new Power(new Factor(new FMNumber(segment[index++])))), TermOperator.NONE);
+                }
+
+                @Override
+                public long[] NextIntegers(int max) throws ExpressionException {
+                    Fill();
+                    int count = Math.min(max, segment.length - index);
+                    long[] block = Arrays.copyOfRange(segment, index, index + count);
+                    index += count;
+                    return block;
+                }
+
+                //sieve segments until there is a prime left to give
+                protected void Fill() throws ExpressionException {
+                    while (index >= segment.length) {
+                        long high = low + segmentSize - 1;
+                        if (high > PrimeSieve.MAX_LIMIT) {
+                            throw new ExpressionException("Upper bound is too large");
+                        }
+                        segment = PrimeSieve.ListPrimes(low, high);
+                        index = 0;
+                        low = high + 1;
+                        segmentSize = Math.min(2 * segmentSize, MAX_SEGMENT);
+                    }
+                }
+            };
+        }
+    }
+}
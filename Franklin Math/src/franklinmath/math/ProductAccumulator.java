@@ -0,0 +1,136 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Accumulates a running product one value at a time, so that products over long ranges need constant memory.  Integers are 
+ * multiplied exactly, collecting values in a long until it would overflow and then multiplying batches of these partial 
+ * products together with a product tree.  Machine reals, other numbers and symbolic factors are kept separately.  
+ * @author Allen Jordan
+ */
+public final class ProductAccumulator {
+
+    //number of partial products collected before they are multiplied into the big integer
+    protected static final int BATCH_SIZE = 256;
+    protected long partial = 1;
+    protected long[] batch = new long[BATCH_SIZE];
+    protected int batchSize = 0;
+    protected BigInteger bigProduct = BigInteger.ONE;
+    protected boolean isNegative = false, isZero = false;
+    protected boolean hasDouble = false;
+    protected double doubleProduct = 1;
+    protected FMNumber numberProduct = null;
+    protected Vector<Expression> symbolicFactors = new Vector<Expression>();
+    protected MathContext context;
+
+    public ProductAccumulator(MathContext context) {
+        this.context = context;
+    }
+
+    public void MultiplyLong(long value) {
+        if (value == 0) {
+            isZero = true;
+            return;
+        }
+        if (value < 0) {
+            isNegative = !isNegative;
+            if (value == Long.MIN_VALUE) {
+                bigProduct = bigProduct.multiply(BigInteger.valueOf(value).negate());
+                return;
+            }
+            value = -value;
+        }
+        if (partial > Long.MAX_VALUE / value) {
+            batch[batchSize++] = partial;
+            partial = value;
+            if (batchSize == BATCH_SIZE) {
+                bigProduct = bigProduct.multiply(Combinatorics.Product(batch, 0, batchSize));
+                batchSize = 0;
+            }
+        } else {
+            partial *= value;
+        }
+    }
+
+    public void MultiplyDouble(double value) {
+        hasDouble = true;
+        doubleProduct *= value;
+    }
+
+    public void MultiplyNumber(FMNumber value) {
+        if (value.IsExactInteger() && IterationRange.IsMachineInteger(value.RealValue())) {
+            MultiplyLong(value.RealValue().longValue());
+        } else if (numberProduct == null) {
+            numberProduct = value;
+        } else {
+            numberProduct = numberProduct.Multiply(value, context);
+        }
+    }
+
+    /**
+     * Multiply by a (flattened) expression, which may be symbolic.  
+     */
+    public void MultiplyExpression(Expression value) throws ExpressionException {
+        FMNumber number = value.GetSingleNumber();
+        if (number != null) {
+            MultiplyNumber(number);
+        } else {
+            symbolicFactors.add(value);
+        }
+    }
+
+    /**
+     * Get the numeric part of the product.  
+     */
+    public FMNumber GetNumber() throws ExpressionException {
+        if (isZero) {
+            return FMNumber.ZERO;
+        }
+        BigInteger integerProduct = bigProduct.multiply(Combinatorics.Product(batch, 0, batchSize)).multiply(BigInteger.valueOf(partial));
+        FMNumber result = new FMNumber(isNegative ? integerProduct.negate() : integerProduct);
+        if (numberProduct != null) {
+            result = result.Multiply(numberProduct, context);
+        }
+        if (hasDouble) {
+            result = result.Multiply(new FMNumber(doubleProduct), context);
+        }
+        return result;
+    }
+
+    /**
+     * Get the complete product, including any symbolic factors.  
+     */
+    public Expression GetResult(ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Term term = new Term(new Power(new Factor(GetNumber())));
+        if (symbolicFactors.isEmpty()) {
+            return new Expression(term, TermOperator.NONE);
+        }
+        for (int i = 0; i < symbolicFactors.size(); i++) {
+            term = term.AppendPower(new Power(new Factor(symbolicFactors.get(i))), PowerOperator.MULTIPLY);
+        }
+        return expressionToolset.Flatten(new Expression(term, TermOperator.NONE));
+    }
+}
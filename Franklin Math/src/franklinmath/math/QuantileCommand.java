@@ -0,0 +1,77 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * The q-th quantile of a list of numbers, which is the element at position ceiling(n q) of the sorted list.  The second argument 
+ * may be a single q between 0 and 1 or a list of them.  
+ * @author Allen Jordan
+ */
+public class QuantileCommand extends StatisticsCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        PackedArray packed = GetDataArgument(args, 0);
+
+        //the quantiles may be given as one number or as a list
+        boolean isList = false;
+        Vector<FMNumber> quantileList;
+        SingleExpression single = args.get(1).IsExpression() ? args.get(1).GetLHS().GetSingle() : null;
+        if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsExprList()) {
+            isList = true;
+            quantileList = GetNumberListArgument(args, 1);
+        } else {
+            quantileList = new Vector<FMNumber>(1);
+            quantileList.add(GetNumberArgument(args, 1));
+        }
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+
+        int n = packed.Length();
+        int[] positions = new int[quantileList.size()];
+        for (int i = 0; i < positions.length; i++) {
+            FMNumber q = quantileList.get(i);
+            if ((q == null) || q.IsImaginary() || (q.RealValue().signum() < 0) || (q.RealValue().compareTo(BigDecimal.ONE) > 0)) {
+                throw new CommandException("Quantiles must be between 0 and 1", GetName());
+            }
+            //the exact product avoids rounding n q up or down past an integer
+            BigDecimal position = q.RealValue().multiply(BigDecimal.valueOf(n)).setScale(0, RoundingMode.CEILING);
+            positions[i] = Math.max(0, position.intValue() - 1);
+        }
+
+        try {
+            PackedArray result = Statistics.OrderStatistics(packed, positions);
+            if (isList) {
+                return new FMResult(new Factor(result));
+            }
+            return new FMResult(new Factor(result.GetNumber(0)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
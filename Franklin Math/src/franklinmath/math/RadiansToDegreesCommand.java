@@ -51,4 +51,14 @@ public class RadiansToDegreesCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return x * 180 / StrictMath.PI;
+    }
 }
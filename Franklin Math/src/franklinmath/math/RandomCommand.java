@@ -24,18 +24,60 @@ import franklinmath.expression.*;
 import java.util.Vector;
 
 /**
- * Generate a random number between 0 (inclusive) and 1 (exclusive).  
+ * Generate a random number between 0 (inclusive) and 1 (exclusive).  This is also the base class for the other random 
+ * commands, which draw from the shared generator in SplitMixRandom so that SeedRandom makes them repeatable.  
  * @author Allen Jordan
  */
 public class RandomCommand extends Command {
 
+    //each block of a random array gets its own stream, so the result does not depend on how the blocks are shared out
+    protected static final int BLOCK_SIZE = 1 << 16;
+
     @Override
     public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
         CheckArgsLength(args, 0);
         try {
-            return new FMResult(new Factor(new FMNumber(StrictMath.random())));
+            return new FMResult(new Factor(new FMNumber(SplitMixRandom.SplitShared().NextDouble())));
         } catch (ExpressionException ex) {
             throw new CommandException(ex.toString(), GetName());
         }
     }
+
+    /**
+     * Get a range argument, which is either a list {min, max} or a single max with a min of zero.  
+     * @param args      The function argument list.
+     * @param index     The index of the range argument.
+     * @return          The min and max.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected FMNumber[] GetRangeArgument(Vector<Equation> args, int index) throws CommandException {
+        FMNumber[] range = new FMNumber[2];
+        SingleExpression single = args.get(index).IsExpression() ? args.get(index).GetLHS().GetSingle() : null;
+        if ((single != null) && (!single.IsSingleNegative()) && single.SingleValue().IsExprList()) {
+            Vector<FMNumber> numberList = GetNumberListArgument(args, index);
+            if (numberList.size() != 2) {
+                throw new CommandException("Range {min, max} expected", GetName());
+            }
+            range[0] = numberList.get(0);
+            range[1] = numberList.get(1);
+        } else {
+            range[0] = FMNumber.ZERO;
+            range[1] = GetNumberArgument(args, index);
+        }
+        if ((range[0] == null) || (range[1] == null) || range[0].IsImaginary() || range[1].IsImaginary() || (range[0].compareTo(range[1]) > 0)) {
+            throw new CommandException("Invalid range", GetName());
+        }
+        return range;
+    }
+
+    /**
+     * Get the number of random values to generate.  
+     */
+    protected int GetCountArgument(Vector<Equation> args, int index) throws CommandException {
+        long count = GetIntegerArgument(args, index).longValue();
+        if ((count < 0) || (count > Integer.MAX_VALUE - 8)) {
+            throw new CommandException("Invalid count", GetName());
+        }
+        return (int) count;
+    }
 }
@@ -0,0 +1,73 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * RandomInteger[] gives 0 or 1 at random.  RandomInteger[max] and RandomInteger[{min, max}] give a uniformly distributed 
+ * integer in that range, including both ends, and RandomInteger[range, n] gives a packed list of n of them, generated in blocks 
+ * across the worker threads.  
+ * @author Allen Jordan
+ */
+public class RandomIntegerCommand extends RandomCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if (args.size() > 2) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        long min = 0, max = 1;
+        if (args.size() >= 1) {
+            FMNumber[] range = GetRangeArgument(args, 0);
+            if (!range[0].IsExactInteger() || !range[1].IsExactInteger() || !IterationRange.IsMachineInteger(range[0].RealValue()) ||
+                    !IterationRange.IsMachineInteger(range[1].RealValue())) {
+                throw new CommandException("Range of machine integers expected", GetName());
+            }
+            min = range[0].RealValue().longValue();
+            max = range[1].RealValue().longValue();
+        }
+        final long low = min, high = max;
+        final SplitMixRandom stream = SplitMixRandom.SplitShared();
+
+        try {
+            if (args.size() < 2) {
+                return new FMResult(new Factor(stream.NextLong(low, high)));
+            }
+            final long[] data = new long[GetCountArgument(args, 1)];
+            WorkerPool.ParallelForBlocks(0, data.length, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    SplitMixRandom random = stream.Split(blockStart / BLOCK_SIZE);
+                    for (int i = (int) blockStart; i < blockEnd; i++) {
+                        data[i] = random.NextLong(low, high);
+                    }
+                }
+            });
+            return new FMResult(new Factor(new PackedArray(data)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
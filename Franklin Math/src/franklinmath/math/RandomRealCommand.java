@@ -0,0 +1,71 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * RandomReal[] gives a uniformly distributed random machine real in [0, 1).  RandomReal[max] and RandomReal[{min, max}] give 
+ * one in that range, and RandomReal[range, n] gives a packed list of n of them, generated in blocks across the worker threads.  
+ * @author Allen Jordan
+ */
+public class RandomRealCommand extends RandomCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if (args.size() > 2) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        double min = 0, max = 1;
+        if (args.size() >= 1) {
+            FMNumber[] range = GetRangeArgument(args, 0);
+            min = range[0].RealValue().doubleValue();
+            max = range[1].RealValue().doubleValue();
+        }
+        final double low = min, width = max - min;
+        if (Double.isInfinite(low) || Double.isInfinite(width)) {
+            throw new CommandException("Range is too large for machine reals", GetName());
+        }
+        final SplitMixRandom stream = SplitMixRandom.SplitShared();
+
+        try {
+            if (args.size() < 2) {
+                return new FMResult(new Factor(low + width * stream.NextDouble()));
+            }
+            final double[] data = new double[GetCountArgument(args, 1)];
+            WorkerPool.ParallelForBlocks(0, data.length, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    SplitMixRandom random = stream.Split(blockStart / BLOCK_SIZE);
+                    for (int i = (int) blockStart; i < blockEnd; i++) {
+                        data[i] = low + width * random.NextDouble();
+                    }
+                }
+            });
+            return new FMResult(new Factor(new PackedArray(data)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
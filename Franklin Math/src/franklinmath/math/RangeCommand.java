@@ -0,0 +1,89 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Generate the arithmetic sequence a, a + step, ... up to b as a packed array.  Integer ranges give exact integers and 
+ * all other ranges give machine reals.  
+ * @author Allen Jordan
+ */
+public class RangeCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 1) || (args.size() > 3)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+
+        try {
+            FMNumber start = FMNumber.ONE, step = FMNumber.ONE, end;
+            if (args.size() == 1) {
+                end = GetNumberArgument(args, 0);
+            } else {
+                start = GetNumberArgument(args, 0);
+                end = GetNumberArgument(args, 1);
+                if (args.size() == 3) {
+                    step = GetNumberArgument(args, 2);
+                }
+            }
+            if ((start == null) || (end == null) || (step == null)) {
+                return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+            }
+            IterationRange range = new IterationRange(null, start, end, step);
+            if (range.Count() > IteratorCommand.MAX_LIST_LENGTH) {
+                throw new CommandException("Range is too long", GetName());
+            }
+
+            int count = (int) range.Count();
+            if (range.IsInteger()) {
+                long[] data = new long[count];
+                for (int i = 0; i < count; i++) {
+                    data[i] = range.GetLong(i);
+                }
+                return new FMResult(new Factor(new PackedArray(data)));
+            }
+
+            //exact integers past the long range stay exact
+            if (range.IsExact()) {
+                Vector<Expression> exprList = new Vector<Expression>(count);
+                for (int i = 0; i < count; i++) {
+                    exprList.add(new Expression(new Term(new Power(new Factor(range.GetNumber(i)))), TermOperator.NONE));
+                }
+                return new FMResult(new Factor(exprList));
+            }
+
+            //other ranges give machine reals
+            double[] data = new double[count];
+            for (int i = 0; i < count; i++) {
+                data[i] = range.GetDouble(i);
+            }
+            return new FMResult(new Factor(new PackedArray(data)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (IllegalArgumentException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.io.IOException;
+
+import franklinmath.expression.*;
+
+/**
+ * Ratios[list] gives the ratios {b / a, c / b, ...} of successive elements of a list, and Ratios[list, k] the k-th ratios.  
+ * Packed real arrays are divided across the worker threads, as are integer arrays whose ratios are all integers.  Any other 
+ * ratios are found one element at a time, the same as dividing the elements directly.  
+ * @author Allen Jordan
+ */
+public class RatiosCommand extends DifferencesCommand {
+
+    @Override
+    protected PackedArray AdjacentPacked(PackedArray packed) throws ExpressionException, IOException {
+        return PrefixScan.Ratios(packed);
+    }
+
+    @Override
+    protected Expression AdjacentExpression(Expression previous, Expression next) throws ExpressionException {
+        Term ratio = new Term(new Power(new Factor(next))).AppendPower(new Power(new Factor(previous)), PowerOperator.DIVIDE);
+        return new Expression(ratio, TermOperator.NONE);
+    }
+}
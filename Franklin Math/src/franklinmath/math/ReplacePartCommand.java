@@ -0,0 +1,55 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * ReplacePart[list, i, x] gives a list with element i replaced by x, counting from 1, or from the end when i is negative.  
+ * The new list shares all but one path of its tree with the old one, and packed arrays stay packed when x fits them.  
+ * @author Allen Jordan
+ */
+public class ReplacePartCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 3);
+        Factor list = GetListArgument(args, 0);
+        Expression element = GetElementArgument(args, 2);
+
+        try {
+            int index = GetPartArgument(args, 1, list.ListLength());
+            FMNumber number = element.GetSingleNumber();
+            if (list.IsPackedArray() && (number != null)) {
+                PackedArray packed = list.GetPackedArray().Set(index, number);
+                if (packed != null) {
+                    return new FMResult(new Factor(packed));
+                }
+            }
+            PersistentVector exprList = list.GetPersistentList();
+            return new FMResult(new Factor(exprList.Set(index, element).MarkFlat(exprList.GetFlatGeneration())));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
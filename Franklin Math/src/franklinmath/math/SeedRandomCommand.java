@@ -0,0 +1,48 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * SeedRandom[s] resets the random generator with the integer seed s, so that the random commands that follow give the same 
+ * numbers every time.  SeedRandom[] reseeds it from the clock.  
+ * @author Allen Jordan
+ */
+public class SeedRandomCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if (args.size() > 1) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        //seeds of any size are folded into 64 bits
+        long seed = (args.size() == 1) ? GetIntegerArgument(args, 0).longValue() : System.nanoTime() ^ System.currentTimeMillis();
+        SplitMixRandom.SetSharedSeed(seed);
+        try {
+            return new FMResult(new Factor(seed));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Select[list, pred] gives the elements of a list for which pred[element] is True, in their original order.  
+ * @author Allen Jordan
+ */
+public class SelectCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        LazySequence sequence = GetSequenceArgument(args, 0);
+        String functionName = GetFunctionArgument(args, 1);
+
+        try {
+            if (sequence != null) {
+                return new FMResult(new Factor(SelectSequence(sequence, functionName, expressionToolset)));
+            }
+            Factor list = GetListArgument(args, 0);
+            Vector<Expression> exprList = GetElements(list);
+            Vector<Expression> resultList = new Vector<Expression>();
+            for (int i = 0; i < exprList.size(); i++) {
+                if (IsTrue(ApplyFunction(functionName, exprList.get(i), expressionToolset))) {
+                    resultList.add(exprList.get(i));
+                }
+            }
+            return ListResult(resultList);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Add a selection stage to a lazy sequence.  The predicate is only called as elements are pulled through, and any 
+     * string results it gives when the sequence is displayed later are dropped.  
+     */
+    protected LazySequence SelectSequence(final LazySequence source, final String functionName, ExpressionToolset expressionToolset) {
+        final ExpressionToolset stageToolset = expressionToolset.CreateTaskToolset(null);
+        return new LazySequence() {
+
+            @Override
+            public boolean IsInfinite() {
+                return source.IsInfinite();
+            }
+
+            @Override
+            public Generator CreateGenerator() {
+                final Generator sourceGenerator = source.CreateGenerator();
+                return new Generator() {
+
+                    @Override
+                    public Expression Next() throws ExpressionException, ExecutionException {
+                        Expression element = sourceGenerator.Next();
+                        while ((element != null) && !IsTrue(ApplyFunction(functionName, element, stageToolset))) {
+                            element = sourceGenerator.Next();
+                        }
+                        return element;
+                    }
+                };
+            }
+        };
+    }
+}
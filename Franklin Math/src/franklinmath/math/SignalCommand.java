@@ -0,0 +1,138 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+import java.math.BigInteger;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Base class for the signal processing commands, which work on lists of machine numbers.  
+ * @author Allen Jordan
+ */
+public abstract class SignalCommand extends Command {
+
+    /**
+     * Get a list argument as a packed array.  Lists of exact numbers that can not be packed exactly are rounded to machine 
+     * numbers, since the result is numeric anyway.  
+     * @param args      The function argument list.
+     * @param index     The index of the list argument.
+     * @return          The packed list, or null if some element is not a number.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected PackedArray GetSignalArgument(Vector<Equation> args, int index) throws CommandException {
+        Factor list = GetListArgument(args, index);
+        try {
+            if (list.IsPackedArray()) {
+                return list.GetPackedArray();
+            }
+            Vector<Expression> exprList = list.GetExprList();
+            PackedArray packed = PackedArray.Pack(exprList);
+            if (packed != null) {
+                return packed;
+            }
+            double[] data = new double[2 * exprList.size()];
+            boolean isComplex = false;
+            for (int i = 0; i < exprList.size(); i++) {
+                FMNumber number = exprList.get(i).GetSingleNumber();
+                if (number == null) {
+                    return null;
+                }
+                data[2 * i] = number.RealValue().doubleValue();
+                data[2 * i + 1] = number.ImaginaryValue().doubleValue();
+                isComplex = isComplex || number.IsImaginary();
+            }
+            if (isComplex) {
+                return new PackedArray(data, true);
+            }
+            double[] realData = new double[exprList.size()];
+            for (int i = 0; i < realData.length; i++) {
+                realData[i] = data[2 * i];
+            }
+            return new PackedArray(realData);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get a list argument as exact integers, for results that must not be rounded to machine numbers.  
+     * @param args      The function argument list.
+     * @param index     The index of the list argument.
+     * @return          The integers, or null if some element is not an exact integer.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected BigInteger[] GetExactIntegerArgument(Vector<Equation> args, int index) throws CommandException {
+        Factor list = GetListArgument(args, index);
+        try {
+            if (list.IsPackedArray()) {
+                PackedArray packed = list.GetPackedArray();
+                if (!packed.IsInteger()) {
+                    return null;
+                }
+                long[] data = packed.GetLongData();
+                BigInteger[] result = new BigInteger[data.length];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = BigInteger.valueOf(data[i]);
+                }
+                return result;
+            }
+            Vector<Expression> exprList = list.GetExprList();
+            BigInteger[] result = new BigInteger[exprList.size()];
+            for (int i = 0; i < result.length; i++) {
+                FMNumber number = exprList.get(i).GetSingleNumber();
+                if ((number == null) || !number.IsExactInteger()) {
+                    return null;
+                }
+                result[i] = number.toBigIntegerExact();
+            }
+            return result;
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        }
+    }
+
+    /**
+     * Get the elements of a packed array as interleaved (real, imaginary) pairs.  
+     */
+    protected static double[] ToComplexData(PackedArray packed) throws ExpressionException {
+        if (packed.IsComplex()) {
+            return packed.GetDoubleData().clone();
+        }
+        double[] data = new double[2 * packed.Length()];
+        for (int i = 0; i < packed.Length(); i++) {
+            data[2 * i] = packed.GetDouble(i);
+        }
+        return data;
+    }
+
+    /**
+     * Leave the command unevaluated, for lists that are not numeric.  
+     */
+    protected FMResult SymbolicResult(Vector<Equation> args) throws CommandException {
+        try {
+            return new FMResult(new Factor(new SymbolicFunction(GetName(), args, isMathFunction)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * SortBy[list, f] sorts the elements of a list in order of f[element].  The function is called once per element and the keys 
+ * are kept, instead of being recomputed for every comparison.  Elements with equal keys keep their original order.  
+ * @author Allen Jordan
+ */
+public class SortByCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        Factor list = GetListArgument(args, 0);
+        String functionName = GetFunctionArgument(args, 1);
+
+        try {
+            Vector<Expression> exprList = list.IsPackedArray() ? list.GetPackedArray().ToExprList() : list.GetExprList();
+            int n = exprList.size();
+            Vector<Expression> keyList = new Vector<Expression>(n);
+            for (int i = 0; i < n; i++) {
+                keyList.add(ApplyFunction(functionName, exprList.get(i), expressionToolset));
+            }
+
+            //machine number keys are sorted as a packed array, and any other numbers with a stable object sort
+            int[] ordering;
+            PackedArray packedKeys = PackedArray.Pack(keyList);
+            if ((packedKeys != null) && packedKeys.IsInteger()) {
+                ordering = ParallelSort.Ordering(packedKeys.GetLongData());
+            } else if ((packedKeys != null) && packedKeys.IsReal()) {
+                ordering = ParallelSort.Ordering(packedKeys.GetDoubleData());
+            } else {
+                ordering = GetOrdering(keyList);
+            }
+
+            Vector<Expression> resultList = new Vector<Expression>(n);
+            for (int i = 0; i < n; i++) {
+                resultList.add(exprList.get(ordering[i]));
+            }
+            PackedArray packed = PackedArray.Pack(resultList);
+            if (packed != null) {
+                return new FMResult(new Factor(packed));
+            }
+            return new FMResult(new Factor(resultList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected int[] GetOrdering(Vector<Expression> keyList) throws ExpressionException, CommandException {
+        final FMNumber[] keys = new FMNumber[keyList.size()];
+        Integer[] positions = new Integer[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = keyList.get(i).GetSingleNumber();
+            if ((keys[i] == null) || keys[i].IsImaginary()) {
+                throw new CommandException("Sort keys must be real numbers", GetName());
+            }
+            positions[i] = i;
+        }
+        //object sorts are stable merge sorts
+        Arrays.sort(positions, new Comparator<Integer>() {
+
+            public int compare(Integer a, Integer b) {
+                return keys[a].compareTo(keys[b]);
+            }
+        });
+        int[] ordering = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ordering[i] = positions[i];
+        }
+        return ordering;
+    }
+}
@@ -19,9 +19,11 @@ along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
 package franklinmath.math;
 
 import java.util.*;
+import java.io.IOException;
 
 import franklinmath.executor.*;
 import franklinmath.expression.*;
+import franklinmath.util.*;
 
 /**
  * Sort the numbers in a list.  
@@ -32,16 +34,32 @@ public class SortCommand extends Command {
     @Override
     public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
 
-        SingleExpression single = GetSingleArgument(args);
-        if (single.IsSingleNegative()) {
-            throw new CommandException("Invalid negative single expression", GetName());
-        }
-        Factor factor = single.SingleValue();
-        if (!factor.IsExprList()) {
-            throw new CommandException("Argument must be an expression list", GetName());
-        }
+        CheckArgsLength(args, 1);
+        Factor factor = GetListArgument(args, 0);
 
         try {
+            //packed arrays are sorted as primitive arrays, with a parallel radix sort
+            if (factor.IsPackedArray() && !factor.GetPackedArray().IsComplex()) {
+                PackedArray packed = factor.GetPackedArray();
+                if (packed.Length() <= 0) throw new CommandException("Input expression list is empty", GetName());
+                //off heap data is sorted into new off heap storage
+                if (packed.IsOffHeap()) {
+                    try {
+                        return new FMResult(new Factor(new PackedArray(ParallelSort.Sort(packed.GetOffHeapStorage(), packed.IsReal()), packed.IsInteger())));
+                    } catch (IOException ex) {
+                        throw new CommandException(ex.getMessage(), GetName());
+                    }
+                }
+                if (packed.IsInteger()) {
+                    long[] data = packed.GetLongData().clone();
+                    ParallelSort.Sort(data);
+                    return new FMResult(new Factor(new PackedArray(data)));
+                }
+                double[] data = packed.GetDoubleData().clone();
+                ParallelSort.Sort(data);
+                return new FMResult(new Factor(new PackedArray(data)));
+            }
+
             Vector<Expression> exprList = factor.GetExprList();
             if (exprList.size() <= 0) throw new CommandException("Input expression list is empty", GetName());
 
@@ -61,6 +79,10 @@ public class SortCommand extends Command {
                 resultExprList.add(new Expression(new Term(new Power(new Factor(numberList.get(i)))), TermOperator.NONE));
             }
             
+            PackedArray packed = PackedArray.Pack(resultExprList);
+            if (packed != null) {
+                return new FMResult(new Factor(packed));
+            }
             return new FMResult(new Factor(resultExprList));
         }
         catch (ExpressionException ex) {
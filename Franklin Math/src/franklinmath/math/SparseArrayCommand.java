@@ -0,0 +1,121 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Build a sparse matrix of machine reals, either from a dense matrix or from a list of {row, column, value} entries and 
+ * the dimensions {rows, columns}.  The dimensions are required with entries, since a list of entries is itself a matrix 
+ * with three columns.  Entries given more than once are added together.  
+ * @author Allen Jordan
+ */
+public class SparseArrayCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        if ((args.size() < 1) || (args.size() > 2)) {
+            throw new CommandException("Invalid function parameter list length", GetName());
+        }
+        SparseMatrix sparse = GetSparseArgument(args, 0);
+
+        try {
+            if (sparse != null) {
+                return new FMResult(new Factor(sparse));
+            }
+            Vector<Factor> rowList = GetMatrixArgument(args, 0);
+            int numColumns = rowList.get(0).ListLength();
+            double[] data = DenseMatrix.GetRealData(rowList, numColumns);
+            if (data == null) {
+                throw new CommandException("Sparse arrays can only hold real numbers", GetName());
+            }
+
+            //a single matrix is always in dense form
+            if (args.size() == 1) {
+                return new FMResult(new Factor(FromDense(data, rowList.size(), numColumns)));
+            }
+            if (numColumns != 3) {
+                throw new CommandException("Entries must be given as {row, column, value}", GetName());
+            }
+
+            int numEntries = rowList.size();
+            int[] rows = new int[numEntries];
+            int[] columns = new int[numEntries];
+            double[] values = new double[numEntries];
+            int maxRow = 0, maxColumn = 0;
+            for (int k = 0; k < numEntries; k++) {
+                rows[k] = GetIndex(data[3 * k]);
+                columns[k] = GetIndex(data[3 * k + 1]);
+                values[k] = data[3 * k + 2];
+                maxRow = Math.max(maxRow, rows[k] + 1);
+                maxColumn = Math.max(maxColumn, columns[k] + 1);
+            }
+
+            Vector<FMNumber> dimensions = GetNumberListArgument(args, 1);
+            if (dimensions.size() != 2) {
+                throw new CommandException("Dimensions must be given as {rows, columns}", GetName());
+            }
+            int numRows = GetIndex(dimensions.get(0).doubleValue()) + 1;
+            int numMatrixColumns = GetIndex(dimensions.get(1).doubleValue()) + 1;
+            if ((maxRow > numRows) || (maxColumn > numMatrixColumns)) {
+                throw new CommandException("Entry position is outside of the dimensions", GetName());
+            }
+            return new FMResult(new Factor(SparseMatrix.FromTriples(numRows, numMatrixColumns, rows, columns, values, numEntries)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    //convert a one-based index to zero-based
+    protected int GetIndex(double value) throws CommandException {
+        if ((value != Math.rint(value)) || (value < 1) || (value > Integer.MAX_VALUE - 1)) {
+            throw new CommandException("Positive integer index expected", GetName());
+        }
+        return (int) value - 1;
+    }
+
+    protected static SparseMatrix FromDense(double[] data, int numRows, int numColumns) {
+        int count = 0;
+        for (int p = 0; p < data.length; p++) {
+            if (data[p] != 0) {
+                count++;
+            }
+        }
+        int[] rowStart = new int[numRows + 1];
+        int[] columnIndex = new int[count];
+        double[] values = new double[count];
+        count = 0;
+        for (int i = 0; i < numRows; i++) {
+            rowStart[i] = count;
+            for (int j = 0; j < numColumns; j++) {
+                double value = data[i * numColumns + j];
+                if (value != 0) {
+                    columnIndex[count] = j;
+                    values[count++] = value;
+                }
+            }
+        }
+        rowStart[numRows] = count;
+        return new SparseMatrix(numRows, numColumns, rowStart, columnIndex, values);
+    }
+}
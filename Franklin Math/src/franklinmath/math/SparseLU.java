@@ -0,0 +1,250 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Arrays;
+
+import franklinmath.expression.*;
+
+/**
+ * Sparse LU decomposition P A Q = L U using the left-looking algorithm of Gilbert and Peierls.  Each column of L and U is 
+ * found with a sparse triangular solve that only touches the entries reachable in the graph of L, so the work is 
+ * proportional to the arithmetic actually needed.  The columns are taken in reverse Cuthill-McKee order to limit fill-in, 
+ * and threshold partial pivoting prefers the diagonal so that the ordering is kept when it is numerically safe.  
+ * @author Allen Jordan
+ */
+public final class SparseLU {
+
+    //a diagonal pivot is used if it is at least this fraction of the largest candidate
+    protected static final double PIVOT_THRESHOLD = 0.1;
+
+    protected final int size;
+    //L and U in compressed column form, with the unit diagonal of L first and the diagonal of U last in each column
+    protected int[] lowerStart, lowerRows, upperStart, upperRows;
+    protected double[] lowerValues, upperValues;
+    //row pivoting (original row to pivot position) and column ordering (position to original column)
+    protected int[] rowPosition, columnOrder;
+    protected boolean isSingular = false;
+
+    public SparseLU(SparseMatrix matrix) {
+        assert matrix.NumRows() == matrix.NumColumns();
+        size = matrix.NumRows();
+        columnOrder = SparseOrdering.ReverseCuthillMcKee(matrix);
+        Factor(matrix.Transpose());
+    }
+
+    public boolean IsSingular() {
+        return isSingular;
+    }
+
+    /**
+     * Get the number of stored entries in L and U, which shows the fill-in.  
+     */
+    public int NumNonZeros() {
+        return lowerStart[size] + upperStart[size];
+    }
+
+    //factor, given the matrix in compressed column form (as the CSR form of its transpose)
+    protected void Factor(SparseMatrix columns) {
+        int n = size;
+        int[] columnStart = columns.GetRowStart();
+        int[] rowIndex = columns.GetColumnIndex();
+        double[] values = columns.GetValues();
+
+        int capacity = 2 * columns.NumNonZeros() + n;
+        lowerStart = new int[n + 1];
+        upperStart = new int[n + 1];
+        lowerRows = new int[capacity];
+        lowerValues = new double[capacity];
+        upperRows = new int[capacity];
+        upperValues = new double[capacity];
+        rowPosition = new int[n];
+        Arrays.fill(rowPosition, -1);
+
+        double[] x = new double[n];
+        int[] reach = new int[n];
+        int[] stack = new int[n];
+        int[] stackPosition = new int[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int lowerCount = 0, upperCount = 0;
+
+        for (int k = 0; k < n; k++) {
+            lowerStart[k] = lowerCount;
+            upperStart[k] = upperCount;
+            //x = L \ A(:, column), where only the rows in the reach of the column's pattern can be non-zero
+            int column = columnOrder[k];
+            int top = Reach(columnStart, rowIndex, column, k, reach, stack, stackPosition, mark);
+            //the new columns of L and U together hold at most the reach, plus the unit diagonal
+            int needed = n - top + 1;
+            if (lowerCount + needed > lowerRows.length) {
+                int newCapacity = Math.max(2 * lowerRows.length, lowerCount + needed);
+                lowerRows = Arrays.copyOf(lowerRows, newCapacity);
+                lowerValues = Arrays.copyOf(lowerValues, newCapacity);
+            }
+            if (upperCount + needed > upperRows.length) {
+                int newCapacity = Math.max(2 * upperRows.length, upperCount + needed);
+                upperRows = Arrays.copyOf(upperRows, newCapacity);
+                upperValues = Arrays.copyOf(upperValues, newCapacity);
+            }
+            for (int p = top; p < n; p++) {
+                x[reach[p]] = 0;
+            }
+            for (int p = columnStart[column]; p < columnStart[column + 1]; p++) {
+                x[rowIndex[p]] = values[p];
+            }
+            for (int p = top; p < n; p++) {
+                int j = reach[p];
+                int position = rowPosition[j];
+                if (position < 0) {
+                    continue;
+                }
+                double xj = x[j];
+                for (int q = lowerStart[position] + 1; q < lowerStart[position + 1]; q++) {
+                    x[lowerRows[q]] -= lowerValues[q] * xj;
+                }
+            }
+
+            //entries in rows that are already pivoted belong to U, and the largest of the rest is the pivot
+            int pivot = -1;
+            double biggest = -1;
+            for (int p = top; p < n; p++) {
+                int i = reach[p];
+                if (rowPosition[i] < 0) {
+                    double value = Math.abs(x[i]);
+                    if (value > biggest) {
+                        biggest = value;
+                        pivot = i;
+                    }
+                } else {
+                    upperRows[upperCount] = rowPosition[i];
+                    upperValues[upperCount++] = x[i];
+                }
+            }
+            if ((pivot < 0) || (biggest <= 0)) {
+                isSingular = true;
+                lowerStart[n] = lowerCount;
+                upperStart[n] = upperCount;
+                return;
+            }
+            if ((rowPosition[column] < 0) && (Math.abs(x[column]) >= PIVOT_THRESHOLD * biggest)) {
+                pivot = column;
+            }
+
+            double pivotValue = x[pivot];
+            upperRows[upperCount] = k;
+            upperValues[upperCount++] = pivotValue;
+            rowPosition[pivot] = k;
+            lowerRows[lowerCount] = pivot;
+            lowerValues[lowerCount++] = 1;
+            for (int p = top; p < n; p++) {
+                int i = reach[p];
+                if (rowPosition[i] < 0) {
+                    lowerRows[lowerCount] = i;
+                    lowerValues[lowerCount++] = x[i] / pivotValue;
+                }
+                x[i] = 0;
+            }
+        }
+        lowerStart[n] = lowerCount;
+        upperStart[n] = upperCount;
+
+        //renumber the rows of L by pivot position
+        for (int p = 0; p < lowerCount; p++) {
+            lowerRows[p] = rowPosition[lowerRows[p]];
+        }
+    }
+
+    //find the rows reachable from the pattern of a column through the graph of L, in topological order at reach[top..n)
+    protected int Reach(int[] columnStart, int[] rowIndex, int column, int stamp, int[] reach, int[] stack, int[] stackPosition, int[] mark) {
+        int top = size;
+        for (int p = columnStart[column]; p < columnStart[column + 1]; p++) {
+            int start = rowIndex[p];
+            if (mark[start] == stamp) {
+                continue;
+            }
+            //depth first search without recursion
+            int head = 0;
+            stack[0] = start;
+            while (head >= 0) {
+                int j = stack[head];
+                int position = rowPosition[j];
+                if (mark[j] != stamp) {
+                    mark[j] = stamp;
+                    stackPosition[head] = (position < 0) ? 0 : lowerStart[position] + 1;
+                }
+                boolean isDone = true;
+                int end = (position < 0) ? 0 : lowerStart[position + 1];
+                for (int q = stackPosition[head]; q < end; q++) {
+                    int i = lowerRows[q];
+                    if (mark[i] == stamp) {
+                        continue;
+                    }
+                    stackPosition[head] = q + 1;
+                    stack[++head] = i;
+                    isDone = false;
+                    break;
+                }
+                if (isDone) {
+                    head--;
+                    reach[--top] = j;
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Solve A x = b.  
+     * @param b     The right hand side.  
+     * @return      The solution.  
+     */
+    public double[] Solve(double[] b) {
+        assert !isSingular;
+        int n = size;
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[rowPosition[i]] = b[i];
+        }
+        for (int j = 0; j < n; j++) {
+            double yj = y[j];
+            if (yj != 0) {
+                for (int p = lowerStart[j] + 1; p < lowerStart[j + 1]; p++) {
+                    y[lowerRows[p]] -= lowerValues[p] * yj;
+                }
+            }
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            int diagonal = upperStart[j + 1] - 1;
+            y[j] /= upperValues[diagonal];
+            double yj = y[j];
+            if (yj != 0) {
+                for (int p = upperStart[j]; p < diagonal; p++) {
+                    y[upperRows[p]] -= upperValues[p] * yj;
+                }
+            }
+        }
+        double[] result = new double[n];
+        for (int k = 0; k < n; k++) {
+            result[columnOrder[k]] = y[k];
+        }
+        return result;
+    }
+}
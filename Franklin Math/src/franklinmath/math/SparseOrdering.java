@@ -0,0 +1,177 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Arrays;
+
+import franklinmath.expression.*;
+
+/**
+ * Fill-reducing orderings for sparse matrices.  
+ * @author Allen Jordan
+ */
+public class SparseOrdering {
+
+    //Prevent instantiation
+    protected SparseOrdering() {
+    }
+
+    /**
+     * Find the reverse Cuthill-McKee ordering of the symmetric pattern of A + A^T.  This gathers the non-zeros close to the 
+     * diagonal, which limits the fill-in of an LU factorization to the resulting profile.  
+     * @param matrix    A square sparse matrix.  
+     * @return          The ordering, where entry k is the original index placed at position k.  
+     */
+    public static int[] ReverseCuthillMcKee(SparseMatrix matrix) {
+        int n = matrix.NumRows();
+        SparseMatrix pattern = SymmetricPattern(matrix);
+        int[] start = pattern.GetRowStart();
+        int[] neighbors = pattern.GetColumnIndex();
+        int[] degree = new int[n];
+        for (int i = 0; i < n; i++) {
+            degree[i] = start[i + 1] - start[i];
+        }
+
+        int[] order = new int[n];
+        boolean[] isVisited = new boolean[n];
+        int[] levels = new int[n];
+        Arrays.fill(levels, -1);
+        int[] queue = new int[n];
+        int count = 0;
+        for (int seed = 0; seed < n; seed++) {
+            if (isVisited[seed]) {
+                continue;
+            }
+            int root = PeripheralNode(seed, start, neighbors, degree, levels, queue);
+
+            //breadth first search, visiting the neighbors of each node in order of increasing degree
+            int head = count;
+            order[count++] = root;
+            isVisited[root] = true;
+            while (head < count) {
+                int node = order[head++];
+                int firstNew = count;
+                for (int p = start[node]; p < start[node + 1]; p++) {
+                    int neighbor = neighbors[p];
+                    if (!isVisited[neighbor]) {
+                        isVisited[neighbor] = true;
+                        order[count++] = neighbor;
+                    }
+                }
+                SortByDegree(order, firstNew, count, degree);
+            }
+        }
+
+        for (int i = 0; i < n / 2; i++) {
+            int temp = order[i];
+            order[i] = order[n - 1 - i];
+            order[n - 1 - i] = temp;
+        }
+        return order;
+    }
+
+    //the pattern of A + A^T without the diagonal
+    protected static SparseMatrix SymmetricPattern(SparseMatrix matrix) {
+        int n = matrix.NumRows();
+        int[] rowStart = matrix.GetRowStart();
+        int[] columnIndex = matrix.GetColumnIndex();
+        int nonZeros = matrix.NumNonZeros();
+        int[] rows = new int[2 * nonZeros];
+        int[] columns = new int[2 * nonZeros];
+        double[] ones = new double[2 * nonZeros];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            for (int p = rowStart[i]; p < rowStart[i + 1]; p++) {
+                int j = columnIndex[p];
+                if (i != j) {
+                    rows[count] = i;
+                    columns[count] = j;
+                    ones[count++] = 1;
+                    rows[count] = j;
+                    columns[count] = i;
+                    ones[count++] = 1;
+                }
+            }
+        }
+        return SparseMatrix.FromTriples(n, n, rows, columns, ones, count);
+    }
+
+    //find a pseudo-peripheral node in the component of the seed (George and Liu), by moving to a smallest degree node of 
+    //the last breadth first level for as long as that increases the number of levels
+    protected static int PeripheralNode(int seed, int[] start, int[] neighbors, int[] degree, int[] levels, int[] queue) {
+        int root = seed;
+        int size = BreadthFirst(root, start, neighbors, levels, queue);
+        int eccentricity = levels[queue[size - 1]];
+        while (true) {
+            int candidate = queue[size - 1];
+            for (int k = size - 1; (k >= 0) && (levels[queue[k]] == eccentricity); k--) {
+                if (degree[queue[k]] < degree[candidate]) {
+                    candidate = queue[k];
+                }
+            }
+            ClearLevels(levels, queue, size);
+            size = BreadthFirst(candidate, start, neighbors, levels, queue);
+            int candidateEccentricity = levels[queue[size - 1]];
+            if (candidateEccentricity <= eccentricity) {
+                ClearLevels(levels, queue, size);
+                return root;
+            }
+            root = candidate;
+            eccentricity = candidateEccentricity;
+        }
+    }
+
+    //breadth first search from the root, giving the visited nodes in the queue and their distances in the levels
+    protected static int BreadthFirst(int root, int[] start, int[] neighbors, int[] levels, int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = root;
+        levels[root] = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int p = start[node]; p < start[node + 1]; p++) {
+                int neighbor = neighbors[p];
+                if (levels[neighbor] < 0) {
+                    levels[neighbor] = levels[node] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        return tail;
+    }
+
+    protected static void ClearLevels(int[] levels, int[] queue, int size) {
+        for (int k = 0; k < size; k++) {
+            levels[queue[k]] = -1;
+        }
+    }
+
+    //sort a short range of nodes by degree, keeping the order of equal degrees
+    protected static void SortByDegree(int[] nodes, int from, int to, int[] degree) {
+        for (int p = from + 1; p < to; p++) {
+            int node = nodes[p];
+            int q = p - 1;
+            while ((q >= from) && (degree[nodes[q]] > degree[node])) {
+                nodes[q + 1] = nodes[q];
+                q--;
+            }
+            nodes[q + 1] = node;
+        }
+    }
+}
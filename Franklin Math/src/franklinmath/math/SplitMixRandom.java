@@ -0,0 +1,140 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+/**
+ * A splittable pseudo-random generator using the SplitMix64 algorithm (the same one as java.util.SplittableRandom in newer 
+ * Java versions).  Each generator is a 64 bit counter that advances by an odd gamma, with the output scrambled by a mixing 
+ * function, so generators are cheap to create and split into statistically independent streams.  Split(index) gives the 
+ * stream for one block of a large job, so blocks can be generated on any thread in any order and still give the same result.  
+ * The random commands share one generator, which SeedRandom can reset.  
+ * @author Allen Jordan
+ */
+public final class SplitMixRandom {
+
+    protected static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    protected static final double DOUBLE_UNIT = 0x1.0p-53;
+    protected static SplitMixRandom shared = new SplitMixRandom(Mix64(System.currentTimeMillis()) ^ Mix64(System.nanoTime()));
+    protected long seed;
+    protected final long gamma;
+
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    protected SplitMixRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Reset the shared generator, so that the following random commands give a repeatable sequence.  
+     */
+    public static synchronized void SetSharedSeed(long seed) {
+        shared = new SplitMixRandom(seed);
+    }
+
+    /**
+     * Split a new stream off of the shared generator.  Each command call takes one stream and uses it for all of its numbers.  
+     */
+    public static synchronized SplitMixRandom SplitShared() {
+        return shared.Split();
+    }
+
+    public long NextLong() {
+        seed += gamma;
+        return Mix64(seed);
+    }
+
+    /**
+     * A uniformly distributed machine real in [0, 1).  
+     */
+    public double NextDouble() {
+        return (NextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * A uniformly distributed integer in [0, bound), for a positive bound.  Values from the uneven top end of the range are 
+     * rejected, so there is no bias toward small values.  
+     */
+    public long NextLong(long bound) {
+        assert bound > 0;
+        long r = NextLong();
+        long mask = bound - 1;
+        if ((bound & mask) == 0) {
+            return r & mask;
+        }
+        long u = r >>> 1;
+        while (u + mask - (r = u % bound) < 0) {
+            u = NextLong() >>> 1;
+        }
+        return r;
+    }
+
+    /**
+     * A uniformly distributed integer in [low, high], for any low <= high.  
+     */
+    public long NextLong(long low, long high) {
+        assert low <= high;
+        long range = high - low + 1;
+        if (range > 0) {
+            return low + NextLong(range);
+        }
+        //the range does not fit in a long, so draw full 64 bit values until one falls inside it
+        long r = NextLong();
+        while ((r < low) || (r > high)) {
+            r = NextLong();
+        }
+        return r;
+    }
+
+    /**
+     * Split off a new generator, advancing this one.  
+     */
+    public SplitMixRandom Split() {
+        long childSeed = NextLong();
+        seed += gamma;
+        return new SplitMixRandom(childSeed, MixGamma(seed));
+    }
+
+    /**
+     * Get the generator for block number index of a large job, without advancing this generator.  The result is the same as 
+     * the index-th of a series of calls to Split, if they were made from the current state.  
+     */
+    public SplitMixRandom Split(long index) {
+        long childSeed = Mix64(seed + (2 * index + 1) * gamma);
+        return new SplitMixRandom(childSeed, MixGamma(seed + (2 * index + 2) * gamma));
+    }
+
+    protected static long Mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    //gammas must be odd, and are rejected if they have too few bit transitions to mix well
+    protected static long MixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int transitions = Long.bitCount(z ^ (z >>> 1));
+        return (transitions < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -49,4 +49,14 @@ public class SqrtCommand extends Command {
             }
         }
     }
+
+    @Override
+    public boolean HasRealKernel() {
+        return true;
+    }
+
+    @Override
+    public double EvaluateReal(double x) {
+        return StrictMath.sqrt(x);
+    }
 }
@@ -0,0 +1,312 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Order statistics and binning for the statistics commands.  Order statistics are found by selection, which rearranges a copy 
+ * of the data in linear time instead of sorting it, and bins are counted across the worker threads.  
+ * @author Allen Jordan
+ */
+public class Statistics {
+
+    //ranges this short are simply sorted
+    protected static final int SORT_THRESHOLD = 32;
+    //the smallest block of values worth counting on a separate thread
+    protected static final int MIN_PARALLEL_BIN_BLOCK = 1 << 16;
+    //longer arrays have their quartiles located by counting rather than by selecting in a copy, which also keeps off heap data off the heap
+    protected static final int COUNTED_QUARTILE_THRESHOLD = 1 << 20;
+    protected static final int COUNTING_BINS = 1 << 16;
+    //quartiles at least this many counting bins apart give the interquartile range to within a few percent
+    protected static final int MIN_COUNTED_SPREAD = 64;
+
+    //Prevent instantiation
+    protected Statistics() {
+    }
+
+    /**
+     * Rearrange the range [start, end) so that data[k] holds the value it would have if the range were sorted, with no larger 
+     * values before it and no smaller values after it.  This is quickselect with Hoare partitioning, which stops on values equal to 
+     * the pivot so that repeated values still split evenly, falling back on sorting if the partitions are repeatedly unbalanced.  
+     */
+    public static void Select(double[] data, int start, int end, int k) {
+        assert (k >= start) && (k < end);
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(end - start));
+        while (end - start > SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                break;
+            }
+            double pivot = MedianOfThree(data[start], data[(start + end) >>> 1], data[end - 1]);
+            //afterwards [start, j] holds values no larger than the pivot, [i, end) values no smaller, and anything between equals it
+            int i = start, j = end - 1;
+            while (i <= j) {
+                while (data[i] < pivot) {
+                    i++;
+                }
+                while (data[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double value = data[i];
+                    data[i++] = data[j];
+                    data[j--] = value;
+                }
+            }
+            if (k <= j) {
+                end = j + 1;
+            } else if (k >= i) {
+                start = i;
+            } else {
+                return;
+            }
+        }
+        Arrays.sort(data, start, end);
+    }
+
+    /**
+     * Integer version of Select.  
+     */
+    public static void Select(long[] data, int start, int end, int k) {
+        assert (k >= start) && (k < end);
+        int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(end - start));
+        while (end - start > SORT_THRESHOLD) {
+            if (depthLimit-- == 0) {
+                break;
+            }
+            long pivot = MedianOfThree(data[start], data[(start + end) >>> 1], data[end - 1]);
+            int i = start, j = end - 1;
+            while (i <= j) {
+                while (data[i] < pivot) {
+                    i++;
+                }
+                while (data[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long value = data[i];
+                    data[i++] = data[j];
+                    data[j--] = value;
+                }
+            }
+            if (k <= j) {
+                end = j + 1;
+            } else if (k >= i) {
+                start = i;
+            } else {
+                return;
+            }
+        }
+        Arrays.sort(data, start, end);
+    }
+
+    protected static double MedianOfThree(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    protected static long MedianOfThree(long a, long b, long c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+
+    /**
+     * Find the values at several positions of the sorted packed array, without sorting it.  
+     * @param packed        A real (integer or machine real) packed array.  
+     * @param positions     Zero based positions in the sorted order, in any order.  
+     * @return              The values at the positions, with the same type as the input.  
+     */
+    public static PackedArray OrderStatistics(PackedArray packed, int[] positions) throws ExpressionException {
+        assert !packed.IsComplex();
+        //each selection leaves larger positions to the right, so later selections only need to search the rest of the array
+        int[] sortedPositions = positions.clone();
+        Arrays.sort(sortedPositions);
+        int n = packed.Length();
+        if (packed.IsInteger()) {
+            long[] data = packed.GetLongData().clone();
+            int start = 0;
+            for (int i = 0; i < sortedPositions.length; i++) {
+                if (sortedPositions[i] >= start) {
+                    Select(data, start, n, sortedPositions[i]);
+                    start = sortedPositions[i] + 1;
+                }
+            }
+            long[] result = new long[positions.length];
+            for (int i = 0; i < positions.length; i++) {
+                result[i] = data[positions[i]];
+            }
+            return new PackedArray(result);
+        }
+        double[] data = packed.GetDoubleData().clone();
+        int start = 0;
+        for (int i = 0; i < sortedPositions.length; i++) {
+            if (sortedPositions[i] >= start) {
+                Select(data, start, n, sortedPositions[i]);
+                start = sortedPositions[i] + 1;
+            }
+        }
+        double[] result = new double[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = data[positions[i]];
+        }
+        return new PackedArray(result);
+    }
+
+    /**
+     * Locate the value of a given rank (counting from zero in sorted order) to within (max - min) / 2^32, by counting the 
+     * values in bins across the whole range and then in finer bins across the one bin that holds the rank.  This reads the data 
+     * twice without copying it, so it suits arrays that are too large to select in.  
+     * @param packed    A non-empty real packed array.  
+     * @param min       The smallest value in the array.  
+     * @param max       The largest value in the array.  
+     * @param rank      The rank of the value.  
+     * @return          The middle of the fine bin holding the value.  
+     */
+    public static double CountedOrderStatistic(PackedArray packed, double min, double max, long rank) throws ExpressionException {
+        if (max <= min) {
+            return min;
+        }
+        double width = (max - min) / COUNTING_BINS;
+        double start = min;
+        for (int level = 0; level < 2; level++) {
+            //values below the start are counted in the first bin, so the running count is a rank in the whole array
+            long[] counts = BinCounts(packed, start, width, COUNTING_BINS);
+            start += RankBin(counts, rank) * width;
+            width /= COUNTING_BINS;
+        }
+        return start + (COUNTING_BINS / 2) * width;
+    }
+
+    //find the bin holding the value of a given rank from the bin counts
+    protected static int RankBin(long[] counts, long rank) {
+        long count = 0;
+        int bin = 0;
+        while ((bin < counts.length - 1) && (count + counts[bin] <= rank)) {
+            count += counts[bin];
+            bin++;
+        }
+        return bin;
+    }
+
+    /**
+     * Find the smallest and largest values of an integer or real packed array, a block at a time across the worker threads.  
+     * @return  The smallest and largest values.  
+     */
+    public static double[] MinMax(final PackedArray packed) {
+        assert !packed.IsComplex() && (packed.Length() > 0);
+        final int blockSize = OffHeapStorage.BLOCK_SIZE;
+        final double[][] blockRanges = new double[(packed.Length() + blockSize - 1) / blockSize][];
+        WorkerPool.ParallelForBlocks(0, packed.Length(), blockSize, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int count = (int) (blockEnd - blockStart);
+                double[] block = new double[count];
+                packed.GetDoubles((int) blockStart, block, count);
+                blockRanges[(int) (blockStart / blockSize)] = new double[]{ArrayKernels.MinDouble(block, 0, count), ArrayKernels.MaxDouble(block, 0, count)};
+            }
+        });
+        double[] range = blockRanges[0];
+        for (int i = 1; i < blockRanges.length; i++) {
+            range[0] = Math.min(range[0], blockRanges[i][0]);
+            range[1] = Math.max(range[1], blockRanges[i][1]);
+        }
+        return range;
+    }
+
+    /**
+     * Choose a bin width with the Freedman-Diaconis rule, 2 IQR / n^(1/3).  Data with no spread between the quartiles falls 
+     * back on Sturges' rule, ceiling(log2(n)) + 1 bins across the whole range.  The quartiles of long arrays are located by 
+     * counting (see CountedOrderStatistic), which is as good for choosing a width and needs no copy of the data.  
+     * @param packed    A non-empty real packed array.  
+     * @param min       The smallest value in the array.  
+     * @param max       The largest value in the array.  
+     * @return          The bin width, or zero if every value is the same.  
+     */
+    public static double FreedmanDiaconisWidth(PackedArray packed, double min, double max) throws ExpressionException {
+        int n = packed.Length();
+        double lowerQuartile, upperQuartile;
+        if ((n > COUNTED_QUARTILE_THRESHOLD) && (max > min)) {
+            //one counting pass is usually enough, and quartiles that are too close together are located more closely
+            double binWidth = (max - min) / COUNTING_BINS;
+            long[] counts = BinCounts(packed, min, binWidth, COUNTING_BINS);
+            int lowerBin = RankBin(counts, (n - 1) / 4), upperBin = RankBin(counts, (3L * (n - 1)) / 4);
+            if (upperBin - lowerBin >= MIN_COUNTED_SPREAD) {
+                lowerQuartile = min + (lowerBin + 0.5) * binWidth;
+                upperQuartile = min + (upperBin + 0.5) * binWidth;
+            } else {
+                lowerQuartile = CountedOrderStatistic(packed, min, max, (n - 1) / 4);
+                upperQuartile = CountedOrderStatistic(packed, min, max, (3L * (n - 1)) / 4);
+            }
+        } else {
+            PackedArray quartiles = OrderStatistics(packed, new int[]{(n - 1) / 4, (3 * (n - 1)) / 4});
+            lowerQuartile = quartiles.GetDouble(0);
+            upperQuartile = quartiles.GetDouble(1);
+        }
+        double width = 2 * (upperQuartile - lowerQuartile) / Math.cbrt(n);
+        if (width <= 0) {
+            int numBins = 1 + (int) Math.ceil(Math.log(n) / Math.log(2));
+            width = (max - min) / numBins;
+        }
+        return width;
+    }
+
+    /**
+     * Count the values of a real packed array that fall in each of the bins [start + i width, start + (i+1) width).  Values below 
+     * the first bin or above the last are clamped into it, so the last bin includes its upper edge.  Each block of the array is 
+     * counted into its own bins, and the bins are added together at the end.  
+     */
+    public static long[] BinCounts(final PackedArray packed, final double start, double width, final int numBins) throws ExpressionException {
+        assert !packed.IsComplex() && (numBins > 0);
+        //off heap arrays are copied a block at a time rather than all at once
+        final boolean isOffHeap = packed.IsOffHeap();
+        final long[] longData = (packed.IsInteger() && !isOffHeap) ? packed.GetLongData() : null;
+        final double[] doubleData = (packed.IsInteger() || isOffHeap) ? null : packed.GetDoubleData();
+        final double scale = 1.0 / width;
+        final long[] counts = new long[numBins];
+        WorkerPool.ParallelFor(0, packed.Length(), MIN_PARALLEL_BIN_BLOCK, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int[] blockCounts = new int[numBins];
+                int last = numBins - 1;
+                double[] block = isOffHeap ? new double[(int) Math.min(OffHeapStorage.BLOCK_SIZE, blockEnd - blockStart)] : null;
+                for (int chunkStart = (int) blockStart; chunkStart < (int) blockEnd; chunkStart += OffHeapStorage.BLOCK_SIZE) {
+                    int chunkEnd = (int) Math.min(blockEnd, chunkStart + (long) OffHeapStorage.BLOCK_SIZE);
+                    if (isOffHeap) {
+                        packed.GetDoubles(chunkStart, block, chunkEnd - chunkStart);
+                    }
+                    for (int i = chunkStart; i < chunkEnd; i++) {
+                        double value = isOffHeap ? block[i - chunkStart] : ((longData != null) ? (double) longData[i] : doubleData[i]);
+                        //the comparisons are done as doubles so that the cast is always in range
+                        double position = (value - start) * scale;
+                        int bin = (position <= 0) ? 0 : ((position < last) ? (int) position : last);
+                        blockCounts[bin]++;
+                    }
+                }
+                synchronized (counts) {
+                    for (int j = 0; j < numBins; j++) {
+                        counts[j] += blockCounts[j];
+                    }
+                }
+            }
+        });
+        return counts;
+    }
+}
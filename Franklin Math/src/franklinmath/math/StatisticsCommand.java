@@ -0,0 +1,75 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Base class for the statistics commands.  Like the signal processing commands, they work directly on packed arrays of 
+ * machine numbers, and leave lists that are not numeric unevaluated.  
+ * @author Allen Jordan
+ */
+public abstract class StatisticsCommand extends SignalCommand {
+
+    /**
+     * Get a non-empty list of real numbers as a packed array.  
+     * @param args      The function argument list.
+     * @param index     The index of the list argument.
+     * @return          The packed list, or null if some element is not a number.
+     * @throws franklinmath.executor.CommandException
+     */
+    protected PackedArray GetDataArgument(Vector<Equation> args, int index) throws CommandException {
+        PackedArray packed = GetSignalArgument(args, index);
+        if (packed == null) {
+            return null;
+        }
+        if (packed.Length() <= 0) {
+            throw new CommandException("Input expression list is empty", GetName());
+        }
+        if (packed.IsComplex()) {
+            throw new CommandException("List of real numbers expected", GetName());
+        }
+        return packed;
+    }
+
+    /**
+     * Get the moments of the data argument of a one argument command.  
+     * @return  The moments, or null if the list is not numeric.  
+     */
+    protected MomentAccumulator GetMoments(Vector<Equation> args) throws CommandException {
+        CheckArgsLength(args, 1);
+        PackedArray packed = GetDataArgument(args, 0);
+        if (packed == null) {
+            return null;
+        }
+        try {
+            return MomentAccumulator.Accumulate(packed);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected static Expression ToExpression(Factor factor) {
+        return new Expression(new Term(new Power(factor)), TermOperator.NONE);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.math.*;
+import java.util.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Accumulates a running sum one value at a time, so that sums over long ranges need constant memory.  Integers are added 
+ * exactly (in a long, carried into a BigInteger on overflow), machine reals use Neumaier's compensated summation, and any 
+ * other numbers or symbolic terms are kept separately and combined at the end.  
+ * @author Allen Jordan
+ */
+public final class SumAccumulator {
+
+    protected long longSum = 0;
+    protected BigInteger bigSum = BigInteger.ZERO;
+    protected boolean hasDouble = false, hasComplex = false;
+    protected double realSum = 0, realCompensation = 0, imagSum = 0, imagCompensation = 0;
+    protected FMNumber numberSum = null;
+    protected Vector<Expression> symbolicTerms = new Vector<Expression>();
+    protected MathContext context;
+
+    public SumAccumulator(MathContext context) {
+        this.context = context;
+    }
+
+    public void AddLong(long value) {
+        long result = longSum + value;
+        if (((longSum ^ result) & (value ^ result)) < 0) {
+            //carry the partial sum into the big integer on overflow
+            bigSum = bigSum.add(BigInteger.valueOf(longSum));
+            longSum = value;
+        } else {
+            longSum = result;
+        }
+    }
+
+    public void AddBigInteger(BigInteger value) {
+        bigSum = bigSum.add(value);
+    }
+
+    public void AddDouble(double value) {
+        hasDouble = true;
+        //Neumaier's variant of Kahan summation also handles terms larger than the running sum
+        double result = realSum + value;
+        if (Math.abs(realSum) >= Math.abs(value)) {
+            realCompensation += (realSum - result) + value;
+        } else {
+            realCompensation += (value - result) + realSum;
+        }
+        realSum = result;
+    }
+
+    public void AddComplex(double real, double imag) {
+        AddDouble(real);
+        hasComplex = true;
+        double result = imagSum + imag;
+        if (Math.abs(imagSum) >= Math.abs(imag)) {
+            imagCompensation += (imagSum - result) + imag;
+        } else {
+            imagCompensation += (imag - result) + imagSum;
+        }
+        imagSum = result;
+    }
+
+    public void AddNumber(FMNumber value) {
+        if (value.IsExactInteger() && IterationRange.IsMachineInteger(value.RealValue())) {
+            AddLong(value.RealValue().longValue());
+        } else if (numberSum == null) {
+            numberSum = value;
+        } else {
+            numberSum = numberSum.Add(value, context);
+        }
+    }
+
+    /**
+     * Add a (flattened) expression, which may be symbolic.  
+     */
+    public void AddExpression(Expression value) throws ExpressionException {
+        FMNumber number = value.GetSingleNumber();
+        if (number != null) {
+            AddNumber(number);
+        } else {
+            symbolicTerms.add(value);
+        }
+    }
+
+    /**
+     * Get the numeric part of the sum.  
+     */
+    public FMNumber GetNumber() throws ExpressionException {
+        FMNumber result = new FMNumber(bigSum.add(BigInteger.valueOf(longSum)));
+        if (numberSum != null) {
+            result = result.Add(numberSum, context);
+        }
+        if (hasDouble) {
+            FMNumber doubleResult;
+            if (hasComplex) {
+                doubleResult = new FMNumber(realSum + realCompensation, imagSum + imagCompensation);
+            } else {
+                doubleResult = new FMNumber(realSum + realCompensation);
+            }
+            result = result.Add(doubleResult, context);
+        }
+        return result;
+    }
+
+    /**
+     * Get the complete sum, including any symbolic terms.  
+     */
+    public Expression GetResult(ExpressionToolset expressionToolset) throws ExpressionException, ExecutionException {
+        Expression result = new Expression(new Term(new Power(new Factor(GetNumber()))), TermOperator.NONE);
+        if (symbolicTerms.isEmpty()) {
+            return result;
+        }
+        for (int i = 0; i < symbolicTerms.size(); i++) {
+            result = result.Add(symbolicTerms.get(i));
+        }
+        return expressionToolset.Flatten(result);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Sum an expression over an iterator.  The values are added as they are generated, so the list is never stored.  
+ * @author Allen Jordan
+ */
+public class SumCommand extends IteratorCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        IterationRange range = GetIterationRange(args, 1, expressionToolset);
+        if (range == null) {
+            return SymbolicResult(args, expressionToolset);
+        }
+        Expression body = GetBodyArgument(args, range, expressionToolset);
+
+        try {
+            long count = range.Count();
+            SumAccumulator sum = new SumAccumulator(expressionToolset.GetMathContext());
+
+            CompiledExpression compiled = CompileBody(body, range);
+            if ((compiled != null) && compiled.IsInteger() && range.IsInteger()) {
+                for (long i = 0; i < count; i++) {
+                    try {
+                        sum.AddLong(compiled.EvaluateLong(range.GetLong(i)));
+                    } catch (ArithmeticException ex) {
+                        //redo values that overflow or are not integers
+                        sum.AddExpression(EvaluateExactAt(compiled, body, range, i, expressionToolset));
+                    }
+                }
+            } else if ((compiled != null) && range.IsMachineReal()) {
+                for (long i = 0; i < count; i++) {
+                    double value = compiled.Evaluate(range.GetDouble(i));
+                    if (Double.isNaN(value) || Double.isInfinite(value)) {
+                        sum.AddExpression(EvaluateAt(body, range, i, expressionToolset));
+                    } else {
+                        sum.AddDouble(value);
+                    }
+                }
+            } else {
+                for (long i = 0; i < count; i++) {
+                    sum.AddExpression(EvaluateAt(body, range, i, expressionToolset));
+                }
+            }
+
+            return new FMResult(sum.GetResult(expressionToolset));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
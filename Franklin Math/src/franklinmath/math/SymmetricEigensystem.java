@@ -0,0 +1,165 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+/**
+ * Eigenvalues and eigenvectors of a real symmetric matrix.  The matrix is reduced to tridiagonal form, the tridiagonal 
+ * problem is solved, and the eigenvectors are transformed back.  Results are ordered by decreasing absolute value, and 
+ * when only some of them are wanted, only those eigenvectors are computed.  
+ * @author Allen Jordan
+ */
+public final class SymmetricEigensystem {
+
+    //off-diagonal pairs may differ by this much relative to their size, to allow for rounding in computed matrices
+    protected static final double SYMMETRY_TOLERANCE = 1e-10;
+    protected final int size;
+    protected final double[] eigenvalues;
+    protected final double[] eigenvectors;
+
+    /**
+     * Solve the eigenproblem.  
+     * @param matrix        A symmetric matrix, which is not modified.  
+     * @param count         The number of eigenvalues wanted: k for the k largest in absolute value, -k for the k smallest, 
+     *                      or 0 for all of them.  
+     * @param wantVectors   Whether the eigenvectors are wanted too.  
+     * @throws ArithmeticException  Thrown if the iteration does not converge.  
+     */
+    public SymmetricEigensystem(DenseMatrix matrix, int count, boolean wantVectors) {
+        assert matrix.NumRows() == matrix.NumColumns();
+        assert Math.abs(count) <= matrix.NumRows();
+        size = matrix.NumRows();
+        HouseholderTridiagonalization reduction = new HouseholderTridiagonalization(matrix);
+        double[] d = reduction.GetDiagonal().clone();
+        double[] e = reduction.GetOffDiagonal();
+
+        int n = size;
+        int wanted = (count == 0) ? n : Math.abs(count);
+        double[] ascending;
+        double[] vectors = null;
+        if (wantVectors && (count == 0)) {
+            vectors = TridiagonalEigensolver.Eigensystem(d, e);
+            ascending = d;
+        } else {
+            ascending = TridiagonalEigensolver.Eigenvalues(d, e);
+        }
+
+        //choose which of the ascending eigenvalues to return, in order of decreasing absolute value
+        Integer[] order = MagnitudeOrder(ascending);
+        int first = (count < 0) ? n - wanted : 0;
+        int[] chosen = new int[wanted];
+        eigenvalues = new double[wanted];
+        for (int k = 0; k < wanted; k++) {
+            chosen[k] = order[first + k];
+            eigenvalues[k] = ascending[chosen[k]];
+        }
+
+        if (!wantVectors) {
+            eigenvectors = null;
+            return;
+        }
+        eigenvectors = new double[wanted * n];
+        if (vectors == null) {
+            //inverse iteration needs the chosen eigenvalues in ascending order
+            int[] sorted = chosen.clone();
+            Arrays.sort(sorted);
+            double[] values = new double[wanted];
+            for (int k = 0; k < wanted; k++) {
+                values[k] = ascending[sorted[k]];
+            }
+            double[] found = TridiagonalEigensolver.InverseIteration(d, e, values);
+            for (int k = 0; k < wanted; k++) {
+                System.arraycopy(found, Arrays.binarySearch(sorted, chosen[k]) * n, eigenvectors, k * n, n);
+            }
+        } else {
+            for (int k = 0; k < wanted; k++) {
+                System.arraycopy(vectors, chosen[k] * n, eigenvectors, k * n, n);
+            }
+        }
+        reduction.BackTransform(eigenvectors, wanted);
+
+        //make the largest component of each vector positive, so the signs do not depend on the method used
+        for (int k = 0; k < wanted; k++) {
+            int biggest = k * n;
+            for (int i = k * n; i < (k + 1) * n; i++) {
+                if (Math.abs(eigenvectors[i]) > Math.abs(eigenvectors[biggest])) {
+                    biggest = i;
+                }
+            }
+            if (eigenvectors[biggest] < 0) {
+                for (int i = k * n; i < (k + 1) * n; i++) {
+                    eigenvectors[i] = -eigenvectors[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the eigenvalues, in order of decreasing absolute value.  
+     */
+    public double[] GetEigenvalues() {
+        return eigenvalues;
+    }
+
+    /**
+     * Get the unit eigenvectors, one row per eigenvalue.  
+     */
+    public DenseMatrix GetEigenvectors() {
+        assert eigenvectors != null;
+        return new DenseMatrix(eigenvalues.length, size, eigenvectors);
+    }
+
+    //indices of ascending values ordered by decreasing absolute value, with positive values first on ties
+    protected static Integer[] MagnitudeOrder(final double[] values) {
+        Integer[] order = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            public int compare(Integer a, Integer b) {
+                int result = Double.compare(Math.abs(values[b]), Math.abs(values[a]));
+                return (result != 0) ? result : Double.compare(values[b], values[a]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * Check whether a square matrix is symmetric, and if so make it exactly symmetric by averaging each off-diagonal pair.  
+     */
+    public static boolean Symmetrize(DenseMatrix matrix) {
+        int n = matrix.NumRows();
+        double[] data = matrix.GetData();
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double upper = data[i * n + j], lower = data[j * n + i];
+                if (Math.abs(upper - lower) > SYMMETRY_TOLERANCE * (Math.abs(upper) + Math.abs(lower))) {
+                    return false;
+                }
+                double average = (upper + lower) / 2;
+                data[i * n + j] = average;
+                data[j * n + i] = average;
+            }
+        }
+        return true;
+    }
+}
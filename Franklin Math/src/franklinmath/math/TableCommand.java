@@ -0,0 +1,108 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Build a list by evaluating an expression over an iterator.  Expressions that compile to machine arithmetic are 
+ * evaluated straight into a packed array.  
+ * @author Allen Jordan
+ */
+public class TableCommand extends IteratorCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        IterationRange range = GetIterationRange(args, 1, expressionToolset);
+        if (range == null) {
+            return SymbolicResult(args, expressionToolset);
+        }
+        Expression body = GetBodyArgument(args, range, expressionToolset);
+
+        try {
+            if (range.Count() > MAX_LIST_LENGTH) {
+                throw new CommandException("Iterator range is too long", GetName());
+            }
+            int count = (int) range.Count();
+
+            CompiledExpression compiled = CompileBody(body, range);
+            if (compiled != null) {
+                PackedArray packed = EvaluateCompiled(compiled, range, count);
+                if (packed != null) {
+                    return new FMResult(new Factor(packed));
+                }
+            }
+
+            Vector<Expression> exprList = new Vector<Expression>(count);
+            boolean isExact = (compiled != null) && compiled.IsInteger() && range.IsInteger();
+            for (int i = 0; i < count; i++) {
+                if (isExact) {
+                    exprList.add(EvaluateExactAt(compiled, body, range, i, expressionToolset));
+                } else {
+                    exprList.add(EvaluateAt(body, range, i, expressionToolset));
+                }
+            }
+            PackedArray packed = PackedArray.Pack(exprList);
+            if (packed != null) {
+                return new FMResult(new Factor(packed));
+            }
+            return new FMResult(new Factor(exprList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    /**
+     * Evaluate a compiled expression over the range.  
+     * @return  The values, or null if any value overflows, is not a finite real number, or the range is not machine real.  
+     */
+    protected PackedArray EvaluateCompiled(CompiledExpression compiled, IterationRange range, int count) {
+        if (compiled.IsInteger() && range.IsInteger()) {
+            long[] data = new long[count];
+            try {
+                for (int i = 0; i < count; i++) {
+                    data[i] = compiled.EvaluateLong(range.GetLong(i));
+                }
+                return new PackedArray(data);
+            } catch (ArithmeticException ex) {
+                return null;
+            }
+        }
+        if (!range.IsMachineReal()) {
+            return null;
+        }
+
+        double[] data = new double[count];
+        for (int i = 0; i < count; i++) {
+            double value = compiled.Evaluate(range.GetDouble(i));
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                return null;
+            }
+            data[i] = value;
+        }
+        return new PackedArray(data);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Take[list, n] gives the first n elements of a list, or the last -n elements when n is negative.  Take[seq, n] computes 
+ * only the first n elements of a lazy sequence, and gives them as a list.  
+ * @author Allen Jordan
+ */
+public class TakeCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        LazySequence sequence = GetSequenceArgument(args, 0);
+        long count = GetCountArgument(args, 1);
+
+        try {
+            if (sequence != null) {
+                if (count < 0) {
+                    throw new CommandException("Non-negative integer expected", GetName());
+                }
+                return new FMResult(sequence.Take(count));
+            }
+            Factor list = GetListArgument(args, 0);
+            int length = list.ListLength();
+            int start = (count >= 0) ? 0 : (int) Math.max(length + count, 0);
+            int end = (count >= 0) ? (int) Math.min(count, length) : length;
+            return new FMResult(ListPart(list, start, end));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * TakeLargest[list, k] gives the k largest numbers in a list, largest first.  The k numbers are found by selection and only 
+ * they are sorted, so the cost is linear in the length of the list.  
+ * @author Allen Jordan
+ */
+public class TakeLargestCommand extends StatisticsCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        PackedArray packed = GetDataArgument(args, 0);
+        long count = GetIntegerArgument(args, 1).longValue();
+        if (packed == null) {
+            return SymbolicResult(args);
+        }
+        int n = packed.Length();
+        if ((count < 0) || (count > n)) {
+            throw new CommandException("Cannot take " + count + " elements from a list of length " + n, GetName());
+        }
+        int k = (int) count;
+
+        try {
+            //the k largest are moved to the end and the k smallest to the front
+            int start = IsLargest() ? n - k : 0;
+            int end = IsLargest() ? n : k;
+            if (packed.IsInteger()) {
+                long[] data = packed.GetLongData().clone();
+                if (k > 0) {
+                    Statistics.Select(data, 0, n, IsLargest() ? start : end - 1);
+                }
+                Arrays.sort(data, start, end);
+                long[] result = new long[k];
+                for (int i = 0; i < k; i++) {
+                    result[i] = IsLargest() ? data[end - 1 - i] : data[start + i];
+                }
+                return new FMResult(new Factor(new PackedArray(result)));
+            }
+            double[] data = packed.GetDoubleData().clone();
+            if (k > 0) {
+                Statistics.Select(data, 0, n, IsLargest() ? start : end - 1);
+            }
+            Arrays.sort(data, start, end);
+            double[] result = new double[k];
+            for (int i = 0; i < k; i++) {
+                result[i] = IsLargest() ? data[end - 1 - i] : data[start + i];
+            }
+            return new FMResult(new Factor(new PackedArray(result)));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    protected boolean IsLargest() {
+        return true;
+    }
+}
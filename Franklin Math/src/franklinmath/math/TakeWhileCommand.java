@@ -0,0 +1,69 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * TakeWhile[list, pred] gives the leading elements of a list for which pred[element] is True, stopping at the first 
+ * element that fails.  On a lazy sequence, elements are only computed until the first one that fails.  
+ * @author Allen Jordan
+ */
+public class TakeWhileCommand extends ListFunctionCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 2);
+        LazySequence sequence = GetSequenceArgument(args, 0);
+        String functionName = GetFunctionArgument(args, 1);
+
+        try {
+            if (sequence != null) {
+                //the builder fails once the list is too long, before it can fill the heap
+                LazySequence.ListBuilder builder = new LazySequence.ListBuilder();
+                LazySequence.Generator generator = sequence.CreateGenerator();
+                Expression element = generator.Next();
+                while ((element != null) && IsTrue(ApplyFunction(functionName, element, expressionToolset))) {
+                    builder.Add(element);
+                    element = generator.Next();
+                }
+                return new FMResult(builder.ToFactor());
+            }
+
+            Vector<Expression> resultList = new Vector<Expression>();
+
+            Vector<Expression> exprList = GetElements(GetListArgument(args, 0));
+            for (int i = 0; i < exprList.size(); i++) {
+                if (!IsTrue(ApplyFunction(functionName, exprList.get(i), expressionToolset))) {
+                    break;
+                }
+                resultList.add(exprList.get(i));
+            }
+            return ListResult(resultList);
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.getMessage(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
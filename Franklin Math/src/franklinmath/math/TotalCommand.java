@@ -0,0 +1,87 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Sum the elements of a list.  Integers are added exactly and machine reals with compensated summation.  
+ * @author Allen Jordan
+ */
+public class TotalCommand extends Command {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        Factor list = GetListArgument(args, 0);
+
+        try {
+            SumAccumulator sum = new SumAccumulator(expressionToolset.GetMathContext());
+            if (list.IsPackedArray()) {
+                PackedArray packed = list.GetPackedArray();
+                if (packed.IsOffHeap()) {
+                    AddOffHeap(packed, sum);
+                } else if (packed.IsInteger()) {
+                    sum.AddBigInteger(ArrayKernels.SumLong(packed.GetLongData(), 0, packed.Length()));
+                } else if (packed.IsReal()) {
+                    sum.AddDouble(ArrayKernels.SumDouble(packed.GetDoubleData(), 0, packed.Length()));
+                } else {
+                    //complex values are stored as interleaved real and imaginary parts
+                    double[] data = packed.GetDoubleData();
+                    for (int i = 0; i < data.length; i += 2) {
+                        sum.AddComplex(data[i], data[i + 1]);
+                    }
+                }
+            } else {
+                Vector<Expression> exprList = list.GetExprList();
+                for (int i = 0; i < exprList.size(); i++) {
+                    sum.AddExpression(exprList.get(i));
+                }
+            }
+            return new FMResult(sum.GetResult(expressionToolset));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        } catch (ExecutionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+
+    //off heap arrays are copied to the heap and summed a block at a time
+    protected void AddOffHeap(PackedArray packed, SumAccumulator sum) {
+        int length = packed.Length();
+        int blockSize = Math.min(length, OffHeapStorage.BLOCK_SIZE);
+        long[] longBlock = packed.IsInteger() ? new long[blockSize] : null;
+        double[] doubleBlock = packed.IsInteger() ? null : new double[blockSize];
+        for (int start = 0; start < length; start += blockSize) {
+            int count = Math.min(blockSize, length - start);
+            if (longBlock != null) {
+                packed.GetLongs(start, longBlock, count);
+                sum.AddBigInteger(ArrayKernels.SumLong(longBlock, 0, count));
+            } else {
+                packed.GetDoubles(start, doubleBlock, count);
+                sum.AddDouble(ArrayKernels.SumDouble(doubleBlock, 0, count));
+            }
+        }
+    }
+}
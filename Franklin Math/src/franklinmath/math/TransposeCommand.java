@@ -0,0 +1,83 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.Vector;
+
+import franklinmath.executor.*;
+import franklinmath.expression.*;
+
+/**
+ * Transpose a matrix.  Matrices of packed rows are transposed as primitive arrays, and sparse matrices stay sparse.  
+ * @author Allen Jordan
+ */
+public class TransposeCommand extends MatrixCommand {
+
+    @Override
+    public FMResult Execute(Vector<Equation> args, ExpressionToolset expressionToolset) throws CommandException {
+        CheckArgsLength(args, 1);
+        SparseMatrix sparse = GetSparseArgument(args, 0);
+        if (sparse != null) {
+            try {
+                return new FMResult(new Factor(sparse.Transpose()));
+            } catch (ExpressionException ex) {
+                throw new CommandException(ex.toString(), GetName());
+            }
+        }
+        Vector<Factor> rowList = GetMatrixArgument(args, 0);
+        int numRows = rowList.size();
+
+        try {
+            int numColumns = rowList.get(0).ListLength();
+            boolean isPacked = true;
+            for (int i = 0; i < numRows; i++) {
+                isPacked = isPacked && rowList.get(i).IsPackedArray() && !rowList.get(i).GetPackedArray().IsComplex();
+            }
+
+            if (isPacked) {
+                long[] integerData = DenseMatrix.GetIntegerData(rowList, numColumns);
+                if (integerData != null) {
+                    long[] result = new long[integerData.length];
+                    for (int i = 0; i < numRows; i++) {
+                        for (int j = 0; j < numColumns; j++) {
+                            result[j * numRows + i] = integerData[i * numColumns + j];
+                        }
+                    }
+                    return new FMResult(ToMatrixFactor(result, numColumns, numRows));
+                }
+                double[] realData = DenseMatrix.GetRealData(rowList, numColumns);
+                return new FMResult(new DenseMatrix(numRows, numColumns, realData).Transpose().ToFactor());
+            }
+
+            Vector<Vector<Expression>> elements = GetRowElements(rowList);
+            Vector<Expression> resultList = new Vector<Expression>(numColumns);
+            for (int j = 0; j < numColumns; j++) {
+                Vector<Expression> column = new Vector<Expression>(numRows);
+                for (int i = 0; i < numRows; i++) {
+                    column.add(elements.get(i).get(j));
+                }
+                resultList.add(ToExpression(new Factor(column)));
+            }
+            return new FMResult(new Factor(resultList));
+        } catch (ExpressionException ex) {
+            throw new CommandException(ex.toString(), GetName());
+        }
+    }
+}
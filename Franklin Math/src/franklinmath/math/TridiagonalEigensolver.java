@@ -0,0 +1,607 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.math;
+
+import java.util.*;
+
+import franklinmath.util.*;
+
+/**
+ * Eigenvalues and eigenvectors of a symmetric tridiagonal matrix, given by its diagonal d and off-diagonal e.  Eigenvalues 
+ * alone are found by the implicit QL method, the full eigensystem by Cuppen's divide and conquer method, and a few 
+ * eigenvectors by inverse iteration.  Eigenvectors are returned one per row of a row-major array.  
+ * @author Allen Jordan
+ */
+public class TridiagonalEigensolver {
+
+    protected static final double EPSILON = Math.ulp(1.0);
+    //the QL iteration limit, on average per eigenvalue
+    protected static final int MAX_QL_ITERATIONS = 30;
+    protected static final int MAX_SECULAR_ITERATIONS = 200;
+    protected static final int MAX_INVERSE_ITERATIONS = 5;
+    //subproblems up to this size are solved directly by the QL method
+    protected static final int BASE_SIZE = 32;
+
+    //Prevent instantiation
+    protected TridiagonalEigensolver() {
+    }
+
+    /**
+     * Find the eigenvalues.  
+     * @return  The eigenvalues in ascending order.  
+     * @throws ArithmeticException  Thrown if the iteration does not converge.  
+     */
+    public static double[] Eigenvalues(double[] d, double[] e) {
+        double[] values = d.clone();
+        QL(values, OffDiagonal(e, d.length, 0, d.length), null, d.length);
+        Arrays.sort(values);
+        return values;
+    }
+
+    /**
+     * Find all eigenvalues and eigenvectors.  
+     * @param d         The diagonal, which is overwritten with the eigenvalues in ascending order.  
+     * @param e         The off-diagonal, which is not modified.  
+     * @return          The eigenvectors, with row k belonging to eigenvalue k.  
+     * @throws ArithmeticException  Thrown if the iteration does not converge.  
+     */
+    public static double[] Eigensystem(double[] d, double[] e) {
+        int n = d.length;
+        double[] vectors = new double[n * n];
+        DivideAndConquer(d, e.clone(), vectors, 0, n);
+
+        Integer[] order = SortOrder(d, n);
+        double[] values = new double[n];
+        double[] sorted = new double[n * n];
+        for (int k = 0; k < n; k++) {
+            values[k] = d[order[k]];
+            System.arraycopy(vectors, order[k] * n, sorted, k * n, n);
+        }
+        System.arraycopy(values, 0, d, 0, n);
+        return sorted;
+    }
+
+    //a copy of e[start, start + size - 1) padded with a trailing zero, as the QL method expects
+    protected static double[] OffDiagonal(double[] e, int n, int start, int size) {
+        double[] result = new double[size];
+        System.arraycopy(e, start, result, 0, Math.max(0, Math.min(size - 1, n - 1 - start)));
+        return result;
+    }
+
+    protected static Integer[] SortOrder(final double[] values, int count) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+
+            public int compare(Integer a, Integer b) {
+                return Double.compare(values[a], values[b]);
+            }
+        });
+        return order;
+    }
+
+    /**
+     * The implicit QL method with Wilkinson shifts.  Each rotation is also applied to rows i and i+1 of the vectors when 
+     * they are given, so starting from the identity gives the eigenvectors.  
+     * @param d         The diagonal, overwritten with the (unsorted) eigenvalues.  
+     * @param e         The off-diagonal with a trailing zero, which is destroyed.  
+     * @param z         The row-major vectors to transform, or null.  
+     * @param rowLength The length of each row of z.  
+     */
+    protected static void QL(double[] d, double[] e, double[] z, int rowLength) {
+        int n = d.length;
+        int iterations = 0;
+        for (int l = 0; l < n; l++) {
+            int m;
+            do {
+                for (m = l; m < n - 1; m++) {
+                    double dd = Math.abs(d[m]) + Math.abs(d[m + 1]);
+                    if (Math.abs(e[m]) <= EPSILON * dd) {
+                        break;
+                    }
+                }
+                if (m == l) {
+                    break;
+                }
+                if (++iterations > MAX_QL_ITERATIONS * n) {
+                    throw new ArithmeticException("Eigenvalue iteration did not converge");
+                }
+
+                double g = (d[l + 1] - d[l]) / (2 * e[l]);
+                double r = Math.hypot(g, 1);
+                g = d[m] - d[l] + e[l] / (g + Math.copySign(r, g));
+                double s = 1, c = 1, p = 0;
+                int i;
+                boolean underflow = false;
+                for (i = m - 1; i >= l; i--) {
+                    double f = s * e[i];
+                    double b = c * e[i];
+                    r = Math.hypot(f, g);
+                    e[i + 1] = r;
+                    if (r == 0) {
+                        //recover from underflow
+                        d[i + 1] -= p;
+                        e[m] = 0;
+                        underflow = true;
+                        break;
+                    }
+                    s = f / r;
+                    c = g / r;
+                    g = d[i + 1] - p;
+                    r = (d[i] - g) * s + 2 * c * b;
+                    p = s * r;
+                    d[i + 1] = g + p;
+                    g = c * r - b;
+                    if (z != null) {
+                        int row = i * rowLength, next = (i + 1) * rowLength;
+                        for (int k = 0; k < rowLength; k++) {
+                            double zNext = z[next + k];
+                            z[next + k] = s * z[row + k] + c * zNext;
+                            z[row + k] = c * z[row + k] - s * zNext;
+                        }
+                    }
+                }
+                if (underflow) {
+                    continue;
+                }
+                d[l] -= p;
+                e[l] = g;
+                e[m] = 0;
+            } while (m != l);
+        }
+    }
+
+    /**
+     * Solve the subproblem on rows and columns [start, start + size).  The matrix is split in two by a rank one 
+     * modification, each half is solved recursively, and the halves are joined by solving the secular equation.  The 
+     * eigenvectors of the subproblem are left in rows [start, start + size) and the same columns of z.  
+     */
+    protected static void DivideAndConquer(double[] d, double[] e, double[] z, int start, int size) {
+        int n = d.length;
+        if (size <= BASE_SIZE) {
+            double[] values = new double[size];
+            System.arraycopy(d, start, values, 0, size);
+            double[] local = DenseMatrix.Identity(size).GetData();
+            QL(values, OffDiagonal(e, n, start, size), local, size);
+            System.arraycopy(values, 0, d, start, size);
+            for (int k = 0; k < size; k++) {
+                System.arraycopy(local, k * size, z, (start + k) * n + start, size);
+            }
+            return;
+        }
+
+        //T = diag(T1, T2) + beta u u^T, with u = e(m-1) + sign(beta) e(m)
+        int half = size / 2;
+        double beta = e[start + half - 1];
+        d[start + half - 1] -= Math.abs(beta);
+        d[start + half] -= Math.abs(beta);
+        DivideAndConquer(d, e, z, start, half);
+        DivideAndConquer(d, e, z, start + half, size - half);
+        if (beta != 0) {
+            Merge(d, z, start, half, size, beta);
+        }
+    }
+
+    //join the eigensystems of the two halves, the eigensystem of D + rho z z^T
+    protected static void Merge(double[] d, double[] z, int start, int half, int size, double beta) {
+        int n = d.length;
+        double rho = 2 * Math.abs(beta);
+        double sign = Math.signum(beta);
+        double[] values = new double[size];
+        double[] weights = new double[size];
+        //0 for vectors only in the first half, 1 for vectors in both halves, 2 for vectors only in the second half
+        int[] type = new int[size];
+        double largest = rho;
+        for (int i = 0; i < size; i++) {
+            values[i] = d[start + i];
+            int row = (start + i) * n;
+            if (i < half) {
+                weights[i] = z[row + start + half - 1] / Math.sqrt(2);
+                type[i] = 0;
+            } else {
+                weights[i] = sign * z[row + start + half] / Math.sqrt(2);
+                type[i] = 2;
+            }
+            largest = Math.max(largest, Math.abs(values[i]));
+        }
+
+        //deflate: tiny weights, and pairs of nearly equal values, which a rotation reduces to one weight
+        double tolerance = 8 * EPSILON * largest;
+        Integer[] order = SortOrder(values, size);
+        Vector<Integer> kept = new Vector<Integer>(size);
+        Vector<Integer> deflated = new Vector<Integer>();
+        int previous = -1;
+        for (int t = 0; t < size; t++) {
+            int i = order[t];
+            if (rho * Math.abs(weights[i]) <= tolerance) {
+                deflated.add(i);
+                continue;
+            }
+            if (previous < 0) {
+                previous = i;
+                continue;
+            }
+            double radius = Math.hypot(weights[previous], weights[i]);
+            double c = weights[i] / radius;
+            double s = -weights[previous] / radius;
+            if (Math.abs((values[i] - values[previous]) * c * s) <= tolerance) {
+                weights[i] = radius;
+                weights[previous] = 0;
+                double value = values[previous] * c * c + values[i] * s * s;
+                values[i] = values[previous] * s * s + values[i] * c * c;
+                values[previous] = value;
+                int rowP = (start + previous) * n, rowI = (start + i) * n;
+                for (int k = start; k < start + size; k++) {
+                    double zp = z[rowP + k], zi = z[rowI + k];
+                    z[rowP + k] = c * zp + s * zi;
+                    z[rowI + k] = c * zi - s * zp;
+                }
+                if (type[previous] != type[i]) {
+                    type[previous] = 1;
+                    type[i] = 1;
+                }
+                deflated.add(previous);
+            } else {
+                kept.add(previous);
+            }
+            previous = i;
+        }
+        if (previous >= 0) {
+            kept.add(previous);
+        }
+
+        //the rotations may have moved values slightly, and the secular equation needs them in order
+        int count = kept.size();
+        final double[] poles = new double[count];
+        final double[] poleWeights = new double[count];
+        Integer[] keptOrder = new Integer[count];
+        double[] keptValues = new double[count];
+        for (int k = 0; k < count; k++) {
+            keptValues[k] = values[kept.get(k)];
+        }
+        Integer[] sortedKept = SortOrder(keptValues, count);
+        for (int k = 0; k < count; k++) {
+            keptOrder[k] = kept.get(sortedKept[k]);
+            poles[k] = values[keptOrder[k]];
+            poleWeights[k] = weights[keptOrder[k]];
+        }
+
+        double[] roots = new double[count];
+        double[] coefficients = SecularVectors(poles, poleWeights, rho, roots);
+
+        //new vectors = coefficients * old vectors, using the block structure of the old vectors
+        int second = size - half;
+        double[] result = new double[size * size];
+        Vector<Integer> firstColumns = new Vector<Integer>(), secondColumns = new Vector<Integer>();
+        for (int k = 0; k < count; k++) {
+            if (type[keptOrder[k]] <= 1) {
+                firstColumns.add(k);
+            }
+            if (type[keptOrder[k]] >= 1) {
+                secondColumns.add(k);
+            }
+        }
+        for (int part = 0; part < 2; part++) {
+            Vector<Integer> columns = (part == 0) ? firstColumns : secondColumns;
+            int offset = (part == 0) ? 0 : half;
+            int width = (part == 0) ? half : second;
+            if (columns.isEmpty()) {
+                continue;
+            }
+            double[] left = new double[count * columns.size()];
+            double[] right = new double[columns.size() * width];
+            for (int k = 0; k < count; k++) {
+                for (int c = 0; c < columns.size(); c++) {
+                    left[k * columns.size() + c] = coefficients[k * count + columns.get(c)];
+                }
+            }
+            for (int c = 0; c < columns.size(); c++) {
+                System.arraycopy(z, (start + keptOrder[columns.get(c)]) * n + start + offset, right, c * width, width);
+            }
+            double[] product = new DenseMatrix(count, columns.size(), left).Multiply(new DenseMatrix(columns.size(), width, right)).GetData();
+            for (int k = 0; k < count; k++) {
+                System.arraycopy(product, k * width, result, k * size + offset, width);
+            }
+        }
+        for (int k = 0; k < deflated.size(); k++) {
+            System.arraycopy(z, (start + deflated.get(k)) * n + start, result, (count + k) * size, size);
+        }
+
+        for (int k = 0; k < size; k++) {
+            d[start + k] = (k < count) ? roots[k] : values[deflated.get(k - count)];
+            System.arraycopy(result, k * size, z, (start + k) * n + start, size);
+        }
+    }
+
+    /**
+     * Solve the secular equation 1 + rho sum(z_i^2 / (d_i - x)) = 0 for the eigenvalues of D + rho z z^T, and find the 
+     * eigenvectors.  Each root is found relative to its nearest pole, so the differences d_i - x stay accurate, and the 
+     * weights are recomputed from the roots (Gu and Eisenstat) so the eigenvectors come out orthogonal.  
+     * @param poles     The values d, in strictly ascending order.  
+     * @param weights   The weights z, all non-zero.  
+     * @param rho       The positive rank one weight.  
+     * @param roots     Receives the eigenvalues, in ascending order.  
+     * @return          The row-major eigenvectors in the basis of the poles.  
+     */
+    protected static double[] SecularVectors(final double[] poles, final double[] weights, final double rho, final double[] roots) {
+        final int count = poles.length;
+        //differences d_i - x_k for root k in row k
+        final double[] differences = new double[count * count];
+        double sumSquares = 0;
+        for (int i = 0; i < count; i++) {
+            sumSquares += weights[i] * weights[i];
+        }
+        final double upper = rho * sumSquares;
+        WorkerPool.ParallelFor(0, count, 16, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                double[] offsets = new double[count];
+                for (int k = (int) blockStart; k < blockEnd; k++) {
+                    roots[k] = SecularRoot(poles, weights, rho, upper, k, offsets);
+                    System.arraycopy(offsets, 0, differences, k * count, count);
+                }
+            }
+        });
+
+        final double[] corrected = new double[count];
+        for (int i = 0; i < count; i++) {
+            double product = differences[i * count + i];
+            for (int k = 0; k < count; k++) {
+                if (k != i) {
+                    product *= differences[k * count + i] / (poles[i] - poles[k]);
+                }
+            }
+            corrected[i] = Math.copySign(Math.sqrt(Math.abs(product) / rho), weights[i]);
+        }
+
+        WorkerPool.ParallelFor(0, count, 16, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int k = (int) blockStart; k < blockEnd; k++) {
+                    int row = k * count;
+                    double norm = 0;
+                    for (int i = 0; i < count; i++) {
+                        double value = corrected[i] / differences[row + i];
+                        differences[row + i] = value;
+                        norm += value * value;
+                    }
+                    norm = Math.sqrt(norm);
+                    for (int i = 0; i < count; i++) {
+                        differences[row + i] /= norm;
+                    }
+                }
+            }
+        });
+        return differences;
+    }
+
+    //root k, which lies between poles k and k+1 (or above the last pole), with the differences d_i - root in offsets
+    protected static double SecularRoot(double[] poles, double[] weights, double rho, double upper, int k, double[] offsets) {
+        int count = poles.length;
+        int origin = k;
+        double low = 0, high;
+        if (k < count - 1) {
+            double middle = (poles[k + 1] - poles[k]) / 2;
+            double f = 1;
+            for (int i = 0; i < count; i++) {
+                f += rho * weights[i] * weights[i] / ((poles[i] - poles[k]) - middle);
+            }
+            if (f > 0) {
+                high = middle;
+            } else {
+                origin = k + 1;
+                low = -middle;
+                high = 0;
+            }
+        } else {
+            high = upper;
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i] = poles[i] - poles[origin];
+        }
+
+        //Newton's method, falling back on bisection whenever a step leaves the bracket
+        double x = (low + high) / 2;
+        for (int iteration = 0; iteration < MAX_SECULAR_ITERATIONS; iteration++) {
+            double f = 1, slope = 0;
+            for (int i = 0; i < count; i++) {
+                double term = weights[i] / (offsets[i] - x);
+                f += rho * weights[i] * term;
+                slope += rho * term * term;
+            }
+            if (f == 0) {
+                break;
+            }
+            if (f < 0) {
+                low = x;
+            } else {
+                high = x;
+            }
+            double next = x - f / slope;
+            if (!(next > low && next < high)) {
+                next = (low + high) / 2;
+            }
+            boolean isConverged = Math.abs(next - x) <= 2 * EPSILON * Math.abs(next) || (high - low) <= 2 * EPSILON * Math.max(Math.abs(low), Math.abs(high));
+            x = next;
+            if (isConverged) {
+                break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i] -= x;
+        }
+        return poles[origin] + x;
+    }
+
+    /**
+     * Find the eigenvectors for some of the eigenvalues by inverse iteration.  Vectors for eigenvalues that are close 
+     * together are kept orthogonal to each other by Gram-Schmidt.  
+     * @param d         The diagonal.  
+     * @param e         The off-diagonal.  
+     * @param values    Eigenvalues of the matrix, in ascending order.  
+     * @return          The eigenvectors, one row per eigenvalue.  
+     */
+    public static double[] InverseIteration(double[] d, double[] e, double[] values) {
+        int n = d.length;
+        int count = values.length;
+        double[] vectors = new double[count * n];
+        double norm = 0;
+        for (int i = 0; i < n; i++) {
+            double rowSum = Math.abs(d[i]) + ((i > 0) ? Math.abs(e[i - 1]) : 0) + ((i < n - 1) ? Math.abs(e[i]) : 0);
+            norm = Math.max(norm, rowSum);
+        }
+        if (norm == 0) {
+            norm = 1;
+        }
+        double orthogonalTolerance = 1e-3 * norm;
+        double perturbation = EPSILON * norm;
+        double convergence = Math.sqrt(0.1 / n);
+        Random random = new Random(1);
+
+        double[] lower = new double[n], main = new double[n], upper = new double[n], upper2 = new double[n];
+        boolean[] isSwapped = new boolean[n];
+        double[] b = new double[n];
+        int clusterStart = 0;
+        double previous = 0;
+        for (int k = 0; k < count; k++) {
+            double value = values[k];
+            if (k > 0) {
+                if (value - values[k - 1] > orthogonalTolerance) {
+                    clusterStart = k;
+                }
+                //separate equal eigenvalues slightly so that the iterations start from different factorizations
+                double separation = 10 * Math.abs(EPSILON * value);
+                if (value - previous < separation) {
+                    value = previous + separation;
+                }
+            }
+            previous = value;
+
+            FactorShifted(d, e, value, perturbation, lower, main, upper, upper2, isSwapped);
+            for (int i = 0; i < n; i++) {
+                b[i] = 2 * random.nextDouble() - 1;
+            }
+            int extra = 0;
+            for (int iteration = 0; iteration < MAX_INVERSE_ITERATIONS; iteration++) {
+                double sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += Math.abs(b[i]);
+                }
+                double scale = n * norm * Math.max(EPSILON, Math.abs(main[n - 1])) / sum;
+                for (int i = 0; i < n; i++) {
+                    b[i] *= scale;
+                }
+                SolveShifted(lower, main, upper, upper2, isSwapped, b);
+                for (int j = clusterStart; j < k; j++) {
+                    double dot = 0;
+                    for (int i = 0; i < n; i++) {
+                        dot += b[i] * vectors[j * n + i];
+                    }
+                    for (int i = 0; i < n; i++) {
+                        b[i] -= dot * vectors[j * n + i];
+                    }
+                }
+                double biggest = 0;
+                for (int i = 0; i < n; i++) {
+                    biggest = Math.max(biggest, Math.abs(b[i]));
+                }
+                if ((biggest >= convergence) && (++extra > 1)) {
+                    break;
+                }
+            }
+
+            double length = 0;
+            int biggestIndex = 0;
+            for (int i = 0; i < n; i++) {
+                length += b[i] * b[i];
+                if (Math.abs(b[i]) > Math.abs(b[biggestIndex])) {
+                    biggestIndex = i;
+                }
+            }
+            length = Math.copySign(Math.sqrt(length), b[biggestIndex]);
+            for (int i = 0; i < n; i++) {
+                vectors[k * n + i] = b[i] / length;
+            }
+        }
+        return vectors;
+    }
+
+    //LU factorization of T - shift I with partial pivoting, with tiny pivots replaced by the perturbation
+    protected static void FactorShifted(double[] d, double[] e, double shift, double perturbation, double[] lower, double[] main, double[] upper, double[] upper2, boolean[] isSwapped) {
+        int n = d.length;
+        for (int i = 0; i < n; i++) {
+            main[i] = d[i] - shift;
+            if (i < n - 1) {
+                lower[i] = e[i];
+                upper[i] = e[i];
+            }
+            upper2[i] = 0;
+            isSwapped[i] = false;
+        }
+        for (int i = 0; i < n - 1; i++) {
+            if (Math.abs(main[i]) >= Math.abs(lower[i])) {
+                if (main[i] != 0) {
+                    double factor = lower[i] / main[i];
+                    lower[i] = factor;
+                    main[i + 1] -= factor * upper[i];
+                }
+            } else {
+                double factor = main[i] / lower[i];
+                main[i] = lower[i];
+                lower[i] = factor;
+                double temp = upper[i];
+                upper[i] = main[i + 1];
+                main[i + 1] = temp - factor * main[i + 1];
+                if (i < n - 2) {
+                    upper2[i] = upper[i + 1];
+                    upper[i + 1] = -factor * upper[i + 1];
+                }
+                isSwapped[i] = true;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(main[i]) < perturbation) {
+                main[i] = (main[i] < 0) ? -perturbation : perturbation;
+            }
+        }
+    }
+
+    protected static void SolveShifted(double[] lower, double[] main, double[] upper, double[] upper2, boolean[] isSwapped, double[] b) {
+        int n = main.length;
+        for (int i = 0; i < n - 1; i++) {
+            if (isSwapped[i]) {
+                double temp = b[i];
+                b[i] = b[i + 1];
+                b[i + 1] = temp - lower[i] * b[i];
+            } else {
+                b[i + 1] -= lower[i] * b[i];
+            }
+        }
+        b[n - 1] /= main[n - 1];
+        if (n > 1) {
+            b[n - 2] = (b[n - 2] - upper[n - 2] * b[n - 1]) / main[n - 2];
+        }
+        for (int i = n - 3; i >= 0; i--) {
+            b[i] = (b[i] - upper[i] * b[i + 1] - upper2[i] * b[i + 2]) / main[i];
+        }
+    }
+}
@@ -59,6 +59,17 @@ public class Plot {
         plotEndY = windowHeight - borderSize;
     }
 
+    /**
+     * Get the width in pixels of the area the series are drawn in.  
+     */
+    public int GetInternalPlotWidth() {
+        return internalPlotWidth;
+    }
+
+    public int GetInternalPlotHeight() {
+        return internalPlotHeight;
+    }
+
     public BufferedImage GetPlotImage() {
         BufferedImage image = new BufferedImage(windowWidth, windowHeight, BufferedImage.TYPE_3BYTE_BGR);
         Graphics2D graphics = image.createGraphics();
@@ -94,6 +105,11 @@ public class Plot {
             g2d.setStroke(stroke);
             g2d.setColor(seriesInfo.GetColor());
 
+            if (seriesInfo.GetSeriesStyle() == SeriesStyle.BARS) {
+                DrawBars(g2d, pointData, aspectX, aspectY, xRange, yRange);
+                continue;
+            }
+
             //antialias the line
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
@@ -104,7 +120,7 @@ public class Plot {
             do {
                 point = pointData.get(index);
                 index++;
-                if (index >= pointData.size()) {
+                if ((point == franklinmath.util.Point.BAD_POINT) && (index >= pointData.size())) {
                     g2d.drawString("Series contains entirely bad points", 20, 20);
                     return;
                 }
@@ -142,6 +158,26 @@ public class Plot {
         }
     }
 
+    //Draw a bar from each point to the next, up (or down) from zero, outlining bars that are wide enough to tell apart
+    protected void DrawBars(Graphics2D g2d, Vector<franklinmath.util.Point> pointData, double aspectX, double aspectY, franklinmath.util.Range xRange, franklinmath.util.Range yRange) {
+        Color fillColor = g2d.getColor();
+        int baseY = (int) Math.round(DataToPlotTransform(new franklinmath.util.Point(0, 0), aspectX, aspectY, xRange, yRange).y);
+        for (int j = 0; j + 1 < pointData.size(); j++) {
+            franklinmath.util.Point corner = DataToPlotTransform(pointData.get(j), aspectX, aspectY, xRange, yRange);
+            franklinmath.util.Point nextCorner = DataToPlotTransform(pointData.get(j + 1), aspectX, aspectY, xRange, yRange);
+            int left = (int) Math.round(corner.x);
+            int width = Math.max(1, (int) Math.round(nextCorner.x) - left);
+            int top = Math.min(baseY, (int) Math.round(corner.y));
+            int height = Math.abs(baseY - (int) Math.round(corner.y));
+            g2d.setColor(fillColor);
+            g2d.fillRect(left, top, width, height);
+            if (width >= 4) {
+                g2d.setColor(Color.BLACK);
+                g2d.drawRect(left, top, width, height);
+            }
+        }
+    }
+
     //Draw the horizontal axis and vertical axis
     protected void DrawAxis(Graphics2D g2d, franklinmath.util.Point origin, franklinmath.util.Range xRange, franklinmath.util.Range yRange, double aspectX, double aspectY) {
         g2d.setColor(Color.black);
@@ -0,0 +1,231 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.plot;
+
+import java.util.*;
+
+import franklinmath.expression.*;
+import franklinmath.util.*;
+
+/**
+ * Reduces a long list of data points to the points that can be told apart at the resolution of a plot, so plotting takes 
+ * time and memory in proportion to the size of the plot rather than the number of points.  Line series keep the first, 
+ * lowest, highest and last point of each run of points that fall in one pixel column, which draws exactly the same lines.  
+ * Point series keep one point for each pixel that holds any points.  The data is read a block at a time, so it can be a 
+ * packed array on or off the heap, and the blocks are spread across the worker threads.  
+ * @author Allen Jordan
+ */
+public final class PointDecimator {
+
+    protected static final int BLOCK_SIZE = OffHeapStorage.BLOCK_SIZE;
+    protected final PackedArray xData, yData;
+    protected final int length;
+    protected Range xRange, yRange;
+
+    /**
+     * @param xData     The x coordinates, or null to use 1, 2, 3, ... 
+     * @param yData     The y coordinates.  Neither array may be complex.  
+     */
+    public PointDecimator(PackedArray xData, PackedArray yData) {
+        assert (yData.Length() > 0) && !yData.IsComplex() && ((xData == null) || ((xData.Length() == yData.Length()) && !xData.IsComplex()));
+        this.xData = xData;
+        this.yData = yData;
+        length = yData.Length();
+        FindRanges();
+    }
+
+    public Range GetXRange() {
+        return xRange;
+    }
+
+    public Range GetYRange() {
+        return yRange;
+    }
+
+    //copy the coordinates [start, start + count) into the block arrays
+    protected void ReadBlock(int start, int count, double[] x, double[] y) {
+        if (xData != null) {
+            xData.GetDoubles(start, x, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                x[i] = start + i + 1;
+            }
+        }
+        yData.GetDoubles(start, y, count);
+    }
+
+    protected int NumBlocks() {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    //find the smallest and largest coordinates, giving a constant coordinate a unit range either side so it has a scale
+    protected void FindRanges() {
+        final double[][] blockRanges = new double[NumBlocks()][];
+        WorkerPool.ParallelForBlocks(0, length, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int count = (int) (blockEnd - blockStart);
+                double[] x = new double[count], y = new double[count];
+                ReadBlock((int) blockStart, count, x, y);
+                blockRanges[(int) (blockStart / BLOCK_SIZE)] = new double[]{ArrayKernels.MinDouble(x, 0, count), ArrayKernels.MaxDouble(x, 0, count),
+                    ArrayKernels.MinDouble(y, 0, count), ArrayKernels.MaxDouble(y, 0, count)};
+            }
+        });
+        double[] ranges = blockRanges[0].clone();
+        for (int i = 1; i < blockRanges.length; i++) {
+            ranges[0] = Math.min(ranges[0], blockRanges[i][0]);
+            ranges[1] = Math.max(ranges[1], blockRanges[i][1]);
+            ranges[2] = Math.min(ranges[2], blockRanges[i][2]);
+            ranges[3] = Math.max(ranges[3], blockRanges[i][3]);
+        }
+        xRange = (ranges[0] < ranges[1]) ? new Range(ranges[0], ranges[1]) : new Range(ranges[0] - 1, ranges[1] + 1);
+        yRange = (ranges[2] < ranges[3]) ? new Range(ranges[2], ranges[3]) : new Range(ranges[2] - 1, ranges[3] + 1);
+    }
+
+    /**
+     * Reduce the points of a line series.  
+     * @param width     The width of the plot in pixels.  
+     * @return          The points to draw, in order.  
+     */
+    public Vector<Point> DecimateLine(int width) {
+        final double scale = (Math.max(width, 2) - 1) / xRange.GetWidth();
+        final PointList[] blockPoints = new PointList[NumBlocks()];
+        WorkerPool.ParallelForBlocks(0, length, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int count = (int) (blockEnd - blockStart);
+                double[] x = new double[count], y = new double[count];
+                ReadBlock((int) blockStart, count, x, y);
+                PointList points = new PointList();
+                //a run ends a block, so a run split across two blocks just keeps a few more points
+                int runStart = 0;
+                int runColumn = (int) ((x[0] - xRange.low) * scale);
+                int runMin = 0, runMax = 0;
+                for (int i = 1; i < count; i++) {
+                    int column = (int) ((x[i] - xRange.low) * scale);
+                    if (column != runColumn) {
+                        points.AddRun(x, y, runStart, runMin, runMax, i - 1);
+                        runStart = runMin = runMax = i;
+                        runColumn = column;
+                    } else if (y[i] < y[runMin]) {
+                        runMin = i;
+                    } else if (y[i] > y[runMax]) {
+                        runMax = i;
+                    }
+                }
+                points.AddRun(x, y, runStart, runMin, runMax, count - 1);
+                blockPoints[(int) (blockStart / BLOCK_SIZE)] = points;
+            }
+        });
+
+        int size = 0;
+        for (int i = 0; i < blockPoints.length; i++) {
+            size += blockPoints[i].size;
+        }
+        Vector<Point> pointData = new Vector<Point>(size);
+        for (int i = 0; i < blockPoints.length; i++) {
+            blockPoints[i].AddTo(pointData);
+        }
+        return pointData;
+    }
+
+    /**
+     * Reduce the points of a point series to the centers of the pixels they cover.  
+     * @param width     The width of the plot in pixels.  
+     * @param height    The height of the plot in pixels.  
+     * @return          The points to draw, in no particular order.  
+     */
+    public Vector<Point> DecimatePoints(final int width, final int height) {
+        final int columns = Math.max(width, 2), rows = Math.max(height, 2);
+        final double xScale = (columns - 1) / xRange.GetWidth();
+        final double yScale = (rows - 1) / yRange.GetWidth();
+        int numPixels = columns * rows;
+        //one bit for each pixel
+        final long[] pixels = new long[(numPixels + 63) / 64];
+        WorkerPool.ParallelForBlocks(0, length, BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int count = (int) (blockEnd - blockStart);
+                double[] x = new double[count], y = new double[count];
+                ReadBlock((int) blockStart, count, x, y);
+                long[] blockPixels = new long[pixels.length];
+                for (int i = 0; i < count; i++) {
+                    int column = Math.min(columns - 1, (int) ((x[i] - xRange.low) * xScale));
+                    int row = Math.min(rows - 1, (int) ((y[i] - yRange.low) * yScale));
+                    int pixel = row * columns + column;
+                    blockPixels[pixel >>> 6] |= 1L << pixel;
+                }
+                synchronized (pixels) {
+                    for (int j = 0; j < pixels.length; j++) {
+                        pixels[j] |= blockPixels[j];
+                    }
+                }
+            }
+        });
+
+        Vector<Point> pointData = new Vector<Point>();
+        for (int pixel = 0; pixel < numPixels; pixel++) {
+            if ((pixels[pixel >>> 6] & (1L << pixel)) != 0) {
+                pointData.add(new Point(xRange.low + (pixel % columns) / xScale, yRange.low + (pixel / columns) / yScale));
+            }
+        }
+        return pointData;
+    }
+
+    /**
+     * A growable list of points held in primitive arrays.  
+     */
+    protected static final class PointList {
+
+        protected double[] x = new double[64], y = new double[64];
+        protected int size = 0;
+
+        public void Add(double pointX, double pointY) {
+            if (size == x.length) {
+                x = Arrays.copyOf(x, 2 * size);
+                y = Arrays.copyOf(y, 2 * size);
+            }
+            x[size] = pointX;
+            y[size] = pointY;
+            size++;
+        }
+
+        //add the first, lowest, highest and last points of a run, in their original order and without repeats
+        public void AddRun(double[] dataX, double[] dataY, int first, int min, int max, int last) {
+            Add(dataX[first], dataY[first]);
+            int low = Math.min(min, max), high = Math.max(min, max);
+            if (low > first) {
+                Add(dataX[low], dataY[low]);
+            }
+            if ((high > first) && (high != low)) {
+                Add(dataX[high], dataY[high]);
+            }
+            if ((last > first) && (last != high)) {
+                Add(dataX[last], dataY[last]);
+            }
+        }
+
+        public void AddTo(Vector<Point> pointData) {
+            for (int i = 0; i < size; i++) {
+                pointData.add(new Point(x[i], y[i]));
+            }
+        }
+    }
+}
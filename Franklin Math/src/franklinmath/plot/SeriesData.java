@@ -47,6 +47,15 @@ public class SeriesData {
         GenerateData(numPoints);
     }
 
+    /**
+     * Create a series from points that have already been generated.  
+     */
+    public SeriesData(SeriesInfo info, Vector<Point> points) {
+        assert (info != null) && (points != null);
+        seriesInfo = info;
+        pointData = points;
+    }
+
     public Vector<Point> GetData() {
         return pointData;
     }
@@ -26,5 +26,7 @@ package franklinmath.plot;
 public enum SeriesStyle {
 
     POINTS,
-    SOLID_LINE
+    SOLID_LINE,
+    //each point is the left edge and height of a bar reaching to the next point, as for a histogram
+    BARS
 }
@@ -0,0 +1,274 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.util;
+
+import java.math.BigInteger;
+
+/**
+ * Tight loops over primitive arrays, used for packed array arithmetic and reductions.  The element-wise loops are kept 
+ * simple (no branches or calls in the loop body) so that the JIT compiler can vectorize them.  Floating point reductions 
+ * can not be reordered by the compiler, so they are written with four independent accumulators to keep the pipeline busy.  
+ * All loops work on the index range [start, end), so they can be split across worker threads.  
+ * @author Allen Jordan
+ */
+public class ArrayKernels {
+
+    //Prevent instantiation
+    protected ArrayKernels() {
+    }
+
+    public static void AddArrays(double[] a, double[] b, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] + b[i];
+        }
+    }
+
+    public static void SubtractArrays(double[] a, double[] b, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] - b[i];
+        }
+    }
+
+    public static void MultiplyArrays(double[] a, double[] b, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] * b[i];
+        }
+    }
+
+    public static void DivideArrays(double[] a, double[] b, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] / b[i];
+        }
+    }
+
+    /**
+     * Add a number to every element.  Subtracting a number is the same as adding its negative, so it uses this as well.  
+     */
+    public static void AddScalar(double[] a, double value, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] + value;
+        }
+    }
+
+    /**
+     * Subtract every element from a number.  
+     */
+    public static void SubtractFromScalar(double value, double[] a, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = value - a[i];
+        }
+    }
+
+    public static void MultiplyScalar(double[] a, double value, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] * value;
+        }
+    }
+
+    public static void DivideByScalar(double[] a, double value, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = a[i] / value;
+        }
+    }
+
+    /**
+     * Divide a number by every element.  
+     */
+    public static void DivideScalarBy(double value, double[] a, double[] result, int start, int end) {
+        for (int i = start; i < end; i++) {
+            result[i] = value / a[i];
+        }
+    }
+
+    /**
+     * Check that every element is finite (neither infinite nor NaN).  
+     */
+    public static boolean AllFinite(double[] data, int start, int end) {
+        //x - x is NaN exactly when x is infinite or NaN, and NaN propagates through the sum
+        double check = 0;
+        for (int i = start; i < end; i++) {
+            check += data[i] - data[i];
+        }
+        return check == 0;
+    }
+
+    /**
+     * Convert integers to machine reals.  
+     */
+    public static double[] ToDoubleArray(long[] data) {
+        double[] result = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[i];
+        }
+        return result;
+    }
+
+    /**
+     * Sum integers exactly.  The high and low 32 bits of each value are summed separately, which can not overflow for 
+     * fewer than 2^31 values and leaves the loop free of overflow checks.  
+     */
+    public static BigInteger SumLong(long[] data, int start, int end) {
+        long highSum = 0, lowSum = 0;
+        for (int i = start; i < end; i++) {
+            long value = data[i];
+            highSum += value >> 32;
+            lowSum += value & 0xFFFFFFFFL;
+        }
+        return BigInteger.valueOf(highSum).shiftLeft(32).add(BigInteger.valueOf(lowSum));
+    }
+
+    /**
+     * Sum machine reals using Neumaier's compensated summation, with four interleaved partial sums.  
+     * @return  The compensated sum, rounded to a double.  
+     */
+    public static double SumDouble(double[] data, int start, int end) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        double c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+        int i = start;
+        for (; i + 3 < end; i += 4) {
+            double x0 = data[i], x1 = data[i + 1], x2 = data[i + 2], x3 = data[i + 3];
+            double t0 = s0 + x0, t1 = s1 + x1, t2 = s2 + x2, t3 = s3 + x3;
+            c0 += (Math.abs(s0) >= Math.abs(x0)) ? ((s0 - t0) + x0) : ((x0 - t0) + s0);
+            c1 += (Math.abs(s1) >= Math.abs(x1)) ? ((s1 - t1) + x1) : ((x1 - t1) + s1);
+            c2 += (Math.abs(s2) >= Math.abs(x2)) ? ((s2 - t2) + x2) : ((x2 - t2) + s2);
+            c3 += (Math.abs(s3) >= Math.abs(x3)) ? ((s3 - t3) + x3) : ((x3 - t3) + s3);
+            s0 = t0;
+            s1 = t1;
+            s2 = t2;
+            s3 = t3;
+        }
+        double[] partialSums = {s0, s1, s2, s3};
+        double sum = 0, compensation = c0 + c1 + c2 + c3;
+        for (int j = 0; j < partialSums.length; j++) {
+            double t = sum + partialSums[j];
+            compensation += (Math.abs(sum) >= Math.abs(partialSums[j])) ? ((sum - t) + partialSums[j]) : ((partialSums[j] - t) + sum);
+            sum = t;
+        }
+        for (; i < end; i++) {
+            double t = sum + data[i];
+            compensation += (Math.abs(sum) >= Math.abs(data[i])) ? ((sum - t) + data[i]) : ((data[i] - t) + sum);
+            sum = t;
+        }
+        return sum + compensation;
+    }
+
+    /**
+     * Find the largest integer in a non-empty range.  
+     */
+    public static long MaxLong(long[] data, int start, int end) {
+        assert end > start;
+        long m0 = data[start], m1 = m0, m2 = m0, m3 = m0;
+        int i = start + 1;
+        for (; i + 3 < end; i += 4) {
+            m0 = Math.max(m0, data[i]);
+            m1 = Math.max(m1, data[i + 1]);
+            m2 = Math.max(m2, data[i + 2]);
+            m3 = Math.max(m3, data[i + 3]);
+        }
+        for (; i < end; i++) {
+            m0 = Math.max(m0, data[i]);
+        }
+        return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+    }
+
+    /**
+     * Find the smallest integer in a non-empty range.  
+     */
+    public static long MinLong(long[] data, int start, int end) {
+        assert end > start;
+        long m0 = data[start], m1 = m0, m2 = m0, m3 = m0;
+        int i = start + 1;
+        for (; i + 3 < end; i += 4) {
+            m0 = Math.min(m0, data[i]);
+            m1 = Math.min(m1, data[i + 1]);
+            m2 = Math.min(m2, data[i + 2]);
+            m3 = Math.min(m3, data[i + 3]);
+        }
+        for (; i < end; i++) {
+            m0 = Math.min(m0, data[i]);
+        }
+        return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+    }
+
+    /**
+     * Find the largest machine real in a non-empty range.  Packed arrays never hold NaN, so a plain comparison is used, 
+     * which the compiler already turns into branch-free code.  
+     */
+    public static double MaxDouble(double[] data, int start, int end) {
+        assert end > start;
+        double result = data[start];
+        for (int i = start + 1; i < end; i++) {
+            result = (data[i] > result) ? data[i] : result;
+        }
+        return result;
+    }
+
+    /**
+     * Find the smallest machine real in a non-empty range.  
+     */
+    public static double MinDouble(double[] data, int start, int end) {
+        assert end > start;
+        double result = data[start];
+        for (int i = start + 1; i < end; i++) {
+            result = (data[i] < result) ? data[i] : result;
+        }
+        return result;
+    }
+
+    /**
+     * Dot product of machine reals, with four partial sums.  
+     */
+    public static double DotDouble(double[] a, double[] b, int start, int end) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = start;
+        for (; i + 3 < end; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < end; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Exact dot product of integers.  
+     * @throws ArithmeticException  Thrown if a product or partial sum overflows a long.  
+     */
+    public static long DotLong(long[] a, long[] b, int start, int end) {
+        long sum = 0;
+        for (int i = start; i < end; i++) {
+            long x = a[i], y = b[i];
+            long product = x * y;
+            //the product is exact when dividing it back gives the other factor
+            if ((x != 0) && ((product / x != y) || ((x == -1) && (y == Long.MIN_VALUE)))) {
+                throw new ArithmeticException("Integer overflow");
+            }
+            long result = sum + product;
+            if (((sum ^ result) & (product ^ result)) < 0) {
+                throw new ArithmeticException("Integer overflow");
+            }
+            sum = result;
+        }
+        return sum;
+    }
+}
@@ -36,7 +36,7 @@ public class FunctionInformation {
     public static class FunctionInfo {
 
         public String name,  category,  description,  exampleInput,  exampleResult;
-        public boolean isMathFunction;
+        public boolean isMathFunction,  isListable;
     }
 
     public FunctionInformation(String filename) throws IOException {
@@ -84,6 +84,8 @@ public class FunctionInformation {
                         }
                     } else if (nodeName.equals("is_math_function")) {
                         info.isMathFunction = (dataNode.getTextContent().equals("true")) ? true : false;
+                    } else if (nodeName.equals("is_listable")) {
+                        info.isListable = (dataNode.getTextContent().equals("true")) ? true : false;
                     } else if (nodeName.equals("description")) {
                         info.description = dataNode.getTextContent();
                     } else if (nodeName.equals("example")) {
@@ -0,0 +1,635 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.util;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+import franklinmath.expression.*;
+
+/**
+ * Reads a delimited text file of numbers (CSV, TSV or whitespace separated) into one primitive array per column.  The file 
+ * is memory mapped and split into chunks that end on line boundaries.  The chunks are read twice across the worker threads: 
+ * once to count their rows, which gives each chunk its place in the columns, and once to parse the numbers straight from the 
+ * mapped bytes into the columns.  Numbers are parsed without creating Strings, except for the rare values that can not be 
+ * converted exactly with a single multiplication or division by a power of ten.  Integers are parsed exactly as longs, and 
+ * a column keeps them as longs unless some value in it is not an integer in the long range.  Fields may be quoted, and a 
+ * line may end with a delimiter.  A first line with no numeric field is taken as a header and skipped; any other first line 
+ * is data, so an empty or malformed field in it is reported as an error.  Columns too large for the heap can be written to 
+ * memory mapped storage instead (see SetOffHeapThreshold).  
+ * @author Allen Jordan
+ */
+public class NumericTableReader {
+
+    //chunks are mapped one at a time, so they must stay well below the 2GB mapping limit
+    protected static final int CHUNK_SIZE = 1 << 25;
+    //the header and delimiter are found from the start of the file
+    protected static final int HEADER_SCAN_SIZE = 1 << 20;
+    protected static final int COUNT_WINDOW_SIZE = 1 << 16;
+    //mantissas below 2^53 are held exactly in a double
+    protected static final long MAX_EXACT_INTEGER = 1L << 53;
+    protected static final long MIN_LONG_DIV_TEN = Long.MIN_VALUE / 10;
+    protected static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+        1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    protected static final byte WHITESPACE = 0;
+    protected File file;
+    protected FileChannel channel;
+    protected byte delimiter = WHITESPACE;
+    protected int numColumns = 0;
+    protected long[] chunkStarts;
+    protected long[] chunkRowStarts;
+    //each cell holds a long for an integer column, and the bits of a double otherwise
+    protected long[][] columns;
+    protected OffHeapStorage[] offHeapColumns;
+    protected boolean isOffHeap = false;
+    protected long offHeapThreshold = Long.MAX_VALUE;
+    protected int numRows = 0;
+    protected boolean[] isIntegerColumn;
+
+    public NumericTableReader(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the whole file.  
+     * @throws IOException  Thrown if the file can not be read, or if it is not a table of numbers.  
+     */
+    public void Read() throws IOException {
+        RandomAccessFile stream = new RandomAccessFile(file, "r");
+        try {
+            channel = stream.getChannel();
+            long size = channel.size();
+            long dataStart = ReadHeader(size);
+            FindChunks(dataStart, size);
+            CountRows();
+            ParseRows();
+        } finally {
+            stream.close();
+            channel = null;
+        }
+    }
+
+    public int GetNumColumns() {
+        return numColumns;
+    }
+
+    public int GetNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Set the total size of the columns in bytes above which they are written to memory mapped temporary files rather than 
+     * heap arrays.  Columns are kept on the heap by default.  
+     */
+    public void SetOffHeapThreshold(long bytes) {
+        offHeapThreshold = bytes;
+    }
+
+    public boolean IsOffHeap() {
+        return isOffHeap;
+    }
+
+    /**
+     * Check whether every value in a column is an integer in the long range written without a decimal point or exponent.  
+     */
+    public boolean IsIntegerColumn(int column) {
+        return isIntegerColumn[column];
+    }
+
+    /**
+     * Get a column as a packed array, of integers if it is an integer column.  
+     */
+    public PackedArray GetPackedColumn(int column) {
+        final boolean isInteger = isIntegerColumn[column];
+        if (isOffHeap) {
+            return new PackedArray(offHeapColumns[column], isInteger);
+        }
+        if (isInteger) {
+            return new PackedArray(columns[column]);
+        }
+        final long[] data = columns[column];
+        final double[] result = new double[data.length];
+        WorkerPool.ParallelFor(0, data.length, 1 << 16, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int i = (int) blockStart; i < blockEnd; i++) {
+                    result[i] = Double.longBitsToDouble(data[i]);
+                }
+            }
+        });
+        return new PackedArray(result);
+    }
+
+    //find the delimiter and column count from the first line, and skip the line if it is a header
+    protected long ReadHeader(long size) throws IOException {
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_SCAN_SIZE));
+        byte[] data = new byte[mapped.limit()];
+        mapped.get(data);
+        int end = data.length;
+        int lineStart = 0;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while ((lineEnd < end) && (data[lineEnd] != '\n')) {
+                lineEnd++;
+            }
+            if ((lineEnd == end) && (end < size)) {
+                throw new IOException("First line is too long");
+            }
+            if (!IsBlank(data, lineStart, lineEnd)) {
+                for (int i = lineStart; (i < lineEnd) && (delimiter == WHITESPACE); i++) {
+                    byte b = data[i];
+                    if ((b == ',') || (b == '\t') || (b == ';')) {
+                        delimiter = b;
+                    }
+                }
+                ChunkParser parser = new ChunkParser(data, 0, 0);
+                numColumns = parser.CountFields(lineStart, lineEnd);
+                //a line with any number in it is data, to be checked field by field
+                return parser.IsHeaderLine(lineStart, lineEnd) ? Math.min(size, lineEnd + 1) : lineStart;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return size;
+    }
+
+    //split the data into chunks of about CHUNK_SIZE bytes, each ending just after a newline
+    protected void FindChunks(long dataStart, long size) throws IOException {
+        long numNominal = Math.max(1, (size - dataStart + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        long[] starts = new long[(int) numNominal + 1];
+        int numChunks = 0;
+        starts[0] = dataStart;
+        long position = dataStart;
+        while (position < size) {
+            long next = position + CHUNK_SIZE;
+            if (next >= size) {
+                next = size;
+            } else {
+                //move the boundary forward to the start of the next line
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(size - next, HEADER_SCAN_SIZE));
+                int i = 0;
+                while ((i < buffer.limit()) && (buffer.get(i) != '\n')) {
+                    i++;
+                }
+                if ((i == buffer.limit()) && (next + i < size)) {
+                    throw new IOException("Line is too long");
+                }
+                next = Math.min(size, next + i + 1);
+            }
+            if (numChunks + 1 >= starts.length) {
+                long[] larger = new long[2 * starts.length];
+                System.arraycopy(starts, 0, larger, 0, starts.length);
+                starts = larger;
+            }
+            starts[++numChunks] = next;
+            position = next;
+        }
+        chunkStarts = new long[numChunks + 1];
+        System.arraycopy(starts, 0, chunkStarts, 0, numChunks + 1);
+    }
+
+    protected int NumChunks() {
+        return chunkStarts.length - 1;
+    }
+
+    //copy a chunk out of its mapping in one bulk transfer, since the parser is much faster on a plain array
+    protected byte[] ReadChunk(int chunk) {
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStarts[chunk], chunkStarts[chunk + 1] - chunkStarts[chunk]);
+            byte[] data = new byte[buffer.limit()];
+            buffer.get(data);
+            return data;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage(), ex);
+        }
+    }
+
+    //count the rows of each chunk, which gives the row where each chunk's values start
+    protected void CountRows() throws IOException {
+        final long[] rowCounts = new long[NumChunks()];
+        RunChunks(new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int chunk = (int) blockStart; chunk < blockEnd; chunk++) {
+                    ByteBuffer buffer;
+                    try {
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStarts[chunk], chunkStarts[chunk + 1] - chunkStarts[chunk]);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex.getMessage(), ex);
+                    }
+                    //the mapped bytes are copied through a small window, which is faster than reading them one at a time
+                    byte[] window = new byte[COUNT_WINDOW_SIZE];
+                    long rows = 0;
+                    boolean isBlank = true;
+                    while (buffer.hasRemaining()) {
+                        int length = Math.min(window.length, buffer.remaining());
+                        buffer.get(window, 0, length);
+                        for (int i = 0; i < length; i++) {
+                            byte b = window[i];
+                            if (b == '\n') {
+                                rows += isBlank ? 0 : 1;
+                                isBlank = true;
+                            } else {
+                                isBlank = isBlank && IsSpace(b);
+                            }
+                        }
+                    }
+                    rowCounts[chunk] = rows + (isBlank ? 0 : 1);
+                }
+            }
+        });
+        chunkRowStarts = new long[NumChunks() + 1];
+        for (int chunk = 0; chunk < rowCounts.length; chunk++) {
+            chunkRowStarts[chunk + 1] = chunkRowStarts[chunk] + rowCounts[chunk];
+        }
+        long numRows = chunkRowStarts[rowCounts.length];
+        if (numRows > Integer.MAX_VALUE - 8) {
+            throw new IOException("Too many rows: " + numRows);
+        }
+        this.numRows = (int) numRows;
+        isOffHeap = (8 * numRows * numColumns > offHeapThreshold);
+        if (isOffHeap) {
+            offHeapColumns = new OffHeapStorage[numColumns];
+            for (int column = 0; column < numColumns; column++) {
+                offHeapColumns[column] = OffHeapStorage.CreateMapped((int) numRows);
+            }
+        } else {
+            columns = new long[numColumns][(int) numRows];
+        }
+    }
+
+    //parse every chunk into its rows of the columns
+    protected void ParseRows() throws IOException {
+        final boolean[][] chunkIntegers = new boolean[NumChunks()][];
+        RunChunks(new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int chunk = (int) blockStart; chunk < blockEnd; chunk++) {
+                    ChunkParser parser = new ChunkParser(ReadChunk(chunk), (int) chunkRowStarts[chunk], (int) chunkRowStarts[chunk + 1]);
+                    parser.Parse();
+                    chunkIntegers[chunk] = parser.isInteger;
+                }
+            }
+        });
+        isIntegerColumn = new boolean[numColumns];
+        for (int column = 0; column < numColumns; column++) {
+            isIntegerColumn[column] = true;
+            for (int chunk = 0; chunk < chunkIntegers.length; chunk++) {
+                isIntegerColumn[column] = isIntegerColumn[column] && chunkIntegers[chunk][column];
+            }
+        }
+        //integer chunks of columns that are real elsewhere are converted to reals
+        RunChunks(new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                for (int chunk = (int) blockStart; chunk < blockEnd; chunk++) {
+                    for (int column = 0; column < numColumns; column++) {
+                        if (!isIntegerColumn[column] && chunkIntegers[chunk][column]) {
+                            ConvertToReal(column, (int) chunkRowStarts[chunk], (int) chunkRowStarts[chunk + 1]);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    //convert a range of rows of a column from longs to the bits of doubles
+    protected void ConvertToReal(int column, int startRow, int endRow) {
+        long[] cells = isOffHeap ? new long[Math.min(endRow - startRow, OffHeapStorage.BLOCK_SIZE)] : columns[column];
+        for (int blockStart = startRow; blockStart < endRow; blockStart += OffHeapStorage.BLOCK_SIZE) {
+            int count = Math.min(endRow - blockStart, OffHeapStorage.BLOCK_SIZE);
+            int offset = isOffHeap ? 0 : blockStart;
+            if (isOffHeap) {
+                offHeapColumns[column].GetLongs(blockStart, cells, 0, count);
+            }
+            ToRealBits(cells, offset, offset + count);
+            if (isOffHeap) {
+                offHeapColumns[column].PutLongs(blockStart, cells, 0, count);
+            }
+        }
+    }
+
+    protected static void ToRealBits(long[] cells, int start, int end) {
+        for (int i = start; i < end; i++) {
+            cells[i] = Double.doubleToLongBits(cells[i]);
+        }
+    }
+
+    //run a task over the chunks on the worker threads, passing along a format or read error from any of them
+    protected void RunChunks(WorkerPool.RangeTask task) throws IOException {
+        try {
+            WorkerPool.ParallelForBlocks(0, NumChunks(), 1, task);
+        } catch (RuntimeException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    protected static boolean IsSpace(byte b) {
+        return (b == ' ') || (b == '\t') || (b == '\r');
+    }
+
+    protected static boolean IsBlank(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!IsSpace(data[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the lines of one chunk.  
+     */
+    protected class ChunkParser {
+
+        protected byte[] data;
+        protected int position = 0;
+        protected int row;
+        protected boolean[] isInteger = new boolean[numColumns];
+        protected int firstRow;
+        //the parsed values, either the heap columns or a block of rows that is copied off the heap when it fills
+        protected long[][] target;
+        protected int targetStart;
+        //the result of the last ParseNumber call, with integerValue set if it is an integer
+        protected double value;
+        protected long integerValue;
+        protected boolean valueIsInteger;
+
+        public ChunkParser(byte[] data, int firstRow, int endRow) {
+            this.data = data;
+            this.row = firstRow;
+            this.firstRow = firstRow;
+            java.util.Arrays.fill(isInteger, true);
+            if (isOffHeap) {
+                target = new long[numColumns][Math.min(endRow - firstRow, OffHeapStorage.BLOCK_SIZE)];
+                targetStart = firstRow;
+            } else {
+                target = columns;
+                targetStart = 0;
+            }
+        }
+
+        public void Parse() {
+            int end = data.length;
+            while (position < end) {
+                int lineEnd = position;
+                while ((lineEnd < end) && (data[lineEnd] != '\n')) {
+                    lineEnd++;
+                }
+                if (!IsBlank(data, position, lineEnd)) {
+                    ParseLine(position, lineEnd);
+                    row++;
+                    if (isOffHeap && (row - targetStart == target[0].length)) {
+                        Flush();
+                    }
+                }
+                position = lineEnd + 1;
+            }
+            if (isOffHeap) {
+                Flush();
+            }
+        }
+
+        //copy the parsed block of rows off the heap
+        protected void Flush() {
+            for (int column = 0; column < numColumns; column++) {
+                offHeapColumns[column].PutLongs(targetStart, target[column], 0, row - targetStart);
+            }
+            targetStart = row;
+        }
+
+        protected void ParseLine(int lineStart, int lineEnd) {
+            position = lineStart;
+            for (int column = 0; column < numColumns; column++) {
+                SkipSpaces(lineEnd);
+                if (column > 0) {
+                    if ((delimiter != WHITESPACE) && ((position >= lineEnd) || (data[position] != delimiter))) {
+                        throw Error("expected " + numColumns + " fields");
+                    }
+                    if (delimiter != WHITESPACE) {
+                        position++;
+                        SkipSpaces(lineEnd);
+                    }
+                }
+                if ((position >= lineEnd) || (data[position] == delimiter)) {
+                    throw Error("field " + (column + 1) + " is empty");
+                }
+                if (!ParseNumber(lineEnd)) {
+                    throw Error("field " + (column + 1) + " is not a number");
+                }
+                if (isInteger[column] && !valueIsInteger) {
+                    //the rows of this chunk so far were integers
+                    isInteger[column] = false;
+                    if (isOffHeap) {
+                        ConvertToReal(column, firstRow, targetStart);
+                        ToRealBits(target[column], 0, row - targetStart);
+                    } else {
+                        ToRealBits(columns[column], firstRow, row);
+                    }
+                }
+                target[column][row - targetStart] = isInteger[column] ? integerValue : Double.doubleToLongBits(value);
+            }
+            SkipSpaces(lineEnd);
+            //a delimiter may end the line
+            if ((position < lineEnd) && (delimiter != WHITESPACE) && (data[position] == delimiter)) {
+                position++;
+                SkipSpaces(lineEnd);
+            }
+            if (position < lineEnd) {
+                throw Error("expected " + numColumns + " fields");
+            }
+        }
+
+        protected RuntimeException Error(String message) {
+            IOException ex = new IOException("Data row " + (row + 1) + ": " + message);
+            return new RuntimeException(ex.getMessage(), ex);
+        }
+
+        protected void SkipSpaces(int lineEnd) {
+            while ((position < lineEnd) && (data[position] != delimiter) && IsSpace(data[position])) {
+                position++;
+            }
+        }
+
+        /**
+         * Count the fields of a line, for the header.  A delimiter at the end of the line does not start another field.  
+         */
+        public int CountFields(int lineStart, int lineEnd) {
+            int count = 0;
+            boolean inField = false;
+            for (int i = lineStart; i < lineEnd; i++) {
+                byte b = data[i];
+                if (delimiter != WHITESPACE) {
+                    if (b == delimiter) {
+                        count++;
+                        inField = false;
+                    } else if (!IsSpace(b)) {
+                        inField = true;
+                    }
+                } else if (IsSpace(b)) {
+                    inField = false;
+                } else if (!inField) {
+                    inField = true;
+                    count++;
+                }
+            }
+            if (delimiter != WHITESPACE) {
+                return inField ? count + 1 : Math.max(count, 1);
+            }
+            return count;
+        }
+
+        /**
+         * Check whether a line is a header, with no field that is a number.  
+         */
+        public boolean IsHeaderLine(int lineStart, int lineEnd) {
+            position = lineStart;
+            while (position < lineEnd) {
+                SkipSpaces(lineEnd);
+                if ((position < lineEnd) && (data[position] != delimiter) && ParseNumber(lineEnd)) {
+                    return false;
+                }
+                //skip the rest of the field and the delimiter after it
+                while ((position < lineEnd) && (data[position] != delimiter) && ((delimiter != WHITESPACE) || !IsSpace(data[position]))) {
+                    position++;
+                }
+                position++;
+            }
+            return true;
+        }
+
+        /**
+         * Parse a decimal number at the current position, which may be in double quotes, leaving the result in value.  Up 
+         * to 18 significant digits are collected in a long, and if they fit in 53 bits with a power of ten of at most 22, 
+         * the value is exact after one rounding (Clinger's fast path).  Other numbers are passed to Double.parseDouble.  
+         * Integers in the long range are also collected exactly in integerValue.  
+         * @return  False if there is no number at the current position.  
+         */
+        protected boolean ParseNumber(int lineEnd) {
+            int p = position;
+            boolean isQuoted = (p < lineEnd) && (data[p] == '"');
+            if (isQuoted) {
+                p++;
+            }
+            int start = p;
+            boolean negative = false;
+            if ((p < lineEnd) && ((data[p] == '-') || (data[p] == '+'))) {
+                negative = (data[p] == '-');
+                p++;
+            }
+            long mantissa = 0;
+            int significantDigits = 0, exponent = 0;
+            boolean hasDigits = false, isPlainInteger = true;
+            //the integer is collected as a negative number, like Long.parseLong, so that Long.MIN_VALUE fits
+            long integer = 0;
+            byte b;
+            while ((p < lineEnd) && ((b = data[p]) >= '0') && (b <= '9')) {
+                hasDigits = true;
+                if (isPlainInteger) {
+                    if ((integer < MIN_LONG_DIV_TEN) || (10 * integer < Long.MIN_VALUE + (b - '0'))) {
+                        isPlainInteger = false;
+                    } else {
+                        integer = 10 * integer - (b - '0');
+                    }
+                }
+                if (significantDigits < 18) {
+                    mantissa = 10 * mantissa + (b - '0');
+                    significantDigits += (mantissa != 0) ? 1 : 0;
+                } else {
+                    exponent++;
+                }
+                p++;
+            }
+            if ((p < lineEnd) && (data[p] == '.')) {
+                isPlainInteger = false;
+                p++;
+                while ((p < lineEnd) && ((b = data[p]) >= '0') && (b <= '9')) {
+                    hasDigits = true;
+                    if (significantDigits < 18) {
+                        mantissa = 10 * mantissa + (b - '0');
+                        significantDigits += (mantissa != 0) ? 1 : 0;
+                        exponent--;
+                    }
+                    p++;
+                }
+            }
+            if (!hasDigits) {
+                return false;
+            }
+            if ((p < lineEnd) && ((data[p] == 'e') || (data[p] == 'E'))) {
+                isPlainInteger = false;
+                p++;
+                boolean negativeExponent = false;
+                if ((p < lineEnd) && ((data[p] == '-') || (data[p] == '+'))) {
+                    negativeExponent = (data[p] == '-');
+                    p++;
+                }
+                int exponentValue = 0;
+                boolean hasExponentDigits = false;
+                while ((p < lineEnd) && ((b = data[p]) >= '0') && (b <= '9')) {
+                    hasExponentDigits = true;
+                    exponentValue = Math.min(100000, 10 * exponentValue + (b - '0'));
+                    p++;
+                }
+                if (!hasExponentDigits) {
+                    return false;
+                }
+                exponent += negativeExponent ? -exponentValue : exponentValue;
+            }
+            int numberEnd = p;
+            if (isQuoted) {
+                if ((p >= lineEnd) || (data[p] != '"')) {
+                    return false;
+                }
+                p++;
+            }
+            //the number must be followed by the end of the field
+            if ((p < lineEnd) && (data[p] != delimiter) && !IsSpace(data[p])) {
+                return false;
+            }
+            position = p;
+
+            valueIsInteger = isPlainInteger && (negative || (integer != Long.MIN_VALUE));
+            integerValue = negative ? integer : -integer;
+            if ((mantissa < MAX_EXACT_INTEGER) && (exponent >= -22) && (exponent <= 22)) {
+                value = (exponent >= 0) ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                byte[] text = new byte[numberEnd - start];
+                for (int i = 0; i < text.length; i++) {
+                    text[i] = data[start + i];
+                }
+                try {
+                    value = Double.parseDouble(new String(text, "US-ASCII"));
+                } catch (UnsupportedEncodingException ex) {
+                    throw new RuntimeException(ex.getMessage(), ex);
+                }
+                if (Double.isInfinite(value)) {
+                    return false;
+                }
+                return true;
+            }
+            value = negative ? -value : value;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.util;
+
+import java.util.*;
+import java.io.IOException;
+
+import franklinmath.expression.OffHeapStorage;
+
+/**
+ * Sorting of primitive arrays with a least significant digit radix sort, split across the worker threads.  Each pass moves 
+ * every element once, by an 11 bit digit of its key, so a sort takes at most six linear passes and no comparisons.  Passes 
+ * where every key has the same digit (such as the high digits of small integers) are skipped.  Each thread counts and moves 
+ * its own block of the array, and the blocks are kept in order, so the sort is stable.  Machine reals are sorted as longs 
+ * with the same ordering, and orderings are found by moving the original positions along with the keys.  Off heap data is 
+ * sorted in runs on the heap, which are then merged pairwise outside of it.  
+ * @author Allen Jordan
+ */
+public class ParallelSort {
+
+    protected static final int DIGIT_BITS = 11;
+    protected static final int RADIX = 1 << DIGIT_BITS;
+    protected static final int NUM_PASSES = (64 + DIGIT_BITS - 1) / DIGIT_BITS;
+    //arrays shorter than this are simply passed to Arrays.sort
+    protected static final int MIN_RADIX_LENGTH = 1 << 12;
+    //the smallest block worth counting and moving on a separate thread
+    protected static final int MIN_PARALLEL_BLOCK = 1 << 16;
+    //the number of off heap elements sorted on the heap at a time
+    protected static final int RUN_LENGTH = 1 << 20;
+
+    //Prevent instantiation
+    protected ParallelSort() {
+    }
+
+    /**
+     * Sort an array of integers into increasing order.  
+     */
+    public static void Sort(long[] data) {
+        if (data.length < MIN_RADIX_LENGTH) {
+            Arrays.sort(data);
+            return;
+        }
+        RadixSort(data, null);
+    }
+
+    /**
+     * Sort an array of machine reals into increasing order, with -0.0 before 0.0 as in Arrays.sort.  The array must not hold NaN.  
+     */
+    public static void Sort(double[] data) {
+        if (data.length < MIN_RADIX_LENGTH) {
+            Arrays.sort(data);
+            return;
+        }
+        long[] keys = ToSortableKeys(data);
+        RadixSort(keys, null);
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            data[i] = Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Find the ordering of an array of integers: the zero based positions of its elements in sorted order.  Equal elements stay 
+     * in their original order.  
+     */
+    public static int[] Ordering(long[] data) {
+        return SortPositions(data.clone());
+    }
+
+    /**
+     * Find the ordering of an array of machine reals, which must not hold NaN.  
+     */
+    public static int[] Ordering(double[] data) {
+        return SortPositions(ToSortableKeys(data));
+    }
+
+    /**
+     * Sort off heap data into new storage of the same kind, keeping at most one run of RUN_LENGTH elements on the heap.  
+     * @param source    The storage to sort, which is not changed.
+     * @param isReal    True if the storage holds machine reals (which must not include NaN), and false for integers.
+     * @return          The sorted storage.
+     * @throws IOException  Thrown if mapped storage can not be created.  
+     */
+    public static OffHeapStorage Sort(OffHeapStorage source, final boolean isReal) throws IOException {
+        final int length = source.Length();
+        OffHeapStorage sorted = OffHeapStorage.CreateLike(source, length);
+        long[] run = new long[Math.min(length, RUN_LENGTH)];
+        for (int start = 0; start < length; start += RUN_LENGTH) {
+            int count = Math.min(RUN_LENGTH, length - start);
+            long[] keys = (count == run.length) ? run : new long[count];
+            source.GetLongs(start, keys, 0, count);
+            if (isReal) {
+                FlipNegatives(keys, 0, count);
+            }
+            Sort(keys);
+            sorted.PutLongs(start, keys, 0, count);
+        }
+
+        //merge pairs of sorted runs until one is left
+        if (length > RUN_LENGTH) {
+            OffHeapStorage merged = OffHeapStorage.CreateLike(source, length);
+            for (long width = RUN_LENGTH; width < length; width *= 2) {
+                final OffHeapStorage from = sorted, to = merged;
+                final long runWidth = width;
+                WorkerPool.ParallelForBlocks(0, length, 2 * width, new WorkerPool.RangeTask() {
+
+                    public void Run(long blockStart, long blockEnd) {
+                        Merge(from, to, (int) blockStart, (int) Math.min(blockStart + runWidth, blockEnd), (int) blockEnd);
+                    }
+                });
+                merged = sorted;
+                sorted = to;
+            }
+        }
+
+        if (isReal) {
+            final OffHeapStorage keys = sorted;
+            WorkerPool.ParallelForBlocks(0, length, OffHeapStorage.BLOCK_SIZE, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    int count = (int) (blockEnd - blockStart);
+                    long[] block = new long[count];
+                    keys.GetLongs((int) blockStart, block, 0, count);
+                    FlipNegatives(block, 0, count);
+                    keys.PutLongs((int) blockStart, block, 0, count);
+                }
+            });
+        }
+        return sorted;
+    }
+
+    //merge the sorted ranges [start, middle) and [middle, end) of the source into the same range of the target, a block at a time
+    protected static void Merge(OffHeapStorage source, OffHeapStorage target, int start, int middle, int end) {
+        int blockSize = OffHeapStorage.BLOCK_SIZE;
+        long[] left = new long[blockSize], right = new long[blockSize], output = new long[blockSize];
+        int leftNext = start, rightNext = middle, written = start;
+        int leftIndex = 0, leftCount = 0, rightIndex = 0, rightCount = 0, outputCount = 0;
+        while (true) {
+            if ((leftIndex == leftCount) && (leftNext < middle)) {
+                leftCount = Math.min(blockSize, middle - leftNext);
+                source.GetLongs(leftNext, left, 0, leftCount);
+                leftNext += leftCount;
+                leftIndex = 0;
+            }
+            if ((rightIndex == rightCount) && (rightNext < end)) {
+                rightCount = Math.min(blockSize, end - rightNext);
+                source.GetLongs(rightNext, right, 0, rightCount);
+                rightNext += rightCount;
+                rightIndex = 0;
+            }
+            boolean hasLeft = (leftIndex < leftCount), hasRight = (rightIndex < rightCount);
+            if (!hasLeft && !hasRight) {
+                break;
+            }
+            //equal keys are taken from the left run first, so the merge is stable
+            if (hasRight && (!hasLeft || (right[rightIndex] < left[leftIndex]))) {
+                output[outputCount++] = right[rightIndex++];
+            } else {
+                output[outputCount++] = left[leftIndex++];
+            }
+            if (outputCount == blockSize) {
+                target.PutLongs(written, output, 0, outputCount);
+                written += outputCount;
+                outputCount = 0;
+            }
+        }
+        target.PutLongs(written, output, 0, outputCount);
+    }
+
+    //the sortable key map of ToSortableKeys applied to the bits of machine reals in place, which also undoes it
+    protected static void FlipNegatives(long[] bits, int start, int end) {
+        for (int i = start; i < end; i++) {
+            bits[i] = bits[i] ^ ((bits[i] >> 63) & Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Map machine reals to longs with the same ordering.  Negative numbers have every bit but the sign flipped, so that larger 
+     * magnitudes become smaller signed longs.  The map is its own inverse.  
+     */
+    protected static long[] ToSortableKeys(double[] data) {
+        long[] keys = new long[data.length];
+        for (int i = 0; i < data.length; i++) {
+            long bits = Double.doubleToRawLongBits(data[i]);
+            keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+        return keys;
+    }
+
+    protected static int[] SortPositions(long[] keys) {
+        int[] positions = new int[keys.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        RadixSort(keys, positions);
+        return positions;
+    }
+
+    /**
+     * Sort the keys as signed longs, rearranging the positions array (if there is one) along with them.  
+     */
+    protected static void RadixSort(long[] keys, int[] positions) {
+        final int n = keys.length;
+        if (n <= 1) {
+            return;
+        }
+        int numBlocks = 1;
+        if ((WorkerPool.GetNumThreads() > 1) && !WorkerPool.IsWorkerThread()) {
+            numBlocks = Math.max(1, Math.min(WorkerPool.GetNumThreads(), n / MIN_PARALLEL_BLOCK));
+        }
+        final int blockSize = (n + numBlocks - 1) / numBlocks;
+        numBlocks = (n + blockSize - 1) / blockSize;
+
+        //count the digits of every pass in one read of the keys, one set of counts per block, which also shows which passes 
+        //can be skipped
+        final int[][][] counts = new int[numBlocks][NUM_PASSES][RADIX];
+        final long[] countKeys = keys;
+        WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+            public void Run(long blockStart, long blockEnd) {
+                int[][] blockCounts = counts[(int) (blockStart / blockSize)];
+                for (int i = (int) blockStart; i < blockEnd; i++) {
+                    //flipping the sign bit makes the unsigned digits order like the signed keys
+                    long key = countKeys[i] ^ Long.MIN_VALUE;
+                    for (int pass = 0; pass < NUM_PASSES; pass++) {
+                        blockCounts[pass][(int) (key >>> (pass * DIGIT_BITS)) & (RADIX - 1)]++;
+                    }
+                }
+            }
+        });
+
+        long[] sourceKeys = keys, targetKeys = new long[n];
+        int[] sourcePositions = positions, targetPositions = (positions != null) ? new int[n] : null;
+        boolean isFirstPass = true;
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            if (IsSingleDigit(counts, pass, n)) {
+                continue;
+            }
+            final int shift = pass * DIGIT_BITS, currentPass = pass;
+            if (!isFirstPass && (numBlocks > 1)) {
+                //earlier passes have moved keys between blocks, so each block counts its digits again
+                final long[] fromKeys = sourceKeys;
+                WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                    public void Run(long blockStart, long blockEnd) {
+                        int[] blockCounts = counts[(int) (blockStart / blockSize)][currentPass];
+                        Arrays.fill(blockCounts, 0);
+                        for (int i = (int) blockStart; i < blockEnd; i++) {
+                            blockCounts[(int) ((fromKeys[i] ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1)]++;
+                        }
+                    }
+                });
+            }
+            isFirstPass = false;
+
+            //turn the counts into the starting offset of each digit in each block, with the blocks in order within each digit
+            int offset = 0;
+            for (int digit = 0; digit < RADIX; digit++) {
+                for (int block = 0; block < numBlocks; block++) {
+                    int count = counts[block][pass][digit];
+                    counts[block][pass][digit] = offset;
+                    offset += count;
+                }
+            }
+
+            final long[] fromKeys = sourceKeys, toKeys = targetKeys;
+            final int[] fromPositions = sourcePositions, toPositions = targetPositions;
+            WorkerPool.ParallelForBlocks(0, n, blockSize, new WorkerPool.RangeTask() {
+
+                public void Run(long blockStart, long blockEnd) {
+                    int[] offsets = counts[(int) (blockStart / blockSize)][currentPass];
+                    if (fromPositions == null) {
+                        for (int i = (int) blockStart; i < blockEnd; i++) {
+                            long key = fromKeys[i];
+                            toKeys[offsets[(int) ((key ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1)]++] = key;
+                        }
+                    } else {
+                        for (int i = (int) blockStart; i < blockEnd; i++) {
+                            long key = fromKeys[i];
+                            int target = offsets[(int) ((key ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1)]++;
+                            toKeys[target] = key;
+                            toPositions[target] = fromPositions[i];
+                        }
+                    }
+                }
+            });
+            sourceKeys = toKeys;
+            targetKeys = fromKeys;
+            sourcePositions = toPositions;
+            targetPositions = fromPositions;
+        }
+        if (sourceKeys != keys) {
+            System.arraycopy(sourceKeys, 0, keys, 0, n);
+            if (positions != null) {
+                System.arraycopy(sourcePositions, 0, positions, 0, n);
+            }
+        }
+    }
+
+    //check whether every key has the same digit in this pass, so that the pass would not move anything
+    protected static boolean IsSingleDigit(int[][][] counts, int pass, int n) {
+        for (int digit = 0; digit < RADIX; digit++) {
+            int total = 0;
+            for (int block = 0; block < counts.length; block++) {
+                total += counts[block][pass][digit];
+            }
+            if (total != 0) {
+                return (total == n);
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+Copyright 2009 Allen Franklin Jordan (allen.jordan@gmail.com).
+
+This file is part of Franklin Math.
+
+Franklin Math is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Franklin Math is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Franklin Math.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package franklinmath.util;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A shared pool of worker threads for splitting large numerical jobs across processor cores.  Like FMProperties, the methods 
+ * are static so that commands can use the pool without passing references around.  
+ * @author Allen Jordan
+ */
+public class WorkerPool {
+
+    protected static ExecutorService executor = null;
+    protected static int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * A job that processes one contiguous block of a larger index range.  
+     */
+    public static abstract class RangeTask {
+
+        public abstract void Run(long blockStart, long blockEnd);
+    }
+
+    /**
+     * Worker threads are marked with their own class so that nested parallel calls can run inline instead of waiting on the pool.  
+     */
+    protected static class WorkerThread extends Thread {
+
+        public WorkerThread(Runnable runnable, String threadName) {
+            super(runnable, threadName);
+            setDaemon(true);
+        }
+    }
+
+    //Prevent instantiation
+    protected WorkerPool() {
+    }
+
+    public static synchronized ExecutorService GetExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+                protected int threadCount = 0;
+
+                public synchronized Thread newThread(Runnable runnable) {
+                    threadCount++;
+                    return new WorkerThread(runnable, "Franklin Math worker " + threadCount);
+                }
+            });
+        }
+        return executor;
+    }
+
+    public static int GetNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Change the number of worker threads.  The current pool is shut down once its jobs finish, and a new pool is created 
+     * on the next parallel call.  
+     */
+    public static synchronized void SetNumThreads(int threadCount) {
+        assert threadCount > 0;
+        numThreads = threadCount;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public static boolean IsWorkerThread() {
+        return (Thread.currentThread() instanceof WorkerThread);
+    }
+
+    /**
+     * Split the range [start, end) into blocks and run the task on each block, using the worker threads when it is worthwhile.  
+     * @param start         The first index of the range.  
+     * @param end           One past the last index of the range.  
+     * @param minBlockSize  The smallest block worth handing to a separate thread.  
+     * @param task          The task to run on each block.  
+     */
+    public static void ParallelFor(long start, long end, long minBlockSize, RangeTask task) {
+        long length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        //a few blocks per thread helps balance uneven work
+        long blockSize = Math.max(minBlockSize, (length + 4 * numThreads - 1) / (4 * numThreads));
+        blockSize = Math.max(blockSize, 1);
+        ParallelForBlocks(start, end, blockSize, task);
+    }
+
+    /**
+     * Run the task on fixed size blocks [start + k*blockSize, start + (k+1)*blockSize) of the range, clipped to the end of the range.  
+     * @param start         The first index of the range.  
+     * @param end           One past the last index of the range.  
+     * @param blockSize     The size of each block.  
+     * @param task          The task to run on each block.  
+     */
+    public static void ParallelForBlocks(long start, long end, long blockSize, final RangeTask task) {
+        assert blockSize > 0;
+        long length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        long numBlocks = (length + blockSize - 1) / blockSize;
+
+        //nested calls and small jobs are run directly on the calling thread
+        if ((numBlocks == 1) || (numThreads == 1) || IsWorkerThread()) {
+            for (long blockStart = start; blockStart < end; blockStart += blockSize) {
+                task.Run(blockStart, Math.min(end, blockStart + blockSize));
+            }
+            return;
+        }
+
+        Vector<Future<?>> futureList = new Vector<Future<?>>();
+        ExecutorService service = GetExecutor();
+        for (long blockStart = start; blockStart < end; blockStart += blockSize) {
+            final long taskStart = blockStart;
+            final long taskEnd = Math.min(end, blockStart + blockSize);
+            futureList.add(service.submit(new Runnable() {
+
+                public void run() {
+                    task.Run(taskStart, taskEnd);
+                }
+            }));
+        }
+        WaitForAll(futureList);
+    }
+
+    /**
+     * Run a set of independent jobs on the worker threads and collect their results in order.  
+     * @param jobList   The jobs to run.  
+     * @return          The job results, in the same order as the jobs.  
+     */
+    public static <T> Vector<T> InvokeAll(List<Callable<T>> jobList) {
+        Vector<T> resultList = new Vector<T>(jobList.size());
+        if ((jobList.size() <= 1) || (numThreads == 1) || IsWorkerThread()) {
+            try {
+                for (int i = 0; i < jobList.size(); i++) {
+                    resultList.add(jobList.get(i).call());
+                }
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new RuntimeException(ex.toString(), ex);
+            }
+            return resultList;
+        }
+
+        Vector<Future<T>> futureList = new Vector<Future<T>>();
+        ExecutorService service = GetExecutor();
+        for (int i = 0; i < jobList.size(); i++) {
+            futureList.add(service.submit(jobList.get(i)));
+        }
+        WaitForAll(futureList);
+        //every job has finished without failing, so get returns at once
+        for (int i = 0; i < futureList.size(); i++) {
+            try {
+                resultList.add(futureList.get(i).get());
+            } catch (InterruptedException ex) {
+                throw Interrupted(futureList, ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException(ex.getCause().toString(), ex.getCause());
+            }
+        }
+        return resultList;
+    }
+
+    //wait for every job to finish, then pass along the first failure
+    protected static void WaitForAll(List<? extends Future<?>> futureList) {
+        Throwable failure = null;
+        for (int i = 0; i < futureList.size(); i++) {
+            try {
+                futureList.get(i).get();
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                throw Interrupted(futureList, ex);
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure.toString(), failure);
+        }
+    }
+
+    //stop the remaining jobs and keep the interrupt flag set for the caller, failing the command that started the jobs
+    protected static RuntimeException Interrupted(List<? extends Future<?>> futureList, InterruptedException ex) {
+        for (int i = 0; i < futureList.size(); i++) {
+            futureList.get(i).cancel(true);
+        }
+        Thread.currentThread().interrupt();
+        return new RuntimeException("Interrupted while waiting for worker threads", ex);
+    }
+}
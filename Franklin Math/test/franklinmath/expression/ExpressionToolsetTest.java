@@ -1,10 +1,13 @@
 package franklinmath.expression;
 
 import franklinmath.executor.*;
+import franklinmath.math.*;
 import franklinmath.parser.*;
+import franklinmath.plot.*;
 import franklinmath.util.*;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.math.*;
 //import java.io.*;
 import org.junit.After;
@@ -681,9 +684,9 @@ public class ExpressionToolsetTest {
             power = power.AppendFactor(new Factor(new FMNumber(num1)));
             power = power.AppendFactor(new Factor(new FMNumber(num2)));
             resultPower = expressionToolset.FlattenPower(power, 0);
-            double expectedResult = StrictMath.pow((double) num1, (double) num2);
-
-            assertTrue(resultPower.GetSingleFactor().GetNumber().Subtract(new FMNumber(expectedResult), context).Abs(context).compareTo(threshold) < 0);
+            //integer powers are exact
+            assertEquals(new FMNumber(BigInteger.valueOf(num1).pow(num2)), resultPower.GetSingleFactor().GetNumber());
+            assertTrue(resultPower.GetSingleFactor().GetNumber().IsExactInteger());
 
             int num3 = random.nextInt(100) + 1;
             double num4 = random.nextDouble() * random.nextInt(100) * ((random.nextBoolean()) ? 1 : -1);
@@ -692,7 +695,7 @@ public class ExpressionToolsetTest {
             power = power.AppendFactor(new Factor(new FMNumber(num3)));
             power = power.AppendFactor(new Factor(new FMNumber(num4)));
             resultPower = expressionToolset.FlattenPower(power, 0);
-            expectedResult = StrictMath.pow((double) num3, (double) num4);
+            double expectedResult = StrictMath.pow((double) num3, (double) num4);
 
             assertTrue(resultPower.GetSingleFactor().GetNumber().Subtract(new FMNumber(expectedResult), context).Abs(context).compareTo(threshold) < 0);
 
@@ -923,6 +926,1214 @@ public class ExpressionToolsetTest {
         assertEquals(expectedExpr, resultExpr);
     }
 
+    @Test
+    public void testPackedLists() throws Exception {
+        //lists of machine numbers are packed when flattened
+        Expression resultExpr = ProcessString("{1, -2, 3}");
+        Factor resultFactor = resultExpr.GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertTrue(resultFactor.GetPackedArray().IsInteger());
+        assertEquals("{1, -2, 3}", resultFactor.toString());
+
+        resultExpr = ProcessString("{1, 2.5}");
+        resultFactor = resultExpr.GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertTrue(resultFactor.GetPackedArray().IsReal());
+
+        //symbols and decimals that a double can not hold exactly stay unpacked
+        resultExpr = ProcessString("{1, x}");
+        assertFalse(resultExpr.GetSingle().SingleValue().IsPackedArray());
+        resultExpr = ProcessString("{0.1, 0.2}");
+        assertFalse(resultExpr.GetSingle().SingleValue().IsPackedArray());
+
+        //list commands work on packed arrays directly
+        resultExpr = ProcessString("Sort[{3, -1, 2}]");
+        resultFactor = resultExpr.GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertEquals("{-1, 2, 3}", resultFactor.toString());
+        assertEquals(new FMNumber(12), ProcessString("Max[{3, -7, 12}]").GetSingleNumber());
+        assertEquals(new FMNumber(-7), ProcessString("Min[{3, -7, 12}]").GetSingleNumber());
+        assertEquals(new FMNumber(2.5), ProcessString("Max[{1, 2.5, -3}]").GetSingleNumber());
+    }
+
+    @Test
+    public void testRangeTableSum() throws Exception {
+        Factor resultFactor = ProcessString("Range[2, 10, 2]").GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertEquals("{2, 4, 6, 8, 10}", resultFactor.toString());
+
+        resultFactor = ProcessString("Table[k^2 - 1, {k, 1, 5}]").GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertEquals("{0, 3, 8, 15, 24}", resultFactor.toString());
+        resultFactor = ProcessString("Table[x^k, {k, 1, 2}]").GetSingle().SingleValue();
+        assertFalse(resultFactor.IsPackedArray());
+
+        //integer sums and products are exact, even past the range of a long
+        assertEquals(new FMNumber(338350), ProcessString("Sum[k^2, {k, 1, 100}]").GetSingleNumber());
+        assertEquals(new FMNumber(new BigInteger("2361183241434822606847")), ProcessString("Sum[2^k, {k, 0, 70}]").GetSingleNumber());
+        assertEquals(new FMNumber(new BigInteger("265252859812191058636308480000000")), ProcessString("Product[k, {k, 1, 30}]").GetSingleNumber());
+        assertEquals(new FMNumber(5050), ProcessString("Total[Range[100]]").GetSingleNumber());
+
+        //compensated summation keeps real sums accurate
+        FMNumber sum = ProcessString("Sum[1/k^2, {k, 1, 100000}]").GetSingleNumber();
+        assertEquals(1.6449240668982263, sum.doubleValue(), 1e-15);
+        sum = ProcessString("Total[{100000000000000000000, 1.5, -100000000000000000000}]").GetSingleNumber();
+        assertEquals(1.5, sum.doubleValue(), 0.0);
+
+        //the iterator variable is local, even when it has a value outside of the command
+        ProcessString("n = 5");
+        assertEquals(new FMNumber(6), ProcessString("Sum[n, {n, 1, 3}]").GetSingleNumber());
+        assertEquals("{1, 4, 9}", ProcessString("Table[n^2, {n, 1, 3}]").toString());
+        assertEquals(new FMNumber(120), ProcessString("Product[n, {n, 1, n}]").GetSingleNumber());
+        assertEquals("{6, 7}", ProcessString("Table[k + n, {k, 1, 2}]").toString());
+        assertEquals(new FMNumber(25), ProcessString("Sum[Sum[k * n, {k, 1, n}], {n, 1, 3}]").GetSingleNumber());
+        assertEquals(new FMNumber(5), ProcessString("n").GetSingleNumber());
+    }
+
+    @Test
+    public void testListableThreading() throws Exception {
+        //packed arrays use the command kernels
+        Factor resultFactor = ProcessString("Mod[{5, -7, 9}, 4]").GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertTrue(resultFactor.GetPackedArray().IsInteger());
+        assertEquals("{1, -3, 1}", resultFactor.toString());
+        resultFactor = ProcessString("Sin[{0, 1, 2}]").GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertEquals(StrictMath.sin(2), resultFactor.GetPackedArray().GetDouble(2), 0.0);
+        assertEquals("{2.0, 3.0}", ProcessString("Sqrt[{4, 9}]").toString());
+
+        //other lists are threaded one element at a time, including nested lists
+        assertEquals("{Sin[x], 0.0}", ProcessString("Sin[{x, 0}]").toString());
+        assertEquals("{{120, 1}, {6}}", ProcessString("Factorial[{{5, 0}, {3}}]").toString());
+        assertEquals("{2, 5}", ProcessString("Mod[17, {5, 6}]").toString());
+        //integers too large for the integer kernel are threaded exactly instead of as reals
+        resultFactor = ProcessString("Mod[100000000000000000000, {1000000007, 7}]").GetSingle().SingleValue();
+        assertEquals("{4900, 2}", resultFactor.toString());
+        assertTrue(resultFactor.GetExprList().get(0).GetSingleNumber().IsExactInteger());
+
+        //lists of different lengths are not threaded
+        assertEquals("Mod[{1, 2}, {3, 4, 5}]", ProcessString("Mod[{1, 2}, {3, 4, 5}]").toString());
+    }
+
+    @Test
+    public void testListArithmetic() throws Exception {
+        //numeric lists are combined with packed loops, and scalars are broadcast
+        Factor resultFactor = ProcessString("{1, 2, 3} + {4, 5, 6}").GetSingle().SingleValue();
+        assertTrue(resultFactor.IsPackedArray());
+        assertTrue(resultFactor.GetPackedArray().IsInteger());
+        assertEquals("{5, 7, 9}", resultFactor.toString());
+        assertEquals("{0, -1, -2}", ProcessString("1 - {1, 2, 3}").toString());
+        assertEquals("{1, 4}", ProcessString("{1, 2}^2").toString());
+        assertEquals("{2, 4, 8}", ProcessString("2^{1, 2, 3}").toString());
+        assertEquals("{2, 1, 0, 1, 2}", ProcessString("Abs[Range[5] - 3]").toString());
+        resultFactor = ProcessString("{1, 2}/4").GetSingle().SingleValue();
+        assertEquals(0.5, resultFactor.GetPackedArray().GetDouble(1), 0.0);
+
+        //symbolic and nested lists are combined one element at a time
+        assertEquals("{2*a, 2*b}", ProcessString("2*{a, b}").toString());
+        assertEquals("{a^2, b^2}", ProcessString("{a, b}^2").toString());
+        assertEquals("{{11, 12}, {23, 24}}", ProcessString("{{1, 2}, {3, 4}} + {10, 20}").toString());
+
+        //lists of different lengths can not be combined
+        try {
+            ProcessString("{1, 2} + {1, 2, 3}");
+            fail("Lists of different lengths were combined");
+        } catch (ExecutionException ex) {
+        }
+    }
+
+    @Test
+    public void testPackedReductions() throws Exception {
+        assertEquals("32", ProcessString("Dot[{1, 2, 3}, {4, 5, 6}]").toString());
+        assertEquals("12000000000000000000000002", ProcessString("Dot[{3000000000000, 2}, {4000000000000, 1}]").toString());
+        assertEquals("18446744073709551614", ProcessString("Total[{9223372036854775807, 9223372036854775807}]").toString());
+        assertEquals("100000", ProcessString("Max[Range[100000]]").toString());
+        assertEquals("-3", ProcessString("Min[Range[-3, 7]]").toString());
+
+        //compensated summation of machine reals
+        FMNumber sum = ProcessString("Total[Range[1000000] * 0.1]").GetSingleNumber();
+        assertEquals(50000050000.0, sum.doubleValue(), 1e-4);
+    }
+
+    @Test
+    public void testLinearAlgebra() throws Exception {
+        assertEquals("{{19, 22}, {43, 50}}", ProcessString("Dot[{{1, 2}, {3, 4}}, {{5, 6}, {7, 8}}]").toString());
+        assertEquals("{x + 2*y, 3*x + 4*y}", ProcessString("Dot[{{1, 2}, {3, 4}}, {x, y}]").toString());
+        assertEquals("{{1, 4}, {2, 5}, {3, 6}}", ProcessString("Transpose[{{1, 2, 3}, {4, 5, 6}}]").toString());
+
+        //integer matrices are handled exactly
+        assertEquals("-3", ProcessString("Det[{{1, 2, 3}, {4, 5, 6}, {7, 8, 10}}]").toString());
+        assertEquals("{{-2, 1}, {1.500000000000000, -0.500000000000000}}", ProcessString("Inverse[{{1, 2}, {3, 4}}]").toString());
+        assertEquals("{1, -1}", ProcessString("LinearSolve[{{1, 2}, {3, 4}}, {-1, -1}]").toString());
+
+        //fractions and decimals are kept on the exact path instead of being rounded to machine reals
+        assertEquals("{{-15, 3}, {6, -1}}", ProcessString("Inverse[{{1/3, 1}, {2, 5}}]").toString());
+        assertEquals("{{-50, 20}, {30, -10}}", ProcessString("Inverse[{{0.1, 0.2}, {0.3, 0.5}}]").toString());
+        assertEquals("{-9, 4}", ProcessString("LinearSolve[{{1/3, 1}, {2, 5}}, {1, 2}]").toString());
+        assertEquals("{{-3, 3}, {3, -2}}", ProcessString("LinearSolve[{{2/3, 1}, {1, 1}}, {{1, 0}, {0, 1}}]").toString());
+        assertEquals(ProcessString("-1/3"), ProcessString("Det[{{1/3, 1}, {2, 5}}]"));
+        assertEquals(ProcessString("-0.01"), ProcessString("Det[{{0.1, 0.2}, {0.3, 0.5}}]"));
+        assertEquals(ProcessString("-1/38"), ProcessString("Part[Part[Inverse[{{1/7, 2}, {3, 4}}], 2], 2]"));
+
+        //machine real matrices use LU decomposition
+        Factor resultFactor = ProcessString("LinearSolve[{{2.5, 1}, {1, 3}}, {4.5, 7}]").GetSingle().SingleValue();
+        assertEquals(1.0, resultFactor.GetPackedArray().GetDouble(0), 1e-12);
+        assertEquals(2.0, resultFactor.GetPackedArray().GetDouble(1), 1e-12);
+        assertEquals(4.0, ProcessString("Det[{{2.5, 1}, {1, 2}}]").GetSingleNumber().doubleValue(), 1e-12);
+
+        try {
+            ProcessString("Inverse[{{1, 2}, {2, 4}}]");
+            fail("Singular matrix was inverted");
+        } catch (ExecutionException ex) {
+        }
+    }
+
+    @Test
+    public void testSparseMatrices() throws Exception {
+        String sparse = "SparseArray[{{1, 1, 4}, {2, 2, 5}, {1, 2, 1}, {2, 1, 1}, {3, 3, 2}}, {3, 3}]";
+        Factor resultFactor = ProcessString(sparse).GetSingle().SingleValue();
+        assertTrue(resultFactor.IsSparseMatrix());
+        assertEquals(5, resultFactor.GetSparseMatrix().NumNonZeros());
+        assertEquals("{{4.0, 1.0, 0.0}, {1.0, 5.0, 0.0}, {0.0, 0.0, 2.0}}", ProcessString("Normal[" + sparse + "]").toString());
+        assertEquals("{6.0, 11.0, 6.0}", ProcessString("Dot[" + sparse + ", {1, 2, 3}]").toString());
+        assertEquals("{{17.0, 9.0, 0.0}, {9.0, 26.0, 0.0}, {0.0, 0.0, 4.0}}", ProcessString("Normal[Dot[" + sparse + ", " + sparse + "]]").toString());
+
+        //a single three column matrix is dense, and entries need their dimensions
+        assertEquals("{{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}, {7.0, 8.0, 9.0}}", ProcessString("Normal[SparseArray[{{1, 2, 3}, {4, 5, 6}, {7, 8, 9}}]]").toString());
+        assertEquals(3, ProcessString("SparseArray[{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}]").GetSingle().SingleValue().GetSparseMatrix().NumNonZeros());
+        assertEquals(1.0, ProcessString("Det[SparseArray[{{1, 0, 0}, {0, 1, 0}, {0, 0, 1}}]]").GetSingleNumber().doubleValue(), 1e-12);
+        assertEquals(38.0, ProcessString("Det[" + sparse + "]").GetSingleNumber().doubleValue(), 1e-9);
+        assertTrue(ProcessStringResults("Det[SparseArray[{{1, 2, 3}}]]").get(0).IsString());
+
+        //every solver gives the same solution
+        String[] methods = {"\"Direct\"", "\"CG\"", "\"BiCGSTAB\""};
+        for (int m = 0; m < methods.length; m++) {
+            resultFactor = ProcessString("LinearSolve[" + sparse + ", {5, 6, 2}, " + methods[m] + "]").GetSingle().SingleValue();
+            for (int i = 0; i < 3; i++) {
+                assertEquals(1.0, resultFactor.GetPackedArray().GetDouble(i), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testSymmetricEigensystem() throws Exception {
+        Factor resultFactor = ProcessString("Eigenvalues[{{2, -1, 0}, {-1, 2, -1}, {0, -1, 2}}]").GetSingle().SingleValue();
+        assertEquals(2 + Math.sqrt(2), resultFactor.GetPackedArray().GetDouble(0), 1e-12);
+        assertEquals(2.0, resultFactor.GetPackedArray().GetDouble(1), 1e-12);
+        assertEquals(2 - Math.sqrt(2), resultFactor.GetPackedArray().GetDouble(2), 1e-12);
+        resultFactor = ProcessString("Eigenvalues[{{2, -1, 0}, {-1, 2, -1}, {0, -1, 2}}, -1]").GetSingle().SingleValue();
+        assertEquals(1, resultFactor.ListLength());
+        assertEquals(2 - Math.sqrt(2), resultFactor.GetPackedArray().GetDouble(0), 1e-12);
+
+        //machine results are rounded to the shortest decimal for their double, and never look like exact integers
+        PackedArray machineValues = ProcessString("Eigenvalues[{{2, 1}, {1, 2}}]").GetSingle().SingleValue().GetPackedArray();
+        for (int i = 0; i < machineValues.Length(); i++) {
+            FMNumber value = machineValues.GetNumber(i);
+            assertFalse(value.IsExactInteger());
+            assertEquals(Double.toString(value.doubleValue()), value.toString());
+        }
+        assertEquals(3.0, machineValues.GetDouble(0), 1e-12);
+        assertEquals("{{0.500000000000000, 0.0}, {0.0, 2.0}}", ProcessString("Inverse[Sqrt[{{4.0, 0}, {0, 0.25}}]]").toString());
+        assertEquals("3.0", ProcessString("3.0").toString());
+        assertEquals(ProcessString("100000000000000000000001"), ProcessString("Abs[-100000000000000000000001]"));
+
+        //the rank one matrix i*j is large enough to be split by divide and conquer
+        int size = 40;
+        StringBuilder matrix = new StringBuilder("{");
+        for (int i = 1; i <= size; i++) {
+            matrix.append((i > 1) ? ", {" : "{");
+            for (int j = 1; j <= size; j++) {
+                matrix.append((j > 1) ? ", " : "").append(i * j);
+            }
+            matrix.append("}");
+        }
+        matrix.append("}");
+        double sumSquares = size * (size + 1) * (2 * size + 1) / 6;
+        for (String count : new String[]{"", ", 1"}) {
+            Vector<Expression> resultList = ProcessString("Eigensystem[" + matrix + count + "]").GetSingle().SingleValue().GetExprList();
+            PackedArray values = resultList.get(0).GetSingle().SingleValue().GetPackedArray();
+            assertEquals(sumSquares, values.GetDouble(0), 1e-9 * sumSquares);
+            if (values.Length() > 1) {
+                assertEquals(0.0, values.GetDouble(1), 1e-9 * sumSquares);
+            }
+            PackedArray vector = resultList.get(1).GetSingle().SingleValue().GetExprList().get(0).GetSingle().SingleValue().GetPackedArray();
+            for (int i = 0; i < size; i++) {
+                assertEquals((i + 1) / Math.sqrt(sumSquares), vector.GetDouble(i), 1e-12);
+            }
+        }
+
+        try {
+            ProcessString("Eigenvalues[{{1, 2}, {3, 4}}]");
+            fail("Eigenvalues of a non-symmetric matrix were found");
+        } catch (ExecutionException ex) {
+        }
+    }
+
+    @Test
+    public void testFourierAndConvolution() throws Exception {
+        assertEquals("{0.500000000000000, 0.500000000000000i, -0.500000000000000, -0.500000000000000i}", ProcessString("Fourier[{0, 1, 0, 0}]").toString());
+        assertEquals("{4, 7, 10}", ProcessString("ListConvolve[{1, 2}, {1, 2, 3, 4}]").toString());
+        assertEquals("{5, 8, 11}", ProcessString("ListCorrelate[{1, 2}, {1, 2, 3, 4}]").toString());
+        assertEquals("{9, 4, 7, 10}", ProcessString("ListConvolve[{1, 2}, {1, 2, 3, 4}, 1]").toString());
+        assertEquals("{6, 5, 8, 11}", ProcessString("ListCorrelate[{1, 2}, {1, 2, 3, 4}, 2]").toString());
+
+        //a prime length goes through Bluestein's algorithm, and the inverse transform undoes it
+        Factor resultFactor = ProcessString("InverseFourier[Fourier[Range[101]]]").GetSingle().SingleValue();
+        PackedArray packed = resultFactor.GetPackedArray();
+        assertEquals(101, packed.Length());
+        for (int i = 0; i < packed.Length(); i++) {
+            assertEquals(i + 1, packed.GetDouble(i), 1e-10);
+            assertEquals(0.0, packed.GetNumber(i).ImaginaryValue().doubleValue(), 1e-10);
+        }
+
+        //long integer convolutions are done with transforms and rounded back to exact integers
+        long[] expected = new long[4001];
+        for (int j = 0; j < expected.length; j++) {
+            for (int r = 0; r < 1000; r++) {
+                expected[j] += (r + 1) * (long) (j + 1000 - r);
+            }
+        }
+        resultFactor = ProcessString("ListConvolve[Range[1000], Range[5000]]").GetSingle().SingleValue();
+        assertTrue(resultFactor.GetPackedArray().IsInteger());
+        long[] data = resultFactor.GetPackedArray().GetLongData();
+        assertEquals(expected.length, data.length);
+        for (int j = 0; j < expected.length; j++) {
+            assertEquals(expected[j], data[j]);
+        }
+
+        //integer sums that overflow a long stay exact, both when summed directly and when too large for the transforms
+        assertEquals("{9223372036854775807}", ProcessString("ListConvolve[{9223372036854775806, 1}, {1, 1}]").toString());
+        assertEquals("{27670116110564327423}", ProcessString("ListConvolve[{9223372036854775807, 1}, {2, 3}]").toString());
+        assertEquals("{18446744073709551617}", ProcessString("ListCorrelate[{9223372036854775807, 1}, {2, 3}]").toString());
+        assertEquals("{36893488147419103233, 3}", ProcessString("ListConvolve[{1, 2}, {18446744073709551616, 1, 1}]").toString());
+        resultFactor = ProcessString("ListConvolve[Range[300] * 1000000000, Range[3000] * 1000000000]").GetSingle().SingleValue();
+        assertEquals(2701, resultFactor.GetExprList().size());
+        assertEquals("4545100000000000000000000", resultFactor.GetExprList().get(0).toString());
+        assertEquals(ProcessString("Sum[r * (3000 - r + 1), {r, 1, 300}] * 1000000000000000000"), ProcessString("Part[ListConvolve[Range[300] * 1000000000, Range[3000] * 1000000000], 2701]"));
+
+        //long signed integers too large for one transform are split into digits, which must recombine exactly
+        String kernelText = "Mod[Range[1500] * 7919, 100003] * 1000000000 - 50000000000000";
+        String listText = "Mod[Range[4000] * 104729, 100019] * 1000000000 - 50000000000000";
+        BigInteger[] kernelValues = new BigInteger[1500], listValues = new BigInteger[4000];
+        for (int i = 0; i < kernelValues.length; i++) {
+            kernelValues[i] = BigInteger.valueOf((i + 1) * 7919L % 100003 * 1000000000L - 50000000000000L);
+        }
+        for (int i = 0; i < listValues.length; i++) {
+            listValues[i] = BigInteger.valueOf((i + 1) * 104729L % 100019 * 1000000000L - 50000000000000L);
+        }
+        Vector<Expression> exactList = ProcessString("ListConvolve[" + kernelText + ", " + listText + "]").GetSingle().SingleValue().GetExprList();
+        Vector<Expression> cyclicList = ProcessString("ListCorrelate[" + kernelText + ", " + listText + ", 1]").GetSingle().SingleValue().GetExprList();
+        assertEquals(2501, exactList.size());
+        assertEquals(4000, cyclicList.size());
+        for (int j = 0; j < 4000; j++) {
+            BigInteger sum = BigInteger.ZERO, cyclicSum = BigInteger.ZERO;
+            for (int r = 0; r < 1500; r++) {
+                if (j < 2501) {
+                    sum = sum.add(kernelValues[r].multiply(listValues[j + 1499 - r]));
+                }
+                cyclicSum = cyclicSum.add(kernelValues[r].multiply(listValues[(j + r) % 4000]));
+            }
+            if (j < 2501) {
+                assertEquals(new FMNumber(sum), exactList.get(j).GetSingleNumber());
+            }
+            assertEquals(new FMNumber(cyclicSum), cyclicList.get(j).GetSingleNumber());
+        }
+        resultFactor = ProcessString("ListConvolve[Range[5000], Range[100000]]").GetSingle().SingleValue();
+        assertTrue(resultFactor.GetPackedArray().IsInteger());
+        assertEquals(95001, resultFactor.ListLength());
+        assertEquals(20845835000L, resultFactor.GetPackedArray().GetLongData()[0]);
+        assertEquals(1208583335000L, resultFactor.GetPackedArray().GetLongData()[95000]);
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        assertEquals("2.500000000000000", ProcessString("Mean[{1, 2, 3, 4}]").toString());
+        assertEquals("1.666666666666667", ProcessString("Variance[{1, 2, 3, 4}]").toString());
+        assertEquals("3", ProcessString("Median[{5, 1, 4, 2}]").toString());
+        assertEquals("3.500000000000000", ProcessString("Median[{5, 1, 4, 2, 3, 7}]").toString());
+        assertEquals("{2, 3}", ProcessString("Quantile[{5, 1, 4, 2, 3}, {0.25, 0.5}]").toString());
+        assertEquals("{{1.0, 2.0, 3.0, 4.0}, {1, 2, 4}}", ProcessString("Histogram[{1, 2, 2, 3, 3, 3, 4}, 3]").toString());
+        assertEquals("Median[{x, 1}]", ProcessString("Median[{x, 1}]").toString());
+
+        //the moments of a large list with a big offset are found across several blocks without losing precision
+        Random random = new Random(7);
+        double[] data = new double[300000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 1e8 + random.nextGaussian();
+        }
+        double mean = 0, m2 = 0, m3 = 0;
+        for (int i = 0; i < data.length; i++) {
+            mean += (data[i] - 1e8) / data.length;
+        }
+        for (int i = 0; i < data.length; i++) {
+            double d = (data[i] - 1e8) - mean;
+            m2 += d * d;
+            m3 += d * d * d;
+        }
+        MomentAccumulator moments = MomentAccumulator.Accumulate(new PackedArray(data));
+        assertEquals(1e8 + mean, moments.GetMean(), 1e-7);
+        assertEquals(m2 / (data.length - 1), moments.GetVariance(), 1e-9);
+        assertEquals(Math.sqrt((double) data.length) * m3 / Math.pow(m2, 1.5), moments.GetSkewness(), 1e-6);
+
+        //selection agrees with sorting, including on lists with many repeated values
+        long[] longData = new long[100001];
+        for (int i = 0; i < longData.length; i++) {
+            longData[i] = random.nextInt(10);
+        }
+        long[] sorted = longData.clone();
+        Arrays.sort(sorted);
+        int[] positions = {50000, 0, 100000, 12345};
+        PackedArray selected = Statistics.OrderStatistics(new PackedArray(longData), positions);
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals(sorted[positions[i]], selected.GetLongData()[i]);
+        }
+        long[] counts = Statistics.BinCounts(new PackedArray(longData), 0, 1, 10);
+        for (int i = 0; i < counts.length; i++) {
+            int expected = 0;
+            for (int j = 0; j < longData.length; j++) {
+                expected += (longData[j] == i) ? 1 : 0;
+            }
+            assertEquals(expected, counts[i]);
+        }
+    }
+
+    @Test
+    public void testSortingAndSelection() throws Exception {
+        assertEquals("{9, 5, 4}", ProcessString("TakeLargest[{3, 1, 4, 1, 5, 9, 2}, 3]").toString());
+        assertEquals("{1, 1, 2}", ProcessString("TakeSmallest[{3, 1, 4, 1, 5, 9, 2}, 3]").toString());
+        assertEquals("{2, 4, 3, 1}", ProcessString("Ordering[{3, 1, 2, 1}]").toString());
+        assertEquals("{3, 1}", ProcessString("Ordering[{3, 1, 2, 1}, -2]").toString());
+        assertEquals("{1, -2, -3}", ProcessString("SortBy[{-3, 1, -2}, Abs]").toString());
+
+        //long arrays are radix sorted, with stable orderings and -0.0 before 0.0
+        Random random = new Random(11);
+        double[] data = new double[200000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (random.nextInt(3) == 0) ? ((random.nextInt(2) == 0) ? -0.0 : 0.0) : random.nextInt(1000) - 500.5;
+        }
+        double[] expected = data.clone();
+        Arrays.sort(expected);
+        double[] sorted = data.clone();
+        ParallelSort.Sort(sorted);
+        assertTrue(Arrays.equals(expected, sorted));
+        int[] ordering = ParallelSort.Ordering(data);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(0, Double.compare(expected[i], data[ordering[i]]));
+            if ((i > 0) && (Double.compare(data[ordering[i - 1]], data[ordering[i]]) == 0)) {
+                assertTrue(ordering[i - 1] < ordering[i]);
+            }
+        }
+        long[] longData = new long[200000];
+        for (int i = 0; i < longData.length; i++) {
+            longData[i] = random.nextLong() >> random.nextInt(64);
+        }
+        long[] expectedLongs = longData.clone();
+        Arrays.sort(expectedLongs);
+        ParallelSort.Sort(longData);
+        assertTrue(Arrays.equals(expectedLongs, longData));
+    }
+
+    @Test
+    public void testSeededRandom() throws Exception {
+        //the same seed gives the same numbers, however the blocks are shared among the threads
+        ProcessString("SeedRandom[2009]");
+        String first = ProcessString("RandomInteger[{-5, 5}, 200000]").toString();
+        ProcessString("SeedRandom[2009]");
+        Factor resultFactor = ProcessString("RandomInteger[{-5, 5}, 200000]").GetSingle().SingleValue();
+        assertEquals(first, resultFactor.toString());
+
+        long[] data = resultFactor.GetPackedArray().GetLongData();
+        long[] counts = new long[11];
+        for (int i = 0; i < data.length; i++) {
+            assertTrue((data[i] >= -5) && (data[i] <= 5));
+            counts[(int) data[i] + 5]++;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            assertEquals(200000.0 / 11, counts[i], 400);
+        }
+
+        double[] reals = ProcessString("RandomReal[{2, 3}, 100000]").GetSingle().SingleValue().GetPackedArray().GetDoubleData();
+        double sum = 0;
+        for (int i = 0; i < reals.length; i++) {
+            assertTrue((reals[i] >= 2) && (reals[i] < 3));
+            sum += reals[i];
+        }
+        assertEquals(2.5, sum / reals.length, 0.01);
+
+        //a stream split by block index matches the sequence of splits
+        SplitMixRandom random = new SplitMixRandom(1234);
+        SplitMixRandom indexed = random.Split(3);
+        random.Split();
+        random.Split();
+        random.Split();
+        assertEquals(random.Split().NextLong(), indexed.NextLong());
+    }
+
+    @Test
+    public void testImport() throws Exception {
+        java.io.File file = java.io.File.createTempFile("fmimport", ".csv");
+        file.deleteOnExit();
+        java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(file));
+        writer.print("time, value\r\n0, 1.5\r\n\r\n1, -2.25e-1\n2, 12345678901234567890.5\n3, 0.1\n");
+        writer.close();
+        String fileName = file.getAbsolutePath().replace('\\', '/');
+        Factor resultFactor = ProcessString("Import[\"" + fileName + "\"]").GetSingle().SingleValue();
+        Vector<Expression> columnList = resultFactor.GetExprList();
+        assertEquals(2, columnList.size());
+        assertEquals("{0, 1, 2, 3}", columnList.get(0).toString());
+        double[] values = columnList.get(1).GetSingle().SingleValue().GetPackedArray().GetDoubleData();
+        assertEquals(4, values.length);
+        assertTrue(values[0] == 1.5);
+        assertTrue(values[1] == -0.225);
+        assertTrue(values[2] == 12345678901234567890.5);
+        assertTrue(values[3] == 0.1);
+
+        writer = new java.io.PrintWriter(new java.io.FileWriter(file));
+        writer.print("1, 2\n3, four\n");
+        writer.close();
+        try {
+            ProcessString("Import[\"" + fileName + "\"]");
+            fail("Non-numeric field accepted");
+        } catch (ExecutionException ex) {
+        }
+
+        //integers are read exactly, and one column still gives a list of columns
+        assertEquals("{{9007199254740993, 123456789012345678, -9223372036854775808, 9223372036854775807}}", ImportString(file, "9007199254740993\n123456789012345678\n-9223372036854775808\n9223372036854775807\n"));
+        resultFactor = ProcessString("Import[\"" + fileName + "\"]").GetSingle().SingleValue();
+        assertTrue(resultFactor.GetExprList().get(0).GetSingle().SingleValue().GetPackedArray().IsInteger());
+        //an integer past the long range, or a real after integers, makes the column real
+        ImportString(file, "1, 2\n2.5, 9223372036854775808\n");
+        columnList = ProcessString("Import[\"" + fileName + "\"]").GetSingle().SingleValue().GetExprList();
+        for (int column = 0; column < 2; column++) {
+            assertTrue(columnList.get(column).GetSingle().SingleValue().GetPackedArray().IsReal());
+        }
+        assertTrue(columnList.get(0).GetSingle().SingleValue().GetPackedArray().GetDouble(1) == 2.5);
+        assertTrue(columnList.get(1).GetSingle().SingleValue().GetPackedArray().GetDouble(1) == 9223372036854775808.0);
+
+        //quoted numbers and a trailing delimiter are data, and a line of quoted names is a header
+        assertEquals("{{1, 3}, {2, 4}}", ImportString(file, "\"1\",\"2\"\n\"3\",4\n"));
+        assertEquals("{{1, 3}, {2, 4}}", ImportString(file, "\"a\",\"b\",\n1,2,\n3,4,\n"));
+        assertEquals("{{1, 3}, {2, 4}}", ImportString(file, "a;b\n1;2\n3;4\n"));
+        //a first line with an empty field is data with a missing value, not a header
+        writer = new java.io.PrintWriter(new java.io.FileWriter(file));
+        writer.print("1,,3\n4,5,6\n");
+        writer.close();
+        FMResult error = ProcessStringResults("Import[\"" + fileName + "\"]").get(0);
+        assertTrue(error.IsString() && (error.GetString().indexOf("Data row 1: field 2 is empty") >= 0));
+
+        //a column that turns real after a block of integer rows is converted, on or off the heap
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            text.append(i).append(", ").append((i == 99999) ? "0.5" : Integer.toString(3 * i)).append('\n');
+        }
+        writer = new java.io.PrintWriter(new java.io.FileWriter(file));
+        writer.print(text);
+        writer.close();
+        for (int pass = 0; pass < 2; pass++) {
+            NumericTableReader reader = new NumericTableReader(file);
+            reader.SetOffHeapThreshold((pass == 0) ? Long.MAX_VALUE : 0);
+            reader.Read();
+            assertEquals(pass == 1, reader.IsOffHeap());
+            assertTrue(reader.IsIntegerColumn(0) && !reader.IsIntegerColumn(1));
+            PackedArray first = reader.GetPackedColumn(0), second = reader.GetPackedColumn(1);
+            for (int i = 0; i < 100000; i++) {
+                assertEquals(i, first.GetNumber(i).RealValue().longValue());
+                assertTrue(second.GetDouble(i) == ((i == 99999) ? 0.5 : 3 * i));
+            }
+        }
+    }
+
+    //write a file and import it
+    protected String ImportString(java.io.File file, String text) throws Exception {
+        java.io.PrintWriter writer = new java.io.PrintWriter(new java.io.FileWriter(file));
+        writer.print(text);
+        writer.close();
+        return ProcessString("Import[\"" + file.getAbsolutePath().replace('\\', '/') + "\"]").toString();
+    }
+
+    @Test
+    public void testOffHeapArrays() throws Exception {
+        int length = 200000;
+        double[] reals = new double[length];
+        long[] integers = new long[length];
+        OffHeapStorage realStorage = OffHeapStorage.Allocate(length);
+        OffHeapStorage integerStorage = OffHeapStorage.CreateMapped(length);
+        for (int i = 0; i < length; i++) {
+            reals[i] = 0.5 * ((i * 7919) % length) - 1000;
+            integers[i] = (i * 31) % 1001 - 500;
+            realStorage.PutDouble(i, reals[i]);
+            integerStorage.PutLong(i, integers[i]);
+        }
+        PackedArray heapReals = new PackedArray(reals), heapIntegers = new PackedArray(integers);
+        PackedArray offHeapReals = new PackedArray(realStorage, false), offHeapIntegers = new PackedArray(integerStorage, true);
+        assertTrue(offHeapReals.IsOffHeap() && !heapReals.IsOffHeap());
+        assertEquals(heapReals, offHeapReals);
+        assertEquals(heapReals.hashCode(), offHeapReals.hashCode());
+        assertEquals(heapIntegers, offHeapIntegers);
+
+        ExpressionToolset toolset = CreateLoadedToolset();
+        long total = 0;
+        for (int i = 0; i < length; i++) {
+            total += integers[i];
+        }
+        assertEquals(Long.toString(total), CallFunction(toolset, "Total", offHeapIntegers).toString());
+        String[] functions = {"Total", "Max", "Min", "Mean", "Variance", "Skewness"};
+        for (int i = 0; i < functions.length; i++) {
+            assertEquals(functions[i], CallFunction(toolset, functions[i], heapIntegers).toString(), CallFunction(toolset, functions[i], offHeapIntegers).toString());
+            assertEquals(functions[i], CallFunction(toolset, functions[i], heapReals).toString(), CallFunction(toolset, functions[i], offHeapReals).toString());
+        }
+        assertEquals(CallFunction(toolset, "Histogram", heapReals).toString(), CallFunction(toolset, "Histogram", offHeapReals).toString());
+
+        //element-wise results stay off the heap
+        Expression sum = toolset.Flatten(BuildExpression(new Factor(offHeapReals)).AppendTerm(new Term(new Power(new Factor(heapReals))), TermOperator.ADD));
+        PackedArray packedSum = sum.GetSingle().SingleValue().GetPackedArray();
+        assertTrue(packedSum.IsOffHeap() && packedSum.IsReal());
+        for (int i = 0; i < length; i += 997) {
+            assertTrue(packedSum.GetDouble(i) == 2 * reals[i]);
+        }
+        Expression product = toolset.Flatten(BuildExpression(new Factor(offHeapIntegers)).AppendTerm(new Term(new Power(new Factor(new FMNumber(3)))), TermOperator.SUBTRACT));
+        assertEquals(new PackedArray(Subtract(integers, 3)), product.GetSingle().SingleValue().GetPackedArray());
+        Expression sine = CallFunction(toolset, "Sin", offHeapReals);
+        assertTrue(sine.GetSingle().SingleValue().GetPackedArray().IsOffHeap());
+        assertEquals(CallFunction(toolset, "Sin", heapReals).toString(), sine.toString());
+
+        //large arrays are displayed in part
+        assertTrue(offHeapReals.toString().endsWith(", \u2026 <" + (length - PackedArray.DISPLAY_LENGTH) + ">}"));
+        assertEquals("{1, 2, 3}", new PackedArray(new long[]{1, 2, 3}).toString());
+
+        //sorting stays off the heap, and runs longer than one heap block are merged
+        int sortLength = (1 << 21) + 12345;
+        Random random = new Random(44);
+        double[] unsorted = new double[sortLength];
+        long[] unsortedIntegers = new long[sortLength];
+        OffHeapStorage unsortedStorage = OffHeapStorage.Allocate(sortLength), unsortedIntegerStorage = OffHeapStorage.Allocate(sortLength);
+        for (int i = 0; i < sortLength; i++) {
+            unsorted[i] = (i % 1000 == 0) ? -0.0 : random.nextGaussian();
+            unsortedIntegers[i] = random.nextLong() >> random.nextInt(64);
+            unsortedStorage.PutDouble(i, unsorted[i]);
+            unsortedIntegerStorage.PutLong(i, unsortedIntegers[i]);
+        }
+        Arrays.sort(unsorted);
+        Arrays.sort(unsortedIntegers);
+        PackedArray sorted = CallFunction(toolset, "Sort", new PackedArray(unsortedStorage, false)).GetSingle().SingleValue().GetPackedArray();
+        assertTrue(sorted.IsOffHeap() && sorted.IsReal());
+        assertEquals(new PackedArray(unsorted), sorted);
+        sorted = CallFunction(toolset, "Sort", new PackedArray(unsortedIntegerStorage, true)).GetSingle().SingleValue().GetPackedArray();
+        assertTrue(sorted.IsOffHeap() && sorted.IsInteger());
+        assertEquals(new PackedArray(unsortedIntegers), sorted);
+    }
+
+    @Test
+    public void testListPlotDecimation() throws Exception {
+        //a fast wave over many pixel columns, so each column holds a run of points
+        int length = 300000;
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            y[i] = Math.sin(i * 0.01) + ((i == 123457) ? 5 : 0);
+        }
+        PointDecimator decimator = new PointDecimator(null, new PackedArray(y));
+        assertTrue(decimator.GetXRange().low == 1 && decimator.GetXRange().high == length);
+        assertTrue(decimator.GetYRange().high == y[123457]);
+
+        Vector<franklinmath.util.Point> line = decimator.DecimateLine(300);
+        assertTrue(line.size() <= 4 * (300 + length / 65536 + 1));
+        //the spike and both ends survive, and the points stay in order
+        boolean hasSpike = false;
+        for (int i = 0; i < line.size(); i++) {
+            hasSpike |= (line.get(i).y == y[123457]);
+            if (i > 0) {
+                assertTrue(line.get(i).x > line.get(i - 1).x);
+            }
+        }
+        assertTrue(hasSpike);
+        assertTrue(line.get(0).x == 1 && line.lastElement().x == length);
+
+        Vector<franklinmath.util.Point> points = decimator.DecimatePoints(300, 200);
+        assertTrue(points.size() > 300 && points.size() <= 300 * 200);
+
+        try {
+            ProcessString("ListPlot[{1, {2, 3}}]");
+            fail("Invalid data accepted");
+        } catch (ExecutionException ex) {
+        }
+    }
+
+    @Test
+    public void testHistogramPlot() throws Exception {
+        //long enough that the quartiles are found by counting
+        int length = (1 << 20) + 1001;
+        double[] data = new double[length];
+        Random seeded = new Random(46);
+        for (int i = 0; i < length; i++) {
+            data[i] = Math.exp(seeded.nextGaussian());
+        }
+        PackedArray packed = new PackedArray(data);
+        double[] range = Statistics.MinMax(packed);
+        PackedArray quartiles = Statistics.OrderStatistics(packed, new int[]{(length - 1) / 4, (3 * (length - 1)) / 4});
+        double tolerance = (range[1] - range[0]) / 4.0e9;
+        assertEquals(quartiles.GetDouble(0), Statistics.CountedOrderStatistic(packed, range[0], range[1], (length - 1) / 4), tolerance);
+        assertEquals(quartiles.GetDouble(1), Statistics.CountedOrderStatistic(packed, range[0], range[1], (3 * (length - 1)) / 4), tolerance);
+        double exactWidth = 2 * (quartiles.GetDouble(1) - quartiles.GetDouble(0)) / Math.cbrt(length);
+        assertEquals(exactWidth, Statistics.FreedmanDiaconisWidth(packed, range[0], range[1]), 0.02 * exactWidth);
+
+        assertTrue(ProcessStringResults("HistogramPlot[{1, 2, 2, 3, 3, 3, 10}]").get(0).IsImage());
+        assertTrue(ProcessStringResults("HistogramPlot[{1, 2, 2, 3, 3, 3, 10}, 3]").get(0).IsImage());
+        assertTrue(ProcessStringResults("HistogramPlot[{1, 2}, 0]").get(0).IsString());
+    }
+
+    @Test
+    public void testHigherOrderListFunctions() throws Exception {
+        ProcessString("f[x] = x^2 + 1");
+        int n = 100000;
+        Expression mapped = ProcessString("Map[f, Range[" + n + "]]");
+        Expression parallelMapped = ProcessString("ParallelMap[f, Range[" + n + "]]");
+        PackedArray packed = mapped.GetSingle().SingleValue().GetPackedArray();
+        assertEquals(n, packed.Length());
+        for (int i = 0; i < n; i++) {
+            assertEquals((long) (i + 1) * (i + 1) + 1, packed.GetLongData()[i]);
+        }
+        assertEquals(mapped, parallelMapped);
+
+        //listable commands are called once on a packed array
+        assertEquals(ProcessString("Sqrt[Range[10]]"), ProcessString("Map[Sqrt, Range[10]]"));
+        assertEquals(ProcessString("{False, True, True, False}"), ProcessString("ParallelMap[PrimeQ, {1, 2, 3, 4}]"));
+        assertEquals(ProcessString("{g[1], g[2]}"), ProcessString("ParallelMap[g, {1, 2}]"));
+
+        assertEquals(ProcessString("{2, 3, 5, 7}"), ProcessString("Select[Range[10], PrimeQ]"));
+        assertEquals(ProcessString("{}"), ProcessString("Select[{1, 4, 6}, PrimeQ]"));
+        assertEquals(ProcessString("6"), ProcessString("Apply[GCD, {12, 18, 30}]"));
+        assertEquals(ProcessString("60"), ProcessString("Fold[LCM, 1, {4, 6, 10}]"));
+        assertEquals(ProcessString("60"), ProcessString("Fold[LCM, {4, 6, 10}]"));
+        assertEquals(ProcessString("7"), ProcessString("Fold[LCM, 7, {}]"));
+        assertEquals(ProcessString("{1, 4, 12, 60}"), ProcessString("FoldList[LCM, 1, {4, 6, 10}]"));
+        assertEquals(ProcessString("{h[h[a, b], c]}"), ProcessString("{Fold[h, {a, b, c}]}"));
+
+        assertTrue(ProcessStringResults("Fold[LCM, {}]").get(0).IsString());
+        assertTrue(ProcessStringResults("Map[f, 3]").get(0).IsString());
+        assertTrue(ProcessStringResults("Map[2, {1, 2}]").get(0).IsString());
+    }
+
+    @Test
+    public void testPrefixScans() throws Exception {
+        assertEquals(ProcessString("{1, 3, 6, 10}"), ProcessString("Accumulate[{1, 2, 3, 4}]"));
+        assertEquals(ProcessString("{3, 5, 7}"), ProcessString("Differences[{1, 4, 9, 16}]"));
+        assertEquals(ProcessString("{2, 2}"), ProcessString("Differences[{1, 4, 9, 16}, 2]"));
+        assertEquals(ProcessString("{2, 3, 4}"), ProcessString("Ratios[{1, 2, 6, 24}]"));
+        assertEquals(ProcessString("{2, 1.5}"), ProcessString("Ratios[{1, 2, 3}]"));
+        assertEquals(ProcessString("{2, 3, 3, 4, 4, 5}"), ProcessString("FoldList[Max, 2, {3, 1, 4, 1, 5}]"));
+        assertEquals(ProcessString("{3, 1, 1, 1, 1}"), ProcessString("FoldList[Min, {3, 1, 4, 1, 5}]"));
+        assertEquals(ProcessString("{a, a + b, a + b + 2}"), ProcessString("Accumulate[{a, b, 2}]"));
+        //integer overflow falls back on exact arithmetic
+        assertEquals(ProcessString("{9223372036854775807, 9223372036854775808}"), ProcessString("Accumulate[{9223372036854775807, 1}]"));
+        assertEquals(ProcessString("{9223372036854775816}"), ProcessString("Differences[{-9223372036854775807, 9}]"));
+
+        //several blocks of integers, and of reals with a large cancelling offset that plain summation loses
+        int length = 5 * OffHeapStorage.BLOCK_SIZE + 123;
+        long[] integers = new long[length];
+        double[] reals = new double[length];
+        Random random = new Random(48);
+        for (int i = 0; i < length; i++) {
+            integers[i] = random.nextInt(2001) - 1000;
+            reals[i] = (i == 0) ? 1e16 : ((i == length - 1) ? -1e16 : random.nextDouble());
+        }
+        ExpressionToolset toolset = CreateLoadedToolset();
+        PackedArray integerTotals = CallFunction(toolset, "Accumulate", new PackedArray(integers)).GetSingle().SingleValue().GetPackedArray();
+        PackedArray realTotals = CallFunction(toolset, "Accumulate", new PackedArray(reals)).GetSingle().SingleValue().GetPackedArray();
+        long integerTotal = 0;
+        BigDecimal realTotal = BigDecimal.ZERO;
+        for (int i = 0; i < length; i++) {
+            integerTotal += integers[i];
+            realTotal = realTotal.add(new BigDecimal(reals[i]));
+            assertEquals(integerTotal, integerTotals.GetLongData()[i]);
+            assertEquals(realTotal.doubleValue(), realTotals.GetDouble(i), Math.max(2 * Math.ulp(realTotal.doubleValue()), 1e-6));
+        }
+        assertEquals(new PackedArray(Arrays.copyOfRange(integers, 1, length)), CallFunction(toolset, "Differences", integerTotals).GetSingle().SingleValue().GetPackedArray());
+
+        //off heap arrays give the same results, still off the heap
+        OffHeapStorage storage = OffHeapStorage.Allocate(length);
+        for (int i = 0; i < length; i++) {
+            storage.PutDouble(i, reals[i]);
+        }
+        PackedArray offHeapTotals = CallFunction(toolset, "Accumulate", new PackedArray(storage, false)).GetSingle().SingleValue().GetPackedArray();
+        assertTrue(offHeapTotals.IsOffHeap());
+        assertEquals(realTotals, offHeapTotals);
+        assertEquals(CallFunction(toolset, "Differences", realTotals), CallFunction(toolset, "Differences", offHeapTotals));
+    }
+
+    @Test
+    public void testLazySequences() throws Exception {
+        assertEquals(ProcessString("{2, 3, 5, 7, 11}"), ProcessString("Take[Primes[], 5]"));
+        assertEquals(ProcessString("{13, 17, 19}"), ProcessString("Take[Drop[Drop[Primes[], 2], 3], 3]"));
+        assertEquals(ProcessString("{0, 1, 1, 2, 3, 5}"), ProcessString("Take[FibonacciNumbers[], 6]"));
+        ProcessString("f[x] = 2*x - 1");
+        assertEquals(ProcessString("{2, 3, 5, 9, 17}"), ProcessString("NestList[f, 2, 4]"));
+        assertEquals(ProcessString("{2, 3, 5}"), ProcessString("TakeWhile[NestList[f, 2], PrimeQ]"));
+        assertEquals(ProcessString("{3, 5, 9, 13}"), ProcessString("Take[Map[f, Primes[]], 4]"));
+        assertEquals("{2, 3, 5, 7, 11, 13, 17, 19, 23, 29, ...}", ProcessString("Primes[]").toString());
+        //forcing an infinite sequence fails without computing it
+        assertTrue(ProcessStringResults("Total[Primes[]]").get(0).IsString());
+        //lists
+        assertEquals(ProcessString("{4, 5}"), ProcessString("Take[{1, 2, 3, 4, 5}, -2]"));
+        assertEquals(ProcessString("{1, 2, 3}"), ProcessString("Drop[{1, 2, 3, 4, 5}, -2]"));
+        assertEquals(ProcessString("{a, b}"), ProcessString("Take[{a, b, c}, 2]"));
+        assertEquals(ProcessString("{}"), ProcessString("Drop[{a, b, c}, 5]"));
+
+        //the stages pull only as many elements as the final Take needs
+        final int[] generated = new int[1];
+        LazySequence counting = new LazySequence() {
+
+            @Override
+            public boolean IsInfinite() {
+                return true;
+            }
+
+            @Override
+            public Generator CreateGenerator() {
+                return new Generator() {
+
+                    @Override
+                    public Expression Next() throws ExpressionException {
+                        generated[0]++;
+                        return BuildExpression(new Factor(generated[0]));
+                    }
+                };
+            }
+        };
+        Vector<Equation> selectArgs = new Vector<Equation>(2);
+        selectArgs.add(new Equation(BuildExpression(new Factor(counting)), null));
+        selectArgs.add(new Equation(BuildExpression(new Factor("PrimeQ", true)), null));
+        Vector<Equation> takeArgs = new Vector<Equation>(2);
+        takeArgs.add(new Equation(BuildExpression(new Factor(new SymbolicFunction("Select", selectArgs, true))), null));
+        takeArgs.add(new Equation(BuildExpression(new Factor(10)), null));
+        Expression taken = CreateLoadedToolset().Flatten(BuildExpression(new Factor(new SymbolicFunction("Take", takeArgs, true))));
+        assertEquals(ProcessString("{2, 3, 5, 7, 11, 13, 17, 19, 23, 29}"), taken);
+        assertEquals(29, generated[0]);
+
+        //primes are taken and dropped in blocks straight from the sieve
+        PackedArray primes = ProcessString("Take[Primes[], 3000000]").GetSingle().SingleValue().GetPackedArray();
+        assertTrue(primes.IsInteger() && (primes.Length() == 3000000));
+        assertEquals(ProcessString("Prime[3000000]"), ProcessString(Long.toString(primes.GetLongData()[2999999])));
+        assertEquals(ProcessString("{Prime[1000001], Prime[1000002]}"), ProcessString("Take[Drop[Primes[], 1000000], 2]"));
+
+        //lists collected from sequences fail once they are too long, with integers held packed until then
+        LazySequence.ListBuilder builder = new LazySequence.ListBuilder();
+        builder.AddIntegers(new long[LazySequence.MAX_LIST_LENGTH - 1]);
+        builder.Add(BuildExpression(new Factor(7)));
+        assertTrue(builder.ToFactor().GetPackedArray().Length() == LazySequence.MAX_LIST_LENGTH);
+        try {
+            builder.Add(BuildExpression(new Factor(8)));
+            fail("Integer list past the limit was collected");
+        } catch (ExpressionException ex) {
+        }
+        builder = new LazySequence.ListBuilder();
+        builder.AddIntegers(new long[]{1, 2});
+        for (int i = 2; i < LazySequence.MAX_EXPRESSION_LENGTH; i++) {
+            builder.Add(BuildExpression(new Factor("x", true)));
+        }
+        Vector<Expression> collected = builder.ToFactor().GetExprList();
+        assertEquals(LazySequence.MAX_EXPRESSION_LENGTH, collected.size());
+        assertEquals(ProcessString("2"), collected.get(1));
+        assertEquals(ProcessString("x"), collected.get(2));
+        try {
+            builder.Add(BuildExpression(new Factor("x", true)));
+            fail("Expression list past the limit was collected");
+        } catch (ExpressionException ex) {
+        }
+    }
+
+    @Test
+    public void testListParts() throws Exception {
+        assertEquals(ProcessString("3"), ProcessString("Length[{a, b, c}]"));
+        assertEquals(ProcessString("b"), ProcessString("Part[{a, b, c}, 2]"));
+        assertEquals(ProcessString("c"), ProcessString("Part[{a, b, c}, -1]"));
+        assertEquals(ProcessString("20"), ProcessString("Part[{10, 20, 30}, 2]"));
+        assertTrue(ProcessStringResults("Part[{a, b, c}, 4]").get(0).IsString());
+        assertTrue(ProcessStringResults("Part[{a, b, c}, 0]").get(0).IsString());
+        assertEquals(ProcessString("{a, x, c}"), ProcessString("ReplacePart[{a, b, c}, 2, x]"));
+        assertEquals(ProcessString("{a, b, c}"), ProcessString("Append[{a, b}, c]"));
+        assertEquals(ProcessString("{c, a, b}"), ProcessString("Prepend[{a, b}, c]"));
+        assertEquals(ProcessString("{1, 2, 3}"), ProcessString("Append[{1, 2}, 3]"));
+        assertEquals(ProcessString("{c, b, a}"), ProcessString("Fold[Prepend, {}, {a, b, c}]"));
+        //the original list is unchanged
+        ProcessString("v = {a, b}");
+        ProcessString("w = Append[ReplacePart[v, 1, x], c]");
+        assertEquals(ProcessString("{a, b}"), ProcessString("v"));
+        assertEquals(ProcessString("{x, b, c}"), ProcessString("w"));
+
+        //appending a number to a packed array keeps it packed, and arrays sharing a data array do not see each other
+        Factor packed = ProcessString("Append[Range[100000], 7]").GetSingle().SingleValue();
+        assertTrue(packed.IsPackedArray());
+        assertEquals(100001, packed.ListLength());
+        assertTrue(ProcessString("Prepend[{1.5, 2}, 3]").GetSingle().SingleValue().IsPackedArray());
+        assertTrue(ProcessString("ReplacePart[Range[10], 2, 0]").GetSingle().SingleValue().IsPackedArray());
+        ProcessString("p = Append[Range[3], 4]");
+        ProcessString("q = Append[p, 5]");
+        ProcessString("r = Append[p, 6]");
+        assertEquals(ProcessString("{1, 2, 3, 4}"), ProcessString("p"));
+        assertEquals(ProcessString("{1, 2, 3, 4, 5}"), ProcessString("q"));
+        assertEquals(ProcessString("{1, 2, 3, 4, 6}"), ProcessString("r"));
+        assertEquals(ProcessString("{1, 2, 3, 4, 5, 6}"), ProcessString("Append[q, 6]"));
+        assertEquals(ProcessString("{1, 2, 3, 4, a}"), ProcessString("Append[p, a]"));
+
+        //a list that was flat is flattened again once a definition changes
+        ProcessString("u = Append[{y}, z]");
+        ProcessString("y = 5");
+        assertEquals(ProcessString("{5, z}"), ProcessString("u"));
+
+        //building a list one element at a time takes time linear in its length, so four times the elements should take 
+        //about four times as long (and sixteen times if each append copied or flattened the whole list)
+        ProcessString("Fold[Append, {a}, Range[5000]]");
+        long start = System.nanoTime();
+        assertEquals(ProcessString("5001"), ProcessString("Length[Fold[Append, {a}, Range[5000]]]"));
+        long smallTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        assertEquals(ProcessString("20001"), ProcessString("Length[Fold[Append, {a}, Range[20000]]]"));
+        long largeTime = System.nanoTime() - start;
+        assertTrue("Appending 20000 elements took " + largeTime / 1000000 + " ms", largeTime < 10 * Math.max(smallTime, 50000000L));
+    }
+
+    @Test
+    public void testFibonacciNumbers() throws Exception {
+        assertEquals(ProcessString("{0, 1, 1, 2, 3, 5, 8, 13, 21, 34}"), ProcessString("FibonacciNumbers[10]"));
+        assertEquals(ProcessString("{0}"), ProcessString("FibonacciNumbers[1]"));
+        assertTrue(ProcessStringResults("FibonacciNumbers[-1]").get(0).IsString());
+
+        //F(92) is the last value that fits in a long, so 93 values are packed and the 94th is exact
+        Factor longSeries = ProcessString("FibonacciNumbers[93]").GetSingle().SingleValue();
+        assertTrue(longSeries.IsPackedArray());
+        assertEquals(7540113804746346429L, longSeries.GetPackedArray().GetLongData()[92]);
+        Vector<Expression> bigSeries = ProcessString("FibonacciNumbers[94]").GetSingle().SingleValue().GetExprList();
+        assertEquals(94, bigSeries.size());
+        assertEquals(new FMNumber(new BigInteger("12200160415121876738")), bigSeries.get(93).GetSingleNumber());
+        assertEquals(new FMNumber(7540113804746346429L), bigSeries.get(92).GetSingleNumber());
+    }
+
+    @Test
+    public void testFibonacciAndLinearRecurrence() throws Exception {
+        assertEquals(new FMNumber(new BigInteger("354224848179261915075")), ProcessString("Fibonacci[100]").GetSingleNumber());
+        assertEquals(new FMNumber(0), ProcessString("Fibonacci[0]").GetSingleNumber());
+        //F(93) is the first value past the range of a long
+        assertEquals(new FMNumber(7540113804746346429L), ProcessString("Fibonacci[92]").GetSingleNumber());
+        assertEquals(new FMNumber(new BigInteger("12200160415121876738")), ProcessString("Fibonacci[93]").GetSingleNumber());
+        //negative indices follow F(-n) = (-1)^(n + 1) F(n)
+        assertEquals(new FMNumber(1), ProcessString("Fibonacci[-1]").GetSingleNumber());
+        assertEquals(new FMNumber(13), ProcessString("Fibonacci[-7]").GetSingleNumber());
+        assertEquals(new FMNumber(-21), ProcessString("Fibonacci[-8]").GetSingleNumber());
+        assertEquals(new FMNumber(new BigInteger("-354224848179261915075")), ProcessString("Fibonacci[-100]").GetSingleNumber());
+        assertEquals("Fibonacci[x]", ProcessString("Fibonacci[x]").toString());
+
+        //a single term is the nth value of the sequence, starting from the first initial value
+        assertEquals(new FMNumber(new BigInteger("218922995834555169026")), ProcessString("LinearRecurrence[{1, 1}, {0, 1}, {100}]").GetSingleNumber());
+        assertEquals(ProcessString("Fibonacci[99]"), ProcessString("LinearRecurrence[{1, 1}, {0, 1}, {100}]"));
+        assertEquals(new FMNumber(0), ProcessString("LinearRecurrence[{1, 1}, {0, 1}, {1}]").GetSingleNumber());
+        assertEquals(ProcessString("{1, 2, 3, 4, 5}"), ProcessString("LinearRecurrence[{2, -1}, {1, 2}, 5]"));
+        assertEquals(ProcessString("FibonacciNumbers[10]"), ProcessString("LinearRecurrence[{1, 1}, {0, 1}, 10]"));
+        assertTrue(ProcessStringResults("LinearRecurrence[{1, 1}, {0}, 5]").get(0).IsString());
+        assertTrue(ProcessStringResults("LinearRecurrence[{1, 1}, {0, 1}, {0}]").get(0).IsString());
+    }
+
+    @Test
+    public void testWorkerPool() throws Exception {
+        int savedThreads = WorkerPool.GetNumThreads();
+        String[] inputs = {"Total[Sqrt[Range[200000] * 1.0]]", "Part[Accumulate[Range[300000]], -1]", "ParallelMap[PrimeQ, Range[2000]]", "Sort[Mod[Range[100000] * 7919, 100003]]"};
+        Vector<Expression> singleResults = new Vector<Expression>();
+        try {
+            for (int threads = 1; threads <= 4; threads += 3) {
+                WorkerPool.SetNumThreads(threads);
+
+                //every block is run once
+                final long[] blockSums = new long[100];
+                WorkerPool.ParallelForBlocks(0, 1000, 10, new WorkerPool.RangeTask() {
+
+                    @Override
+                    public void Run(long blockStart, long blockEnd) {
+                        for (long i = blockStart; i < blockEnd; i++) {
+                            blockSums[(int) (blockStart / 10)] += i;
+                        }
+                    }
+                });
+                long total = 0;
+                for (int i = 0; i < blockSums.length; i++) {
+                    total += blockSums[i];
+                }
+                assertEquals(999 * 1000 / 2, total);
+
+                //nested calls run inline on the worker thread that makes them
+                final boolean[] isInline = {true};
+                WorkerPool.ParallelForBlocks(0, 8, 1, new WorkerPool.RangeTask() {
+
+                    @Override
+                    public void Run(long blockStart, long blockEnd) {
+                        final Thread outerThread = Thread.currentThread();
+                        WorkerPool.ParallelForBlocks(0, 4, 1, new WorkerPool.RangeTask() {
+
+                            @Override
+                            public void Run(long innerStart, long innerEnd) {
+                                if (Thread.currentThread() != outerThread) {
+                                    isInline[0] = false;
+                                }
+                            }
+                        });
+                    }
+                });
+                assertTrue(isInline[0]);
+
+                //results come back in job order, and failures keep their cause
+                List<Callable<Integer>> jobList = new Vector<Callable<Integer>>();
+                for (int i = 0; i < 10; i++) {
+                    final int value = i;
+                    jobList.add(new Callable<Integer>() {
+
+                        public Integer call() {
+                            return value * value;
+                        }
+                    });
+                }
+                Vector<Integer> squares = WorkerPool.InvokeAll(jobList);
+                for (int i = 0; i < 10; i++) {
+                    assertEquals(i * i, squares.get(i).intValue());
+                }
+                jobList.add(new Callable<Integer>() {
+
+                    public Integer call() throws Exception {
+                        throw new ExpressionException("job failed");
+                    }
+                });
+                try {
+                    WorkerPool.InvokeAll(jobList);
+                    fail("Job failure was not passed on");
+                } catch (RuntimeException ex) {
+                    assertTrue(ex.getCause() instanceof ExpressionException);
+                }
+
+                //an interrupted wait cancels the jobs, fails the call and keeps the interrupt flag set
+                if (threads > 1) {
+                    List<Callable<Integer>> slowJobList = new Vector<Callable<Integer>>();
+                    for (int i = 0; i < 2; i++) {
+                        slowJobList.add(new Callable<Integer>() {
+
+                            public Integer call() throws Exception {
+                                Thread.sleep(10000);
+                                return 0;
+                            }
+                        });
+                    }
+                    Thread.currentThread().interrupt();
+                    try {
+                        WorkerPool.InvokeAll(slowJobList);
+                        fail("Interrupted wait did not fail");
+                    } catch (RuntimeException ex) {
+                        assertTrue(ex.getCause() instanceof InterruptedException);
+                    }
+                    assertTrue(Thread.interrupted());
+                }
+
+                //commands give the same results with one thread or several
+                for (int i = 0; i < inputs.length; i++) {
+                    Expression result = ProcessString(inputs[i]);
+                    if (threads == 1) {
+                        singleResults.add(result);
+                    } else {
+                        assertEquals(singleResults.get(i), result);
+                    }
+                }
+            }
+        } finally {
+            WorkerPool.SetNumThreads(savedThreads);
+        }
+    }
+
+    @Test
+    public void testPrimes() throws Exception {
+        assertEquals(ProcessString("{False, False, True, True, False, True}"), ProcessString("PrimeQ[{0, 1, 2, 3, 4, 5}]"));
+        assertEquals(ProcessString("True"), ProcessString("PrimeQ[-7]"));
+        assertEquals(ProcessString("False"), ProcessString("PrimeQ[561]"));
+        assertEquals(ProcessString("False"), ProcessString("PrimeQ[2.5]"));
+        //the largest prime below 2^63, and a Mersenne prime past it
+        assertEquals(ProcessString("True"), ProcessString("PrimeQ[9223372036854775783]"));
+        assertEquals(ProcessString("False"), ProcessString("PrimeQ[9223372036854775807]"));
+        assertEquals(ProcessString("True"), ProcessString("PrimeQ[170141183460469231731687303715884105727]"));
+
+        assertEquals(ProcessString("2"), ProcessString("Prime[1]"));
+        assertEquals(ProcessString("541"), ProcessString("Prime[100]"));
+        assertEquals(ProcessString("15485863"), ProcessString("Prime[1000000]"));
+        assertTrue(ProcessStringResults("Prime[0]").get(0).IsString());
+        assertTrue(ProcessStringResults("Prime[-1]").get(0).IsString());
+
+        assertEquals(ProcessString("{0, 0, 0, 1, 2}"), ProcessString("{PrimePi[-5], PrimePi[0], PrimePi[1], PrimePi[2], PrimePi[3]}"));
+        assertEquals(ProcessString("5761455"), ProcessString("PrimePi[100000000]"));
+        assertEquals(ProcessString("1000000"), ProcessString("PrimePi[15485863]"));
+        assertEquals(ProcessString("999999"), ProcessString("PrimePi[15485862]"));
+
+        assertEquals(ProcessString("{}"), ProcessString("Primes[1]"));
+        assertEquals(ProcessString("{2}"), ProcessString("Primes[2]"));
+        assertEquals(ProcessString("{2, 3, 5, 7}"), ProcessString("Primes[-10, 10]"));
+        assertEquals(ProcessString("{1000000007, 1000000009}"), ProcessString("Primes[1000000000, 1000000010]"));
+    }
+
+    @Test
+    public void testFactorInteger() throws Exception {
+        assertEquals(ProcessString("{{0, 1}}"), ProcessString("FactorInteger[0]"));
+        assertEquals(ProcessString("{{1, 1}}"), ProcessString("FactorInteger[1]"));
+        assertEquals(ProcessString("{{-1, 1}}"), ProcessString("FactorInteger[-1]"));
+        assertEquals(ProcessString("{{-1, 1}, {2, 2}, {3, 1}}"), ProcessString("FactorInteger[-12]"));
+        assertEquals(ProcessString("{{2, 64}}"), ProcessString("FactorInteger[18446744073709551616]"));
+        //semiprimes in a long, a prime square, and semiprimes past a long
+        assertEquals(ProcessString("{{1000000007, 1}, {1000000009, 1}}"), ProcessString("FactorInteger[1000000016000000063]"));
+        assertEquals(ProcessString("{{2147483647, 2}}"), ProcessString("FactorInteger[4611686014132420609]"));
+        assertEquals(ProcessString("{{1000000000039, 1}, {1000000000000037, 1}}"), ProcessString("FactorInteger[1000000000039 * 1000000000000037]"));
+        assertEquals(ProcessString("{{-1, 1}, {3, 1}, {2305843009213693951, 2}}"), ProcessString("FactorInteger[-3 * 2305843009213693951 * 2305843009213693951]"));
+    }
+
+    @Test
+    public void testModularArithmetic() throws Exception {
+        assertEquals(ProcessString("24"), ProcessString("PowerMod[2, 10, 1000]"));
+        assertEquals(ProcessString("2"), ProcessString("PowerMod[-2, 3, 5]"));
+        assertEquals(ProcessString("137438953472"), ProcessString("PowerMod[2, 100, 9223372036854775807]"));
+        //a negative exponent needs the inverse of the base
+        assertEquals(ProcessString("5"), ProcessString("PowerMod[3, -1, 7]"));
+        assertTrue(ProcessStringResults("PowerMod[2, -1, 4]").get(0).IsString());
+        assertTrue(ProcessStringResults("PowerMod[2, 3, 0]").get(0).IsString());
+
+        assertEquals(ProcessString("5"), ProcessString("ModularInverse[3, 7]"));
+        assertEquals(ProcessString("2"), ProcessString("ModularInverse[-3, 7]"));
+        assertEquals(ProcessString("-2"), ProcessString("ModularInverse[3, -7]"));
+        assertTrue(ProcessStringResults("ModularInverse[2, 4]").get(0).IsString());
+        assertTrue(ProcessStringResults("ModularInverse[0, 5]").get(0).IsString());
+        assertTrue(ProcessStringResults("ModularInverse[3, 0]").get(0).IsString());
+    }
+
+    @Test
+    public void testCombinatorics() throws Exception {
+        assertEquals(ProcessString("1"), ProcessString("Factorial[0]"));
+        assertEquals(ProcessString("2432902008176640000"), ProcessString("Factorial[20]"));
+        assertEquals(ProcessString("51090942171709440000"), ProcessString("Factorial[21]"));
+        assertTrue(ProcessStringResults("Factorial[-1]").get(0).IsString());
+        assertEquals(ProcessString("10"), ProcessString("Binomial[5, 2]"));
+        assertEquals(ProcessString("0"), ProcessString("Binomial[5, 7]"));
+        assertEquals(ProcessString("0"), ProcessString("Binomial[5, -1]"));
+        assertEquals(ProcessString("100891344545564193334812497256"), ProcessString("Binomial[100, 50]"));
+        assertEquals(ProcessString("60"), ProcessString("Multinomial[1, 2, 3]"));
+        assertEquals(ProcessString("1"), ProcessString("Multinomial[]"));
+    }
+
+    @Test
+    public void testGCDAndLCM() throws Exception {
+        assertEquals(ProcessString("0"), ProcessString("GCD[0, 0]"));
+        assertEquals(ProcessString("0"), ProcessString("GCD[]"));
+        assertEquals(ProcessString("5"), ProcessString("GCD[0, -5]"));
+        assertEquals(ProcessString("6"), ProcessString("GCD[-12, 18]"));
+        assertEquals(ProcessString("9223372036854775808"), ProcessString("GCD[-9223372036854775808]"));
+        assertEquals(ProcessString("4"), ProcessString("GCD[18446744073709551616, 12]"));
+
+        assertEquals(ProcessString("12"), ProcessString("LCM[-4, 6]"));
+        assertEquals(ProcessString("0"), ProcessString("LCM[0, 5]"));
+        assertEquals(ProcessString("1"), ProcessString("LCM[]"));
+        //the running multiple overflows a long
+        assertEquals(ProcessString("18446744073709551614"), ProcessString("LCM[9223372036854775807, 2]"));
+        assertEquals(ProcessString("69720375229712477164533808935312303556800"), ProcessString("LCM[Range[100]]"));
+
+        //packed arrays and unpacked lists give the same results
+        assertEquals(ProcessString("6"), ProcessString("GCD[Range[100000] * 6]"));
+        assertEquals(ProcessString("6"), ProcessString("GCD[{6, 12, 18446744073709551618}]"));
+        assertEquals(ProcessString("GCD[Range[1000] * 6, 18446744073709551618]"), ProcessString("GCD[Append[Range[1000] * 6, 18446744073709551618]]"));
+        assertEquals(ProcessString("LCM[LCM[Range[30]], 18446744073709551618]"), ProcessString("LCM[Append[Range[30], 18446744073709551618]]"));
+
+        //stopping early does not skip checking the rest of the arguments
+        assertEquals("GCD[1, 2, x]", ProcessString("GCD[1, 2, x]").toString());
+        assertEquals("GCD[{1, 2, 3}, {4, x}]", ProcessString("GCD[Range[3], {4, x}]").toString());
+        assertEquals("LCM[0, x]", ProcessString("LCM[0, x]").toString());
+        assertTrue(ProcessString("GCD[1, 2.5]").GetSingleNumber() == null);
+    }
+
+    @Test
+    public void testChineseRemainder() throws Exception {
+        assertEquals(ProcessString("23"), ProcessString("ChineseRemainder[{2, 3, 2}, {3, 5, 7}]"));
+        assertEquals(ProcessString("0"), ProcessString("ChineseRemainder[{}, {}]"));
+        //remainders are reduced, and the result is the smallest non-negative solution
+        assertEquals(ProcessString("3"), ProcessString("ChineseRemainder[{-2, 13}, {5, 10}]"));
+        assertEquals(ProcessString("100000000000000000000"), ProcessString("ChineseRemainder[Mod[100000000000000000000, {1000000007, 998244353, 1000003}], {1000000007, 998244353, 1000003}]"));
+
+        //moduli that are not coprime are solvable when the congruences agree on their common factor
+        assertEquals(ProcessString("11"), ProcessString("ChineseRemainder[{3, 5}, {4, 6}]"));
+        assertEquals(ProcessString("7"), ProcessString("ChineseRemainder[{1, 7}, {6, 12}]"));
+        assertTrue(ProcessStringResults("ChineseRemainder[{1, 2}, {4, 6}]").get(0).IsString());
+        assertTrue(ProcessStringResults("ChineseRemainder[{1, 2}, {3, 3}]").get(0).IsString());
+
+        assertTrue(ProcessStringResults("ChineseRemainder[{1, 2}, {3}]").get(0).IsString());
+        assertTrue(ProcessStringResults("ChineseRemainder[{1, 2}, {3, 0}]").get(0).IsString());
+        assertEquals("ChineseRemainder[{a, 1}, {3, 5}]", ProcessString("ChineseRemainder[{a, 1}, {3, 5}]").toString());
+    }
+
+    @Test
+    public void testExactIterationRanges() throws Exception {
+        //ranges just past the long limit stay exact
+        assertEquals(ProcessString("{9223372036854775806, 9223372036854775807, 9223372036854775808}"), ProcessString("Range[9223372036854775806, 9223372036854775808]"));
+        assertEquals(ProcessString("{-9223372036854775809, -9223372036854775808}"), ProcessString("Range[-9223372036854775809, -9223372036854775808]"));
+        assertEquals(ProcessString("{1, 10000000000000000001}"), ProcessString("Range[1, 10000000000000000001, 10000000000000000000]"));
+        assertEquals(ProcessString("{9223372036854775806, 9223372036854775807, 9223372036854775808}"), ProcessString("Table[k, {k, 9223372036854775806, 9223372036854775808}]"));
+        assertEquals(ProcessString("27670116110564327421"), ProcessString("Sum[k, {k, 9223372036854775806, 9223372036854775808}]"));
+        assertEquals(ProcessString("450000000000000000010"), ProcessString("Sum[k, {k, 1, 100000000000000000000, 10000000000000000000}]"));
+        assertEquals(ProcessString("85070591730234615856620279821087277056"), ProcessString("Product[k, {k, 9223372036854775807, 9223372036854775808}]"));
+
+        //long values that do not fit in a double are not rounded either
+        assertEquals(ProcessString("9007199254740993 / 2"), ProcessString("Sum[k / 2, {k, 9007199254740993, 9007199254740993}]"));
+
+        //inexact ranges still give machine reals
+        assertEquals(ProcessString("{0, 0.25, 0.5, 0.75, 1}"), ProcessString("Range[0, 1, 0.25]"));
+    }
+
+    @Test
+    public void testExactPowers() throws Exception {
+        //integer powers are exact rather than rounded through doubles
+        Expression power = ProcessString("3^100");
+        assertEquals(new FMNumber(new BigInteger("515377520732011331036461129765621272702107522001")), power.GetSingleNumber());
+        assertTrue(power.GetSingleNumber().IsExactInteger());
+        assertEquals(ProcessString("4"), ProcessString("Mod[3^100, 7]"));
+        assertEquals(ProcessString("PowerMod[3, 100, 7]"), ProcessString("Mod[3^100, 7]"));
+        assertEquals(ProcessString("{{3, 100}}"), ProcessString("FactorInteger[3^100]"));
+        assertEquals(ProcessString("{1, 1073741824, 205891132094649, 1152921504606846976, 931322574615478515625}"), ProcessString("Range[5]^30"));
+
+        //rounded results are not exact integers, even when they are integral
+        assertFalse(ProcessString("4^0.5").GetSingleNumber().IsExactInteger());
+        assertFalse(new FMNumber(2.0).IsExactInteger());
+        assertFalse(ProcessString("{{2, 1}}").equals(ProcessString("FactorInteger[4^0.5]")));
+    }
+
+    /**
+     * Create a toolset with the system functions loaded, for flattening values that can not be written as input strings.  
+     */
+    protected ExpressionToolset CreateLoadedToolset() throws Exception {
+        FunctionTable functionTable = new FunctionTable();
+        Vector<FunctionInformation.FunctionInfo> functionInfoList = new FunctionInformation("functions.xml").GetFunctionList();
+        for (int i = 0; i < functionInfoList.size(); i++) {
+            FunctionInformation.FunctionInfo info = functionInfoList.get(i);
+            Command command = (Command) Class.forName("franklinmath.math." + info.name + "Command").newInstance();
+            command.SetName(info.name);
+            command.SetIsMathFunction(info.isMathFunction);
+            command.SetIsListable(info.isListable);
+            functionTable.Set(info.name, command);
+        }
+        return new ExpressionToolset(context, new LookupTable(), new FunctionTable(), functionTable, new Vector<FMResult>());
+    }
+
+    /**
+     * Call a function on a single argument and flatten the result.  
+     */
+    protected Expression CallFunction(ExpressionToolset toolset, String name, PackedArray argument) throws ExpressionException, ExecutionException {
+        Vector<Equation> argList = new Vector<Equation>(1);
+        argList.add(new Equation(BuildExpression(new Factor(argument)), null));
+        return toolset.Flatten(BuildExpression(new Factor(new SymbolicFunction(name, argList, true))));
+    }
+
+    protected static long[] Subtract(long[] data, long value) {
+        long[] result = new long[data.length];
+        for (int i = 0; i < data.length; i++) {
+            result[i] = data[i] - value;
+        }
+        return result;
+    }
+
     /**
      * Create an expression from a number.  
      * @param value     The number to use when building the expression.  
@@ -952,13 +2163,23 @@ public class ExpressionToolsetTest {
      * @throws franklinmath.expression.ExpressionException
      */
     protected Expression ProcessString(String str) throws ParseException, ExecutionException, ExpressionException {
-        java.io.StringReader strReader = new java.io.StringReader(str);
-        java.io.Reader reader = new java.io.BufferedReader(strReader);
-        FMParser parser = new FMParser(reader);
-        Vector<FMResult> resultList = executor.Execute(parser.Program());
+        Vector<FMResult> resultList = ProcessStringResults(str);
         if (resultList.size() != 1) {
             throw new ExecutionException("Too many results");
         }
         return resultList.get(0).GetExpression();
     }
+
+    /**
+     * Process a string input, giving every result whatever its type (an image is followed by an empty result).  
+     * @param str       The input string to process.  
+     * @return          The results.  
+     * @throws franklinmath.parser.ParseException
+     */
+    protected Vector<FMResult> ProcessStringResults(String str) throws ParseException {
+        java.io.StringReader strReader = new java.io.StringReader(str);
+        java.io.Reader reader = new java.io.BufferedReader(strReader);
+        FMParser parser = new FMParser(reader);
+        return executor.Execute(parser.Program());
+    }
 }
@@ -131,6 +131,126 @@ public class FactorTest {
         }
     }
 
+    @Test
+    public void testPackedArray() throws ExpressionException {
+        Vector<Expression> exprList = new Vector<Expression>();
+        for (int i = 0; i < 10; i++) {
+            exprList.add(new Expression(new Term(new Power(new Factor(i * i - 20))), TermOperator.NONE));
+        }
+
+        //integer lists pack into long arrays and equal their unpacked form
+        PackedArray packed = PackedArray.Pack(exprList);
+        assertNotNull(packed);
+        assertTrue(packed.IsInteger());
+        assertEquals(10, packed.Length());
+        Factor packedFactor = new Factor(packed);
+        Factor listFactor = new Factor(exprList);
+        assertTrue(packedFactor.IsExprList());
+        assertEquals(packedFactor, listFactor);
+        assertEquals(listFactor, packedFactor);
+        assertEquals(listFactor.toString(), packedFactor.toString());
+        assertEquals(listFactor, new Factor(packedFactor.GetExprList()));
+
+        //doubles pack into a real array
+        exprList.add(new Expression(new Term(new Power(new Factor(0.25))), TermOperator.NONE));
+        packed = PackedArray.Pack(exprList);
+        assertNotNull(packed);
+        assertTrue(packed.IsReal());
+        assertEquals(new FMNumber(0.25), packed.GetNumber(10));
+        assertEquals(new Factor(packed), new Factor(exprList));
+
+        //complex numbers pack into interleaved pairs
+        exprList.add(new Expression(new Term(new Power(new Factor(new FMNumber(1.5, -2.0)))), TermOperator.NONE));
+        packed = PackedArray.Pack(exprList);
+        assertNotNull(packed);
+        assertTrue(packed.IsComplex());
+        assertEquals(new FMNumber(1.5, -2.0), packed.GetNumber(11));
+
+        //anything that would lose precision is not packed
+        exprList.add(new Expression(new Term(new Power(new Factor(new FMNumber("0.1")))), TermOperator.NONE));
+        assertNull(PackedArray.Pack(exprList));
+        exprList.remove(exprList.size() - 1);
+        exprList.add(new Expression(new Term(new Power(new Factor("x", true))), TermOperator.NONE));
+        assertNull(PackedArray.Pack(exprList));
+
+        //exact integers that only a double could hold stay unpacked
+        Vector<Expression> bigList = new Vector<Expression>();
+        bigList.add(new Expression(new Term(new Power(new Factor(new FMNumber(new java.math.BigInteger("18446744073709551616"))))), TermOperator.NONE));
+        assertNull(PackedArray.Pack(bigList));
+
+        assertFalse(new Factor(new PackedArray(new long[]{1, 2})).equals(new Factor(new PackedArray(new long[]{1, 3}))));
+        assertFalse(new Factor(new PackedArray(new long[]{1, 2})).equals(new Factor(new PackedArray(new long[]{1, 2, 3}))));
+    }
+
+    @Test
+    public void testPersistentList() throws ExpressionException {
+        //random changes at both ends and in the middle match the same changes made to a vector
+        Vector<Expression> expected = new Vector<Expression>();
+        PersistentVector list = new PersistentVector();
+        Random random = new Random(50);
+        for (int i = 0; i < 5000; i++) {
+            Expression element = new Expression(new Term(new Power(new Factor(i))), TermOperator.NONE);
+            int choice = random.nextInt(4);
+            if ((choice == 0) && (expected.size() > 0)) {
+                int index = random.nextInt(expected.size());
+                PersistentVector changed = list.Set(index, element);
+                //the original list is unchanged
+                assertEquals(expected.get(index), list.Get(index));
+                expected.set(index, element);
+                list = changed;
+            } else if (choice == 1) {
+                expected.add(0, element);
+                list = list.Prepend(element);
+            } else {
+                expected.add(element);
+                list = list.Append(element);
+            }
+        }
+        assertEquals(expected.size(), list.Size());
+        assertEquals(expected, list.ToVector());
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), list.Get(i));
+        }
+        assertEquals(new Factor(expected), new Factor(list));
+        assertEquals(expected, new PersistentVector(expected).ToVector());
+        assertFalse(new Factor(list).equals(new Factor(list.Append(expected.get(0)))));
+
+        //appending a million elements one at a time shares the tree instead of copying it
+        Expression element = new Expression(new Term(new Power(new Factor("x", true))), TermOperator.NONE);
+        PersistentVector longList = new PersistentVector();
+        for (int i = 0; i < 1000000; i++) {
+            longList = longList.Append(element);
+        }
+        assertEquals(1000000, longList.Size());
+        assertEquals(1000000, new Factor(longList).ListLength());
+    }
+
+    @Test
+    public void testPackedHashCode() throws ExpressionException {
+        //equal packed and unpacked lists hash equally, including negated numbers, zero signs and integers held as reals
+        double[] reals = {1.0, -0.0, 2.5, -3.0, 0.0, 1e20, -7.25, 4.0, 9.5};
+        Vector<Expression> exprList = new Vector<Expression>();
+        for (int i = 0; i < reals.length; i++) {
+            FMNumber number = (reals[i] == Math.rint(reals[i])) ? new FMNumber(new java.math.BigDecimal(reals[i]).toBigInteger()) : new FMNumber(reals[i]);
+            if (reals[i] < 0) {
+                exprList.add(new Expression(new Term(new Power(new Factor(number.Negate(java.math.MathContext.DECIMAL128)))), TermOperator.SUBTRACT));
+            } else {
+                exprList.add(new Expression(new Term(new Power(new Factor(number))), TermOperator.NONE));
+            }
+        }
+        Factor packedFactor = new Factor(new PackedArray(reals));
+        Factor listFactor = new Factor(exprList);
+        assertEquals(packedFactor, listFactor);
+        assertEquals(listFactor, packedFactor);
+        assertEquals(packedFactor.hashCode(), listFactor.hashCode());
+
+        long[] integers = {5, -6, 0, Long.MAX_VALUE, Long.MIN_VALUE};
+        Factor packedIntegers = new Factor(new PackedArray(integers));
+        Factor unpackedIntegers = new Factor(packedIntegers.GetExprList());
+        assertEquals(packedIntegers, unpackedIntegers);
+        assertEquals(packedIntegers.hashCode(), unpackedIntegers.hashCode());
+    }
+
     @Test
     public void testHashCode() {
         //quickly test the obvious case with equal references